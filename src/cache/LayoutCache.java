@@ -0,0 +1,428 @@
+package cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import models.Graph;
+import models.Node;
+
+/**
+ * Cache sur disque des dispositions équilibrées
+ * <p>
+ * Une disposition est rangée dans le fichier {@code <clé>.layout} du dossier du cache, où la clé est
+ * l'empreinte SHA-256 de l'adjacence canonique du graphe (listes de voisins triées, par n° d'origine),
+ * de l'initiale du modèle et des paramètres {@code timestep}, {@code damping}, de l'aire ciblée ({@link Graph#getArea()})
+ * et des coefficients du modèle d'Eades ({@link Graph#getEadesAttraction()}, {@link Graph#getEadesRepulsion()}).
+ * </p>
+ * <ul>
+ * <li>Si la clé est présente, les positions rangées sont reprises telles quelles, sans équilibrage.</li>
+ * <li>Sinon, on cherche une disposition d'un graphe proche (mêmes paramètres, arêtes semblables selon
+ * une signature MinHash) : les noeuds de même n° reprennent leur position, les nouveaux sont placés
+ * au barycentre de leurs voisins, et quelques itérations suffisent à affiner.</li>
+ * </ul>
+ * <p>
+ * La taille du dossier est bornée : au-delà, les fichiers utilisés le moins récemment (date de
+ * modification, mise à jour à chaque utilisation) sont supprimés.
+ * </p>
+ */
+public class LayoutCache {
+
+    /**
+     * aucune disposition utilisable n'a été trouvée
+     */
+    public static final int MISS = 0;
+
+    /**
+     * la disposition exacte a été trouvée : le graphe est déjà équilibré
+     */
+    public static final int HIT = 1;
+
+    /**
+     * la disposition d'un graphe proche a servi de point de départ
+     */
+    public static final int NEAR_HIT = 2;
+
+    /**
+     * signature des fichiers du cache
+     */
+    private static final int MAGIC = 0x47444c43; // "GDLC"
+
+    /**
+     * version du format des fichiers (les entrées d'une autre version sont effacées à la lecture)
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * extension des fichiers du cache
+     */
+    private static final String EXTENSION = ".layout";
+
+    /**
+     * nombre de fonctions de hachage de la signature MinHash
+     */
+    private static final int NB_HASHES = 64;
+
+    /**
+     * similarité (estimation de l'indice de Jaccard des ensembles d'arêtes) minimale pour un graphe proche
+     */
+    private static final double NEAR_HIT_SIMILARITY = 0.5;
+
+    /**
+     * dossier du cache
+     */
+    private File directory;
+
+    /**
+     * taille maximale du dossier, en octets
+     */
+    private long maxBytes;
+
+    /**
+     * @param directory dossier du cache (créé si besoin)
+     * @param maxBytes taille maximale du dossier, en octets
+     */
+    public LayoutCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        directory.mkdirs();
+    }
+
+    /**
+     * Cherche une disposition pour le graphe et l'applique le cas échéant
+     * @param graph graphe à placer
+     * @param modelLetter initiale du nom du modèle choisi
+     * @param timestep pas temporel
+     * @param damping facteur d'amortissement
+     * @return {@link #HIT}, {@link #NEAR_HIT} ou {@link #MISS}
+     */
+    public int restore(Graph graph, char modelLetter, double timestep, double damping) {
+        File exact = new File(directory, key(graph, modelLetter, timestep, damping) + EXTENSION);
+        Entry entry = exact.exists() ? readValid(exact, true) : null;
+        if (entry != null) {
+            exact.setLastModified(System.currentTimeMillis()); // utilisation récente (LRU)
+            apply(graph, entry, true);
+            return HIT;
+        }
+
+        // recherche d'un graphe proche parmi les entrées de mêmes paramètres
+        double[] coefficients = coefficients(graph, modelLetter);
+        long[] signature = signature(graph);
+        File best = null;
+        double bestSimilarity = NEAR_HIT_SIMILARITY;
+        File[] files = directory.listFiles();
+        if (files == null) return MISS;
+        for (File file : files) {
+            if (!file.getName().endsWith(EXTENSION)) continue;
+            Entry header = readValid(file, false);
+            if (header == null || header.modelLetter != modelLetter || header.timestep != timestep
+                    || header.damping != damping || header.area != graph.getArea()
+                    || header.attraction != coefficients[0] || header.repulsion != coefficients[1]) continue;
+            double similarity = similarity(signature, header.signature);
+            if (similarity >= bestSimilarity) {
+                bestSimilarity = similarity;
+                best = file;
+            }
+        }
+        if (best == null) return MISS;
+        entry = readValid(best, true);
+        if (entry == null) return MISS;
+        best.setLastModified(System.currentTimeMillis());
+        apply(graph, entry, false);
+        return NEAR_HIT;
+    }
+
+    /**
+     * Lit une entrée, en effaçant le fichier s'il est corrompu (tronqué, ou d'un autre format)
+     * @param file fichier du cache
+     * @param full vrai pour lire aussi les positions, faux pour l'en-tête seulement
+     * @return l'entrée, ou null si le fichier n'est pas une entrée valide
+     */
+    private static Entry readValid(File file, boolean full) {
+        Entry entry;
+        try {
+            entry = Entry.read(file, full);
+        } catch (IOException ex) {
+            entry = null;
+        }
+        if (entry == null) file.delete();
+        return entry;
+    }
+
+    /**
+     * Range la disposition courante du graphe (à appeler une fois l'équilibrage terminé)
+     * @param graph graphe équilibré
+     * @param modelLetter initiale du nom du modèle choisi
+     * @param timestep pas temporel
+     * @param damping facteur d'amortissement
+     */
+    public void store(Graph graph, char modelLetter, double timestep, double damping) {
+        File file = new File(directory, key(graph, modelLetter, timestep, damping) + EXTENSION);
+        File temporary = new File(directory, file.getName() + ".tmp");
+        List<Node> nodes = graph.getNodes();
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeChar(modelLetter);
+                out.writeDouble(timestep);
+                out.writeDouble(damping);
+                out.writeInt(graph.getArea());
+                double[] coefficients = coefficients(graph, modelLetter);
+                out.writeDouble(coefficients[0]);
+                out.writeDouble(coefficients[1]);
+                long[] signature = signature(graph);
+                for (int i = 0; i < NB_HASHES; i++) out.writeLong(signature[i]);
+                out.writeDouble(graph.getEk());
+                out.writeInt(nodes.size());
+                for (Node node : nodes) {
+                    out.writeInt(node.getOriginalIndex());
+                    out.writeDouble(node.getPosition().getX());
+                    out.writeDouble(node.getPosition().getY());
+                }
+            } finally {
+                out.close();
+            }
+            // renommage en fin d'écriture : une entrée n'est jamais lue à moitié écrite
+            file.delete();
+            if (!temporary.renameTo(file)) throw new IOException("Impossible d'écrire " + file);
+            evict();
+        } catch (IOException ex) {
+            temporary.delete();
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Supprime les entrées les moins récemment utilisées tant que le dossier dépasse sa taille maximale
+     */
+    private void evict() {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+        long total = 0;
+        for (File file : files) total += file.length();
+        if (total <= maxBytes) return;
+        // tri par date de dernière utilisation croissante
+        long[] keys = new long[files.length];
+        for (int i = 0; i < files.length; i++) keys[i] = files[i].lastModified();
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        final long[] dates = keys;
+        Arrays.sort(order, new java.util.Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return dates[a] < dates[b] ? -1 : (dates[a] == dates[b] ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < order.length && total > maxBytes; i++) {
+            File file = files[order[i]];
+            long length = file.length();
+            if (file.delete()) total -= length;
+        }
+    }
+
+    /**
+     * Place les noeuds du graphe d'après une entrée du cache
+     * @param graph graphe à placer
+     * @param entry entrée lue en entier
+     * @param exact vrai si l'entrée correspond exactement au graphe
+     */
+    private static void apply(Graph graph, Entry entry, boolean exact) {
+
+        if (!exact) {
+            // noeuds absents de l'entrée : barycentre des voisins déjà placés
+            graph.seedPositions(entry.originalIndexes, entry.x, entry.y);
+            return;
+        }
+
+        Map<Integer, Integer> cached = new HashMap<Integer, Integer>();
+        for (int i = 0; i < entry.originalIndexes.length; i++) cached.put(entry.originalIndexes[i], i);
+
+        List<Node> nodes = graph.getNodes();
+        int nbNodes = nodes.size();
+        double[] x = new double[nbNodes];
+        double[] y = new double[nbNodes];
+        for (int i = 0; i < nbNodes; i++) {
+            Integer c = cached.get(nodes.get(i).getOriginalIndex());
+            x[i] = c != null ? entry.x[c] : nodes.get(i).getPosition().getX();
+            y[i] = c != null ? entry.y[c] : nodes.get(i).getPosition().getY();
+        }
+        graph.setPositions(x, y, entry.kineticEnergy);
+    }
+
+    /**
+     * @param graph graphe
+     * @param modelLetter initiale du nom du modèle choisi
+     * @param timestep pas temporel
+     * @param damping facteur d'amortissement
+     * @return l'empreinte hexadécimale de l'adjacence canonique et des paramètres
+     */
+    private static String key(Graph graph, char modelLetter, double timestep, double damping) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex); // SHA-256 est toujours fourni par la JVM
+        }
+        List<Node> nodes = graph.getNodes();
+
+        // noeuds par n° d'origine, voisins triés : la clé ne dépend ni de l'ordre du fichier ni de la renumérotation
+        Node[] byOriginal = nodes.toArray(new Node[nodes.size()]);
+        Arrays.sort(byOriginal, new java.util.Comparator<Node>() {
+            public int compare(Node a, Node b) {
+                return a.getOriginalIndex() < b.getOriginalIndex() ? -1 : (a.getOriginalIndex() == b.getOriginalIndex() ? 0 : 1);
+            }
+        });
+        byte[] buffer = new byte[8];
+        update(digest, buffer, nodes.size());
+        for (Node node : byOriginal) {
+            List<Node> neighbours = node.getNeighbours();
+            int[] sorted = new int[neighbours.size()];
+            for (int j = 0; j < sorted.length; j++) sorted[j] = neighbours.get(j).getOriginalIndex();
+            Arrays.sort(sorted);
+            update(digest, buffer, node.getOriginalIndex());
+            update(digest, buffer, sorted.length);
+            for (int v : sorted) update(digest, buffer, v);
+        }
+        update(digest, buffer, modelLetter);
+        update(digest, buffer, Double.doubleToLongBits(timestep));
+        update(digest, buffer, Double.doubleToLongBits(damping));
+        update(digest, buffer, graph.getArea());
+        double[] coefficients = coefficients(graph, modelLetter);
+        update(digest, buffer, Double.doubleToLongBits(coefficients[0]));
+        update(digest, buffer, Double.doubleToLongBits(coefficients[1]));
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) hex.append(String.format("%02x", b));
+        return hex.toString();
+    }
+
+    /**
+     * @param graph graphe
+     * @param modelLetter initiale du nom du modèle choisi
+     * @return les coefficients d'attraction et de répulsion du modèle, qui changent les forces à paramètres
+     * égaux (ceux du modèle d'Eades ; 0 pour les modèles qui n'en ont pas)
+     */
+    private static double[] coefficients(Graph graph, char modelLetter) {
+        if (modelLetter != 'e') return new double[] {0, 0};
+        return new double[] {graph.getEadesAttraction(), graph.getEadesRepulsion()};
+    }
+
+    /**
+     * Ajoute un entier à l'empreinte
+     * @param digest empreinte en cours
+     * @param buffer tampon de 8 octets
+     * @param value valeur à ajouter
+     */
+    private static void update(MessageDigest digest, byte[] buffer, long value) {
+        for (int i = 0; i < 8; i++) buffer[i] = (byte) (value >>> (8 * i));
+        digest.update(buffer);
+    }
+
+    /**
+     * Signature MinHash de l'ensemble des arêtes (par n° d'origine)
+     * @param graph graphe
+     * @return pour chaque fonction de hachage, le plus petit haché des arêtes
+     */
+    private static long[] signature(Graph graph) {
+        long[] signature = new long[NB_HASHES];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        for (Node node : graph.getNodes()) {
+            for (Node neighbour : node.getNeighbours()) {
+                if (neighbour.getOriginalIndex() < node.getOriginalIndex()) continue; // chaque arête une fois
+                long edge = ((long) node.getOriginalIndex() << 32) | neighbour.getOriginalIndex();
+                for (int i = 0; i < NB_HASHES; i++) {
+                    long h = mix(edge ^ (0x9E3779B97F4A7C15L * (i + 1)));
+                    if (h < signature[i]) signature[i] = h;
+                }
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * @param a signature MinHash
+     * @param b signature MinHash
+     * @return la proportion de fonctions de hachage sur lesquelles les signatures coïncident
+     */
+    private static double similarity(long[] a, long[] b) {
+        int same = 0;
+        for (int i = 0; i < NB_HASHES; i++) if (a[i] == b[i]) same++;
+        return (double) same / NB_HASHES;
+    }
+
+    /**
+     * Mélange des bits (finaliseur de SplitMix64)
+     * @param z valeur à mélanger
+     * @return valeur mélangée
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Contenu d'un fichier du cache
+     */
+    private static class Entry {
+
+        char modelLetter;
+        double timestep, damping;
+        int area;
+        double attraction, repulsion;
+        long[] signature = new long[NB_HASHES];
+        double kineticEnergy;
+        int[] originalIndexes;
+        double[] x, y;
+
+        /**
+         * @param file fichier du cache
+         * @param full vrai pour lire aussi les positions, faux pour l'en-tête seulement
+         * @return l'entrée, ou null si le fichier n'est pas une entrée valide
+         * @throws IOException en cas d'erreur de lecture
+         */
+        static Entry read(File file, boolean full) throws IOException {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+                Entry entry = new Entry();
+                entry.modelLetter = in.readChar();
+                entry.timestep = in.readDouble();
+                entry.damping = in.readDouble();
+                entry.area = in.readInt();
+                entry.attraction = in.readDouble();
+                entry.repulsion = in.readDouble();
+                for (int i = 0; i < NB_HASHES; i++) entry.signature[i] = in.readLong();
+                entry.kineticEnergy = in.readDouble();
+                if (full) {
+                    int nbNodes = in.readInt();
+                    if (nbNodes < 0 || nbNodes > file.length() / 20) return null; // 20 octets par noeud
+                    entry.originalIndexes = new int[nbNodes];
+                    entry.x = new double[nbNodes];
+                    entry.y = new double[nbNodes];
+                    for (int i = 0; i < nbNodes; i++) {
+                        entry.originalIndexes[i] = in.readInt();
+                        entry.x[i] = in.readDouble();
+                        entry.y[i] = in.readDouble();
+                    }
+                }
+                return entry;
+            } finally {
+                in.close();
+            }
+        }
+
+    }
+
+}
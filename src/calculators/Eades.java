@@ -4,6 +4,7 @@
  */
 package calculators;
 
+import helper.FloatForceModelizer;
 import helper.ForceModelizer;
 
 /**
@@ -14,7 +15,7 @@ import helper.ForceModelizer;
  * 
  * @author Long Nguyen Huu
  */
-public class Eades implements ForceModelizer {
+public class Eades implements ForceModelizer, FloatForceModelizer {
 	
 	/**
 	 * distance idéale entre deux noeuds voisins
@@ -28,6 +29,10 @@ public class Eades implements ForceModelizer {
      * coefficient pour la force de répulsion
      */
     private double cRepuls;
+    /**
+     * copies en simple précision des paramètres (pour {@link FloatForceModelizer})
+     */
+    private float kf, cAttrf, cRepulsf;
     
     /**
      * constructeur
@@ -41,6 +46,9 @@ public class Eades implements ForceModelizer {
         this.k = k;
         this.cAttr = cAttr;
         this.cRepuls = cRepuls;
+        this.kf = (float) k;
+        this.cAttrf = (float) cAttr;
+        this.cRepulsf = (float) cRepuls;
     }
     
     @Override
@@ -52,5 +60,15 @@ public class Eades implements ForceModelizer {
     public double calculateRepulsForce(double dist) {
         return -cRepuls/(dist*dist);
     }
-            
+
+    @Override
+    public float calculateAttrForce(float dist) {
+        return cAttrf*(float) Math.log(dist/kf);
+    }
+
+    @Override
+    public float calculateRepulsForce(float dist) {
+        return -cRepulsf/(dist*dist);
+    }
+    
 }
\ No newline at end of file
@@ -4,19 +4,25 @@
  */
 package calculators;
 
+import helper.FloatForceModelizer;
 import helper.ForceModelizer;
 
 /**
  *
  * @author Long Nguyen Huu
  */
-public class FruchtermanReingold implements ForceModelizer {
+public class FruchtermanReingold implements ForceModelizer, FloatForceModelizer {
 
 	/**
 	 * distance idéale entre deux noeuds voisins
 	 */
     private double k;
     
+    /**
+     * copie en simple précision de k (pour {@link FloatForceModelizer})
+     */
+    private float kf;
+    
     /**
      * constructeur
      * crée une instance de l'algorithme de Fruchterman-Reingold avec le paramètre k
@@ -25,6 +31,7 @@ public class FruchtermanReingold implements ForceModelizer {
      */
     public FruchtermanReingold(double k) {
         this.k = k;
+        this.kf = (float) k;
     }
     
     @Override
@@ -36,5 +43,15 @@ public class FruchtermanReingold implements ForceModelizer {
     public double calculateRepulsForce(double dist) {
         return -k*k/dist;
     }
-            
+
+    @Override
+    public float calculateAttrForce(float dist) {
+        return dist*dist/kf;
+    }
+
+    @Override
+    public float calculateRepulsForce(float dist) {
+        return -kf*kf/dist;
+    }
+    
 }
\ No newline at end of file
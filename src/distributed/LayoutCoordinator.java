@@ -0,0 +1,403 @@
+package distributed;
+
+import export.SvgExporter;
+import graphdrawerapp.GraphDrawerApp;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+import models.Graph;
+import models.Node;
+import models.NodeOrdering;
+
+/**
+ * Coordinateur de l'équilibrage réparti sur plusieurs JVM
+ * <p>
+ * Les noeuds sont partagés entre les travailleurs ({@link LayoutWorker}) par tranches contiguës
+ * de l'ordre de Cuthill-McKee inverse (voir {@link NodeOrdering}), qui garde ensemble les noeuds
+ * voisins et limite ainsi le nombre de fantômes. A chaque itération le coordinateur relaie les
+ * positions des noeuds de frontière et les résumés de masse, et somme les énergies cinétiques
+ * des travailleurs pour le critère d'arrêt {@link Graph#ENERGY_THRESHOLD}.
+ * </p>
+ * <p>
+ * Par défaut les travailleurs sont lancés comme processus sur la même machine et se connectent
+ * en local. Si un port est donné, le coordinateur attend plutôt que des travailleurs lancés
+ * à la main s'y connectent ; il n'écoute alors qu'en local, sauf si une adresse d'écoute est donnée
+ * (pour des travailleurs sur d'autres machines). Toute connexion qui ne se présente pas selon
+ * {@link Protocol} est refusée.
+ * </p>
+ */
+public class LayoutCoordinator {
+
+    /**
+     * délai maximal d'attente de tous les travailleurs, en millisecondes (0 pour attendre sans limite)
+     */
+    public static int CONNECT_TIMEOUT_MILLIS = 60000;
+
+    /**
+     * période de vérification des travailleurs lancés en local pendant l'attente, en millisecondes
+     */
+    private static final int ACCEPT_POLL_MILLIS = 500;
+
+    /**
+     * graphe complet (sert à la mise en place et reçoit les positions finales)
+     */
+    private Graph graph;
+
+    /**
+     * nombre de travailleurs
+     */
+    private int nbWorkers;
+
+    /**
+     * positions connues de tous les noeuds, par rang
+     */
+    private double[] posX, posY;
+
+    /**
+     * noeuds possédés par chaque travailleur (rangs globaux)
+     */
+    private int[][] owned;
+
+    /**
+     * fantômes de chaque travailleur (rangs globaux)
+     */
+    private int[][] ghosts;
+
+    /**
+     * frontière de chaque travailleur (rangs globaux des noeuds qu'il possède et qui sont fantômes ailleurs)
+     */
+    private int[][] frontiers;
+
+    /**
+     * dernier résumé de masse de chaque travailleur
+     */
+    private double[][] summaries;
+
+    /**
+     * énergie cinétique totale à la dernière itération
+     */
+    private double kineticEnergy;
+
+    /**
+     * flux vers et depuis chaque travailleur
+     */
+    private DataInputStream[] ins;
+    private DataOutputStream[] outs;
+
+    /**
+     * @param args "nom_du_fichier" "initiale modèle" "nombre de travailleurs" ["sortie.svg"] ["port"] ["adresse d'écoute"]
+     */
+    public static void main(String[] args) {
+
+        if (args.length < 3 || !Pattern.matches("\\w{1,256}", args[0]) || args[1].length() < 1 || !Pattern.matches("\\d{1,3}", args[2])
+                || (args.length >= 5 && !Pattern.matches("\\d{1,5}", args[4]))) {
+            System.out.println("Usage : LayoutCoordinator nom_du_fichier initiale_modèle nombre_travailleurs [sortie.svg] [port] [adresse_d_écoute]");
+            return;
+        }
+        String outputPath = args.length >= 4 ? args[3] : null;
+        int port = args.length >= 5 ? Integer.parseInt(args[4]) : 0;
+        InetAddress address;
+        try {
+            address = args.length >= 6 ? InetAddress.getByName(args[5]) : InetAddress.getLoopbackAddress();
+        } catch (IOException ex) {
+            System.out.println("Adresse d'écoute inconnue : " + args[5]);
+            return;
+        }
+
+        Graph graph = new Graph("data/" + args[0] + ".txt", args[1].charAt(0));
+        LayoutCoordinator coordinator = new LayoutCoordinator(graph, Math.max(1, Integer.parseInt(args[2])));
+
+        List<Process> processes = new ArrayList<Process>();
+        try {
+            coordinator.connect(args[1].charAt(0), port, address, processes);
+            long start = System.nanoTime();
+            int iterations = coordinator.balance();
+            System.out.println("Equilibrage réparti terminé en " + iterations + " itérations ("
+                    + (System.nanoTime() - start) / 1000000 + " ms), Ec = " + coordinator.kineticEnergy);
+            for (Process process : processes) process.waitFor();
+            if (outputPath != null) {
+                new SvgExporter(graph, 2000, graph.getNodes().size() <= 1000).export(outputPath);
+                System.out.println("Image écrite dans " + outputPath);
+            }
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            for (Process process : processes) process.destroy(); // travailleurs restés en attente
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+    }
+
+    /**
+     * Partage les noeuds du graphe entre <i>nbWorkers</i> travailleurs
+     * @param graph graphe à équilibrer, dont on prend les positions courantes
+     * @param nbWorkers nombre de travailleurs
+     */
+    public LayoutCoordinator(Graph graph, int nbWorkers) {
+
+        this.graph = graph;
+        List<Node> nodes = graph.getNodes();
+        int nbNodes = nodes.size();
+        this.nbWorkers = Math.min(nbWorkers, Math.max(1, nbNodes));
+
+        posX = new double[nbNodes];
+        posY = new double[nbNodes];
+        for (int i = 0; i < nbNodes; i++) {
+            posX[i] = nodes.get(i).getPosition().getX();
+            posY[i] = nodes.get(i).getPosition().getY();
+        }
+
+        // tranches contiguës de l'ordre de Cuthill-McKee inverse
+        int[] order = NodeOrdering.reverseCuthillMcKee(nodes);
+        int[] owner = new int[nbNodes];
+        owned = new int[this.nbWorkers][];
+        for (int w = 0; w < this.nbWorkers; w++) {
+            int from = (int) ((long) nbNodes * w / this.nbWorkers);
+            int to = (int) ((long) nbNodes * (w + 1) / this.nbWorkers);
+            owned[w] = new int[to - from];
+            for (int i = from; i < to; i++) {
+                owned[w][i - from] = order[i];
+                owner[order[i]] = w;
+            }
+        }
+
+        // fantômes : voisins possédés par un autre travailleur ; ils sont dans la frontière de leur propriétaire
+        boolean[] isFrontier = new boolean[nbNodes];
+        ghosts = new int[this.nbWorkers][];
+        int[] lastSeen = new int[nbNodes];
+        Arrays.fill(lastSeen, -1);
+        for (int w = 0; w < this.nbWorkers; w++) {
+            List<Integer> workerGhosts = new ArrayList<Integer>();
+            for (int u : owned[w]) {
+                for (Node neighbour : nodes.get(u).getNeighbours()) {
+                    int v = neighbour.getIndex();
+                    if (owner[v] != w && lastSeen[v] != w) {
+                        lastSeen[v] = w;
+                        workerGhosts.add(v);
+                        isFrontier[v] = true;
+                    }
+                }
+            }
+            ghosts[w] = toArray(workerGhosts);
+        }
+        frontiers = new int[this.nbWorkers][];
+        summaries = new double[this.nbWorkers][];
+        for (int w = 0; w < this.nbWorkers; w++) {
+            List<Integer> frontier = new ArrayList<Integer>();
+            double[] ownedX = new double[owned[w].length];
+            double[] ownedY = new double[owned[w].length];
+            for (int i = 0; i < owned[w].length; i++) {
+                if (isFrontier[owned[w][i]]) frontier.add(owned[w][i]);
+                ownedX[i] = posX[owned[w][i]];
+                ownedY[i] = posY[owned[w][i]];
+            }
+            frontiers[w] = toArray(frontier);
+            summaries[w] = MassSummary.compute(ownedX, ownedY, owned[w].length);
+        }
+    }
+
+    /**
+     * @param list liste d'entiers
+     * @return le tableau correspondant
+     */
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) array[i] = list.get(i);
+        return array;
+    }
+
+    /**
+     * Lance ou attend les travailleurs, puis leur envoie leur mise en place
+     * @param modelLetter initiale du nom du modèle choisi
+     * @param port port d'écoute, ou 0 pour lancer les travailleurs en local sur un port libre
+     * @param address adresse d'écoute si un port est donné (l'interface locale en général)
+     * @param processes reçoit les processus lancés
+     * @throws IOException en cas d'erreur de communication, si un travailleur lancé s'arrête avant de
+     * s'être connecté, ou si les travailleurs ne sont pas tous là après {@link #CONNECT_TIMEOUT_MILLIS}
+     */
+    public void connect(char modelLetter, int port, InetAddress address, List<Process> processes) throws IOException {
+
+        ServerSocket server = port == 0 ? new ServerSocket(0, nbWorkers, InetAddress.getLoopbackAddress())
+                : new ServerSocket(port, nbWorkers, address);
+        server.setSoTimeout(ACCEPT_POLL_MILLIS);
+        long deadline = CONNECT_TIMEOUT_MILLIS > 0 ? System.currentTimeMillis() + CONNECT_TIMEOUT_MILLIS : Long.MAX_VALUE;
+        try {
+            if (port == 0) {
+                String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+                for (int w = 0; w < nbWorkers; w++) {
+                    ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                            LayoutWorker.class.getName(), "127.0.0.1", Integer.toString(server.getLocalPort()));
+                    builder.inheritIO();
+                    processes.add(builder.start());
+                }
+            } else {
+                System.out.println("En attente de " + nbWorkers + " travailleurs sur " + address.getHostAddress() + ":" + port);
+            }
+
+            ins = new DataInputStream[nbWorkers];
+            outs = new DataOutputStream[nbWorkers];
+            List<Node> nodes = graph.getNodes();
+            for (int w = 0; w < nbWorkers; w++) {
+                Socket socket = accept(server, processes, deadline);
+                if (socket == null) {
+                    w--; // connexion refusée : on attend toujours le même travailleur
+                    continue;
+                }
+                socket.setTcpNoDelay(true);
+                ins[w] = new DataInputStream(new BufferedInputStream(socket.getInputStream(), Protocol.BUFFER_SIZE));
+                outs[w] = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), Protocol.BUFFER_SIZE));
+
+                // mise en place (voir Protocol)
+                DataOutputStream out = outs[w];
+                out.writeChar(modelLetter);
+                out.writeDouble(graph.getIdealDistance());
+                out.writeDouble(GraphDrawerApp.timestep);
+                out.writeDouble(GraphDrawerApp.damping);
+                out.writeInt(owned[w].length);
+                for (int u : owned[w]) {
+                    out.writeInt(u);
+                    out.writeDouble(posX[u]);
+                    out.writeDouble(posY[u]);
+                    List<Node> neighbours = nodes.get(u).getNeighbours();
+                    out.writeInt(neighbours.size());
+                    for (Node neighbour : neighbours) out.writeInt(neighbour.getIndex());
+                }
+                out.writeInt(ghosts[w].length);
+                for (int v : ghosts[w]) out.writeInt(v);
+                // la frontière est envoyée en rangs locaux du travailleur
+                out.writeInt(frontiers[w].length);
+                int i = 0;
+                for (int f = 0; f < frontiers[w].length; f++) {
+                    while (owned[w][i] != frontiers[w][f]) i++;
+                    out.writeInt(i);
+                }
+                out.flush();
+            }
+        } finally {
+            server.close();
+        }
+    }
+
+    /**
+     * Attend la connexion suivante et vérifie sa présentation (voir {@link Protocol})
+     * @param server socket d'écoute, avec un délai d'attente de {@link #ACCEPT_POLL_MILLIS}
+     * @param processes travailleurs lancés en local, surveillés pendant l'attente
+     * @param deadline date limite d'attente (comme {@link System#currentTimeMillis()})
+     * @return la connexion d'un travailleur, ou null si elle a été refusée
+     * @throws IOException si un travailleur lancé s'est arrêté, ou si le délai est dépassé
+     */
+    private static Socket accept(ServerSocket server, List<Process> processes, long deadline) throws IOException {
+        Socket socket;
+        while (true) {
+            try {
+                socket = server.accept();
+                break;
+            } catch (SocketTimeoutException ex) {
+                for (int p = 0; p < processes.size(); p++) {
+                    try {
+                        int code = processes.get(p).exitValue();
+                        throw new IOException("Le travailleur n° " + p + " s'est arrêté avant de se connecter (code " + code + ")");
+                    } catch (IllegalThreadStateException running) {
+                        // toujours en cours : il peut encore se connecter
+                    }
+                }
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IOException("Travailleurs toujours absents après " + CONNECT_TIMEOUT_MILLIS + " ms");
+                }
+            }
+        }
+
+        // présentation : magique et version du protocole
+        try {
+            socket.setSoTimeout(Protocol.HANDSHAKE_TIMEOUT_MILLIS);
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            int magic = in.readInt();
+            int version = in.readInt();
+            if (magic != Protocol.MAGIC || version != Protocol.VERSION) {
+                System.out.println("Connexion refusée depuis " + socket.getInetAddress().getHostAddress()
+                        + " : ce n'est pas un travailleur de version " + Protocol.VERSION);
+                socket.close();
+                return null;
+            }
+            socket.setSoTimeout(0);
+            return socket;
+        } catch (IOException ex) {
+            System.out.println("Connexion refusée depuis " + socket.getInetAddress().getHostAddress() + " : " + ex.getMessage());
+            socket.close();
+            return null;
+        }
+    }
+
+    /**
+     * Fait itérer les travailleurs jusqu'au seuil d'énergie ou au nombre maximal d'itérations,
+     * puis récupère toutes les positions dans le graphe
+     * @return le nombre d'itérations effectuées
+     * @throws IOException en cas d'erreur de communication
+     */
+    public int balance() throws IOException {
+
+        kineticEnergy = Graph.ENERGY_THRESHOLD;
+        int i;
+        for (i = 0; i < GraphDrawerApp.getMaxIterations() && kineticEnergy >= Graph.ENERGY_THRESHOLD; i++) {
+
+            // envoi à tous les travailleurs avant de lire leurs réponses, pour qu'ils calculent en parallèle
+            for (int w = 0; w < nbWorkers; w++) {
+                DataOutputStream out = outs[w];
+                out.writeInt(Protocol.ITERATE);
+                for (int v : ghosts[w]) {
+                    out.writeDouble(posX[v]);
+                    out.writeDouble(posY[v]);
+                }
+                int nbCells = 0;
+                for (int other = 0; other < nbWorkers; other++) if (other != w) nbCells += summaries[other].length / 3;
+                out.writeInt(nbCells);
+                for (int other = 0; other < nbWorkers; other++) {
+                    if (other == w) continue;
+                    for (double value : summaries[other]) out.writeDouble(value);
+                }
+                out.flush();
+            }
+
+            // réponses : énergie, frontière, résumé
+            kineticEnergy = 0;
+            for (int w = 0; w < nbWorkers; w++) {
+                DataInputStream in = ins[w];
+                kineticEnergy += in.readDouble();
+                for (int v : frontiers[w]) {
+                    posX[v] = in.readDouble();
+                    posY[v] = in.readDouble();
+                }
+                double[] cells = new double[3 * in.readInt()];
+                for (int c = 0; c < cells.length; c++) cells[c] = in.readDouble();
+                summaries[w] = cells;
+            }
+            if (GraphDrawerApp.DEBUG_MODE) System.out.println("Ec totale : " + kineticEnergy);
+        }
+
+        // fin : toutes les positions
+        for (int w = 0; w < nbWorkers; w++) {
+            outs[w].writeInt(Protocol.FINISH);
+            outs[w].flush();
+        }
+        for (int w = 0; w < nbWorkers; w++) {
+            for (int u : owned[w]) {
+                posX[u] = ins[w].readDouble();
+                posY[u] = ins[w].readDouble();
+            }
+        }
+        graph.setPositions(posX, posY);
+        return i;
+    }
+
+}
@@ -0,0 +1,278 @@
+package distributed;
+
+import helper.ForceModelizer;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+import models.Graph;
+
+/**
+ * Travailleur de l'équilibrage réparti
+ * <p>
+ * Un travailleur possède une partie des noeuds et calcule leurs forces :
+ * </p>
+ * <ul>
+ * <li>l'attraction est exacte, avec des copies "fantômes" des voisins possédés par d'autres travailleurs ;</li>
+ * <li>la répulsion est exacte entre ses propres noeuds, et approchée pour les noeuds distants
+ * par des résumés de masse (nombre de noeuds et barycentre de chaque cellule d'une grille grossière).</li>
+ * </ul>
+ * <p>
+ * Les positions des fantômes et les résumés sont échangés avec le coordinateur à chaque itération
+ * (voir {@link Protocol}). Les forces sont toutes calculées avant d'être appliquées, pour que le
+ * résultat ne dépende pas de l'ordre des échanges.
+ * </p>
+ */
+public class LayoutWorker {
+
+    /**
+     * calculateur de force du modèle choisi
+     */
+    private ForceModelizer calculator;
+
+    /**
+     * pas temporel et facteur d'amortissement
+     */
+    private double timestep, damping;
+
+    /**
+     * nombre de noeuds possédés et de fantômes
+     */
+    private int nbOwned, nbGhosts;
+
+    /**
+     * n° d'origine des noeuds possédés
+     */
+    private int[] ownedIndexes;
+
+    /**
+     * positions (noeuds possédés aux rangs 0..nbOwned-1, fantômes ensuite)
+     */
+    private double[] posX, posY;
+
+    /**
+     * vitesses des noeuds possédés
+     */
+    private double[] speedX, speedY;
+
+    /**
+     * forces de l'itération courante sur les noeuds possédés
+     */
+    private double[] forceX, forceY;
+
+    /**
+     * voisins des noeuds possédés, en rangs locaux (même organisation que {@link models.FloatLayout})
+     */
+    private int[] neighboursStart, neighbours;
+
+    /**
+     * rangs des noeuds possédés dont les positions sont envoyées aux autres travailleurs
+     */
+    private int[] frontier;
+
+    /**
+     * résumés de masse des autres travailleurs : x, y, masse pour chaque cellule
+     */
+    private double[] remoteCells = new double[0];
+
+    /**
+     * nombre de cellules dans {@link #remoteCells}
+     */
+    private int nbRemoteCells;
+
+    /**
+     * Lance un travailleur qui se connecte au coordinateur
+     * @param args "hôte" "port" du coordinateur
+     */
+    public static void main(String[] args) {
+        try {
+            Socket socket = new Socket(args[0], Integer.parseInt(args[1]));
+            socket.setTcpNoDelay(true);
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), Protocol.BUFFER_SIZE));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), Protocol.BUFFER_SIZE));
+                out.writeInt(Protocol.MAGIC);
+                out.writeInt(Protocol.VERSION);
+                out.flush();
+                new LayoutWorker(in).run(in, out);
+            } finally {
+                socket.close();
+            }
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Reçoit la mise en place du coordinateur
+     * @param in flux venant du coordinateur
+     * @throws IOException en cas d'erreur de communication
+     */
+    private LayoutWorker(DataInputStream in) throws IOException {
+
+        char modelLetter = in.readChar();
+        double k = in.readDouble();
+        calculator = Graph.createCalculator(modelLetter, k);
+        timestep = in.readDouble();
+        damping = in.readDouble();
+
+        // noeuds possédés
+        nbOwned = in.readInt();
+        ownedIndexes = new int[nbOwned];
+        double[] ownedX = new double[nbOwned];
+        double[] ownedY = new double[nbOwned];
+        int[][] globalNeighbours = new int[nbOwned][];
+        Map<Integer, Integer> local = new HashMap<Integer, Integer>();
+        for (int i = 0; i < nbOwned; i++) {
+            ownedIndexes[i] = in.readInt();
+            local.put(ownedIndexes[i], i);
+            ownedX[i] = in.readDouble();
+            ownedY[i] = in.readDouble();
+            globalNeighbours[i] = new int[in.readInt()];
+            for (int j = 0; j < globalNeighbours[i].length; j++) globalNeighbours[i][j] = in.readInt();
+        }
+
+        // fantômes
+        nbGhosts = in.readInt();
+        for (int i = 0; i < nbGhosts; i++) local.put(in.readInt(), nbOwned + i);
+
+        // frontière
+        frontier = new int[in.readInt()];
+        for (int i = 0; i < frontier.length; i++) frontier[i] = in.readInt();
+
+        // voisins en rangs locaux
+        neighboursStart = new int[nbOwned + 1];
+        int nbEntries = 0;
+        for (int i = 0; i < nbOwned; i++) nbEntries += globalNeighbours[i].length;
+        neighbours = new int[nbEntries];
+        int entry = 0;
+        for (int i = 0; i < nbOwned; i++) {
+            neighboursStart[i] = entry;
+            for (int j = 0; j < globalNeighbours[i].length; j++) neighbours[entry++] = local.get(globalNeighbours[i][j]);
+        }
+        neighboursStart[nbOwned] = entry;
+
+        posX = new double[nbOwned + nbGhosts];
+        posY = new double[nbOwned + nbGhosts];
+        System.arraycopy(ownedX, 0, posX, 0, nbOwned);
+        System.arraycopy(ownedY, 0, posY, 0, nbOwned);
+        speedX = new double[nbOwned];
+        speedY = new double[nbOwned];
+        forceX = new double[nbOwned];
+        forceY = new double[nbOwned];
+    }
+
+    /**
+     * Boucle de traitement des commandes du coordinateur
+     * @param in flux venant du coordinateur
+     * @param out flux vers le coordinateur
+     * @throws IOException en cas d'erreur de communication
+     */
+    private void run(DataInputStream in, DataOutputStream out) throws IOException {
+        while (true) {
+            int command = in.readInt();
+            if (command == Protocol.FINISH) {
+                for (int i = 0; i < nbOwned; i++) {
+                    out.writeDouble(posX[i]);
+                    out.writeDouble(posY[i]);
+                }
+                out.flush();
+                return;
+            }
+
+            // positions des fantômes et résumés distants
+            for (int i = nbOwned; i < nbOwned + nbGhosts; i++) {
+                posX[i] = in.readDouble();
+                posY[i] = in.readDouble();
+            }
+            nbRemoteCells = in.readInt();
+            if (remoteCells.length < 3 * nbRemoteCells) remoteCells = new double[3 * nbRemoteCells];
+            for (int i = 0; i < 3 * nbRemoteCells; i++) remoteCells[i] = in.readDouble();
+
+            double kineticEnergy = iterate();
+
+            out.writeDouble(kineticEnergy);
+            for (int i = 0; i < frontier.length; i++) {
+                out.writeDouble(posX[frontier[i]]);
+                out.writeDouble(posY[frontier[i]]);
+            }
+            writeSummary(out);
+            out.flush();
+        }
+    }
+
+    /**
+     * Calcule les forces sur les noeuds possédés puis les déplace
+     * @return l'énergie cinétique des noeuds possédés
+     */
+    private double iterate() {
+
+        for (int u = 0; u < nbOwned; u++) {
+            double ux = posX[u], uy = posY[u];
+            double fx = 0, fy = 0;
+
+            // attraction exacte avec tous les voisins (possédés ou fantômes)
+            for (int e = neighboursStart[u]; e < neighboursStart[u + 1]; e++) {
+                double dx = posX[neighbours[e]] - ux;
+                double dy = posY[neighbours[e]] - uy;
+                double dist = Math.sqrt(dx*dx + dy*dy);
+                double factor = calculator.calculateAttrForce(dist) / dist;
+                fx += dx * factor;
+                fy += dy * factor;
+            }
+
+            // répulsion exacte avec les autres noeuds possédés
+            for (int v = 0; v < nbOwned; v++) {
+                if (v == u) continue;
+                double dx = posX[v] - ux;
+                double dy = posY[v] - uy;
+                double dist = Math.sqrt(dx*dx + dy*dy);
+                double factor = calculator.calculateRepulsForce(dist) / dist;
+                fx += dx * factor;
+                fy += dy * factor;
+            }
+
+            // répulsion approchée des noeuds distants : chaque cellule agit comme sa masse placée en son barycentre
+            for (int c = 0; c < nbRemoteCells; c++) {
+                double dx = remoteCells[3*c] - ux;
+                double dy = remoteCells[3*c + 1] - uy;
+                double dist = Math.sqrt(dx*dx + dy*dy);
+                if (dist == 0) continue;
+                double factor = remoteCells[3*c + 2] * calculator.calculateRepulsForce(dist) / dist;
+                fx += dx * factor;
+                fy += dy * factor;
+            }
+
+            forceX[u] = fx;
+            forceY[u] = fy;
+        }
+
+        // TAM élémentaire, même formule que Node.applyForce
+        double kineticEnergy = 0;
+        for (int u = 0; u < nbOwned; u++) {
+            speedX[u] = (speedX[u] + forceX[u] * timestep) * damping * timestep;
+            speedY[u] = (speedY[u] + forceY[u] * timestep) * damping * timestep;
+            posX[u] += speedX[u];
+            posY[u] += speedY[u];
+            kineticEnergy += speedX[u]*speedX[u] + speedY[u]*speedY[u];
+        }
+        return kineticEnergy;
+    }
+
+    /**
+     * Ecrit le résumé de masse des noeuds possédés (voir {@link MassSummary})
+     * @param out flux vers le coordinateur
+     * @throws IOException en cas d'erreur de communication
+     */
+    private void writeSummary(DataOutputStream out) throws IOException {
+        double[] cells = MassSummary.compute(posX, posY, nbOwned);
+        out.writeInt(cells.length / 3);
+        for (int i = 0; i < cells.length; i++) out.writeDouble(cells[i]);
+    }
+
+}
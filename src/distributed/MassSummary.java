@@ -0,0 +1,62 @@
+package distributed;
+
+/**
+ * Résumé grossier de la masse d'un ensemble de noeuds, pour approcher leur répulsion à distance
+ * <p>
+ * On pose une grille de {@link Protocol#SUMMARY_GRID} cellules de côté sur la boîte englobante
+ * des noeuds ; chaque cellule non vide est résumée par son barycentre et son nombre de noeuds.
+ * </p>
+ */
+final class MassSummary {
+
+    /**
+     * pas d'instance
+     */
+    private MassSummary() {
+    }
+
+    /**
+     * Calcule le résumé des <i>count</i> premiers noeuds
+     * @param posX abscisses des noeuds
+     * @param posY ordonnées des noeuds
+     * @param count nombre de noeuds à résumer
+     * @return pour chaque cellule non vide : abscisse et ordonnée du barycentre, puis masse
+     */
+    static double[] compute(double[] posX, double[] posY, int count) {
+        int grid = Protocol.SUMMARY_GRID;
+        double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            minX = Math.min(minX, posX[i]);
+            maxX = Math.max(maxX, posX[i]);
+            minY = Math.min(minY, posY[i]);
+            maxY = Math.max(maxY, posY[i]);
+        }
+        double cellWidth = Math.max((maxX - minX) / grid, Double.MIN_VALUE);
+        double cellHeight = Math.max((maxY - minY) / grid, Double.MIN_VALUE);
+
+        double[] sums = new double[3 * grid * grid];
+        int nbCells = 0;
+        for (int i = 0; i < count; i++) {
+            int cx = Math.min(grid - 1, (int) ((posX[i] - minX) / cellWidth));
+            int cy = Math.min(grid - 1, (int) ((posY[i] - minY) / cellHeight));
+            int cell = 3 * (cy * grid + cx);
+            if (sums[cell + 2] == 0) nbCells++;
+            sums[cell] += posX[i];
+            sums[cell + 1] += posY[i];
+            sums[cell + 2]++;
+        }
+
+        double[] cells = new double[3 * nbCells];
+        int c = 0;
+        for (int cell = 0; cell < sums.length; cell += 3) {
+            double mass = sums[cell + 2];
+            if (mass > 0) {
+                cells[c++] = sums[cell] / mass;
+                cells[c++] = sums[cell + 1] / mass;
+                cells[c++] = mass;
+            }
+        }
+        return cells;
+    }
+
+}
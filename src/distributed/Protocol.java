@@ -0,0 +1,64 @@
+package distributed;
+
+/**
+ * Constantes du protocole entre le coordinateur et les travailleurs
+ * <p>
+ * Les échanges se font sur des sockets TCP avec des {@code DataInputStream}/{@code DataOutputStream}.
+ * </p>
+ * <ol>
+ * <li>Présentation (travailleur vers coordinateur) : {@link #MAGIC} puis {@link #VERSION} ; le coordinateur
+ * ferme toute connexion qui ne commence pas ainsi.</li>
+ * <li>Mise en place (coordinateur vers travailleur) : initiale du modèle, k, pas temporel, amortissement,
+ * noeuds possédés (n°, position, voisins), n° des noeuds fantômes, rangs des noeuds possédés
+ * dont les autres travailleurs ont besoin (frontière).</li>
+ * <li>A chaque itération, le coordinateur envoie {@link #ITERATE}, les positions des fantômes et
+ * les résumés de masse des autres travailleurs ; le travailleur répond par son énergie cinétique,
+ * les positions de sa frontière et son propre résumé de masse.</li>
+ * <li>En fin d'équilibrage, le coordinateur envoie {@link #FINISH} et le travailleur répond
+ * par les positions de tous ses noeuds avant de s'arrêter.</li>
+ * </ol>
+ */
+final class Protocol {
+
+    /**
+     * premier entier envoyé par un travailleur ("GDLW")
+     */
+    static final int MAGIC = 0x47444c57;
+
+    /**
+     * version du protocole, envoyée après {@link #MAGIC}
+     */
+    static final int VERSION = 1;
+
+    /**
+     * délai maximal de la présentation d'un travailleur qui vient de se connecter, en millisecondes
+     */
+    static final int HANDSHAKE_TIMEOUT_MILLIS = 10000;
+
+    /**
+     * commande : effectuer une itération
+     */
+    static final int ITERATE = 1;
+
+    /**
+     * commande : renvoyer toutes les positions et s'arrêter
+     */
+    static final int FINISH = 2;
+
+    /**
+     * nombre de cellules par côté de la grille résumant la masse d'un travailleur
+     */
+    static final int SUMMARY_GRID = 8;
+
+    /**
+     * taille des tampons des sockets
+     */
+    static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * pas d'instance
+     */
+    private Protocol() {
+    }
+
+}
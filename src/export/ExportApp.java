@@ -0,0 +1,83 @@
+package export;
+
+import graphdrawerapp.GraphDrawerApp;
+import java.io.IOException;
+import java.util.regex.Pattern;
+import models.BalanceReport;
+import models.Graph;
+
+/**
+ * Application d'export d'images sans interface graphique
+ * <p>
+ * Construit le graphe comme {@link GraphDrawerApp}, l'équilibre jusqu'au seuil d'énergie
+ * (ou jusqu'au nombre maximal d'itérations, ou jusqu'à la fin du temps alloué) puis écrit son image. Le format est déduit de
+ * l'extension du fichier de sortie (.svg ou .png).
+ * </p>
+ */
+public class ExportApp {
+
+    /**
+     * taille de l'image par défaut, en pixels
+     */
+    private static final int DEFAULT_SIZE = 2000;
+
+    /**
+     * au-delà de ce nombre de noeuds, on n'écrit plus leurs numéros
+     */
+    private static final int MAX_LABELLED_NODES = 1000;
+
+    /**
+     * à partir de cette taille, les images PNG sont dessinées par tuiles en parallèle (voir {@link TiledPngExporter})
+     */
+    private static final int TILED_RENDERING_MIN_SIZE = 4096;
+
+    /**
+     * @param args "nom_du_fichier" "initiale modèle" "fichier_de_sortie" ["taille en pixels" ["temps alloué en ms"]]
+     */
+    public static void main(String[] args) {
+
+        // aucune fenêtre ne sera ouverte (serveurs sans affichage)
+        System.setProperty("java.awt.headless", "true");
+
+        // taille : entier positif d'au plus 5 chiffres ; temps alloué : entier d'au plus 9 chiffres (0 : sans échéance)
+        if (args.length < 3 || !Pattern.matches("\\w{1,256}", args[0]) || args[1].length() < 1
+                || args.length >= 4 && !Pattern.matches("[1-9]\\d{0,4}", args[3])
+                || args.length >= 5 && !Pattern.matches("\\d{1,9}", args[4])) {
+            System.out.println("Usage : ExportApp nom_du_fichier initiale_modèle sortie.(svg|png) [taille [temps_ms]]");
+            return;
+        }
+        String outputPath = args[2];
+        int size = args.length >= 4 ? Integer.parseInt(args[3]) : DEFAULT_SIZE;
+        if (args.length >= 5) GraphDrawerApp.BALANCE_TIME_BUDGET_MS = Long.parseLong(args[4]);
+
+        char modelLetter = args[1].charAt(0);
+        // même fichier que l'interface graphique (.txt, ou à défaut .mtx ou .edges)
+        Graph graph = new Graph(GraphDrawerApp.getFilePath(args[0]), modelLetter);
+        GraphDrawerApp.applyProfile(graph);
+
+        if (GraphDrawerApp.USE_LAYOUT_CACHE) {
+            GraphDrawerApp.getLayoutCache().restore(graph, modelLetter, GraphDrawerApp.timestep, GraphDrawerApp.damping);
+        }
+
+        BalanceReport report = graph.balance(GraphDrawerApp.timestep, GraphDrawerApp.damping,
+                GraphDrawerApp.getMaxIterations(), GraphDrawerApp.getBalanceBudget());
+        System.out.println("Equilibrage terminé : " + report);
+        GraphDrawerApp.completeBalance(graph, modelLetter, report);
+
+        boolean drawLabels = graph.getNodes().size() <= MAX_LABELLED_NODES;
+        try {
+            if (outputPath.toLowerCase().endsWith(".png") && size >= TILED_RENDERING_MIN_SIZE) {
+                new TiledPngExporter(graph, size, drawLabels).export(outputPath);
+            } else if (outputPath.toLowerCase().endsWith(".png")) {
+                new PngExporter(graph, size, drawLabels).export(outputPath);
+            } else {
+                new SvgExporter(graph, size, drawLabels).export(outputPath);
+            }
+            System.out.println("Image écrite dans " + outputPath);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+
+    }
+
+}
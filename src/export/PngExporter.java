@@ -0,0 +1,122 @@
+package export;
+
+import graphdrawerapp.Framing;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import javax.imageio.ImageIO;
+import models.Graph;
+import models.Node;
+
+/**
+ * Export d'un graphe au format PNG
+ * <p>
+ * Le graphe est dessiné hors écran dans une image de taille quelconque avec le même
+ * cadrage que la fenêtre (voir {@link Framing}). Aucune fenêtre n'est nécessaire,
+ * l'export fonctionne donc en mode "headless".
+ * </p>
+ */
+public class PngExporter {
+
+    /**
+     * graphe à exporter
+     */
+    private Graph graph;
+
+    /**
+     * cadrage du graphe dans l'image
+     */
+    private Framing framing;
+
+    /**
+     * vrai si on écrit les numéros des noeuds
+     */
+    private boolean drawLabels;
+
+    /**
+     * Construit un exporteur PNG pour une image carrée de côté <i>size</i>
+     * @param graph le graphe à exporter
+     * @param size longueur du côté de l'image, en pixels
+     * @param drawLabels vrai pour écrire les numéros des noeuds
+     */
+    public PngExporter(Graph graph, int size, boolean drawLabels) {
+        this.graph = graph;
+        this.framing = new Framing(graph, size);
+        this.drawLabels = drawLabels;
+    }
+
+    /**
+     * Dessine le graphe et écrit l'image PNG dans le fichier <i>filePath</i>
+     * @param filePath chemin du fichier de sortie
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public void export(String filePath) throws IOException {
+        ImageIO.write(render(), "png", new File(filePath));
+    }
+
+    /**
+     * Dessine le graphe dans une nouvelle image
+     * @return l'image du graphe
+     */
+    public BufferedImage render() {
+        int size = framing.getSize();
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, size, size);
+            draw(g);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * Dessine le graphe sur l'objet graphique <i>g</i>, arêtes d'abord puis noeuds
+     * @param g objet graphique de destination
+     */
+    private void draw(Graphics2D g) {
+
+        double scale = framing.getFittingScale();
+        int scaledRadius = framing.getScaledRadius(scale);
+        Node currentNode, currentNeighbour;
+
+        // arêtes (une seule fois, vers les voisins d'indices plus élevés)
+        g.setColor(Color.BLACK);
+        for (Iterator<Node> nodeIter = graph.getNodes().listIterator(); nodeIter.hasNext(); ) {
+            currentNode = nodeIter.next();
+            int x = framing.getFittingDrawingX(currentNode.getPosition().getX(), scale);
+            int y = framing.getFittingDrawingY(currentNode.getPosition().getY(), scale);
+            for (Iterator<Node> neighbourIter = currentNode.getNeighbours().listIterator(); neighbourIter.hasNext(); ) {
+                currentNeighbour = neighbourIter.next();
+                if (currentNeighbour.getIndex() > currentNode.getIndex()) {
+                    g.drawLine(x, y, framing.getFittingDrawingX(currentNeighbour.getPosition().getX(), scale),
+                            framing.getFittingDrawingY(currentNeighbour.getPosition().getY(), scale));
+                }
+            }
+        }
+
+        // noeuds
+        for (Iterator<Node> nodeIter = graph.getNodes().listIterator(); nodeIter.hasNext(); ) {
+            currentNode = nodeIter.next();
+            int x = framing.getFittingDrawingX(currentNode.getPosition().getX(), scale);
+            int y = framing.getFittingDrawingY(currentNode.getPosition().getY(), scale);
+            g.setColor(Color.CYAN);
+            g.fillOval(x - scaledRadius, y - scaledRadius, 2*scaledRadius, 2*scaledRadius);
+            g.setColor(Color.BLACK);
+            g.drawOval(x - scaledRadius, y - scaledRadius, 2*scaledRadius, 2*scaledRadius);
+            if (drawLabels) {
+                g.setColor(Color.RED);
+                g.drawString("" + currentNode.getOriginalIndex(), x + (scaledRadius > 6 ? - 6 : + 6), y + 3);
+            }
+        }
+
+    }
+
+}
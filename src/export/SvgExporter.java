@@ -0,0 +1,171 @@
+package export;
+
+import graphdrawerapp.Framing;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Iterator;
+import models.Graph;
+import models.Node;
+
+/**
+ * Export d'un graphe au format SVG
+ * <p>
+ * Le document est écrit au fil de l'eau dans un flux tamponné, sans construire
+ * d'arbre DOM en mémoire : la mémoire utilisée ne dépend pas du nombre d'arêtes,
+ * seul le débit du disque limite l'export des très gros graphes.
+ * </p>
+ * <p>
+ * Le dessin reprend celui de la fenêtre (arêtes noires, noeuds cyan cerclés de noir,
+ * numéros en rouge) avec le même cadrage (voir {@link Framing}).
+ * </p>
+ */
+public class SvgExporter {
+
+    /**
+     * nombre de segments regroupés dans un même élément {@code <path>}
+     * (évite un élément par arête sans produire d'attribut démesuré)
+     */
+    private static final int SEGMENTS_PER_PATH = 1024;
+
+    /**
+     * taille du tampon d'écriture, en caractères
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * graphe à exporter
+     */
+    private Graph graph;
+
+    /**
+     * cadrage du graphe dans l'image
+     */
+    private Framing framing;
+
+    /**
+     * vrai si on écrit les numéros des noeuds
+     */
+    private boolean drawLabels;
+
+    /**
+     * Construit un exporteur SVG pour une image carrée de côté <i>size</i>
+     * @param graph le graphe à exporter
+     * @param size longueur du côté de l'image, en pixels
+     * @param drawLabels vrai pour écrire les numéros des noeuds (inutile pour les très gros graphes)
+     */
+    public SvgExporter(Graph graph, int size, boolean drawLabels) {
+        this.graph = graph;
+        this.framing = new Framing(graph, size);
+        this.drawLabels = drawLabels;
+    }
+
+    /**
+     * Ecrit l'image SVG du graphe dans le fichier <i>filePath</i>
+     * @param filePath chemin du fichier de sortie
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public void export(String filePath) throws IOException {
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(filePath), "UTF-8"), BUFFER_SIZE);
+        try {
+            write(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Ecrit l'image SVG du graphe dans le flux <i>out</i> (qui n'est pas fermé)
+     * @param out flux de sortie, de préférence tamponné
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public void write(Writer out) throws IOException {
+
+        double scale = framing.getFittingScale();
+        int scaledRadius = framing.getScaledRadius(scale);
+        int size = framing.getSize();
+
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        out.write("<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.1\" width=\"" + size + "\" height=\"" + size
+                + "\" viewBox=\"0 0 " + size + " " + size + "\">\n");
+        out.write("<rect width=\"100%\" height=\"100%\" fill=\"white\"/>\n");
+
+        /*
+         * arêtes d'abord pour qu'elles passent "en-dessous" des noeuds
+         * on ne les écrit qu'une fois, vers les voisins d'indices plus élevés
+         */
+        out.write("<g stroke=\"black\" stroke-width=\"1\" fill=\"none\">\n");
+        int segments = 0;
+        Node currentNode, currentNeighbour;
+        for (Iterator<Node> nodeIter = graph.getNodes().listIterator(); nodeIter.hasNext(); ) {
+            currentNode = nodeIter.next();
+            int x = framing.getFittingDrawingX(currentNode.getPosition().getX(), scale);
+            int y = framing.getFittingDrawingY(currentNode.getPosition().getY(), scale);
+            for (Iterator<Node> neighbourIter = currentNode.getNeighbours().listIterator(); neighbourIter.hasNext(); ) {
+                currentNeighbour = neighbourIter.next();
+                if (currentNeighbour.getIndex() > currentNode.getIndex()) {
+                    if (segments == 0) out.write("<path d=\"");
+                    out.write('M');
+                    writePoint(out, x, y);
+                    out.write('L');
+                    writePoint(out, framing.getFittingDrawingX(currentNeighbour.getPosition().getX(), scale),
+                            framing.getFittingDrawingY(currentNeighbour.getPosition().getY(), scale));
+                    if (++segments == SEGMENTS_PER_PATH) {
+                        out.write("\"/>\n");
+                        segments = 0;
+                    }
+                }
+            }
+        }
+        if (segments > 0) out.write("\"/>\n");
+        out.write("</g>\n");
+
+        // noeuds : intérieur cyan, contour noir
+        out.write("<g fill=\"cyan\" stroke=\"black\" stroke-width=\"1\">\n");
+        for (Iterator<Node> nodeIter = graph.getNodes().listIterator(); nodeIter.hasNext(); ) {
+            currentNode = nodeIter.next();
+            out.write("<circle cx=\"");
+            out.write(Integer.toString(framing.getFittingDrawingX(currentNode.getPosition().getX(), scale)));
+            out.write("\" cy=\"");
+            out.write(Integer.toString(framing.getFittingDrawingY(currentNode.getPosition().getY(), scale)));
+            out.write("\" r=\"");
+            out.write(Integer.toString(scaledRadius));
+            out.write("\"/>\n");
+        }
+        out.write("</g>\n");
+
+        // numéros en rouge, à l'intérieur du noeud si possible (comme dans la fenêtre)
+        if (drawLabels) {
+            out.write("<g fill=\"red\" font-family=\"sans-serif\" font-size=\"12\">\n");
+            for (Iterator<Node> nodeIter = graph.getNodes().listIterator(); nodeIter.hasNext(); ) {
+                currentNode = nodeIter.next();
+                out.write("<text x=\"");
+                out.write(Integer.toString(framing.getFittingDrawingX(currentNode.getPosition().getX(), scale) + (scaledRadius > 6 ? - 6 : + 6)));
+                out.write("\" y=\"");
+                out.write(Integer.toString(framing.getFittingDrawingY(currentNode.getPosition().getY(), scale) + 3));
+                out.write("\">");
+                out.write(Integer.toString(currentNode.getOriginalIndex()));
+                out.write("</text>\n");
+            }
+            out.write("</g>\n");
+        }
+
+        out.write("</svg>\n");
+    }
+
+    /**
+     * Ecrit les coordonnées "x y" d'un point de chemin SVG
+     * @param out flux de sortie
+     * @param x abscisse cadrée
+     * @param y ordonnée cadrée
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    private static void writePoint(Writer out, int x, int y) throws IOException {
+        out.write(Integer.toString(x));
+        out.write(' ');
+        out.write(Integer.toString(y));
+    }
+
+}
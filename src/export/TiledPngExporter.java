@@ -0,0 +1,539 @@
+package export;
+
+import graphdrawerapp.Framing;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import models.Graph;
+import models.Node;
+
+/**
+ * Export PNG par tuiles, pour les images de très grande taille
+ * <p>
+ * {@link PngExporter} dessine toute l'image sur un seul thread et la garde entière en mémoire, ce qui
+ * interdit les images de plusieurs gigapixels. Ici l'image est découpée en tuiles carrées :
+ * </p>
+ * <ol>
+ * <li>chaque arête et chaque noeud est rangé dans les tuiles qu'il touche (index spatial en tableaux
+ * contigus, une liste par tuile) ;</li>
+ * <li>les tuiles sont dessinées en parallèle, chacune dans sa propre image et son propre {@link Graphics2D},
+ * avec les mêmes couleurs et le même cadrage que {@link PngExporter} ;</li>
+ * <li>chaque bande (rangée de tuiles) est filtrée et compressée en parallèle en un morceau de flux deflate
+ * indépendant, terminé par un vidage synchrone : les morceaux se mettent bout à bout comme le fait pigz,
+ * et les sommes Adler-32 des bandes se combinent ;</li>
+ * <li>les bandes sont écrites dans l'ordre au fil de l'eau, avec un nombre borné de bandes en cours.</li>
+ * </ol>
+ * <p>
+ * La mémoire dépend donc de la largeur de l'image et du nombre de threads, pas de sa surface.
+ * </p>
+ * <p>
+ * Le moteur de rendu de Java découpe les courbes qui dépassent de l'image, ce qui change l'anticrénelage de toute
+ * la courbe. Chaque tuile est donc dessinée avec une marge d'un rayon de noeud (plus l'épaisseur du trait),
+ * rognée ensuite : tout noeud qui touche la tuile y est dessiné en entier, comme dans {@link PngExporter}. Seules
+ * les arêtes (segments) et les numéros sont encore coupés au bord de la marge ; il peut en rester des écarts
+ * d'anticrénelage d'un pixel près des bords de tuiles.
+ * </p>
+ */
+public class TiledPngExporter {
+
+    /**
+     * côté des tuiles par défaut, en pixels
+     */
+    public static final int DEFAULT_TILE_SIZE = 512;
+
+    /**
+     * marge autour des arêtes et des noeuds pour le rangement dans les tuiles
+     * (épaisseur du trait et anticrénelage), en pixels
+     */
+    private static final int PADDING = 2;
+
+
+    /**
+     * largeur et hauteur maximales d'un numéro de noeud (dix chiffres dans la police par défaut), en pixels
+     */
+    private static final int LABEL_WIDTH = 80;
+    private static final int LABEL_HEIGHT = 16;
+
+    /**
+     * signature d'un fichier PNG
+     */
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+
+    /**
+     * taille maximale d'un bloc IDAT
+     */
+    private static final int MAX_CHUNK_SIZE = 1 << 20;
+
+    /**
+     * graphe à exporter
+     */
+    private Graph graph;
+
+    /**
+     * cadrage du graphe dans l'image
+     */
+    private Framing framing;
+
+    /**
+     * vrai si on écrit les numéros des noeuds
+     */
+    private boolean drawLabels;
+
+    /**
+     * côté des tuiles et nombre de tuiles par côté
+     */
+    private int tileSize, nbTilesPerSide;
+
+    /**
+     * nombre de threads de dessin et de compression
+     */
+    private int nbThreads;
+
+    /**
+     * positions des noeuds dans l'image, par rang
+     */
+    private int[] nodeX, nodeY;
+
+    /**
+     * extrémités des arêtes (rangs des noeuds), chaque arête une fois
+     */
+    private int[] edgeU, edgeV;
+
+    /**
+     * arêtes et noeuds de chaque tuile : ceux de la tuile t vont de {@code start[t]} à {@code start[t+1]-1}
+     */
+    private int[] tileEdgeStart, tileEdges;
+    private int[] tileNodeStart, tileNodes;
+
+    /**
+     * rayon des noeuds dans l'image
+     */
+    private int scaledRadius;
+
+    /**
+     * marge dessinée autour de chaque tuile puis rognée, en pixels
+     */
+    private int overlap;
+
+    /**
+     * Construit un exporteur pour une image carrée de côté <i>size</i>, avec autant de threads que de processeurs
+     * @param graph le graphe à exporter
+     * @param size longueur du côté de l'image, en pixels
+     * @param drawLabels vrai pour écrire les numéros des noeuds
+     */
+    public TiledPngExporter(Graph graph, int size, boolean drawLabels) {
+        this(graph, size, drawLabels, DEFAULT_TILE_SIZE, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param graph le graphe à exporter
+     * @param size longueur du côté de l'image, en pixels
+     * @param drawLabels vrai pour écrire les numéros des noeuds
+     * @param tileSize côté des tuiles, en pixels
+     * @param nbThreads nombre de threads de dessin et de compression
+     */
+    public TiledPngExporter(Graph graph, int size, boolean drawLabels, int tileSize, int nbThreads) {
+        this.graph = graph;
+        this.framing = new Framing(graph, size);
+        this.drawLabels = drawLabels;
+        this.tileSize = tileSize;
+        this.nbTilesPerSide = (size + tileSize - 1) / tileSize;
+        this.nbThreads = Math.max(1, nbThreads);
+    }
+
+    /**
+     * Dessine le graphe et écrit l'image PNG dans le fichier <i>filePath</i>
+     * @param filePath chemin du fichier de sortie
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public void export(String filePath) throws IOException {
+
+        bin();
+
+        int size = framing.getSize();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filePath), 1 << 16));
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+        try {
+            out.write(PNG_SIGNATURE);
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            DataOutputStream headerData = new DataOutputStream(header);
+            headerData.writeInt(size);
+            headerData.writeInt(size);
+            headerData.writeByte(8);    // 8 bits par composante
+            headerData.writeByte(2);    // RGB
+            headerData.writeByte(0);    // deflate
+            headerData.writeByte(0);    // filtrage standard
+            headerData.writeByte(0);    // pas d'entrelacement
+            writeChunk(out, "IHDR", header.toByteArray(), 0, header.size());
+
+            // en-tête zlib (deflate, fenêtre de 32 Ko), puis les bandes
+            byte[] zlibHeader = {0x78, 0x01};
+            writeChunk(out, "IDAT", zlibHeader, 0, 2);
+
+            // bandes en cours bornées (mémoire), écrites dans l'ordre
+            int window = nbThreads + 1;
+            List<Future<Band>> bands = new ArrayList<Future<Band>>();
+            long adler = 1;
+            int written = 0;
+            for (int ty = 0; ty < nbTilesPerSide; ty++) {
+                // dessin des tuiles de la bande, chacune dans sa tâche
+                List<Future<BufferedImage>> tiles = new ArrayList<Future<BufferedImage>>();
+                for (int tx = 0; tx < nbTilesPerSide; tx++) {
+                    final int tileX = tx, tileY = ty;
+                    tiles.add(executor.submit(new Callable<BufferedImage>() {
+                        public BufferedImage call() {
+                            return renderTile(tileX, tileY);
+                        }
+                    }));
+                }
+                // compression de la bande, soumise après ses tuiles (elle ne fait qu'attendre des tâches déjà lancées)
+                final List<Future<BufferedImage>> bandTiles = tiles;
+                final int bandY = ty;
+                bands.add(executor.submit(new Callable<Band>() {
+                    public Band call() throws Exception {
+                        return compressBand(bandY, bandTiles);
+                    }
+                }));
+                while (bands.size() - written >= window) adler = writeBand(out, bands, written++, adler);
+            }
+            while (written < bands.size()) adler = writeBand(out, bands, written++, adler);
+
+            // dernier bloc deflate vide (BFINAL), puis somme Adler-32 de toutes les données filtrées
+            byte[] end = {0x03, 0x00, (byte) (adler >>> 24), (byte) (adler >>> 16), (byte) (adler >>> 8), (byte) adler};
+            writeChunk(out, "IDAT", end, 0, end.length);
+            writeChunk(out, "IEND", new byte[0], 0, 0);
+        } finally {
+            executor.shutdownNow();
+            out.close();
+        }
+    }
+
+    /**
+     * Ecrit une bande compressée dès qu'elle est prête
+     * @param out flux de sortie
+     * @param bands bandes soumises
+     * @param index n° de la bande à écrire
+     * @param adler somme Adler-32 des bandes précédentes
+     * @return la somme Adler-32 jusqu'à cette bande incluse
+     * @throws IOException en cas d'erreur d'écriture ou de dessin
+     */
+    private long writeBand(DataOutputStream out, List<Future<Band>> bands, int index, long adler) throws IOException {
+        Band band;
+        try {
+            band = bands.get(index).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Export interrompu");
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) throw (IOException) ex.getCause();
+            throw new IllegalStateException(ex.getCause());
+        }
+        bands.set(index, null); // libère la bande
+        for (int offset = 0; offset < band.size; offset += MAX_CHUNK_SIZE) {
+            writeChunk(out, "IDAT", band.data, offset, Math.min(MAX_CHUNK_SIZE, band.size - offset));
+        }
+        return combineAdler32(adler, band.adler, band.rawLength);
+    }
+
+    /**
+     * Range les arêtes et les noeuds dans les tuiles qu'ils touchent (deux passes : comptage puis remplissage)
+     */
+    private void bin() {
+        List<Node> nodes = graph.getNodes();
+        int nbNodes = nodes.size();
+        double scale = framing.getFittingScale();
+        scaledRadius = framing.getScaledRadius(scale);
+        overlap = 2 * scaledRadius + PADDING; // un noeud qui touche la tuile tient dans la marge
+
+        nodeX = new int[nbNodes];
+        nodeY = new int[nbNodes];
+        int nbEdges = 0;
+        for (int i = 0; i < nbNodes; i++) {
+            Node node = nodes.get(i);
+            nodeX[i] = framing.getFittingDrawingX(node.getPosition().getX(), scale);
+            nodeY[i] = framing.getFittingDrawingY(node.getPosition().getY(), scale);
+            List<Node> neighbours = node.getNeighbours();
+            for (int j = 0; j < neighbours.size(); j++) if (neighbours.get(j).getIndex() > i) nbEdges++;
+        }
+        edgeU = new int[nbEdges];
+        edgeV = new int[nbEdges];
+        int e = 0;
+        for (int i = 0; i < nbNodes; i++) {
+            List<Node> neighbours = nodes.get(i).getNeighbours();
+            for (int j = 0; j < neighbours.size(); j++) {
+                int v = neighbours.get(j).getIndex();
+                if (v > i) {
+                    edgeU[e] = i;
+                    edgeV[e++] = v;
+                }
+            }
+        }
+
+        int nbTiles = nbTilesPerSide * nbTilesPerSide;
+        tileEdgeStart = new int[nbTiles + 1];
+        tileNodeStart = new int[nbTiles + 1];
+        // éléments qui touchent la tuile ou sa marge
+        int padding = PADDING + overlap;
+        for (int pass = 0; pass < 2; pass++) {
+            int[] edgeFill = pass == 0 ? null : Arrays.copyOf(tileEdgeStart, nbTiles);
+            int[] nodeFill = pass == 0 ? null : Arrays.copyOf(tileNodeStart, nbTiles);
+            for (e = 0; e < nbEdges; e++) {
+                int x1 = nodeX[edgeU[e]], y1 = nodeY[edgeU[e]], x2 = nodeX[edgeV[e]], y2 = nodeY[edgeV[e]];
+                int tx0 = tile(Math.min(x1, x2) - padding), tx1 = tile(Math.max(x1, x2) + padding);
+                int ty0 = tile(Math.min(y1, y2) - padding), ty1 = tile(Math.max(y1, y2) + padding);
+                for (int tx = tx0; tx <= tx1; tx++) {
+                    for (int ty = ty0; ty <= ty1; ty++) {
+                        // les longues arêtes obliques ne traversent qu'une partie des tuiles de leur boîte
+                        if (tx0 != tx1 && ty0 != ty1 && !touches(x1, y1, x2, y2, tx * tileSize - padding, ty * tileSize - padding,
+                                (tx + 1) * tileSize + padding, (ty + 1) * tileSize + padding)) continue;
+                        int t = ty * nbTilesPerSide + tx;
+                        if (pass == 0) tileEdgeStart[t + 1]++;
+                        else tileEdges[edgeFill[t]++] = e;
+                    }
+                }
+            }
+            // noeud : disque cerclé, et numéro écrit à partir de x-6 ou x+6 sur la ligne de base y+3
+            int left = scaledRadius + padding;
+            int right = Math.max(scaledRadius, drawLabels ? 6 + LABEL_WIDTH : 0) + padding;
+            int top = Math.max(scaledRadius, drawLabels ? LABEL_HEIGHT : 0) + padding;
+            int bottom = Math.max(scaledRadius, drawLabels ? 8 : 0) + padding;
+            for (int i = 0; i < nbNodes; i++) {
+                int tx0 = tile(nodeX[i] - left), tx1 = tile(nodeX[i] + right);
+                int ty0 = tile(nodeY[i] - top), ty1 = tile(nodeY[i] + bottom);
+                for (int tx = tx0; tx <= tx1; tx++) {
+                    for (int ty = ty0; ty <= ty1; ty++) {
+                        int t = ty * nbTilesPerSide + tx;
+                        if (pass == 0) tileNodeStart[t + 1]++;
+                        else tileNodes[nodeFill[t]++] = i;
+                    }
+                }
+            }
+            if (pass == 0) {
+                long totalEdges = 0, totalNodes = 0;
+                for (int t = 0; t < nbTiles; t++) {
+                    totalEdges += tileEdgeStart[t + 1];
+                    totalNodes += tileNodeStart[t + 1];
+                    tileEdgeStart[t + 1] += tileEdgeStart[t];
+                    tileNodeStart[t + 1] += tileNodeStart[t];
+                }
+                if (totalEdges > Integer.MAX_VALUE - 8 || totalNodes > Integer.MAX_VALUE - 8) {
+                    throw new IllegalStateException("Trop d'éléments à ranger dans les tuiles, agrandir les tuiles");
+                }
+                tileEdges = new int[(int) totalEdges];
+                tileNodes = new int[(int) totalNodes];
+            }
+        }
+    }
+
+    /**
+     * @param pixel abscisse ou ordonnée dans l'image
+     * @return la colonne ou la ligne de la tuile qui la contient (bornée à l'image)
+     */
+    private int tile(int pixel) {
+        return Math.max(0, Math.min(nbTilesPerSide - 1, Math.floorDiv(pixel, tileSize)));
+    }
+
+    /**
+     * @return vrai si le segment (x1,y1)-(x2,y2) coupe le rectangle [minX, maxX] x [minY, maxY] (découpage de Liang-Barsky)
+     */
+    private static boolean touches(double x1, double y1, double x2, double y2, double minX, double minY, double maxX, double maxY) {
+        double dx = x2 - x1, dy = y2 - y1;
+        double t0 = 0, t1 = 1;
+        double[] p = {-dx, dx, -dy, dy};
+        double[] q = {x1 - minX, maxX - x1, y1 - minY, maxY - y1};
+        for (int k = 0; k < 4; k++) {
+            if (p[k] == 0) {
+                if (q[k] < 0) return false;
+            } else {
+                double t = q[k] / p[k];
+                if (p[k] < 0) t0 = Math.max(t0, t);
+                else t1 = Math.min(t1, t);
+                if (t0 > t1) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Dessine une tuile dans sa propre image, arêtes d'abord puis noeuds (comme {@link PngExporter})
+     * @param tx colonne de la tuile
+     * @param ty ligne de la tuile
+     * @return l'image de la tuile (bord droit et bas rognés à l'image), entourée de sa marge de {@link #overlap} pixels
+     */
+    BufferedImage renderTile(int tx, int ty) {
+        int size = framing.getSize();
+        int width = Math.min(tileSize, size - tx * tileSize) + 2 * overlap;
+        int height = Math.min(tileSize, size - ty * tileSize) + 2 * overlap;
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            g.translate(overlap - tx * tileSize, overlap - ty * tileSize);
+            int t = ty * nbTilesPerSide + tx;
+
+            g.setColor(Color.BLACK);
+            for (int k = tileEdgeStart[t]; k < tileEdgeStart[t + 1]; k++) {
+                int e = tileEdges[k];
+                g.drawLine(nodeX[edgeU[e]], nodeY[edgeU[e]], nodeX[edgeV[e]], nodeY[edgeV[e]]);
+            }
+
+            List<Node> nodes = drawLabels ? graph.getNodes() : null;
+            for (int k = tileNodeStart[t]; k < tileNodeStart[t + 1]; k++) {
+                int i = tileNodes[k];
+                int x = nodeX[i], y = nodeY[i];
+                g.setColor(Color.CYAN);
+                g.fillOval(x - scaledRadius, y - scaledRadius, 2*scaledRadius, 2*scaledRadius);
+                g.setColor(Color.BLACK);
+                g.drawOval(x - scaledRadius, y - scaledRadius, 2*scaledRadius, 2*scaledRadius);
+                if (drawLabels) {
+                    g.setColor(Color.RED);
+                    g.drawString("" + nodes.get(i).getOriginalIndex(), x + (scaledRadius > 6 ? - 6 : + 6), y + 3);
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * Bande compressée : morceau de flux deflate terminé par un vidage synchrone
+     */
+    private static class Band {
+
+        /**
+         * octets compressés et leur nombre
+         */
+        byte[] data;
+        int size;
+
+        /**
+         * somme Adler-32 des données filtrées de la bande et leur longueur
+         */
+        long adler;
+        long rawLength;
+
+    }
+
+    /**
+     * Filtre et compresse les lignes d'une bande de tuiles
+     * @param ty ligne des tuiles de la bande
+     * @param tiles tuiles de la bande, de gauche à droite
+     * @return la bande compressée
+     * @throws Exception si le dessin d'une tuile a échoué
+     */
+    private Band compressBand(int ty, List<Future<BufferedImage>> tiles) throws Exception {
+        int size = framing.getSize();
+        int[][] pixels = new int[tiles.size()][];
+        int height = 0;
+        for (int tx = 0; tx < tiles.size(); tx++) {
+            BufferedImage image = tiles.get(tx).get();
+            pixels[tx] = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            height = image.getHeight() - 2 * overlap;
+        }
+
+        // vitesse plutôt que taux : les images sont surtout blanches et se compressent déjà très bien
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        Adler32 adler = new Adler32();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        byte[] row = new byte[1 + 3 * size];
+        byte[] buffer = new byte[1 << 16];
+        for (int y = 0; y < height; y++) {
+            // filtre "Sub" : chaque composante moins celle du pixel de gauche
+            row[0] = 1;
+            int previous = 0;
+            int position = 1;
+            for (int tx = 0; tx < pixels.length; tx++) {
+                // ligne y de la tuile, sans sa marge
+                int width = Math.min(tileSize, size - tx * tileSize);
+                int offset = (y + overlap) * (width + 2 * overlap) + overlap;
+                for (int x = 0; x < width; x++) {
+                    int rgb = pixels[tx][offset + x];
+                    row[position++] = (byte) ((rgb >>> 16) - (previous >>> 16));
+                    row[position++] = (byte) ((rgb >>> 8) - (previous >>> 8));
+                    row[position++] = (byte) (rgb - previous);
+                    previous = rgb;
+                }
+            }
+            adler.update(row, 0, row.length);
+            deflater.setInput(row);
+            while (!deflater.needsInput()) {
+                int n = deflater.deflate(buffer, 0, buffer.length, Deflater.NO_FLUSH);
+                compressed.write(buffer, 0, n);
+            }
+        }
+        // vidage synchrone : la bande se termine sur une limite d'octet et ne dépend pas des suivantes
+        int n;
+        do {
+            n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+            compressed.write(buffer, 0, n);
+        } while (n == buffer.length);
+        deflater.end();
+
+        Band band = new Band();
+        band.data = compressed.toByteArray();
+        band.size = band.data.length;
+        band.adler = adler.getValue();
+        band.rawLength = (long) height * row.length;
+        return band;
+    }
+
+    /**
+     * @param adler1 somme Adler-32 d'une première suite d'octets
+     * @param adler2 somme Adler-32 de la suite qui la prolonge
+     * @param length2 longueur de la seconde suite
+     * @return la somme Adler-32 des deux suites mises bout à bout (comme adler32_combine de zlib)
+     */
+    private static long combineAdler32(long adler1, long adler2, long length2) {
+        final long base = 65521;
+        long remainder = length2 % base;
+        long sum1 = adler1 & 0xffff;
+        long sum2 = (remainder * sum1) % base;
+        sum1 += (adler2 & 0xffff) + base - 1;
+        sum2 += ((adler1 >>> 16) & 0xffff) + ((adler2 >>> 16) & 0xffff) + base - remainder;
+        sum1 %= base;
+        sum2 %= base;
+        return sum1 | (sum2 << 16);
+    }
+
+    /**
+     * Ecrit un bloc PNG (longueur, type, données, CRC)
+     * @param out flux de sortie
+     * @param type type du bloc (4 lettres)
+     * @param data données
+     * @param offset début des données du bloc
+     * @param length longueur des données du bloc
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    private static void writeChunk(DataOutputStream out, String type, byte[] data, int offset, int length) throws IOException {
+        byte[] typeBytes = type.getBytes("US-ASCII");
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, offset, length);
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, offset, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+}
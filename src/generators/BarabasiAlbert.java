@@ -0,0 +1,77 @@
+package generators;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Graphe de Barabási–Albert (degrés en loi de puissance) : on part d'une clique de m+1 noeuds, puis
+ * chaque nouveau noeud se relie à m noeuds déjà présents choisis avec une probabilité proportionnelle
+ * à leur degré. Le tirage se fait uniformément dans le tableau des extrémités des arêtes déjà créées,
+ * où chaque noeud apparaît autant de fois que son degré (méthode de Batagelj et Brandes) : O(n m).
+ * La ligne de chaque noeud cite les noeuds plus anciens auxquels il s'est relié.
+ */
+public class BarabasiAlbert extends GraphGenerator {
+
+    /**
+     * nombre de noeuds
+     */
+    private int nbNodes;
+
+    /**
+     * nombre d'arêtes ajoutées par nouveau noeud
+     */
+    private int edgesPerNode;
+
+    /**
+     * graine des tirages
+     */
+    private long seed;
+
+    /**
+     * @param nbNodes nombre de noeuds
+     * @param edgesPerNode nombre d'arêtes ajoutées par nouveau noeud (degré moyen ≈ 2m)
+     * @param seed graine des tirages
+     */
+    public BarabasiAlbert(int nbNodes, int edgesPerNode, long seed) {
+        if (edgesPerNode < 1) throw new IllegalArgumentException("Il faut au moins une arête par noeud : " + edgesPerNode);
+        if (2L * edgesPerNode * nbNodes > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("Trop d'arêtes : " + (long) edgesPerNode * nbNodes);
+        this.nbNodes = nbNodes;
+        this.edgesPerNode = edgesPerNode;
+        this.seed = seed;
+    }
+
+    @Override
+    public int getNbNodes() {
+        return nbNodes;
+    }
+
+    @Override
+    protected void generate(LineSink sink, int offset) throws IOException {
+        Random random = new Random(seed);
+        int m = edgesPerNode;
+        int[] endpoints = new int[2 * m * nbNodes];
+        int nbEndpoints = 0;
+        int[] neighbours = new int[Math.max(m, 1)];
+        for (int i = 0; i < nbNodes; i++) {
+            int count = 0;
+            if (i <= m) {
+                // clique initiale
+                for (int j = 0; j < i; j++) neighbours[count++] = j;
+            } else {
+                while (count < m) {
+                    int target = endpoints[random.nextInt(nbEndpoints)];
+                    boolean duplicate = false;
+                    for (int k = 0; k < count && !duplicate; k++) duplicate = neighbours[k] == target;
+                    if (!duplicate) neighbours[count++] = target;
+                }
+            }
+            for (int k = 0; k < count; k++) {
+                endpoints[nbEndpoints++] = neighbours[k];
+                endpoints[nbEndpoints++] = i;
+                neighbours[k] += offset;
+            }
+            sink.line(neighbours, count);
+        }
+    }
+
+}
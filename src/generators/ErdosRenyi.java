@@ -0,0 +1,64 @@
+package generators;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Graphe aléatoire d'Erdős–Rényi G(n, p) : chaque paire de noeuds est reliée indépendamment avec
+ * la probabilité p. Plutôt que de tirer les n²/2 paires, on saute directement à l'arête suivante
+ * (loi géométrique, méthode de Batagelj et Brandes) : la génération coûte O(n + m).
+ */
+public class ErdosRenyi extends GraphGenerator {
+
+    /**
+     * nombre de noeuds
+     */
+    private int nbNodes;
+
+    /**
+     * probabilité de chaque arête
+     */
+    private double probability;
+
+    /**
+     * graine des tirages
+     */
+    private long seed;
+
+    /**
+     * @param nbNodes nombre de noeuds
+     * @param averageDegree degré moyen visé (p = degré / (n - 1))
+     * @param seed graine des tirages
+     */
+    public ErdosRenyi(int nbNodes, double averageDegree, long seed) {
+        this.nbNodes = nbNodes;
+        this.probability = nbNodes > 1 ? Math.min(1, averageDegree / (nbNodes - 1)) : 0;
+        this.seed = seed;
+    }
+
+    @Override
+    public int getNbNodes() {
+        return nbNodes;
+    }
+
+    @Override
+    protected void generate(LineSink sink, int offset) throws IOException {
+        Random random = new Random(seed);
+        double logQ = Math.log(1 - probability);
+        int[] neighbours = new int[16];
+        for (int i = 0; i < nbNodes; i++) {
+            // la ligne de i cite ses voisins j > i
+            int count = 0;
+            long j = i;
+            while (probability > 0) {
+                j += probability < 1 ? 1 + (long) (Math.log(1 - random.nextDouble()) / logQ) : 1;
+                if (j >= nbNodes) break;
+                if (count == neighbours.length) neighbours = Arrays.copyOf(neighbours, 2 * count);
+                neighbours[count++] = offset + (int) j;
+            }
+            sink.line(neighbours, count);
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+package generators;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+/**
+ * Application d'écriture de graphes synthétiques dans le dossier 'data'
+ * <p>
+ * Les fichiers écrits se lisent ensuite comme les autres, par exemple
+ * {@code GraphDrawerApp ba100k f} après {@code GeneratorApp ba 100000 ba100k}.
+ * </p>
+ */
+public class GeneratorApp {
+
+    /**
+     * graine par défaut
+     */
+    private static final long DEFAULT_SEED = 42;
+
+    /**
+     * degré moyen par défaut des graphes aléatoires
+     */
+    private static final double DEFAULT_DEGREE = 4;
+
+    /**
+     * @param args "type" "nombre de noeuds" "nom_du_fichier" ["graine" ["degré moyen"]]
+     * où le type est grid, tree, rgg, er, ba ou mix
+     */
+    public static void main(String[] args) {
+
+        if (args.length < 3 || !Pattern.matches("\\w{1,256}", args[2])) {
+            System.out.println("Usage : GeneratorApp (grid|tree|rgg|er|ba|mix) nombre_de_noeuds nom_du_fichier [graine [degré_moyen]]");
+            return;
+        }
+        int nbNodes = Integer.parseInt(args[1]);
+        long seed = args.length >= 4 ? Long.parseLong(args[3]) : DEFAULT_SEED;
+        double degree = args.length >= 5 ? Double.parseDouble(args[4]) : DEFAULT_DEGREE;
+
+        GraphGenerator generator = create(args[0], nbNodes, seed, degree);
+        if (generator == null) {
+            System.out.println("Type de graphe inconnu : " + args[0]);
+            return;
+        }
+
+        String filePath = "data/" + args[2] + ".txt";
+        try {
+            long start = System.nanoTime();
+            long nbEdges = generator.write(filePath);
+            System.out.println(generator.getNbNodes() + " noeuds et " + nbEdges + " arêtes écrits dans " + filePath
+                    + " en " + (System.nanoTime() - start) / 1000000 + " ms");
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * @param type grid, tree, rgg, er, ba ou mix (un peu de chacun, sans lien entre eux)
+     * @param nbNodes nombre de noeuds (approché pour la grille, carrée)
+     * @param seed graine des tirages
+     * @param degree degré moyen des graphes aléatoires
+     * @return le générateur correspondant, ou null si le type est inconnu
+     */
+    public static GraphGenerator create(String type, int nbNodes, long seed, double degree) {
+        if (type.equals("grid")) {
+            int side = (int) Math.max(1, Math.round(Math.sqrt(nbNodes)));
+            return new Grid(side, side);
+        } else if (type.equals("tree")) {
+            return new Tree(nbNodes, 3);
+        } else if (type.equals("rgg")) {
+            return new RandomGeometric(nbNodes, degree, seed);
+        } else if (type.equals("er")) {
+            return new ErdosRenyi(nbNodes, degree, seed);
+        } else if (type.equals("ba")) {
+            return new BarabasiAlbert(nbNodes, (int) Math.max(1, Math.round(degree / 2)), seed);
+        } else if (type.equals("mix")) {
+            // cinq parties de même taille, chacune avec sa graine
+            int part = nbNodes / 5;
+            return new Mixture(
+                    create("grid", part, seed, degree),
+                    create("tree", part, seed + 1, degree),
+                    create("rgg", part, seed + 2, degree),
+                    create("er", part, seed + 3, degree),
+                    create("ba", nbNodes - 4 * part, seed + 4, degree));
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,177 @@
+package generators;
+
+import helper.CsrAdjacency;
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import models.Graph;
+
+/**
+ * Générateur de graphes synthétiques
+ * <p>
+ * Les fichiers fournis ne dépassent pas une vingtaine de noeuds : pour mesurer le passage à l'échelle
+ * de l'équilibrage, on fabrique des graphes de taille quelconque, reproductibles à partir d'une graine.
+ * Un générateur produit les listes de voisins ligne après ligne, dans l'ordre des noeuds et au format
+ * du fichier ressource (chaque arête n'est citée que sur la ligne d'une de ses extrémités) : on peut
+ * les écrire au fil de l'eau dans un fichier ({@link #write}) sans garder les arêtes en mémoire,
+ * ou les ranger directement dans un {@link CsrAdjacency} pour construire un {@link Graph}.
+ * </p>
+ */
+public abstract class GraphGenerator {
+
+    /**
+     * Destinataire des lignes produites
+     */
+    public interface LineSink {
+
+        /**
+         * Reçoit la ligne du noeud suivant
+         * @param neighbours voisins cités sur la ligne (tableau réutilisé d'une ligne à l'autre)
+         * @param count nombre de voisins
+         * @throws IOException en cas d'erreur d'écriture
+         */
+        void line(int[] neighbours, int count) throws IOException;
+
+    }
+
+    /**
+     * @return le nombre de noeuds du graphe produit
+     */
+    public abstract int getNbNodes();
+
+    /**
+     * Produit les lignes de tous les noeuds, dans l'ordre
+     * @param sink destinataire des lignes
+     * @param offset décalage à ajouter à tous les n° de noeuds (pour les mélanges, voir {@link Mixture})
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    protected abstract void generate(LineSink sink, int offset) throws IOException;
+
+    /**
+     * Ecrit le graphe dans un fichier au format ressource
+     * @param filePath chemin du fichier
+     * @return le nombre d'arêtes écrites
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public long write(String filePath) throws IOException {
+        final NumberWriter out = new NumberWriter(new FileOutputStream(filePath));
+        final long[] nbEdges = new long[1];
+        try {
+            out.write(getNbNodes());
+            out.newLine();
+            generate(new LineSink() {
+                public void line(int[] neighbours, int count) throws IOException {
+                    for (int j = 0; j < count; j++) {
+                        if (j > 0) out.space();
+                        out.write(neighbours[j]);
+                    }
+                    out.newLine();
+                    nbEdges[0] += count;
+                }
+            }, 0);
+        } finally {
+            out.close();
+        }
+        return nbEdges[0];
+    }
+
+    /**
+     * @return les listes de voisins du graphe en tableaux, comme les lirait {@link helper.ParallelParser}
+     */
+    public CsrAdjacency toAdjacency() {
+        final int nbNodes = getNbNodes();
+        final int[] lineStart = new int[nbNodes + 1];
+        final int[][] targets = {new int[1024]};
+        final int[] line = new int[1];
+        try {
+            generate(new LineSink() {
+                public void line(int[] neighbours, int count) {
+                    int size = lineStart[line[0]];
+                    if ((long) size + count > Integer.MAX_VALUE - 8) throw new IllegalStateException("Trop d'arêtes pour un seul tableau");
+                    if (size + count > targets[0].length) {
+                        targets[0] = Arrays.copyOf(targets[0], (int) Math.min(Math.max(2L * targets[0].length, size + count), Integer.MAX_VALUE - 8));
+                    }
+                    System.arraycopy(neighbours, 0, targets[0], size, count);
+                    lineStart[++line[0]] = size + count;
+                }
+            }, 0);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex); // aucune écriture ici
+        }
+        return new CsrAdjacency(nbNodes, lineStart, Arrays.copyOf(targets[0], lineStart[nbNodes]));
+    }
+
+    /**
+     * @param modelLetter initiale du modèle de forces
+     * @return le graphe produit, sans passer par un fichier
+     */
+    public Graph toGraph(char modelLetter) {
+        return new Graph(toAdjacency(), null, modelLetter);
+    }
+
+    /**
+     * Ecriture rapide d'entiers en ASCII, sans passer par des chaînes
+     */
+    private static class NumberWriter {
+
+        /**
+         * flux de sortie, tampon et position dans le tampon
+         */
+        private OutputStream out;
+        private byte[] buffer = new byte[1 << 16];
+        private int position;
+
+        /**
+         * @param out flux de sortie
+         */
+        NumberWriter(OutputStream out) {
+            this.out = new BufferedOutputStream(out, 1 << 16);
+        }
+
+        /**
+         * @param value entier positif ou nul à écrire
+         * @throws IOException en cas d'erreur d'écriture
+         */
+        void write(int value) throws IOException {
+            if (position > buffer.length - 12) flush();
+            int start = position;
+            do {
+                buffer[position++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value > 0);
+            // les chiffres ont été écrits à l'envers
+            for (int i = start, j = position - 1; i < j; i++, j--) {
+                byte b = buffer[i];
+                buffer[i] = buffer[j];
+                buffer[j] = b;
+            }
+        }
+
+        void space() throws IOException {
+            if (position == buffer.length) flush();
+            buffer[position++] = ' ';
+        }
+
+        void newLine() throws IOException {
+            if (position == buffer.length) flush();
+            buffer[position++] = '\n';
+        }
+
+        private void flush() throws IOException {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+
+        void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                out.close();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,45 @@
+package generators;
+
+import java.io.IOException;
+
+/**
+ * Grille rectangulaire : le noeud (ligne r, colonne c) porte le n° r * largeur + c
+ * et est relié à ses voisins de droite et du dessous
+ */
+public class Grid extends GraphGenerator {
+
+    /**
+     * dimensions de la grille, en noeuds
+     */
+    private int width, height;
+
+    /**
+     * @param width nombre de colonnes
+     * @param height nombre de lignes
+     */
+    public Grid(int width, int height) {
+        if ((long) width * height > Integer.MAX_VALUE) throw new IllegalArgumentException("Grille trop grande : " + width + " x " + height);
+        this.width = width;
+        this.height = height;
+    }
+
+    @Override
+    public int getNbNodes() {
+        return width * height;
+    }
+
+    @Override
+    protected void generate(LineSink sink, int offset) throws IOException {
+        int[] neighbours = new int[2];
+        for (int r = 0; r < height; r++) {
+            for (int c = 0; c < width; c++) {
+                int i = r * width + c;
+                int count = 0;
+                if (c + 1 < width) neighbours[count++] = offset + i + 1;
+                if (r + 1 < height) neighbours[count++] = offset + i + width;
+                sink.line(neighbours, count);
+            }
+        }
+    }
+
+}
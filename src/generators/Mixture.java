@@ -0,0 +1,45 @@
+package generators;
+
+import java.io.IOException;
+
+/**
+ * Réunion disjointe de plusieurs graphes : les noeuds de chaque partie suivent ceux des précédentes
+ * et aucune arête ne relie deux parties (graphe non connexe)
+ */
+public class Mixture extends GraphGenerator {
+
+    /**
+     * parties, dans l'ordre de numérotation
+     */
+    private GraphGenerator[] parts;
+
+    /**
+     * nombre total de noeuds
+     */
+    private int nbNodes;
+
+    /**
+     * @param parts générateurs des parties
+     */
+    public Mixture(GraphGenerator... parts) {
+        long total = 0;
+        for (GraphGenerator part : parts) total += part.getNbNodes();
+        if (total > Integer.MAX_VALUE) throw new IllegalArgumentException("Trop de noeuds : " + total);
+        this.parts = parts;
+        this.nbNodes = (int) total;
+    }
+
+    @Override
+    public int getNbNodes() {
+        return nbNodes;
+    }
+
+    @Override
+    protected void generate(LineSink sink, int offset) throws IOException {
+        for (GraphGenerator part : parts) {
+            part.generate(sink, offset);
+            offset += part.getNbNodes();
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+package generators;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Graphe géométrique aléatoire : n points tirés uniformément dans le carré unité, reliés quand ils
+ * sont à moins d'une distance r. Les points sont numérotés cellule après cellule d'une grille de côté r,
+ * si bien que les voisins de rang supérieur d'un noeud sont dans sa cellule ou dans les quatre cellules
+ * suivantes. On ne garde que les positions en mémoire, pas les arêtes.
+ */
+public class RandomGeometric extends GraphGenerator {
+
+    /**
+     * nombre de noeuds
+     */
+    private int nbNodes;
+
+    /**
+     * distance de connexion
+     */
+    private double radius;
+
+    /**
+     * graine des tirages
+     */
+    private long seed;
+
+    /**
+     * @param nbNodes nombre de noeuds
+     * @param averageDegree degré moyen visé (loin des bords : n π r² = degré)
+     * @param seed graine des tirages
+     */
+    public RandomGeometric(int nbNodes, double averageDegree, long seed) {
+        this.nbNodes = nbNodes;
+        this.radius = Math.sqrt(averageDegree / (Math.PI * Math.max(nbNodes, 1)));
+        this.seed = seed;
+    }
+
+    @Override
+    public int getNbNodes() {
+        return nbNodes;
+    }
+
+    @Override
+    protected void generate(LineSink sink, int offset) throws IOException {
+
+        // grille de cellules de côté au moins r (au plus une cellule par noeud environ)
+        int side = (int) Math.max(1, Math.min(Math.floor(1 / radius), Math.ceil(Math.sqrt(nbNodes))));
+        int nbCells = side * side;
+
+        // tirage des points, puis tri par cellule (tri par dénombrement)
+        Random random = new Random(seed);
+        double[] px = new double[nbNodes];
+        double[] py = new double[nbNodes];
+        int[] cellStart = new int[nbCells + 1];
+        int[] cellOf = new int[nbNodes];
+        for (int i = 0; i < nbNodes; i++) {
+            px[i] = random.nextDouble();
+            py[i] = random.nextDouble();
+            cellOf[i] = cell(px[i], side) * side + cell(py[i], side);
+            cellStart[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < nbCells; c++) cellStart[c + 1] += cellStart[c];
+        double[] x = new double[nbNodes];
+        double[] y = new double[nbNodes];
+        int[] fill = Arrays.copyOf(cellStart, nbCells);
+        for (int i = 0; i < nbNodes; i++) {
+            int rank = fill[cellOf[i]]++;
+            x[rank] = px[i];
+            y[rank] = py[i];
+        }
+        px = py = null;
+        cellOf = fill = null;
+
+        double sqRadius = radius * radius;
+        int[] neighbours = new int[16];
+        for (int cx = 0; cx < side; cx++) {
+            for (int cy = 0; cy < side; cy++) {
+                int c = cx * side + cy;
+                for (int i = cellStart[c]; i < cellStart[c + 1]; i++) {
+                    int count = 0;
+                    // sa cellule (rangs supérieurs), puis (cx, cy+1) et la colonne suivante
+                    for (int k = 0; k < 5; k++) {
+                        int ncx = cx + (k == 0 || k == 1 ? 0 : 1);
+                        int ncy = cy + (k == 0 ? 0 : k == 1 ? 1 : k - 3);
+                        if (ncx >= side || ncy < 0 || ncy >= side) continue;
+                        int nc = ncx * side + ncy;
+                        for (int j = k == 0 ? i + 1 : cellStart[nc]; j < cellStart[nc + 1]; j++) {
+                            double dx = x[j] - x[i], dy = y[j] - y[i];
+                            if (dx*dx + dy*dy >= sqRadius) continue;
+                            if (count == neighbours.length) neighbours = Arrays.copyOf(neighbours, 2 * count);
+                            neighbours[count++] = offset + j;
+                        }
+                    }
+                    sink.line(neighbours, count);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param coordinate abscisse ou ordonnée dans [0, 1)
+     * @param side nombre de cellules par côté
+     * @return la colonne ou la ligne de la cellule
+     */
+    private static int cell(double coordinate, int side) {
+        return Math.min((int) (coordinate * side), side - 1);
+    }
+
+}
@@ -0,0 +1,47 @@
+package generators;
+
+import java.io.IOException;
+
+/**
+ * Arbre complet : les enfants du noeud i sont les noeuds b*i+1 à b*i+b
+ */
+public class Tree extends GraphGenerator {
+
+    /**
+     * nombre de noeuds
+     */
+    private int nbNodes;
+
+    /**
+     * nombre d'enfants de chaque noeud interne
+     */
+    private int branching;
+
+    /**
+     * @param nbNodes nombre de noeuds
+     * @param branching nombre d'enfants de chaque noeud interne (1 : une chaîne)
+     */
+    public Tree(int nbNodes, int branching) {
+        if (branching < 1) throw new IllegalArgumentException("Il faut au moins un enfant par noeud : " + branching);
+        this.nbNodes = nbNodes;
+        this.branching = branching;
+    }
+
+    @Override
+    public int getNbNodes() {
+        return nbNodes;
+    }
+
+    @Override
+    protected void generate(LineSink sink, int offset) throws IOException {
+        int[] neighbours = new int[branching];
+        for (int i = 0; i < nbNodes; i++) {
+            int count = 0;
+            for (long child = (long) branching * i + 1; child <= (long) branching * i + branching && child < nbNodes; child++) {
+                neighbours[count++] = offset + (int) child;
+            }
+            sink.line(neighbours, count);
+        }
+    }
+
+}
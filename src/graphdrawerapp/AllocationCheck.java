@@ -0,0 +1,95 @@
+package graphdrawerapp;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.regex.Pattern;
+import models.Graph;
+
+/**
+ * Vérification qu'une itération d'équilibrage n'alloue rien
+ * <p>
+ * C'est une vérification à lancer à la main (aucune suite de tests ne l'exécute), depuis le dossier qui
+ * contient {@code data/}, par exemple {@code java -cp classes graphdrawerapp.AllocationCheck graph3 h}
+ * après avoir modifié la boucle d'équilibrage.
+ * </p>
+ * <p>
+ * Le graphe est itéré assez longtemps pour que le compilateur à la volée ait optimisé la boucle, puis on
+ * compte, avec les compteurs d'allocation de la JVM, les octets alloués par le thread courant pendant
+ * {@link #MEASURED_ITERATIONS} itérations, ainsi que les passages du ramasse-miettes. On le fait en double
+ * puis en simple précision (voir {@link Graph#SINGLE_PRECISION}) ; l'affichage de l'énergie doit rester
+ * coupé (voir {@link Graph#LOG_KINETIC_ENERGY}). Le programme se termine avec le code 1 si une itération alloue.
+ * </p>
+ * <p>
+ * Les modes parallèles ({@link Graph#REPULSION_SAMPLES}, {@link Graph#SYMMETRIC_FORCES}) ne sont pas
+ * vérifiés : chaque itération y soumet quelques tâches aux threads de calcul.
+ * </p>
+ */
+public class AllocationCheck {
+
+    /**
+     * nombre d'itérations avant la mesure (compilation de la boucle)
+     */
+    private static final int WARMUP_ITERATIONS = 2000;
+
+    /**
+     * nombre d'itérations mesurées
+     */
+    private static final int MEASURED_ITERATIONS = 1000;
+
+    /**
+     * @param args "nom_du_fichier" "initiale modèle" (comme {@link GraphDrawerApp})
+     */
+    public static void main(String[] args) {
+
+        String fileName = args.length >= 1 && Pattern.matches("\\w{1,256}", args[0]) ? args[0] : "graph";
+        char modelLetter = args.length >= 2 && args[1].length() >= 1 ? args[1].charAt(0) : 'f';
+
+        com.sun.management.ThreadMXBean threads;
+        try {
+            threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        } catch (ClassCastException ex) {
+            System.out.println("Cette JVM ne compte pas les allocations par thread");
+            return;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        Graph.LOG_KINETIC_ENERGY = false;
+        Graph graph = new Graph("data/" + fileName + ".txt", modelLetter);
+        GraphDrawerApp.applyProfile(graph);
+
+        boolean allocates = false;
+        for (boolean singlePrecision : new boolean[] {false, true}) {
+            Graph.SINGLE_PRECISION = singlePrecision;
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                graph.iterateBalance(GraphDrawerApp.timestep, GraphDrawerApp.damping);
+            }
+
+            long collections = countCollections();
+            long bytes = threads.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+                graph.iterateBalance(GraphDrawerApp.timestep, GraphDrawerApp.damping);
+            }
+            bytes = threads.getCurrentThreadAllocatedBytes() - bytes;
+            collections = countCollections() - collections;
+
+            System.out.println((singlePrecision ? "Simple" : "Double") + " précision : " + bytes + " octets alloués en "
+                    + MEASURED_ITERATIONS + " itérations (" + (double) bytes / MEASURED_ITERATIONS + " par itération), "
+                    + collections + " passage(s) du ramasse-miettes");
+            if (bytes > 0) allocates = true;
+        }
+
+        if (allocates) System.exit(1);
+    }
+
+    /**
+     * @return le nombre total de passages des ramasse-miettes depuis le lancement
+     */
+    private static long countCollections() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,153 @@
+package graphdrawerapp;
+
+import models.Graph;
+
+/**
+ * Cadrage d'un graphe dans une zone de dessin carrée
+ * <p>
+ * Regroupe les calculs qui permettent de "zoomer" et de décaler le point de vue
+ * sur le graphe pour qu'il rentre juste dans la zone de dessin (avec une légère marge).
+ * On parle de dessin "cadré". Ces calculs sont partagés par le panneau de la fenêtre
+ * et par les exports d'images, qui peuvent avoir une taille quelconque.
+ * </p>
+ */
+public class Framing {
+
+    /**
+     * rayon de référence pour dessiner un noeud (sera mis à l'échelle)
+     */
+    public static final int RADIUS = 8;
+
+    /**
+     * marge entre le graphe représenté et les bords ou les boutons
+     */
+    public static final double MARGIN = 10;
+
+    /**
+     * graphe à cadrer
+     */
+    private Graph graph;
+
+    /**
+     * longueur du côté de la zone de dessin carrée, en pixels
+     */
+    private int size;
+
+    /**
+     * vrai si le cadrage est figé (pendant un glisser-déposer, pour que la vue ne bouge pas sous la souris)
+     */
+    private boolean frozen;
+
+    /**
+     * facteur d'échelle et frontières de gauche et du haut au moment où le cadrage a été figé
+     */
+    private double frozenScale, frozenX0, frozenY0;
+
+    /**
+     * Construit un cadrage du graphe <i>graph</i> dans un carré de côté <i>size</i>
+     * @param graph le graphe à cadrer
+     * @param size longueur du côté de la zone de dessin
+     */
+    public Framing(Graph graph, int size) {
+        this.graph = graph;
+        this.size = size;
+    }
+
+    /**
+     * @return la longueur du côté de la zone de dessin
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Le facteur d'échelle dépend des frontières courantes du graphe,
+     * il faut donc le recalculer à chaque nouveau dessin.
+     * @return le facteur d'échelle pour un dessin cadré
+     */
+    public double getFittingScale() {
+        if (frozen) return frozenScale;
+        return (size - 2*MARGIN) /
+            (Math.max(graph.getHorizontalUpperBound() - graph.getHorizontalLowerBound(),
+            graph.getVerticalUpperBound() - graph.getVerticalLowerBound()) + 2*RADIUS);
+    }
+
+    /**
+     * @param scale le facteur d'échelle
+     * @return le rayon d'un noeud mis à l'échelle (2 au minimum pour avoir des noeuds visibles)
+     */
+    public int getScaledRadius(double scale) {
+        int scaledRadius = (int) Math.floor(RADIUS * scale);
+        if (scaledRadius < 2) scaledRadius = 2;
+        return scaledRadius;
+    }
+
+    /**
+     *
+     * @param x l'abscisse du noeud dans le modèle de graphe
+     * @param scale le facteur d'échelle
+     * @return l'abscisse cadrée du noeud
+     */
+    public int getFittingDrawingX(double x, double scale) {
+        return getFittingDrawingCoord(x, frozen ? frozenX0 : graph.getHorizontalLowerBound(), scale);
+    }
+
+    /**
+     *
+     * @param y l'ordonnée du noeud dans le modèle de graphe
+     * @param scale le facteur d'échelle
+     * @return l'ordonnée cadrée du noeud
+     */
+    public int getFittingDrawingY(double y, double scale) {
+        return getFittingDrawingCoord(y, frozen ? frozenY0 : graph.getVerticalLowerBound(), scale);
+    }
+
+    /**
+     * Fige le cadrage courant jusqu'à {@link #unfreeze()}, même si les frontières du graphe changent
+     */
+    public void freeze() {
+        frozenScale = getFittingScale();
+        frozenX0 = graph.getHorizontalLowerBound();
+        frozenY0 = graph.getVerticalLowerBound();
+        frozen = true;
+    }
+
+    /**
+     * Revient au cadrage qui suit les frontières du graphe
+     */
+    public void unfreeze() {
+        frozen = false;
+    }
+
+    /**
+     * Inverse de {@link #getFittingDrawingX getFittingDrawingX}
+     * @param drawingX abscisse dans la zone de dessin
+     * @param scale le facteur d'échelle
+     * @return l'abscisse correspondante dans le modèle de graphe
+     */
+    public double getModelX(int drawingX, double scale) {
+        return (drawingX - MARGIN) / scale + (frozen ? frozenX0 : graph.getHorizontalLowerBound()) - RADIUS;
+    }
+
+    /**
+     * Inverse de {@link #getFittingDrawingY getFittingDrawingY}
+     * @param drawingY ordonnée dans la zone de dessin
+     * @param scale le facteur d'échelle
+     * @return l'ordonnée correspondante dans le modèle de graphe
+     */
+    public double getModelY(int drawingY, double scale) {
+        return (drawingY - MARGIN) / scale + (frozen ? frozenY0 : graph.getVerticalLowerBound()) - RADIUS;
+    }
+
+    /**
+     * Cette fonction est une aide pour {@link #getFittingDrawingX getFittingDrawingX} et {@link #getFittingDrawingY getFittingDrawingY}
+     * @param coord x ou y du noeud
+     * @param coord0 position de référence, frontière du haut ou de gauche de la vue du graphe
+     * @param scale facteur d'échelle
+     * @return la coordonnée cadrée du noeud
+     */
+    public static int getFittingDrawingCoord(double coord, double coord0, double scale) {
+        return (int) Math.floor( MARGIN +  scale * (coord - (coord0 - RADIUS)) );
+    }
+
+}
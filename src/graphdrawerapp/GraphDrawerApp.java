@@ -6,6 +6,11 @@ import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.regex.Pattern;
@@ -14,8 +19,18 @@ import javax.swing.JFrame;
 import javax.swing.JPanel;
 import javax.swing.SwingUtilities;
 
+import cache.LayoutCache;
+import helper.GraphIndex;
+import models.BalanceListener;
+import models.BalanceReport;
+import models.CompressedAdjacency;
 import models.Graph;
+import models.LayoutBudget;
 import models.Node;
+import models.ParameterProfile;
+import profiling.PaintEvent;
+import trajectory.TrajectoryPlayer;
+import trajectory.TrajectoryRecorder;
 
 /**
  * Application de dessin de graphes.
@@ -54,12 +69,75 @@ public class GraphDrawerApp {
      * facteur d'amortissement
      */
     public static double damping = 0.8;
+    
+    /**
+     * booléen mis à true pour reprendre les dispositions déjà calculées (voir {@link LayoutCache})
+     */
+    public static boolean USE_LAYOUT_CACHE = false;
+    
+    /**
+     * dossier du cache des dispositions
+     */
+    public static final String LAYOUT_CACHE_DIRECTORY = "cache";
+    
+    /**
+     * taille maximale du cache des dispositions, en octets
+     */
+    public static final long LAYOUT_CACHE_MAX_BYTES = 64L << 20;
+    
+    /**
+     * pendant un glisser-déposer, nombre de sauts autour du noeud déplacé dans lesquels les noeuds se réarrangent
+     */
+    public static int DRAG_RELAXATION_HOPS = 2;
+    
+    /**
+     * temps alloué à un équilibrage, en millisecondes (0 : pas de limite) ;
+     * à l'échéance on garde la disposition atteinte (voir {@link LayoutBudget})
+     */
+    public static long BALANCE_TIME_BUDGET_MS = 0;
+    
+    /**
+     * vrai pour enregistrer la trajectoire des noeuds pendant l'équilibrage et pouvoir la rejouer (bouton Replay)
+     */
+    public static boolean RECORD_TRAJECTORY = false;
+    
+    /**
+     * nombre d'images entre deux images clés de la trajectoire, et pas d'arrondi des positions enregistrées
+     */
+    public static int TRAJECTORY_KEYFRAME_INTERVAL = 10;
+    public static double TRAJECTORY_QUANTUM = 0.01;
+    
+    /**
+     * taille maximale de la trajectoire gardée en mémoire (les images les plus anciennes sont oubliées au-delà)
+     */
+    public static long TRAJECTORY_MAX_BYTES = 16L << 20;
+    
+    /**
+     * nombre d'images de la trajectoire avancées entre deux dessins pendant le Replay (vitesse de lecture)
+     */
+    public static int REPLAY_FRAMES_PER_PAINT = 1;
+    
+    /**
+     * vrai pour afficher dès le départ le panneau de mesures (voir {@link PerformanceOverlay}, bouton Perf)
+     */
+    public static boolean SHOW_PERFORMANCE_OVERLAY = false;
             
     /**
      * graphe de travail
      */
     private static Graph graph;
     
+    /**
+     * initiale du modèle de forces employé
+     */
+    private static char modelLetter;
+    
+    /**
+     * budget de l'équilibrage en cours, ou null : pendant l'équilibrage (lancé dans son propre thread),
+     * le bouton Balance devient Cancel et les autres actions sur le graphe sont ignorées
+     */
+    private static volatile LayoutBudget runningBudget;
+    
     
     /**
      * Construit le graphe de travail et lance l'interface graphique
@@ -75,13 +153,14 @@ public class GraphDrawerApp {
      * </p>
      * 
      * @param args arguments optionnels passés dans la commande, sous la forme : "nom_du_fichier" "initiale modèle"
+     * ["n° des noeuds centraux séparés par des virgules" "nombre de sauts"]
      * @see Graph
      */
     public static void main(String[] args) {
         
         // valeurs par défaut (en cas d'arguments manquants ou incorrects)
         String fileName = "graph";  // nom du fichier ressource par défaut
-        char modelLetter = 'f';     // lettre 'f' pour le modèle de Fruchterman et Reingold par défaut
+        modelLetter = 'f';          // lettre 'f' pour le modèle de Fruchterman et Reingold par défaut
         
         // affecter des valeurs utilisateur si besoin
         if (args.length >= 1) { // 1er argument passé : le nom du fichier ressource
@@ -97,13 +176,38 @@ public class GraphDrawerApp {
         
         }
         
-        System.out.println("Fichier choisi : " + fileName + ".txt");
+        String filePath = getFilePath(fileName);
+        
+        System.out.println("Fichier choisi : " + filePath);
         System.out.println("Initiale modèle choisi : " + modelLetter);
         
-        // construire le graphe en fonction de ces deux paramètres
-        graph = new Graph("data/"+fileName+".txt", modelLetter);
+        if (args.length >= 4) {
+            /* 3e et 4e arguments passés : on n'affiche que le voisinage de certains noeuds
+             * (n° séparés par des virgules) à un nombre de sauts donné, sans lire tout le fichier
+             */
+            graph = createEgoGraph("data/"+fileName+".txt", modelLetter, args[2], args[3]);
+            if (graph == null) return;
+        } else {
+            // construire le graphe en fonction de ces deux paramètres
+            graph = new Graph(filePath, modelLetter);
+        }
         
         System.out.println("Graphe initialisé :\n" + graph);
+        applyProfile(graph);
+        
+        // reprendre une disposition déjà calculée pour ce graphe (ou un graphe proche)
+        if (USE_LAYOUT_CACHE) {
+            switch (getLayoutCache().restore(graph, modelLetter, timestep, damping)) {
+                case LayoutCache.HIT:
+                    System.out.println("Disposition reprise du cache");
+                    break;
+                case LayoutCache.NEAR_HIT:
+                    System.out.println("Disposition d'un graphe proche reprise du cache");
+                    break;
+            }
+        }
+        
+        if (RECORD_TRAJECTORY) startTrajectoryRecording();
         
         // lancer l'interface graphique en 'event dispatch thread'
         SwingUtilities.invokeLater(new Runnable() {
@@ -114,6 +218,163 @@ public class GraphDrawerApp {
         
     }
     
+    /**
+     * @param fileName nom du fichier ressource, sans dossier ni extension
+     * @return le chemin du fichier ressource {@code data/<nom>.txt} ou, à défaut, d'un export Matrix Market
+     * ou d'une liste d'arêtes du même nom
+     */
+    public static String getFilePath(String fileName) {
+        String filePath = "data/" + fileName + ".txt";
+        for (String extension : new String[] {".mtx", ".edges"}) {
+            if (!new File(filePath).exists() && new File("data/" + fileName + extension).exists()) {
+                filePath = "data/" + fileName + extension;
+            }
+        }
+        return filePath;
+    }
+    
+    /**
+     * Construit le sous-graphe des noeuds proches de certains noeuds d'un gros fichier,
+     * à l'aide de son index d'accès direct (voir {@link GraphIndex})
+     * 
+     * @param filePath chemin du fichier ressource
+     * @param modelLetter initiale du nom du modèle choisi
+     * @param seeds n° des noeuds centraux séparés par des virgules
+     * @param hops nombre de sauts autour des noeuds centraux
+     * @return le sous-graphe, ou null si les paramètres ou le fichier sont incorrects
+     */
+    private static Graph createEgoGraph(String filePath, char modelLetter, String seeds, String hops) {
+        if (!Pattern.matches("\\d+(,\\d+)*", seeds) || !Pattern.matches("\\d{1,3}", hops)) {
+            System.out.println("Paramètres de voisinage incorrects : \"n°,n°,...\" \"nombre de sauts\"");
+            return null;
+        }
+        String[] seedStrings = seeds.split(",");
+        int[] seedIndexes = new int[seedStrings.length];
+        for (int i = 0; i < seedStrings.length; i++) seedIndexes[i] = Integer.parseInt(seedStrings[i]);
+        try {
+            long start = System.nanoTime();
+            GraphIndex index = new GraphIndex(filePath);
+            GraphIndex.Subgraph subgraph = index.extractEgoNetwork(seedIndexes, Integer.parseInt(hops));
+            index.close();
+            System.out.println("Voisinage extrait en " + (System.nanoTime() - start) / 1000000 + " ms");
+            return new Graph(subgraph.getLists(), subgraph.getOriginalIndexes(), modelLetter);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            return null;
+        } catch (IllegalArgumentException ex) {
+            System.out.println(ex.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Nombre maximal d'itérations pour un équilibrage
+     * <p>
+     * par expérience, avec nos paramètres, 400 itérations suffisent à atteindre le seuil d'Ec ;
+     * si le timestep s'éloigne de la valeur par défaut 0.25, on arrange ce nombre en conséquence
+     * avec tout de même une limite absolue à 1000
+     * </p>
+     * @return le nombre maximal d'itérations pour le {@link #timestep} courant
+     */
+    public static int getMaxIterations() {
+        return (int) Math.ceil(Math.min(100 / timestep, 1000));
+    }
+    
+    /**
+     * Reprend le pas temporel et l'amortissement du profil de paramètres du graphe, s'il en a un
+     * (voir {@link Graph#USE_PARAMETER_PROFILES})
+     * @param graph graphe de travail
+     */
+    public static void applyProfile(Graph graph) {
+        ParameterProfile profile = graph.getProfile();
+        if (profile == null) return;
+        timestep = profile.getTimestep();
+        damping = profile.getDamping();
+    }
+    
+    /**
+     * @return un budget d'équilibrage de {@link #BALANCE_TIME_BUDGET_MS} millisecondes, ou sans échéance
+     */
+    public static LayoutBudget getBalanceBudget() {
+        return BALANCE_TIME_BUDGET_MS > 0 ? new LayoutBudget(BALANCE_TIME_BUDGET_MS) : new LayoutBudget();
+    }
+    
+    /**
+     * @return vrai si un équilibrage est en cours (voir {@link #runningBudget})
+     */
+    static boolean isBalancing() {
+        return runningBudget != null;
+    }
+    
+    /**
+     * Termine un équilibrage du bouton Balance, dans son thread : affiche la cause d'arrêt, écarte les noeuds
+     * qui se chevauchent encore et range la disposition dans le cache
+     * @param report bilan de l'équilibrage
+     */
+    private static void finishBalance(BalanceReport report) {
+        int i = report.getNbIterations();
+        String stopCause;
+        switch (report.getStopCause()) {
+            case BalanceReport.CONVERGED: stopCause = "seuil energie atteint (" + i + " iterations)"; break;
+            case BalanceReport.EXPIRED: stopCause = "temps écoulé (" + i + " iterations)"; break;
+            case BalanceReport.CANCELLED: stopCause = "annulation (" + i + " iterations)"; break;
+            default: stopCause = "max iterations atteint (" + i + ")";
+        }
+        System.out.println("Arret de l'algorithme sur : " + stopCause);
+        completeBalance(graph, modelLetter, report);
+    }
+    
+    /**
+     * Suite commune à tout équilibrage (interface graphique ou export) : écarte les noeuds qui se chevauchent
+     * encore (voir {@link Graph#REMOVE_OVERLAPS}) et range la disposition convergée dans le cache
+     * (voir {@link #USE_LAYOUT_CACHE}). Rien n'est fait si aucun noeud n'a bougé (disposition reprise du cache).
+     * @param graph graphe équilibré
+     * @param modelLetter initiale du nom du modèle choisi
+     * @param report bilan de l'équilibrage
+     */
+    public static void completeBalance(Graph graph, char modelLetter, BalanceReport report) {
+        if (!report.hasMoved()) return;
+        
+        // écarter les noeuds qui se chevauchent encore
+        if (Graph.REMOVE_OVERLAPS) {
+            System.out.println("Chevauchements supprimés en " + graph.removeOverlaps() + " passes");
+        }
+        
+        // ranger la disposition équilibrée
+        if (USE_LAYOUT_CACHE && report.isConverged()) {
+            getLayoutCache().store(graph, modelLetter, timestep, damping);
+        }
+    }
+    
+    /**
+     * Exécute une tâche dans l'EDT et attend sa fin
+     * @param task tâche à exécuter
+     */
+    private static void invokeAndWait(Runnable task) {
+        try {
+            SwingUtilities.invokeAndWait(task);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (InvocationTargetException ex) {
+            ex.getCause().printStackTrace();
+        }
+    }
+    
+    /**
+     * Commence l'enregistrement de la trajectoire du graphe de travail, à partir de sa disposition actuelle
+     */
+    private static void startTrajectoryRecording() {
+        graph.setTrajectoryRecorder(new TrajectoryRecorder(graph, TRAJECTORY_KEYFRAME_INTERVAL, TRAJECTORY_QUANTUM,
+                TRAJECTORY_MAX_BYTES));
+    }
+    
+    /**
+     * @return le cache des dispositions, dans {@link #LAYOUT_CACHE_DIRECTORY}
+     */
+    public static LayoutCache getLayoutCache() {
+        return new LayoutCache(new java.io.File(LAYOUT_CACHE_DIRECTORY), LAYOUT_CACHE_MAX_BYTES);
+    }
+    
     /**
      * Crée l'interface graphique et l'affiche
      * <p>
@@ -141,6 +402,8 @@ public class GraphDrawerApp {
          */
         final GraphPanel graphPanel = new GraphPanel(graph);
         contenu.add(graphPanel);  // ajoute l'instance créée comme enfant du contenu
+        final PerformanceOverlay overlay = new PerformanceOverlay();
+        graphPanel.setOverlay(overlay);
         f.pack(); // la taille de la fenêtre s'adapte au 'panel'
         // on ajoutera de la place pour les boutons plus tard
         f.setLayout(null); // le layout manager va éviter les superpositions d'objets, etc.
@@ -155,7 +418,9 @@ public class GraphDrawerApp {
         resetButton.setBounds(PANEL_SIZE, 0, 100, 50);          // les boutons mesurent 100*50, à droite de la zone de dessin
         resetButton.addActionListener(new ActionListener() {    // sur appui du bouton...
             public void actionPerformed(ActionEvent event) {    // on déclenche l'action...
+                if (isBalancing()) return;                      // (pas pendant un équilibrage)
                 graph.reset();                                  // réinitialiser le modèle graphe
+                if (RECORD_TRAJECTORY) startTrajectoryRecording(); // et sa trajectoire
                 graphPanel.repaint();                           // rafraîchir la vue pour qu'on le voie
                 System.out.println("Graphe réinitialisé.");
            }
@@ -166,39 +431,110 @@ public class GraphDrawerApp {
          * Création du bouton Balance (équilibrage visible du graphe)
          * 
          */
-        JButton balanceButton = new JButton("Balance");
+        final JButton balanceButton = new JButton("Balance");
         balanceButton.setBounds(PANEL_SIZE, 50, 100, 50);              // les boutons sont adjacents, donc 50 de plus en ordonnée
         balanceButton.addActionListener(new ActionListener() {
             
             
             public void actionPerformed(ActionEvent event) {
+                
+                // second appui pendant l'équilibrage : annulation (l'itération en cours s'arrête au noeud suivant)
+                if (runningBudget != null) {
+                    runningBudget.cancel();
+                    return;
+                }
 
                 /* pour 400 itérations maximum, tant que l'énergie cinétique est au-dessus du seuil
                  * par expérience, avec nos paramètres, 400 itérations suffisent à atteindre le seuil d'Ec
                  * si le timestep s'éloigne de la valeur par défaut 0.25, on arrange i en conséquence
                  * avec tout de même une limite absolue à 1000
                  * 
+                 * l'équilibrage tourne dans son propre thread pour que l'interface reste réactive
+                 * (et que le bouton Cancel puisse être appuyé)
                  */
-                int i;
-                for (i = 0; i < Math.min(100 / timestep, 1000) && graph.getEk() >= Graph.ENERGY_THRESHOLD; i++) {
-                    if (DEBUG_MODE) System.out.println("itération n°" + i + " :");
-                    // on exécute une itération de l'algorithme
-                    graph.iterateBalance(timestep,damping);
-                    // on redessine immédiatement le graphe pour voir son évolution
-                    graphPanel.paintImmediately(0, 0, PANEL_SIZE, PANEL_SIZE);
-                }
-                System.out.println("Arret de l'algorithme sur : " + (graph.getEk() < Graph.ENERGY_THRESHOLD ? "seuil energie atteint (" + i + " iterations)" : "max iterations atteint (" + i + ")"));
+                final LayoutBudget budget = getBalanceBudget();
+                runningBudget = budget;
+                balanceButton.setText("Cancel");
+                Thread balanceThread = new Thread(new Runnable() {
+                    public void run() {
+                        BalanceReport report = graph.balance(timestep, damping, getMaxIterations(), budget, new BalanceListener() {
+                            public void iterationDone(final int iteration, final long nanos, final double kineticEnergy) {
+                                // on redessine le graphe pour voir son évolution, en attendant la fin du dessin
+                                // (le graphe ne bouge pas pendant ce temps)
+                                invokeAndWait(new Runnable() {
+                                    public void run() {
+                                        if (DEBUG_MODE) System.out.println("itération n°" + iteration + " :");
+                                        if (overlay.isActive()) overlay.iterationDone(nanos, kineticEnergy);
+                                        System.out.println("Ec totale : " + kineticEnergy);
+                                        graphPanel.paintImmediately(0, 0, PANEL_SIZE, PANEL_SIZE);
+                                    }
+                                });
+                            }
+                        });
+                        finishBalance(report);
+                        
+                        SwingUtilities.invokeLater(new Runnable() {
+                            public void run() {
+                                graphPanel.paintImmediately(0, 0, PANEL_SIZE, PANEL_SIZE);
+                                runningBudget = null;
+                                balanceButton.setText("Balance");
+                            }
+                        });
+                    }
+                }, "balance");
+                balanceThread.setDaemon(true);
+                balanceThread.start();
                 
            }
         });
         contenu.add(balanceButton);
         
+        /*
+         * Création du bouton Replay (relecture de la trajectoire enregistrée, sans recalcul)
+         * 
+         */
+        JButton replayButton = new JButton("Replay");
+        replayButton.setBounds(PANEL_SIZE, 100, 100, 50);
+        replayButton.setEnabled(RECORD_TRAJECTORY);
+        replayButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent event) {
+                TrajectoryRecorder recorder = graph.getTrajectoryRecorder();
+                if (recorder == null || isBalancing()) return;
+                
+                // garder les positions courantes pour les retrouver après la relecture (les vitesses repartent de zéro)
+                ArrayList<Node> nodes = graph.getNodes();
+                double[] x = new double[nodes.size()], y = new double[nodes.size()];
+                for (int i = 0; i < nodes.size(); i++) {
+                    x[i] = nodes.get(i).getPosition().getX();
+                    y[i] = nodes.get(i).getPosition().getY();
+                }
+                double kineticEnergy = graph.getEk();
+                
+                try {
+                    TrajectoryPlayer player = recorder.getPlayer();
+                    int step = Math.max(1, REPLAY_FRAMES_PER_PAINT);
+                    for (int frame = player.getFirstFrame(); frame < player.getEndFrame(); frame += step) {
+                        player.apply(graph, frame);
+                        graphPanel.paintImmediately(0, 0, PANEL_SIZE, PANEL_SIZE);
+                    }
+                    System.out.println("Trajectoire rejouée : images " + player.getFirstFrame() + " à " + (player.getEndFrame() - 1)
+                            + " (" + recorder.getNbBytes() / 1024 + " Ko)");
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+                
+                graph.setPositions(x, y, kineticEnergy);
+                graphPanel.repaint();
+           }
+        });
+        contenu.add(replayButton);
+        
         /*
          * Création du bouton Quit
          * 
          */
         JButton quitButton = new JButton("Quit");
-        quitButton.setBounds(PANEL_SIZE, 100, 100, 50);
+        quitButton.setBounds(PANEL_SIZE, 150, 100, 50);
         quitButton.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent event) {
                 System.exit(0); // sortie sans erreur du programme
@@ -206,6 +542,22 @@ public class GraphDrawerApp {
         });
         contenu.add(quitButton);
         
+        /*
+         * Création du bouton Perf (affiche ou cache le panneau de mesures, placé sous les boutons)
+         * 
+         */
+        JButton perfButton = new JButton("Perf");
+        perfButton.setBounds(PANEL_SIZE, 200, 100, 50);
+        perfButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent event) {
+                overlay.setVisible(!overlay.isVisible());
+           }
+        });
+        contenu.add(perfButton);
+        overlay.setBounds(PANEL_SIZE, 250, 100, PANEL_SIZE - 250);
+        overlay.setVisible(SHOW_PERFORMANCE_OVERLAY);
+        contenu.add(overlay);
+        
         f.setSize(f.getWidth() + 100, f.getHeight());       // on ajoute 100px horizontaux pour les boutons
         f.setResizable(false);                              // la fenêtre ne sera pas redimensionnable
         f.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);   // la fenêtre se ferme en cliquant sur la croix
@@ -225,27 +577,110 @@ public class GraphDrawerApp {
 class GraphPanel extends JPanel {
     
     /**
-     * rayon de référence pour dessiner un noeud (sera mis à l'échelle)
+     * graphe de travail
      */
-    private static final int RADIUS = 8;
+    private Graph graph;
     
     /**
-     * marge entre le graphe représenté et les bords ou les boutons
+     * cadrage du graphe dans la zone de dessin (voir {@link Framing})
      */
-    private static final double MARGIN = 10;
+    private Framing framing;
     
     /**
-     * graphe de travail
+     * noeud en cours de glisser-déposer, ou null
      */
-    private Graph graph;
+    private Node draggedNode;
+    
+    /**
+     * vrai si le noeud en cours de glisser-déposer était épinglé avant d'être saisi
+     */
+    private boolean draggedNodeWasPinned;
+    
+    /**
+     * panneau de mesures informé de chaque image, ou null
+     */
+    private PerformanceOverlay overlay;
     
     /**
      * Construit une instance de GraphPanel en y associant le graphe <i>graph</i>.
+     * <p>
+     * A la souris, un clic gauche maintenu déplace un noeud (son voisinage se réarrange en temps réel)
+     * et un clic droit épingle ou libère un noeud.
+     * </p>
      * @param graph le graphe de travail
      * @see Graph
      */
     public GraphPanel(Graph graph) {
         this.graph = graph;
+        this.framing = new Framing(graph, GraphDrawerApp.PANEL_SIZE);
+        MouseAdapter mouseHandler = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent event) {
+                pressNode(event);
+            }
+            @Override
+            public void mouseDragged(MouseEvent event) {
+                dragNode(event);
+            }
+            @Override
+            public void mouseReleased(MouseEvent event) {
+                releaseNode();
+            }
+        };
+        addMouseListener(mouseHandler);
+        addMouseMotionListener(mouseHandler);
+    }
+    
+    /**
+     * @param overlay panneau de mesures à informer de chaque image (durée du dessin, taille du graphe)
+     */
+    void setOverlay(PerformanceOverlay overlay) {
+        this.overlay = overlay;
+    }
+    
+    /**
+     * Epingle ou libère le noeud sous la souris (clic droit), ou commence à le déplacer (clic gauche)
+     * @param event évènement souris
+     */
+    private void pressNode(MouseEvent event) {
+        if (GraphDrawerApp.isBalancing()) return; // le graphe bouge dans le thread de l'équilibrage
+        double scale = framing.getFittingScale();
+        // recherche dans l'index spatial, dans le rayon du noeud dessiné
+        Node node = graph.getSpatialIndex().nearest(framing.getModelX(event.getX(), scale),
+                framing.getModelY(event.getY(), scale), framing.getScaledRadius(scale) / scale);
+        if (node == null) return;
+        if (SwingUtilities.isRightMouseButton(event)) {
+            graph.setPinned(node, !node.isPinned());
+            repaint();
+        } else {
+            draggedNode = node;
+            draggedNodeWasPinned = node.isPinned();
+            graph.setPinned(node, true); // le noeud saisi ne bouge plus que par la souris
+            framing.freeze();
+        }
+    }
+    
+    /**
+     * Amène le noeud saisi sous la souris et réarrange son voisinage
+     * @param event évènement souris
+     */
+    private void dragNode(MouseEvent event) {
+        if (draggedNode == null) return;
+        double scale = framing.getFittingScale();
+        graph.moveNode(draggedNode, framing.getModelX(event.getX(), scale), framing.getModelY(event.getY(), scale));
+        graph.relaxAround(draggedNode, GraphDrawerApp.DRAG_RELAXATION_HOPS, GraphDrawerApp.timestep, GraphDrawerApp.damping);
+        repaint();
+    }
+    
+    /**
+     * Lâche le noeud saisi, qui retrouve son épinglage d'avant
+     */
+    private void releaseNode() {
+        if (draggedNode == null) return;
+        graph.setPinned(draggedNode, draggedNodeWasPinned);
+        draggedNode = null;
+        framing.unfreeze();
+        repaint();
     }
     
     /**
@@ -267,6 +702,12 @@ class GraphPanel extends JPanel {
     @Override
     public void paintComponent(Graphics g) {
         
+        // évènement JFR couvrant le dessin de l'image
+        PaintEvent event = new PaintEvent();
+        event.begin();
+        int nbEdges = 0;
+        long start = overlay != null && overlay.isActive() ? System.nanoTime() : 0;
+        
         /* on laisse l'UI delegate peindre d'abord, sinon des problèmes graphiques surviennent
          * dans notre cas la zone de dessin de sera pas effacée avec de redessiner,
          * faisant apparaître une superposition de graphes...
@@ -283,24 +724,26 @@ class GraphPanel extends JPanel {
          * on parlera de dessin "cadré"
          */
         // on calcule le rapport de zoom 'scale'
-        double scale = getFittingScale();
-        // mise à l'échelle
-        int scaledRadius = (int) Math.floor(RADIUS * scale);
-        if (scaledRadius < 2) scaledRadius = 2; // rayon minimum de 2 pour avoir des noeuds visibles
+        double scale = framing.getFittingScale();
+        // mise à l'échelle (rayon minimum de 2 pour avoir des noeuds visibles)
+        int scaledRadius = framing.getScaledRadius(scale);
         
         // on récupère la liste des noeuds du graphe de travail
         ArrayList<Node> nodes = graph.getNodes();
         
         // allocations
         Node currentNode, currentNeighbour;
+        // listes compressées : on décode les voisins avec un curseur, sans copie de liste par noeud
+        CompressedAdjacency adjacency = graph.getCompressedAdjacency();
+        CompressedAdjacency.Cursor cursor = adjacency != null ? adjacency.new Cursor() : null;
         
         // pour chaque noeud...
         for (Iterator<Node> nodeIter = nodes.listIterator(); nodeIter.hasNext(); ) {
             currentNode = nodeIter.next();
             
             // calcule la position du noeud à dessiner pour le dessin cadré
-            int currentFittingX = getFittingDrawingX(currentNode.getPosition().getX(), scale);
-            int currentFittingY = getFittingDrawingY(currentNode.getPosition().getY(), scale);
+            int currentFittingX = framing.getFittingDrawingX(currentNode.getPosition().getX(), scale);
+            int currentFittingY = framing.getFittingDrawingY(currentNode.getPosition().getY(), scale);
             
             g.setColor(Color.BLACK); // couleur des arêtes
             
@@ -310,13 +753,24 @@ class GraphPanel extends JPanel {
              * il précède celui des noeuds car les arêtes doivent passer "en-dessous" sur le dessin
              */
             // pour chacun de ses voisins
-            for (Iterator<Node> neighbourIter = currentNode.getNeighbours().listIterator(); neighbourIter.hasNext(); ) {
+            if (cursor != null) {
+                for (cursor.moveTo(currentNode.getIndex()); cursor.hasNext(); ) {
+                    int neighbourIndex = cursor.next();
+                    // arêtes vers les voisins d'indices plus élevés seulement, comme ci-dessous
+                    if (neighbourIndex > currentNode.getIndex()) {
+                        currentNeighbour = nodes.get(neighbourIndex);
+                        g.drawLine(currentFittingX, currentFittingY, framing.getFittingDrawingX(currentNeighbour.getPosition().getX(), scale), framing.getFittingDrawingY(currentNeighbour.getPosition().getY(), scale));
+                        nbEdges++;
+                    }
+                }
+            } else for (Iterator<Node> neighbourIter = currentNode.getNeighbours().listIterator(); neighbourIter.hasNext(); ) {
             currentNeighbour = neighbourIter.next();
             
                 // on ne doit dessiner les arêtes qu'une fois ; on choisit celle vers les voisins d'indices plus élevés
                 if (currentNeighbour.getIndex() > currentNode.getIndex()) {
                     // dessin de l'arête entre le noeud et le voisin courant en cadré
-                    g.drawLine(currentFittingX, currentFittingY, getFittingDrawingX(currentNeighbour.getPosition().getX(), scale), getFittingDrawingY(currentNeighbour.getPosition().getY(), scale));
+                    g.drawLine(currentFittingX, currentFittingY, framing.getFittingDrawingX(currentNeighbour.getPosition().getX(), scale), framing.getFittingDrawingY(currentNeighbour.getPosition().getY(), scale));
+                    nbEdges++;
                 }
                 
             } // fin "pour chaque voisin"
@@ -324,8 +778,8 @@ class GraphPanel extends JPanel {
             /*
              * dessin du noeud courant
              */
-            // couleur bleue pour l'intérieur d'un noeud
-            g.setColor(Color.CYAN);
+            // couleur bleue pour l'intérieur d'un noeud, orange s'il est épinglé
+            g.setColor(currentNode.isPinned() ? Color.ORANGE : Color.CYAN);
             // on dessine un ovale de mêmes dimensions x et y = un rond
             g.fillOval(currentFittingX - scaledRadius, currentFittingY - scaledRadius, 2*scaledRadius, 2*scaledRadius);
             // couleur noire pour le contour d'un noeud
@@ -335,52 +789,19 @@ class GraphPanel extends JPanel {
             // couleur rouge pour les numéros
             g.setColor(Color.RED);
             // on écrit le numéro du noeud si possible à l'intérieur, et à l'extérieur si le noeud est trop petit (trop de "dézoom")
-            g.drawString("" + currentNode.getIndex(), currentFittingX + (scaledRadius > 6 ? - 6 : + 6), currentFittingY + 3);
+            g.drawString("" + currentNode.getOriginalIndex(), currentFittingX + (scaledRadius > 6 ? - 6 : + 6), currentFittingY + 3);
             
             
         } // fin pour chaque noeud
         
-    }
-    
-    /**
-     * 
-     * @return le facteur d'échelle pour un dessin cadré
-     */
-    private double getFittingScale() {
-        return (GraphDrawerApp.PANEL_SIZE - 2*MARGIN) /
-            (Math.max(graph.getHorizontalUpperBound() - graph.getHorizontalLowerBound(),
-            graph.getVerticalUpperBound() - graph.getVerticalLowerBound()) + 2*RADIUS);
-    }
-    
-    /**
-     * 
-     * @param x l'abscisse du noeud dans le modèle de graphe
-     * @param scale le facteur d'échelle
-     * @return l'abscisse cadrée du noeud
-     */
-    private int getFittingDrawingX(double x, double scale) {
-        return getFittingDrawingCoord(x, graph.getHorizontalLowerBound(), scale);
-    }
-    
-    /**
-     * 
-     * @param y l'ordonnée du noeud dans le modèle de graphe
-     * @param scale le facteur d'échelle
-     * @return l'ordonnée cadrée du noeud
-     */
-    private int getFittingDrawingY(double y, double scale) {
-        return getFittingDrawingCoord(y, graph.getVerticalLowerBound(), scale);
-    }
-    
-    /**
-     * Cette fonction est une aide pour {@link #getFittingDrawingX getFittingDrawingX} et {@link #getFittingDrawingY getFittingDrawingY}
-     * @param coord x ou y du noeud
-     * @param coord0 position de référence, frontière du haut ou de gauche de la vue du graphe
-     * @param scale facteur d'échelle
-     * @return la coordonnée cadrée du noeud
-     */
-    private int getFittingDrawingCoord(double coord, double coord0, double scale) {
-        return (int) Math.floor( MARGIN +  scale * (coord - (coord0 - RADIUS)) );
+        event.end();
+        if (event.shouldCommit()) {
+            event.nbNodes = nodes.size();
+            event.nbEdges = nbEdges;
+            event.commit();
+        }
+        if (start != 0) overlay.frameDone(System.nanoTime() - start, nodes.size(), nbEdges);
+        
     }
     
 }
\ No newline at end of file
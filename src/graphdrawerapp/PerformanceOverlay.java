@@ -0,0 +1,217 @@
+package graphdrawerapp;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics;
+import javax.swing.JPanel;
+import models.Graph;
+
+/**
+ * Panneau de mesures affiché à côté des boutons pendant l'équilibrage
+ * <p>
+ * Montre le nombre d'itérations par seconde, la durée d'une itération partagée entre le calcul des forces
+ * et le dessin, le nombre d'images par seconde, l'évolution récente de l'énergie cinétique (échelle
+ * logarithmique, seuil {@link Graph#ENERGY_THRESHOLD} en pointillés) et la taille du graphe.
+ * </p>
+ * <p>
+ * Les mesures ne sont prises que lorsque le panneau est visible ({@link #isActive()}) : caché, il ne coûte
+ * qu'un test par itération et par image. Elles sont rangées dans des tableaux circulaires de taille fixe, et
+ * le panneau n'est redessiné qu'au plus tous les {@link #REFRESH_PERIOD_NANOS} pour ne pas ralentir ce qu'il
+ * mesure.
+ * </p>
+ */
+class PerformanceOverlay extends JPanel {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * nombre de mesures conservées
+     */
+    private static final int HISTORY = 128;
+
+    /**
+     * durée de la fenêtre des débits (itérations et images par seconde), en nanosecondes
+     */
+    private static final long RATE_WINDOW_NANOS = 1000000000L;
+
+    /**
+     * période minimale entre deux rafraîchissements du panneau, en nanosecondes
+     */
+    private static final long REFRESH_PERIOD_NANOS = 100000000L;
+
+    /**
+     * poids d'une nouvelle mesure dans les moyennes glissantes des durées
+     */
+    private static final double SMOOTHING = 0.1;
+
+    /**
+     * hauteur de la courbe d'énergie, en pixels
+     */
+    private static final int SPARKLINE_HEIGHT = 50;
+
+    /**
+     * dates de fin des dernières itérations et des dernières images, en nanosecondes
+     */
+    private long[] iterationTimes = new long[HISTORY];
+    private long[] frameTimes = new long[HISTORY];
+    private int nbIterations, nbFrames;
+
+    /**
+     * énergie cinétique après les dernières itérations
+     */
+    private double[] energies = new double[HISTORY];
+
+    /**
+     * moyennes glissantes des durées de calcul des forces et de dessin, en nanosecondes
+     */
+    private double forceNanos, renderNanos;
+
+    /**
+     * taille du graphe dessiné
+     */
+    private int nbNodes, nbEdges;
+
+    /**
+     * date du dernier rafraîchissement du panneau
+     */
+    private long lastRefresh;
+
+    PerformanceOverlay() {
+        setBackground(Color.WHITE);
+        setFont(new Font(Font.MONOSPACED, Font.PLAIN, 10));
+        setVisible(false);
+    }
+
+    /**
+     * @return vrai si les mesures doivent être prises (panneau visible)
+     */
+    boolean isActive() {
+        return isVisible();
+    }
+
+    /**
+     * Compte une itération d'équilibrage
+     * @param nanos durée du calcul des forces
+     * @param kineticEnergy énergie cinétique atteinte
+     */
+    void iterationDone(long nanos, double kineticEnergy) {
+        int slot = nbIterations % HISTORY;
+        iterationTimes[slot] = System.nanoTime();
+        energies[slot] = kineticEnergy;
+        forceNanos = nbIterations == 0 ? nanos : forceNanos + SMOOTHING * (nanos - forceNanos);
+        nbIterations++;
+        refresh();
+    }
+
+    /**
+     * Compte une image du graphe
+     * @param nanos durée du dessin
+     * @param nbNodes nombre de noeuds dessinés
+     * @param nbEdges nombre d'arêtes dessinées
+     */
+    void frameDone(long nanos, int nbNodes, int nbEdges) {
+        frameTimes[nbFrames % HISTORY] = System.nanoTime();
+        renderNanos = nbFrames == 0 ? nanos : renderNanos + SMOOTHING * (nanos - renderNanos);
+        nbFrames++;
+        this.nbNodes = nbNodes;
+        this.nbEdges = nbEdges;
+    }
+
+    /**
+     * Redessine le panneau tout de suite (l'équilibrage occupe le thread de l'interface), sauf s'il l'a été
+     * il y a moins de {@link #REFRESH_PERIOD_NANOS}
+     */
+    private void refresh() {
+        long now = System.nanoTime();
+        if (now - lastRefresh < REFRESH_PERIOD_NANOS) return;
+        lastRefresh = now;
+        paintImmediately(0, 0, getWidth(), getHeight());
+    }
+
+    /**
+     * @param times dates circulaires
+     * @param count nombre de dates enregistrées
+     * @return le nombre de dates par seconde sur la dernière fenêtre (0 si la dernière est trop ancienne)
+     */
+    private static double rate(long[] times, int count) {
+        if (count < 2) return 0;
+        long now = System.nanoTime();
+        long last = times[(count - 1) % HISTORY];
+        if (now - last > RATE_WINDOW_NANOS) return 0;
+        int n = 1;
+        long first = last;
+        while (n < Math.min(count, HISTORY)) {
+            long time = times[(count - 1 - n) % HISTORY];
+            if (now - time > RATE_WINDOW_NANOS) break;
+            first = time;
+            n++;
+        }
+        return n < 2 || last == first ? 0 : (n - 1) * 1e9 / (last - first);
+    }
+
+    /**
+     * Dessine les mesures et la courbe d'énergie
+     * @param g objet graphique
+     */
+    @Override
+    public void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        int lineHeight = g.getFontMetrics().getHeight();
+        int y = lineHeight;
+        g.setColor(Color.BLACK);
+        g.drawString(String.format("it/s %.1f", rate(iterationTimes, nbIterations)), 4, y);
+        g.drawString(String.format("forces %.2f ms", forceNanos / 1e6), 4, y += lineHeight);
+        g.drawString(String.format("dessin %.2f ms", renderNanos / 1e6), 4, y += lineHeight);
+        g.drawString(String.format("img/s %.1f", rate(frameTimes, nbFrames)), 4, y += lineHeight);
+        g.drawString(String.format("n %d  m %d", nbNodes, nbEdges), 4, y += lineHeight);
+        double energy = nbIterations > 0 ? energies[(nbIterations - 1) % HISTORY] : Double.NaN;
+        g.drawString(String.format("Ec %.3g", energy), 4, y += lineHeight);
+        paintSparkline(g, 4, y + 4, getWidth() - 8, SPARKLINE_HEIGHT);
+    }
+
+    /**
+     * Dessine l'énergie des dernières itérations en échelle logarithmique
+     * @param g objet graphique
+     * @param left abscisse du cadre
+     * @param top ordonnée du cadre
+     * @param width largeur du cadre
+     * @param height hauteur du cadre
+     */
+    private void paintSparkline(Graphics g, int left, int top, int width, int height) {
+        g.setColor(Color.LIGHT_GRAY);
+        g.drawRect(left, top, width, height);
+        int count = Math.min(nbIterations, HISTORY);
+        if (count == 0) return;
+
+        // bornes de l'échelle : énergies affichées et seuil
+        double threshold = Math.log10(Graph.ENERGY_THRESHOLD);
+        double min = threshold, max = threshold;
+        for (int i = 0; i < count; i++) {
+            double value = Math.log10(energies[(nbIterations - 1 - i) % HISTORY]);
+            if (value != value || Double.isInfinite(value)) continue;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        double range = Math.max(max - min, 1e-9);
+
+        int thresholdY = top + height - (int) Math.round((threshold - min) / range * height);
+        g.setColor(Color.RED);
+        for (int x = left; x < left + width; x += 4) g.drawLine(x, thresholdY, x + 1, thresholdY);
+
+        g.setColor(Color.BLUE);
+        int previousX = -1, previousY = 0;
+        for (int i = count - 1; i >= 0; i--) {
+            double value = Math.log10(energies[(nbIterations - 1 - i) % HISTORY]);
+            if (value != value || Double.isInfinite(value)) {
+                previousX = -1;
+                continue;
+            }
+            int x = left + width - (int) Math.round((double) i * width / (HISTORY - 1));
+            int y = top + height - (int) Math.round((value - min) / range * height);
+            if (previousX >= 0) g.drawLine(previousX, previousY, x, y);
+            previousX = x;
+            previousY = y;
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+package graphdrawerapp;
+
+import java.util.ArrayList;
+import java.util.regex.Pattern;
+import models.Graph;
+import models.Node;
+
+/**
+ * Comparaison des équilibrages en double et en simple précision
+ * <p>
+ * Le graphe est équilibré deux fois à partir des mêmes positions aléatoires, une fois en
+ * {@code double} et une fois en {@code float} (voir {@link Graph#SINGLE_PRECISION}).
+ * On affiche le nombre d'itérations de chacun et l'écart entre les deux dispositions finales,
+ * rapporté à la taille du dessin : un écart de l'ordre du pixel sur un dessin de
+ * {@link GraphDrawerApp#PANEL_SIZE} pixels est invisible.
+ * </p>
+ */
+public class PrecisionCheck {
+
+    /**
+     * @param args "nom_du_fichier" "initiale modèle" (comme {@link GraphDrawerApp})
+     */
+    public static void main(String[] args) {
+
+        String fileName = args.length >= 1 && Pattern.matches("\\w{1,256}", args[0]) ? args[0] : "graph";
+        char modelLetter = args.length >= 2 && args[1].length() >= 1 ? args[1].charAt(0) : 'f';
+
+        Graph graph = new Graph("data/" + fileName + ".txt", modelLetter);
+        ArrayList<Node> nodes = graph.getNodes();
+        int nbNodes = nodes.size();
+
+        // positions de départ communes
+        double[] startX = new double[nbNodes];
+        double[] startY = new double[nbNodes];
+        for (int i = 0; i < nbNodes; i++) {
+            startX[i] = nodes.get(i).getPosition().getX();
+            startY[i] = nodes.get(i).getPosition().getY();
+        }
+
+        // équilibrage en double précision
+        Graph.SINGLE_PRECISION = false;
+        int doubleIterations = balance(graph);
+        double[] doubleX = new double[nbNodes];
+        double[] doubleY = new double[nbNodes];
+        for (int i = 0; i < nbNodes; i++) {
+            doubleX[i] = nodes.get(i).getPosition().getX();
+            doubleY[i] = nodes.get(i).getPosition().getY();
+        }
+        double span = Math.max(graph.getHorizontalUpperBound() - graph.getHorizontalLowerBound(),
+                graph.getVerticalUpperBound() - graph.getVerticalLowerBound());
+
+        // équilibrage en simple précision depuis les mêmes positions
+        graph.setPositions(startX, startY);
+        Graph.SINGLE_PRECISION = true;
+        int floatIterations = balance(graph);
+
+        // écarts entre les deux dispositions
+        double sumSq = 0, max = 0;
+        for (int i = 0; i < nbNodes; i++) {
+            double dx = nodes.get(i).getPosition().getX() - doubleX[i];
+            double dy = nodes.get(i).getPosition().getY() - doubleY[i];
+            sumSq += dx*dx + dy*dy;
+            max = Math.max(max, Math.sqrt(dx*dx + dy*dy));
+        }
+        double rms = Math.sqrt(sumSq / nbNodes);
+
+        System.out.println("Itérations en double précision : " + doubleIterations);
+        System.out.println("Itérations en simple précision : " + floatIterations);
+        System.out.println("Ecart quadratique moyen : " + rms + " (" + (rms / span * GraphDrawerApp.PANEL_SIZE) + " pixels)");
+        System.out.println("Ecart maximal : " + max + " (" + (max / span * GraphDrawerApp.PANEL_SIZE) + " pixels)");
+
+    }
+
+    /**
+     * Equilibre le graphe comme le bouton Balance
+     * @param graph le graphe à équilibrer
+     * @return le nombre d'itérations effectuées
+     */
+    private static int balance(Graph graph) {
+        int i;
+        for (i = 0; i < GraphDrawerApp.getMaxIterations() && graph.getEk() >= Graph.ENERGY_THRESHOLD; i++) {
+            graph.iterateBalance(GraphDrawerApp.timestep, GraphDrawerApp.damping);
+        }
+        return i;
+    }
+
+}
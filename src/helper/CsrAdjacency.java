@@ -0,0 +1,68 @@
+package helper;
+
+/**
+ * Listes de voisins d'un fichier de graphe, rangées dans deux tableaux contigus (format CSR)
+ * <p>
+ * C'est la même information que la liste profonde de {@link Parser#parseFile} : la liste de la
+ * ligne du noeud i est {@code targets[lineStart[i]]} à {@code targets[lineStart[i+1]-1]}. Chaque
+ * arête n'y figure donc qu'une fois, sur la ligne d'une de ses extrémités. Les noeuds dont la ligne
+ * manque en fin de fichier (i >= {@link #getNbLines()}) n'ont pas de liste.
+ * </p>
+ */
+public class CsrAdjacency {
+
+    /**
+     * nombre de noeuds annoncé en tête du fichier
+     */
+    private int nbNodes;
+
+    /**
+     * début de la liste de chaque ligne dans {@link #targets} (une case de plus que de lignes)
+     */
+    private int[] lineStart;
+
+    /**
+     * voisins cités, ligne après ligne
+     */
+    private int[] targets;
+
+    /**
+     * @param nbNodes nombre de noeuds
+     * @param lineStart début de la liste de chaque ligne, puis nombre total de voisins cités
+     * @param targets voisins cités, ligne après ligne
+     */
+    public CsrAdjacency(int nbNodes, int[] lineStart, int[] targets) {
+        this.nbNodes = nbNodes;
+        this.lineStart = lineStart;
+        this.targets = targets;
+    }
+
+    /**
+     * @return le nombre de noeuds
+     */
+    public int getNbNodes() {
+        return nbNodes;
+    }
+
+    /**
+     * @return le nombre de lignes de voisins présentes dans le fichier (au plus le nombre de noeuds)
+     */
+    public int getNbLines() {
+        return lineStart.length - 1;
+    }
+
+    /**
+     * @return le début de la liste de chaque ligne dans {@link #getTargets()}, puis le nombre total de voisins cités
+     */
+    public int[] getLineStart() {
+        return lineStart;
+    }
+
+    /**
+     * @return les voisins cités, ligne après ligne
+     */
+    public int[] getTargets() {
+        return targets;
+    }
+
+}
@@ -0,0 +1,27 @@
+package helper;
+
+/**
+ * Modélisateur de forces en simple précision
+ * <p>
+ * Version {@code float} de {@link ForceModelizer}, utilisée par le mode d'équilibrage
+ * en simple précision : les positions tiennent alors deux fois plus de noeuds par ligne
+ * de cache, ce qui compte pour la boucle de répulsion des gros graphes.
+ * </p>
+ */
+public interface FloatForceModelizer {
+
+    /**
+     * Calcule la valeur de la force d'attraction du modèle en fonction de la distance <i>dist</i>
+     * @param dist Distance entre les deux noeuds en interaction considérés
+     * @return La valeur de la force d'attraction entre les deux noeuds
+     */
+    public float calculateAttrForce(float dist);
+
+    /**
+     * Calcule la valeur de la force de répulsion du modèle en fonction de la distance <i>dist</i>
+     * @param dist Distance entre les deux noeuds en interaction considérés
+     * @return La valeur de la force de répulsion entre les deux noeuds
+     */
+    public float calculateRepulsForce(float dist);
+
+}
@@ -0,0 +1,417 @@
+package helper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index d'accès direct aux lignes d'un fichier de graphe
+ * <p>
+ * Le format texte est positionnel : la ligne i+1 contient des voisins du noeud i, et chaque arête
+ * n'est écrite que sur la ligne d'une de ses extrémités. Pour explorer le voisinage d'un noeud
+ * sans lire tout le fichier, l'index (fichier {@code <fichier>.idx}, construit en une seule
+ * lecture du texte) contient :
+ * </p>
+ * <ul>
+ * <li>la position en octets de la ligne de chaque noeud ;</li>
+ * <li>les "voisins inverses" de chaque noeud, i.e. les noeuds dont la ligne le cite.</li>
+ * </ul>
+ * <p>
+ * L'extraction d'un voisinage à k sauts ne lit alors que les lignes des noeuds concernés.
+ * La construction n'utilise en mémoire que des tableaux proportionnels au nombre de noeuds ;
+ * les arêtes transitent par un fichier temporaire puis sont rangées dans l'index projeté en mémoire.
+ * </p>
+ * <p>
+ * Organisation du fichier d'index : en-tête ({@link #MAGIC}, taille et date du fichier source,
+ * nombre de noeuds n, nombre de voisins inverses m), puis n+1 positions de lignes (long),
+ * n+1 débuts de listes de voisins inverses (long) et m voisins inverses (int).
+ * </p>
+ */
+public class GraphIndex {
+
+    /**
+     * signature du fichier d'index
+     */
+    private static final int MAGIC = 0x47444958; // "GDIX"
+
+    /**
+     * taille de l'en-tête en octets
+     */
+    private static final int HEADER_SIZE = 4 + 8 + 8 + 4 + 8;
+
+    /**
+     * taille maximale d'une projection en mémoire (une projection est limitée à 2 Go)
+     */
+    private static final long MAX_MAPPING = 1L << 30;
+
+    /**
+     * taille des tampons de lecture et d'écriture
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * fichier de graphe au format texte
+     */
+    private RandomAccessFile source;
+
+    /**
+     * fichier d'index ouvert en lecture
+     */
+    private FileChannel index;
+
+    /**
+     * nombre de noeuds du graphe
+     */
+    private int nbNodes;
+
+    /**
+     * Sous-graphe extrait : liste profonde au format de {@link Parser#parseFile}
+     * et n° d'origine de ses noeuds
+     */
+    public static class Subgraph {
+
+        /**
+         * nombre de noeuds, puis voisins de chaque noeud (en rangs du sous-graphe)
+         */
+        private List<List<Integer>> lists;
+
+        /**
+         * n° dans le fichier complet de chaque noeud du sous-graphe
+         */
+        private int[] originalIndexes;
+
+        /**
+         * @param lists nombre de noeuds, puis voisins de chaque noeud
+         * @param originalIndexes n° dans le fichier complet de chaque noeud
+         */
+        Subgraph(List<List<Integer>> lists, int[] originalIndexes) {
+            this.lists = lists;
+            this.originalIndexes = originalIndexes;
+        }
+
+        /**
+         * @return la liste profonde décrivant le sous-graphe
+         */
+        public List<List<Integer>> getLists() {
+            return lists;
+        }
+
+        /**
+         * @return les n° d'origine des noeuds du sous-graphe
+         */
+        public int[] getOriginalIndexes() {
+            return originalIndexes;
+        }
+
+    }
+
+    /**
+     * Ouvre l'index du fichier <i>filePath</i>, en le (re)construisant s'il manque
+     * ou si le fichier source a changé depuis
+     * @param filePath chemin du fichier de graphe
+     * @throws IOException en cas d'erreur de lecture ou d'écriture
+     */
+    public GraphIndex(String filePath) throws IOException {
+        File sourceFile = new File(filePath);
+        File indexFile = new File(filePath + ".idx");
+        if (!isUpToDate(sourceFile, indexFile)) build(sourceFile, indexFile);
+        source = new RandomAccessFile(sourceFile, "r");
+        index = new RandomAccessFile(indexFile, "r").getChannel();
+        nbNodes = readBuffer(4 + 8 + 8, 4).getInt();
+    }
+
+    /**
+     * Ferme les fichiers ouverts
+     * @throws IOException en cas d'erreur
+     */
+    public void close() throws IOException {
+        source.close();
+        index.close();
+    }
+
+    /**
+     * @return le nombre de noeuds du graphe complet
+     */
+    public int getNbNodes() {
+        return nbNodes;
+    }
+
+    /**
+     * @param sourceFile fichier de graphe
+     * @param indexFile fichier d'index
+     * @return vrai si l'index existe et correspond au fichier source actuel
+     * @throws IOException en cas d'erreur de lecture
+     */
+    private static boolean isUpToDate(File sourceFile, File indexFile) throws IOException {
+        if (!indexFile.exists() || indexFile.length() < HEADER_SIZE) return false;
+        DataInputStream in = new DataInputStream(new FileInputStream(indexFile));
+        try {
+            return in.readInt() == MAGIC && in.readLong() == sourceFile.length() && in.readLong() == sourceFile.lastModified();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Construit l'index en une seule lecture du fichier texte
+     * @param sourceFile fichier de graphe
+     * @param indexFile fichier d'index à écrire
+     * @throws IOException en cas d'erreur de lecture ou d'écriture
+     */
+    private static void build(File sourceFile, File indexFile) throws IOException {
+
+        File pairsFile = File.createTempFile("graphindex", ".pairs");
+        int n;
+        int[] inDegrees;
+        long nbPairs = 0;
+
+        DataOutputStream indexOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile), BUFFER_SIZE));
+        DataOutputStream pairsOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(pairsFile), BUFFER_SIZE));
+        InputStream in = new BufferedInputStream(new FileInputStream(sourceFile), BUFFER_SIZE);
+        try {
+            // en-tête provisoire (le nombre de voisins inverses n'est connu qu'à la fin)
+            indexOut.writeInt(0);
+            indexOut.writeLong(0);
+            indexOut.writeLong(0);
+            indexOut.writeInt(0);
+            indexOut.writeLong(0);
+
+            // première ligne : nombre de noeuds
+            long position = 0;
+            int c = in.read();
+            int value = 0;
+            while (c != -1 && c != '\n') {
+                if (c >= '0' && c <= '9') value = 10 * value + (c - '0');
+                c = in.read();
+                position++;
+            }
+            if (c != -1) position++;
+            n = value;
+            inDegrees = new int[n];
+
+            // lignes suivantes : on note leur position et on range chaque voisin cité
+            int line = 0;
+            while (line < n && c != -1) {
+                indexOut.writeLong(position);
+                value = -1;
+                c = in.read();
+                while (c != -1) {
+                    position++;
+                    if (c >= '0' && c <= '9') {
+                        value = (value < 0 ? 0 : 10 * value) + (c - '0');
+                    } else if (value >= 0) {
+                        // fin d'un n° de voisin : line est un voisin inverse de value
+                        writePair(pairsOut, inDegrees, value, line);
+                        value = -1;
+                    }
+                    if (c == '\n') break;
+                    c = in.read();
+                }
+                if (value >= 0) writePair(pairsOut, inDegrees, value, line); // dernière ligne sans retour à la ligne
+                line++;
+            }
+            // lignes absentes en fin de fichier : listes vides
+            for (; line <= n; line++) indexOut.writeLong(position);
+
+            // débuts des listes de voisins inverses (somme préfixe des degrés)
+            long start = 0;
+            for (int i = 0; i < n; i++) {
+                indexOut.writeLong(start);
+                start += inDegrees[i];
+            }
+            indexOut.writeLong(start);
+            nbPairs = start;
+        } finally {
+            in.close();
+            pairsOut.close();
+            indexOut.close();
+        }
+
+        // remplissage des listes de voisins inverses dans la fin du fichier d'index, projetée en mémoire
+        long reverseOffset = HEADER_SIZE + 16L * (n + 1);
+        long[] cursors = new long[n];
+        long start = 0;
+        for (int i = 0; i < n; i++) {
+            cursors[i] = start;
+            start += inDegrees[i];
+        }
+        inDegrees = null;
+
+        RandomAccessFile indexRaf = new RandomAccessFile(indexFile, "rw");
+        DataInputStream pairsIn = new DataInputStream(new BufferedInputStream(new FileInputStream(pairsFile), BUFFER_SIZE));
+        try {
+            indexRaf.setLength(reverseOffset + 4 * nbPairs);
+            FileChannel channel = indexRaf.getChannel();
+            int nbMappings = (int) ((4 * nbPairs + MAX_MAPPING - 1) / MAX_MAPPING);
+            MappedByteBuffer[] mappings = new MappedByteBuffer[nbMappings];
+            for (int i = 0; i < nbMappings; i++) {
+                long offset = i * MAX_MAPPING;
+                mappings[i] = channel.map(FileChannel.MapMode.READ_WRITE, reverseOffset + offset, Math.min(MAX_MAPPING, 4 * nbPairs - offset));
+            }
+            for (long p = 0; p < nbPairs; p++) {
+                int target = pairsIn.readInt();
+                int neighbour = pairsIn.readInt();
+                long byteOffset = 4 * cursors[target]++;
+                mappings[(int) (byteOffset / MAX_MAPPING)].putInt((int) (byteOffset % MAX_MAPPING), neighbour);
+            }
+            for (int i = 0; i < nbMappings; i++) mappings[i].force();
+
+            // en-tête définitif
+            indexRaf.seek(0);
+            indexRaf.writeInt(MAGIC);
+            indexRaf.writeLong(sourceFile.length());
+            indexRaf.writeLong(sourceFile.lastModified());
+            indexRaf.writeInt(n);
+            indexRaf.writeLong(nbPairs);
+        } finally {
+            pairsIn.close();
+            indexRaf.close();
+            pairsFile.delete();
+        }
+
+    }
+
+    /**
+     * Range dans le fichier temporaire le fait que <i>line</i> cite <i>target</i>
+     * @param pairsOut flux du fichier temporaire
+     * @param inDegrees nombre de voisins inverses de chaque noeud, mis à jour
+     * @param target n° cité sur la ligne
+     * @param line n° du noeud de la ligne
+     * @throws IOException en cas d'erreur d'écriture ou de n° hors limites
+     */
+    private static void writePair(DataOutputStream pairsOut, int[] inDegrees, int target, int line) throws IOException {
+        if (target >= inDegrees.length) throw new IOException("Noeud " + target + " inexistant cité par le noeud " + line);
+        pairsOut.writeInt(target);
+        pairsOut.writeInt(line);
+        inDegrees[target]++;
+    }
+    
+    /**
+     * Lit <i>length</i> octets de l'index à partir de <i>position</i>
+     * @param position position dans le fichier d'index
+     * @param length nombre d'octets
+     * @return un tampon prêt à être lu
+     * @throws IOException en cas d'erreur de lecture
+     */
+    private ByteBuffer readBuffer(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (index.read(buffer, position + buffer.position()) < 0) throw new IOException("Index tronqué");
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Lit les voisins du noeud <i>node</i> : ceux de sa ligne puis ses voisins inverses
+     * @param node n° du noeud
+     * @param lineOnly vrai pour ne lire que les voisins de sa ligne
+     * @return les n° des voisins, éventuellement répétés
+     * @throws IOException en cas d'erreur de lecture
+     */
+    public List<Integer> readNeighbours(int node, boolean lineOnly) throws IOException {
+
+        if (node < 0 || node >= nbNodes) throw new IllegalArgumentException("Noeud inconnu : " + node);
+
+        List<Integer> neighbours = new ArrayList<Integer>();
+
+        // ligne du noeud dans le fichier texte
+        ByteBuffer offsets = readBuffer(HEADER_SIZE + 8L * node, 16);
+        long lineStart = offsets.getLong();
+        int lineLength = (int) (offsets.getLong() - lineStart);
+        byte[] bytes = new byte[lineLength];
+        source.seek(lineStart);
+        source.readFully(bytes);
+        int value = -1;
+        for (int i = 0; i <= lineLength; i++) {
+            int c = i < lineLength ? bytes[i] : ' ';
+            if (c >= '0' && c <= '9') {
+                value = (value < 0 ? 0 : 10 * value) + (c - '0');
+            } else if (value >= 0) {
+                neighbours.add(value);
+                value = -1;
+            }
+        }
+
+        // noeuds dont la ligne cite ce noeud
+        if (!lineOnly) {
+            ByteBuffer starts = readBuffer(HEADER_SIZE + 8L * (nbNodes + 1) + 8L * node, 16);
+            long first = starts.getLong();
+            int count = (int) (starts.getLong() - first);
+            ByteBuffer reverse = readBuffer(HEADER_SIZE + 16L * (nbNodes + 1) + 4 * first, 4 * count);
+            for (int i = 0; i < count; i++) neighbours.add(reverse.getInt());
+        }
+
+        return neighbours;
+    }
+
+    /**
+     * Extrait le sous-graphe induit par les noeuds à au plus <i>hops</i> sauts des noeuds <i>seeds</i>
+     * <p>
+     * Seules les lignes de ces noeuds (et les voisins inverses des noeuds à moins de <i>hops</i> sauts)
+     * sont lues. Les noeuds du sous-graphe sont numérotés dans l'ordre de leur découverte, les graines d'abord.
+     * </p>
+     * @param seeds n° des noeuds autour desquels on extrait le voisinage
+     * @param hops nombre de sauts
+     * @return le sous-graphe, prêt à être donné au constructeur de {@code Graph}
+     * @throws IOException en cas d'erreur de lecture
+     */
+    public Subgraph extractEgoNetwork(int[] seeds, int hops) throws IOException {
+
+        // parcours en largeur limité à hops sauts ; local associe à un n° d'origine son rang local
+        Map<Integer, Integer> local = new HashMap<Integer, Integer>();
+        List<Integer> selected = new ArrayList<Integer>();
+        for (int seed : seeds) {
+            if (!local.containsKey(seed)) {
+                readNeighbours(seed, true); // vérifie que la graine existe
+                local.put(seed, selected.size());
+                selected.add(seed);
+            }
+        }
+        int frontierStart = 0;
+        for (int hop = 0; hop < hops; hop++) {
+            int frontierEnd = selected.size();
+            for (int i = frontierStart; i < frontierEnd; i++) {
+                for (int v : readNeighbours(selected.get(i), false)) {
+                    if (!local.containsKey(v)) {
+                        local.put(v, selected.size());
+                        selected.add(v);
+                    }
+                }
+            }
+            frontierStart = frontierEnd;
+        }
+
+        // arêtes induites : toute arête entre deux noeuds retenus figure sur la ligne de l'un d'eux
+        List<List<Integer>> lists = new ArrayList<List<Integer>>();
+        lists.add(new ArrayList<Integer>(Arrays.asList(selected.size())));
+        int[] originalIndexes = new int[selected.size()];
+        for (int i = 0; i < selected.size(); i++) {
+            originalIndexes[i] = selected.get(i);
+            List<Integer> localNeighbours = new ArrayList<Integer>();
+            for (int v : readNeighbours(selected.get(i), true)) {
+                Integer rank = local.get(v);
+                if (rank != null) localNeighbours.add(rank);
+            }
+            lists.add(localNeighbours);
+        }
+
+        return new Subgraph(lists, originalIndexes);
+    }
+
+}
@@ -0,0 +1,325 @@
+package helper;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import profiling.ParseEvent;
+
+/**
+ * Lecture en parallèle des gros fichiers de graphe
+ * <p>
+ * Le fichier est découpé en morceaux d'octets, chacun lu par un thread :
+ * </p>
+ * <ol>
+ * <li>un morceau commence à la première ligne qui débute dans ses octets (il saute la fin de la ligne
+ * précédente) et finit la dernière ligne commencée, même au-delà de ses octets ;</li>
+ * <li>le format étant positionnel, le n° du noeud d'une ligne se déduit du nombre de lignes des morceaux
+ * précédents (somme préfixe sur les morceaux) ;</li>
+ * <li>les listes de chaque morceau sont recopiées en parallèle dans un seul {@link CsrAdjacency}, chaque
+ * morceau décalant ses débuts de lignes par le nombre de voisins des morceaux précédents (somme préfixe
+ * parallèle en deux temps : sommes par morceau, puis décalage local).</li>
+ * </ol>
+ * <p>
+ * Le résultat est le même que celui de {@link Parser#parseFile}, sans liste d'objets {@code Integer}.
+ * </p>
+ */
+public class ParallelParser {
+
+    /**
+     * taille minimale d'un morceau, en octets (en deçà, le découpage coûte plus qu'il ne rapporte)
+     */
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+
+    /**
+     * nombre de morceaux par thread (pour équilibrer la charge)
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /**
+     * taille du tampon de lecture de chaque morceau
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * classe utilitaire, pas d'instance
+     */
+    private ParallelParser() {
+    }
+
+    /**
+     * Lit le fichier avec autant de threads que de processeurs
+     * @param filePath chemin du fichier à lire
+     * @return les listes de voisins de chaque ligne
+     * @throws IOException en cas d'erreur de lecture ou de format
+     */
+    public static CsrAdjacency parseFile(String filePath) throws IOException {
+        return parseFile(filePath, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param filePath chemin du fichier à lire
+     * @param nbThreads nombre de threads de lecture
+     * @return les listes de voisins de chaque ligne
+     * @throws IOException en cas d'erreur de lecture ou de format
+     */
+    public static CsrAdjacency parseFile(String filePath, int nbThreads) throws IOException {
+
+        ParseEvent event = new ParseEvent(); // évènement JFR couvrant la lecture
+        event.begin();
+        RandomAccessFile file = new RandomAccessFile(filePath, "r");
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+        try {
+            final FileChannel channel = file.getChannel();
+            long fileSize = channel.size();
+
+            // 1. lecture des morceaux
+            int nbChunks = (int) Math.max(1, Math.min(fileSize / MIN_CHUNK_SIZE, (long) nbThreads * CHUNKS_PER_THREAD));
+            List<Future<Chunk>> futures = new ArrayList<Future<Chunk>>();
+            for (int c = 0; c < nbChunks; c++) {
+                final long start = fileSize * c / nbChunks;
+                final long end = fileSize * (c + 1) / nbChunks;
+                final boolean first = c == 0;
+                futures.add(executor.submit(new Callable<Chunk>() {
+                    public Chunk call() throws IOException {
+                        return new Chunk(channel, start, end, first);
+                    }
+                }));
+            }
+            final Chunk[] chunks = new Chunk[nbChunks];
+            for (int c = 0; c < nbChunks; c++) chunks[c] = get(futures.get(c));
+            if (chunks[0].nbNodes < 0) throw new IOException("Fichier vide : " + filePath);
+            int nbNodes = chunks[0].nbNodes;
+
+            // 2. sommes préfixes sur les morceaux : première ligne et premier voisin de chacun
+            final int[] firstLine = new int[nbChunks + 1];
+            final long[] firstTarget = new long[nbChunks + 1];
+            for (int c = 0; c < nbChunks; c++) {
+                firstLine[c + 1] = firstLine[c] + chunks[c].lineCounts.size;
+                firstTarget[c + 1] = firstTarget[c] + chunks[c].targets.size;
+            }
+            if (firstTarget[nbChunks] > Integer.MAX_VALUE) throw new IOException("Trop d'arêtes pour un seul tableau : " + firstTarget[nbChunks]);
+
+            // les lignes au-delà du nombre de noeuds ne peuvent être que vides
+            int nbLines = firstLine[nbChunks];
+            int nbTargets = (int) firstTarget[nbChunks];
+            if (nbLines > nbNodes) {
+                int lastChunk = nbChunks - 1;
+                int line = nbLines - 1;
+                while (line >= nbNodes) {
+                    while (firstLine[lastChunk] > line) lastChunk--;
+                    if (chunks[lastChunk].lineCounts.data[line - firstLine[lastChunk]] != 0) {
+                        throw new IOException("La ligne " + (line + 2) + " cite des voisins alors que le graphe n'a que " + nbNodes + " noeuds");
+                    }
+                    line--;
+                }
+                nbLines = nbNodes;
+            }
+
+            // 3. recopie parallèle dans le tableau commun, chaque morceau décalé de sa somme préfixe
+            final int[] lineStart = new int[nbLines + 1];
+            final int[] targets = new int[nbTargets];
+            final int lastLine = nbLines;
+            List<Future<Chunk>> copies = new ArrayList<Future<Chunk>>();
+            for (int c = 0; c < nbChunks; c++) {
+                final int chunk = c;
+                copies.add(executor.submit(new Callable<Chunk>() {
+                    public Chunk call() {
+                        Chunk current = chunks[chunk];
+                        int line = firstLine[chunk];
+                        int offset = (int) firstTarget[chunk];
+                        for (int i = 0; i < current.lineCounts.size && line < lastLine; i++) {
+                            lineStart[line++] = offset;
+                            offset += current.lineCounts.data[i];
+                        }
+                        System.arraycopy(current.targets.data, 0, targets, (int) firstTarget[chunk], current.targets.size);
+                        return current;
+                    }
+                }));
+            }
+            for (Future<Chunk> copy : copies) get(copy);
+            lineStart[nbLines] = nbTargets;
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.file = filePath;
+                event.bytes = fileSize;
+                event.nbLines = nbLines + 1;
+                event.nbThreads = nbThreads;
+                event.commit();
+            }
+            return new CsrAdjacency(nbNodes, lineStart, targets);
+        } finally {
+            executor.shutdown();
+            file.close();
+        }
+    }
+
+    /**
+     * Attend le résultat d'une tâche en faisant remonter ses erreurs de lecture
+     * @param future tâche soumise
+     * @return le morceau calculé par la tâche
+     * @throws IOException si la tâche a échoué sur une erreur de lecture ou de format
+     */
+    private static Chunk get(Future<Chunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Lecture interrompue");
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) throw (IOException) ex.getCause();
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    /**
+     * Liste d'entiers extensible, sans objets {@code Integer}
+     */
+    private static class IntList {
+
+        /**
+         * éléments (les cases au-delà de {@link #size} sont libres)
+         */
+        int[] data = new int[1024];
+
+        /**
+         * nombre d'éléments
+         */
+        int size;
+
+        /**
+         * @param value élément à ajouter en fin de liste
+         */
+        void add(int value) {
+            if (size == data.length) {
+                int[] larger = new int[data.length * 2];
+                System.arraycopy(data, 0, larger, 0, size);
+                data = larger;
+            }
+            data[size++] = value;
+        }
+
+    }
+
+    /**
+     * Lignes lues dans un morceau du fichier
+     */
+    private static class Chunk {
+
+        /**
+         * nombre de voisins de chaque ligne de noeud du morceau
+         */
+        IntList lineCounts = new IntList();
+
+        /**
+         * voisins cités, ligne après ligne
+         */
+        IntList targets = new IntList();
+
+        /**
+         * nombre de noeuds lu sur la première ligne (premier morceau seulement, -1 sinon ou si le fichier est vide)
+         */
+        int nbNodes = -1;
+
+        /**
+         * canal du fichier, tampon de lecture et position dans le fichier du début du tampon
+         */
+        private FileChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private long bufferPosition;
+
+        /**
+         * position dans le tampon de l'octet suivant et nombre d'octets valides du tampon
+         */
+        private int next, length;
+
+        /**
+         * Lit les lignes qui commencent dans [start, end)
+         * @param channel canal du fichier
+         * @param start début du morceau en octets
+         * @param end fin du morceau (exclue)
+         * @param first vrai pour le premier morceau, qui commence par le nombre de noeuds
+         * @throws IOException en cas d'erreur de lecture ou de format
+         */
+        Chunk(FileChannel channel, long start, long end, boolean first) throws IOException {
+            this.channel = channel;
+
+            // saut de la fin de la ligne commencée dans le morceau précédent
+            bufferPosition = first ? start : start - 1;
+            if (!first && read() != '\n') {
+                int b;
+                do b = read(); while (b != '\n' && b != -1);
+            }
+
+            if (first) {
+                int b = readLine();
+                if (b == -1 && targets.size == 0) return; // fichier vide
+                if (targets.size != 1) throw new IOException("La première ligne doit contenir le seul nombre de noeuds");
+                nbNodes = targets.data[0];
+                targets.size = 0;
+                if (b == -1) return;
+            }
+
+            while (getPosition() < end) {
+                int count = targets.size;
+                int b = readLine();
+                lineCounts.add(targets.size - count);
+                if (b == -1) break;
+            }
+        }
+
+        /**
+         * @return la position dans le fichier de l'octet suivant
+         */
+        private long getPosition() {
+            return bufferPosition + next;
+        }
+
+        /**
+         * @return l'octet suivant, ou -1 en fin de fichier
+         * @throws IOException en cas d'erreur de lecture
+         */
+        private int read() throws IOException {
+            if (next == length) {
+                bufferPosition += length;
+                buffer.clear();
+                length = Math.max(channel.read(buffer, bufferPosition), 0);
+                next = 0;
+                if (length == 0) return -1;
+            }
+            return buffer.array()[next++] & 0xFF;
+        }
+
+        /**
+         * Lit les nombres d'une ligne et les ajoute à {@link #targets}
+         * @return le caractère de fin de ligne ('\n', ou -1 en fin de fichier)
+         * @throws IOException en cas d'erreur de lecture ou de caractère inattendu
+         */
+        private int readLine() throws IOException {
+            int value = -1; // -1 : pas de nombre en cours
+            while (true) {
+                int b = read();
+                if (b >= '0' && b <= '9') {
+                    if (value > (Integer.MAX_VALUE - (b - '0')) / 10) throw new IOException("Nombre trop grand vers l'octet " + getPosition());
+                    value = value < 0 ? b - '0' : value * 10 + (b - '0');
+                } else if (b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == -1) {
+                    if (value >= 0) targets.add(value);
+                    value = -1;
+                    if (b == '\n' || b == -1) return b;
+                } else {
+                    throw new IOException("Caractère inattendu '" + (char) b + "' vers l'octet " + getPosition());
+                }
+            }
+        }
+
+    }
+
+}
@@ -3,6 +3,7 @@ package helper;
 import java.io.*;
 import java.util.ArrayList;
 import java.util.List;
+import profiling.ParseEvent;
 
 /**
  * Outil pour parser les fichiers texte
@@ -20,6 +21,8 @@ public class Parser {
      */
     public static List<List<Integer>> parseFile(String filePath){
         
+        ParseEvent event = new ParseEvent(); // évènement JFR couvrant la lecture
+        event.begin();
         BufferedReader bufferedReader = null;
         List<List<Integer>> lists = new ArrayList<List<Integer>>(); // on initialise la grande liste à une liste vide
         List<Integer> currentList = null;
@@ -61,6 +64,14 @@ public class Parser {
             }
         }
 
+        event.end();
+        if (event.shouldCommit()) {
+            event.file = filePath;
+            event.bytes = new File(filePath).length();
+            event.nbLines = lists.size();
+            event.nbThreads = 1;
+            event.commit();
+        }
         return lists; // On renvoie la liste contenant la liste des voisins pour chaque noeud.
         
     }
@@ -0,0 +1,459 @@
+package helper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Lecture en flux des listes d'arêtes et des fichiers Matrix Market, même plus gros que la mémoire
+ * <p>
+ * Deux formats d'export courants, convertis en {@link CsrAdjacency} comme le fichier ressource :
+ * </p>
+ * <ul>
+ * <li>liste d'arêtes : une arête « u v » par ligne, noeuds numérotés à partir de 0, colonnes
+ * suivantes ignorées, lignes commençant par '#' ou '%' ignorées ;</li>
+ * <li>Matrix Market ({@code .mtx}, format « coordinate ») : en-tête {@code %%MatrixMarket}, ligne des
+ * dimensions puis une entrée « i j [valeur] » par ligne, numérotée à partir de 1. La matrice est lue
+ * comme la matrice d'adjacence d'un graphe non orienté, quelle que soit sa symétrie déclarée.</li>
+ * </ul>
+ * <p>
+ * Chaque arête est ramenée à la ligne de sa plus petite extrémité ; les boucles sont ignorées et les
+ * doublons (une arête écrite dans les deux sens, par exemple) n'en font qu'une. Les arêtes sont lues
+ * par paquets de {@link #RUN_SIZE}, chaque paquet trié et, s'il n'est pas le seul, écrit dans un fichier
+ * temporaire ; les paquets sont ensuite fusionnés deux fois, d'abord pour compter les voisins de chaque
+ * ligne puis pour remplir les tableaux, alloués à leur taille exacte. Au-delà du résultat, la mémoire
+ * utilisée ne dépend donc que de {@link #RUN_SIZE}, pas de la taille du fichier.
+ * </p>
+ */
+public class StreamingParser {
+
+    /**
+     * nombre d'arêtes triées en mémoire avant d'être écrites dans un fichier temporaire (8 octets chacune)
+     */
+    public static int RUN_SIZE = 1 << 22;
+
+    /**
+     * nombre maximal de fichiers temporaires fusionnés à la fois (au-delà, on fusionne par étages)
+     */
+    public static int MERGE_FAN_IN = 64;
+
+    /**
+     * dossier des fichiers temporaires, ou null pour celui du système
+     */
+    public static File TEMPORARY_DIRECTORY = null;
+
+    /**
+     * taille des tampons de lecture et d'écriture
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * classe utilitaire, pas d'instance
+     */
+    private StreamingParser() {
+    }
+
+    /**
+     * @param filePath chemin d'une liste d'arêtes
+     * @return les listes de voisins de chaque noeud (autant de noeuds que le plus grand n° cité plus un)
+     * @throws IOException en cas d'erreur de lecture ou de format
+     */
+    public static CsrAdjacency parseEdgeList(String filePath) throws IOException {
+        Reader reader = new Reader(filePath);
+        try {
+            return parse(reader, -1, 0);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * @param filePath chemin d'un fichier Matrix Market
+     * @return les listes de voisins de chaque noeud (autant de noeuds que la plus grande dimension)
+     * @throws IOException en cas d'erreur de lecture ou de format
+     */
+    public static CsrAdjacency parseMatrixMarket(String filePath) throws IOException {
+        Reader reader = new Reader(filePath);
+        try {
+            String header = reader.readHeader();
+            if (header == null || !header.toLowerCase().startsWith("%%matrixmarket matrix coordinate")) {
+                throw new IOException("En-tête Matrix Market « matrix coordinate » attendu : " + header);
+            }
+            long[] size = new long[3];
+            if (reader.readNumbers(size) < 3) throw new IOException("Ligne des dimensions attendue dans " + filePath);
+            long nbNodes = Math.max(size[0], size[1]);
+            if (nbNodes > Integer.MAX_VALUE) throw new IOException("Trop de noeuds : " + nbNodes);
+            return parse(reader, (int) nbNodes, 1);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Trie les arêtes par paquets puis les fusionne en listes de voisins
+     * @param reader fichier placé sur la première arête
+     * @param nbNodes nombre de noeuds annoncé, ou -1 pour le déduire des n° cités
+     * @param firstIndex n° du premier noeud dans le fichier
+     * @return les listes de voisins
+     * @throws IOException en cas d'erreur de lecture ou de format
+     */
+    private static CsrAdjacency parse(Reader reader, int nbNodes, int firstIndex) throws IOException {
+        List<Run> runs = new ArrayList<Run>();
+        try {
+            // 1. paquets triés, sans boucles ni doublons ; clé : (petite extrémité << 32) | grande extrémité
+            long[] buffer = new long[Math.max(1, RUN_SIZE)];
+            long[] numbers = new long[2];
+            int size = 0;
+            long maxIndex = -1;
+            while (true) {
+                int count = reader.readNumbers(numbers);
+                if (count < 0) break;
+                if (count < 2) throw new IOException("Arête incomplète vers la ligne " + reader.lineNumber);
+                long u = numbers[0] - firstIndex, v = numbers[1] - firstIndex;
+                if (u < 0 || v < 0 || u > Integer.MAX_VALUE || v > Integer.MAX_VALUE
+                        || (nbNodes >= 0 && (u >= nbNodes || v >= nbNodes))) {
+                    throw new IOException("N° de noeud hors limites vers la ligne " + reader.lineNumber);
+                }
+                if (u == v) continue;
+                maxIndex = Math.max(maxIndex, Math.max(u, v));
+                buffer[size++] = Math.min(u, v) << 32 | Math.max(u, v);
+                if (size == buffer.length) {
+                    size = sortUnique(buffer, size);
+                    // beaucoup de doublons (arêtes écrites dans les deux sens) : on continue en mémoire
+                    if (size > buffer.length / 2) {
+                        runs.add(spill(buffer, size));
+                        size = 0;
+                    }
+                }
+            }
+            size = sortUnique(buffer, size);
+            if (runs.isEmpty()) {
+                runs.add(new Run(buffer, size)); // tout tient en mémoire : pas de fichier temporaire
+            } else {
+                runs.add(spill(buffer, size));
+                buffer = null;
+            }
+            if (nbNodes < 0) nbNodes = (int) (maxIndex + 1);
+
+            // trop de paquets pour les ouvrir tous ensemble : fusion par étages
+            while (runs.size() > Math.max(2, MERGE_FAN_IN)) {
+                List<Run> merged = new ArrayList<Run>();
+                for (int r = 0; r < runs.size(); r += MERGE_FAN_IN) {
+                    List<Run> group = runs.subList(r, Math.min(r + MERGE_FAN_IN, runs.size()));
+                    merged.add(mergeToFile(group));
+                }
+                runs = merged;
+            }
+
+            // 2. premier passage : nombre de voisins de chaque ligne
+            int[] lineStart = new int[nbNodes + 1];
+            long nbTargets = 0;
+            Merger merger = new Merger(runs);
+            for (long key = merger.next(); key >= 0; key = merger.next()) {
+                lineStart[(int) (key >>> 32) + 1]++;
+                nbTargets++;
+            }
+            if (nbTargets > Integer.MAX_VALUE) throw new IOException("Trop d'arêtes pour un seul tableau : " + nbTargets);
+            for (int u = 0; u < nbNodes; u++) lineStart[u + 1] += lineStart[u];
+
+            // 3. second passage : remplissage, dans l'ordre des lignes
+            int[] targets = new int[(int) nbTargets];
+            for (Run run : runs) run.rewind();
+            merger = new Merger(runs);
+            int e = 0;
+            for (long key = merger.next(); key >= 0; key = merger.next()) targets[e++] = (int) key;
+            return new CsrAdjacency(nbNodes, lineStart, targets);
+        } finally {
+            for (Run run : runs) run.delete();
+        }
+    }
+
+    /**
+     * Trie le début d'un tableau et en retire les doublons
+     * @param keys tableau
+     * @param size nombre de cases utilisées
+     * @return le nombre de clés distinctes, rangées au début du tableau
+     */
+    private static int sortUnique(long[] keys, int size) {
+        Arrays.sort(keys, 0, size);
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            if (unique == 0 || keys[i] != keys[unique - 1]) keys[unique++] = keys[i];
+        }
+        return unique;
+    }
+
+    /**
+     * @param keys clés triées
+     * @param size nombre de clés
+     * @return le paquet écrit dans un fichier temporaire
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    private static Run spill(long[] keys, int size) throws IOException {
+        File file = File.createTempFile("edges", ".run", TEMPORARY_DIRECTORY);
+        file.deleteOnExit();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+        try {
+            for (int i = 0; i < size; i++) out.writeLong(keys[i]);
+        } finally {
+            out.close();
+        }
+        return new Run(file);
+    }
+
+    /**
+     * @param group paquets à fusionner (effacés ensuite)
+     * @return le paquet fusionné, écrit dans un fichier temporaire
+     * @throws IOException en cas d'erreur de lecture ou d'écriture
+     */
+    private static Run mergeToFile(List<Run> group) throws IOException {
+        File file = File.createTempFile("edges", ".run", TEMPORARY_DIRECTORY);
+        file.deleteOnExit();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+        try {
+            Merger merger = new Merger(group);
+            for (long key = merger.next(); key >= 0; key = merger.next()) out.writeLong(key);
+        } finally {
+            out.close();
+            for (Run run : group) run.delete();
+        }
+        return new Run(file);
+    }
+
+    /**
+     * Paquet de clés triées, en mémoire ou dans un fichier temporaire
+     */
+    private static class Run {
+
+        /**
+         * clés en mémoire et leur nombre, ou null
+         */
+        private long[] keys;
+        private int size;
+
+        /**
+         * fichier temporaire et son flux de lecture, ou null
+         */
+        private File file;
+        private DataInputStream in;
+
+        /**
+         * position de lecture dans les clés en mémoire
+         */
+        private int next;
+
+        /**
+         * clé courante, ou -1 si le paquet est épuisé
+         */
+        long head;
+
+        Run(long[] keys, int size) {
+            this.keys = keys;
+            this.size = size;
+        }
+
+        Run(File file) {
+            this.file = file;
+        }
+
+        /**
+         * Revient au début du paquet
+         * @throws IOException en cas d'erreur d'ouverture
+         */
+        void rewind() throws IOException {
+            next = 0;
+            if (in != null) in.close();
+            in = null;
+        }
+
+        /**
+         * Passe à la clé suivante
+         * @return la nouvelle clé courante, ou -1 en fin de paquet
+         * @throws IOException en cas d'erreur de lecture
+         */
+        long advance() throws IOException {
+            if (keys != null) return head = next < size ? keys[next++] : -1;
+            if (in == null) in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+            try {
+                return head = in.readLong();
+            } catch (EOFException ex) {
+                return head = -1;
+            }
+        }
+
+        /**
+         * Ferme et efface le fichier temporaire
+         */
+        void delete() {
+            try {
+                if (in != null) in.close();
+            } catch (IOException ex) {
+                // rien à faire : le fichier est effacé de toute façon
+            }
+            in = null;
+            if (file != null) file.delete();
+        }
+
+    }
+
+    /**
+     * Fusion de paquets triés, sans doublons
+     */
+    private static class Merger {
+
+        /**
+         * paquets non épuisés, classés par clé courante
+         */
+        private PriorityQueue<Run> queue;
+
+        /**
+         * dernière clé rendue
+         */
+        private long last = -1;
+
+        /**
+         * @param runs paquets à fusionner, au début
+         * @throws IOException en cas d'erreur de lecture
+         */
+        Merger(List<Run> runs) throws IOException {
+            queue = new PriorityQueue<Run>(Math.max(1, runs.size()), new Comparator<Run>() {
+                public int compare(Run a, Run b) {
+                    return a.head < b.head ? -1 : a.head == b.head ? 0 : 1;
+                }
+            });
+            for (Run run : runs) if (run.advance() >= 0) queue.add(run);
+        }
+
+        /**
+         * @return la plus petite clé suivante, ou -1 quand tous les paquets sont épuisés
+         * @throws IOException en cas d'erreur de lecture
+         */
+        long next() throws IOException {
+            while (!queue.isEmpty()) {
+                Run run = queue.poll();
+                long key = run.head;
+                if (run.advance() >= 0) queue.add(run);
+                if (key != last) return last = key;
+            }
+            return -1;
+        }
+
+    }
+
+    /**
+     * Lecture des nombres du fichier, ligne par ligne, sans objets intermédiaires
+     */
+    private static class Reader {
+
+        /**
+         * flux du fichier
+         */
+        private InputStream in;
+
+        /**
+         * octet lu d'avance, ou -2 si aucun
+         */
+        private int pending = -2;
+
+        /**
+         * n° de la ligne courante (pour les messages d'erreur)
+         */
+        long lineNumber;
+
+        Reader(String filePath) throws IOException {
+            in = new BufferedInputStream(new FileInputStream(filePath), BUFFER_SIZE);
+        }
+
+        /**
+         * @return l'octet suivant, ou -1 en fin de fichier
+         * @throws IOException en cas d'erreur de lecture
+         */
+        private int read() throws IOException {
+            if (pending != -2) {
+                int b = pending;
+                pending = -2;
+                return b;
+            }
+            return in.read();
+        }
+
+        /**
+         * @return la première ligne du fichier, ou null s'il est vide
+         * @throws IOException en cas d'erreur de lecture
+         */
+        String readHeader() throws IOException {
+            StringBuilder line = new StringBuilder();
+            int b = read();
+            if (b == -1) return null;
+            for (; b != '\n' && b != -1; b = read()) if (b != '\r') line.append((char) b);
+            lineNumber++;
+            return line.toString();
+        }
+
+        /**
+         * Lit les premiers nombres entiers de la ligne utile suivante (lignes vides et commentaires sautés),
+         * et passe le reste de la ligne
+         * @param numbers nombres lus, autant que de cases
+         * @return le nombre de nombres lus, ou -1 en fin de fichier
+         * @throws IOException en cas d'erreur de lecture ou de caractère inattendu
+         */
+        int readNumbers(long[] numbers) throws IOException {
+            while (true) {
+                int b = read();
+                if (b == -1) return -1;
+                lineNumber++;
+                if (b == '#' || b == '%') {
+                    skipLine(b);
+                    continue;
+                }
+                pending = b;
+                int count = 0;
+                long value = -1; // -1 : pas de nombre en cours
+                while (true) {
+                    b = read();
+                    if (b >= '0' && b <= '9') {
+                        if (value > (Long.MAX_VALUE - (b - '0')) / 10) throw new IOException("Nombre trop grand ligne " + lineNumber);
+                        value = value < 0 ? b - '0' : value * 10 + (b - '0');
+                    } else if (b == ' ' || b == '\t' || b == ',' || b == '\r' || b == '\n' || b == -1) {
+                        if (value >= 0) numbers[count++] = value;
+                        value = -1;
+                        if (b == '\n' || b == -1) break;
+                        if (count == numbers.length) {
+                            skipLine(b); // colonnes suivantes (poids) ignorées
+                            break;
+                        }
+                    } else {
+                        throw new IOException("Caractère inattendu '" + (char) b + "' ligne " + lineNumber);
+                    }
+                }
+                if (count > 0) return count;
+            }
+        }
+
+        /**
+         * @param b dernier octet lu de la ligne
+         * @throws IOException en cas d'erreur de lecture
+         */
+        private void skipLine(int b) throws IOException {
+            while (b != '\n' && b != -1) b = read();
+        }
+
+        void close() throws IOException {
+            in.close();
+        }
+
+    }
+
+}
@@ -0,0 +1,257 @@
+package helper;
+
+/**
+ * Modélisateur de forces tabulé
+ * <p>
+ * Enveloppe un autre {@link ForceModelizer} et précalcule, à la construction, la force
+ * <b>par unité de déplacement</b> (force / distance) en fonction du <b>carré</b> de la distance.
+ * L'algorithme d'équilibrage multiplie directement le vecteur (u,v) par cette valeur :
+ * il n'a alors plus besoin de racine carrée, de division ni de logarithme par paire,
+ * seulement d'une lecture de table et d'une interpolation linéaire.
+ * </p>
+ * <p>
+ * La table est indexée par les bits du flottant {@code s = dist²} : l'exposant et les
+ * {@link #MANTISSA_BITS} premiers bits de la mantisse donnent le segment, le reste de la
+ * mantisse donne la position dans le segment. On a donc 2^{@link #MANTISSA_BITS} segments
+ * par octave, dont la longueur est proportionnelle à {@code s} (pas relatif constant).
+ * </p>
+ * <p>
+ * <b>Borne d'erreur</b> : l'erreur d'interpolation linéaire sur un segment de longueur h
+ * est au plus h²/8 * max|f''|. Pour un noyau en puissance f(s) = c * s^p (Fruchterman-Reingold,
+ * Hooke, répulsion d'Eades) et un pas relatif h/s &lt;= 2^-{@link #MANTISSA_BITS}, l'erreur
+ * relative est donc au plus |p(p-1)|/8 * 2^(-2*{@link #MANTISSA_BITS}), soit environ 1.2e-4
+ * dans le pire cas (p = -3/2). Pour l'attraction logarithmique d'Eades, qui s'annule en
+ * dist = k, l'erreur est bornée relativement à la valeur du noyau aux extrémités du segment
+ * (de l'ordre de 2e-3 au voisinage de dist = k, où le noyau est presque nul, ce qui y
+ * représente une force négligeable).
+ * Les erreurs effectivement mesurées sur les milieux de segments (là où l'erreur d'un noyau
+ * convexe ou concave est maximale) sont disponibles via {@link #getMaxAttrError()} et
+ * {@link #getMaxRepulsError()}.
+ * </p>
+ * <p>
+ * En dehors de l'intervalle tabulé (noeuds quasi confondus ou très éloignés), on revient
+ * au calcul exact du modèle enveloppé.
+ * </p>
+ */
+public class TabulatedForceModelizer implements ForceModelizer {
+
+    /**
+     * nombre de bits de mantisse utilisés pour l'index (2^6 = 64 segments par octave)
+     */
+    public static final int MANTISSA_BITS = 6;
+
+    /**
+     * décalage pour ne garder que l'exposant et les premiers bits de mantisse
+     */
+    private static final int SHIFT = 52 - MANTISSA_BITS;
+
+    /**
+     * masque de la partie de mantisse qui donne la position dans le segment
+     */
+    private static final long FRACTION_MASK = (1L << SHIFT) - 1;
+
+    /**
+     * facteur pour convertir cette partie de mantisse en fraction dans [0,1[
+     */
+    private static final double FRACTION_SCALE = 1.0 / (1L << SHIFT);
+
+    /**
+     * rapport par défaut entre les distances extrêmes tabulées et la distance idéale k
+     */
+    private static final double DEFAULT_RANGE = 1000;
+
+    /**
+     * modèle de forces exact
+     */
+    private ForceModelizer model;
+
+    /**
+     * index (bits de {@code s} décalés) du premier point de la table
+     */
+    private long baseIndex;
+
+    /**
+     * nombre de segments de la table
+     */
+    private int nbSegments;
+
+    /**
+     * plus petit et plus grand carré de distance tabulés
+     */
+    private double minSqDist, maxSqDist;
+
+    /**
+     * table d'attraction : pour chaque segment, la valeur au début puis la pente (différence avec la suivante)
+     * <p>les deux valeurs sont voisines en mémoire pour n'avoir qu'une ligne de cache à lire</p>
+     */
+    private double[] attrTable;
+
+    /**
+     * table de répulsion, même organisation que {@link #attrTable}
+     */
+    private double[] repulsTable;
+
+    /**
+     * erreurs relatives maximales mesurées à la construction
+     */
+    private double maxAttrError, maxRepulsError;
+
+    /**
+     * Construit la table pour des distances entre k/1000 et 1000*k
+     * @param model modèle de forces exact à tabuler
+     * @param k distance idéale entre deux noeuds voisins
+     */
+    public TabulatedForceModelizer(ForceModelizer model, double k) {
+        this(model, k / DEFAULT_RANGE, k * DEFAULT_RANGE);
+    }
+
+    /**
+     * Construit la table pour des distances entre <i>minDist</i> et <i>maxDist</i>
+     * @param model modèle de forces exact à tabuler
+     * @param minDist plus petite distance tabulée (strictement positive)
+     * @param maxDist plus grande distance tabulée
+     */
+    public TabulatedForceModelizer(ForceModelizer model, double minDist, double maxDist) {
+
+        if (minDist <= 0 || maxDist <= minDist) {
+            throw new IllegalArgumentException("Intervalle de distances incorrect : [" + minDist + "," + maxDist + "]");
+        }
+
+        this.model = model;
+
+        // on arrondit l'intervalle aux frontières des segments
+        baseIndex = Double.doubleToRawLongBits(minDist * minDist) >>> SHIFT;
+        long lastIndex = (Double.doubleToRawLongBits(maxDist * maxDist) >>> SHIFT) + 1;
+        nbSegments = (int) (lastIndex - baseIndex);
+        minSqDist = pointAt(0);
+        maxSqDist = pointAt(nbSegments);
+
+        attrTable = new double[2 * nbSegments];
+        repulsTable = new double[2 * nbSegments];
+
+        // valeurs exactes aux points de la table
+        double previousAttr = exactAttrFactor(minSqDist);
+        double previousRepuls = exactRepulsFactor(minSqDist);
+        for (int i = 0; i < nbSegments; i++) {
+            double s = pointAt(i + 1);
+            double attr = exactAttrFactor(s);
+            double repuls = exactRepulsFactor(s);
+            attrTable[2*i] = previousAttr;
+            attrTable[2*i + 1] = attr - previousAttr;
+            repulsTable[2*i] = previousRepuls;
+            repulsTable[2*i + 1] = repuls - previousRepuls;
+            previousAttr = attr;
+            previousRepuls = repuls;
+        }
+
+        // mesure de l'erreur au milieu de chaque segment
+        for (int i = 0; i < nbSegments; i++) {
+            double mid = 0.5 * (pointAt(i) + pointAt(i + 1));
+            maxAttrError = Math.max(maxAttrError, segmentError(attrTable, i, interpolate(attrTable, mid), exactAttrFactor(mid)));
+            maxRepulsError = Math.max(maxRepulsError, segmentError(repulsTable, i, interpolate(repulsTable, mid), exactRepulsFactor(mid)));
+        }
+
+    }
+
+    /**
+     * @param i numéro du point (0 pour le début de la table)
+     * @return le carré de distance correspondant au point <i>i</i>
+     */
+    private double pointAt(int i) {
+        return Double.longBitsToDouble((baseIndex + i) << SHIFT);
+    }
+
+    /**
+     * @param table table de valeurs/pentes
+     * @param i numéro du segment
+     * @param approx valeur interpolée
+     * @param exact valeur exacte
+     * @return l'écart relatif à la plus grande valeur absolue du noyau aux extrémités du segment
+     */
+    private static double segmentError(double[] table, int i, double approx, double exact) {
+        double magnitude = Math.max(Math.abs(table[2*i]), Math.abs(table[2*i] + table[2*i + 1]));
+        return magnitude == 0 ? Math.abs(approx - exact) : Math.abs(approx - exact) / magnitude;
+    }
+
+    /**
+     * Interpolation linéaire dans <i>table</i> ; {@code sqDist} doit être dans l'intervalle tabulé
+     * @param table table de valeurs/pentes
+     * @param sqDist carré de la distance
+     * @return la valeur interpolée
+     */
+    private double interpolate(double[] table, double sqDist) {
+        long bits = Double.doubleToRawLongBits(sqDist);
+        int i = 2 * (int) ((bits >>> SHIFT) - baseIndex);
+        return table[i] + (bits & FRACTION_MASK) * FRACTION_SCALE * table[i + 1];
+    }
+
+    /**
+     * @param sqDist carré de la distance
+     * @return la force d'attraction par unité de déplacement calculée par le modèle exact
+     */
+    private double exactAttrFactor(double sqDist) {
+        double dist = Math.sqrt(sqDist);
+        return model.calculateAttrForce(dist) / dist;
+    }
+
+    /**
+     * @param sqDist carré de la distance
+     * @return la force de répulsion par unité de déplacement calculée par le modèle exact
+     */
+    private double exactRepulsFactor(double sqDist) {
+        double dist = Math.sqrt(sqDist);
+        return model.calculateRepulsForce(dist) / dist;
+    }
+
+    /**
+     * Force d'attraction divisée par la distance, lue dans la table
+     * @param sqDist carré de la distance entre les deux noeuds
+     * @return le facteur à appliquer au vecteur (u,v)
+     */
+    public double getAttrFactor(double sqDist) {
+        if (sqDist < minSqDist || sqDist >= maxSqDist) return exactAttrFactor(sqDist);
+        return interpolate(attrTable, sqDist);
+    }
+
+    /**
+     * Force de répulsion divisée par la distance, lue dans la table
+     * @param sqDist carré de la distance entre les deux noeuds
+     * @return le facteur à appliquer au vecteur (u,v)
+     */
+    public double getRepulsFactor(double sqDist) {
+        if (sqDist < minSqDist || sqDist >= maxSqDist) return exactRepulsFactor(sqDist);
+        return interpolate(repulsTable, sqDist);
+    }
+
+    /**
+     * @return l'erreur relative maximale mesurée sur la table d'attraction
+     */
+    public double getMaxAttrError() {
+        return maxAttrError;
+    }
+
+    /**
+     * @return l'erreur relative maximale mesurée sur la table de répulsion
+     */
+    public double getMaxRepulsError() {
+        return maxRepulsError;
+    }
+
+    /**
+     * @return le nombre de segments de chaque table
+     */
+    public int getNbSegments() {
+        return nbSegments;
+    }
+
+    @Override
+    public double calculateAttrForce(double dist) {
+        return getAttrFactor(dist * dist) * dist;
+    }
+
+    @Override
+    public double calculateRepulsForce(double dist) {
+        return getRepulsFactor(dist * dist) * dist;
+    }
+
+}
@@ -0,0 +1,456 @@
+package metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import models.Graph;
+import models.Node;
+import models.SpatialIndex;
+
+/**
+ * Mesures de qualité d'un dessin de graphe
+ * <p>
+ * L'énergie cinétique dit seulement si l'équilibrage est terminé ; ces mesures permettent de comparer
+ * les dessins obtenus avec différents modèles ou moteurs :
+ * </p>
+ * <ul>
+ * <li>nombre de croisements d'arêtes (test des paires d'arêtes dont les abscisses se chevauchent) ;</li>
+ * <li>coefficient de variation des longueurs d'arêtes (écart-type / moyenne) ;</li>
+ * <li>préservation des voisinages : pour chaque noeud, indice de Jaccard entre ses voisins dans le graphe
+ * et autant de plus proches voisins dans le plan ;</li>
+ * <li>stress normalisé : écart entre distances dans le plan et distances dans le graphe (en sauts),
+ * à l'échelle près.</li>
+ * </ul>
+ * <p>
+ * Les calculs sont répartis sur tous les processeurs. Au-delà de certaines tailles, ils sont faits
+ * sur des échantillons tirés avec une graine fixe (les résultats sont donc reproductibles) :
+ * croisements des arêtes tirées avec toutes les autres, voisinages des noeuds tirés, stress depuis
+ * quelques noeuds pivots.
+ * </p>
+ * <p>
+ * Les positions sont photographiées à la construction : les mesures ne dépendent plus du graphe ensuite,
+ * même s'il bouge.
+ * </p>
+ */
+public class LayoutMetrics {
+
+    /**
+     * au-delà de ce nombre d'arêtes, les croisements sont estimés par échantillonnage
+     * (le compte exact teste jusqu'à E²/2 paires : 2.10⁸ pour 20000 arêtes)
+     */
+    public static int EXACT_CROSSINGS_MAX_EDGES = 20000;
+
+    /**
+     * nombre d'arêtes tirées pour estimer les croisements
+     */
+    public static int CROSSINGS_SAMPLE = 2000;
+
+    /**
+     * nombre de noeuds tirés pour la préservation des voisinages (tous s'il y en a moins)
+     */
+    public static int NEIGHBOURHOOD_SAMPLE = 10000;
+
+    /**
+     * nombre de pivots pour le stress (tous les noeuds s'il y en a moins)
+     */
+    public static int STRESS_PIVOTS = 200;
+
+    /**
+     * graine des tirages
+     */
+    private static final long SEED = 42;
+
+    /**
+     * nombre de morceaux par thread lors d'un calcul réparti (pour équilibrer la charge)
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /**
+     * nombre de noeuds et d'arêtes
+     */
+    private int nbNodes, nbEdges;
+
+    /**
+     * positions des noeuds, par rang
+     */
+    private double[] x, y;
+
+    /**
+     * les voisins du noeud i sont {@code neighbours[neighboursStart[i]]} à {@code neighbours[neighboursStart[i+1]-1]}
+     */
+    private int[] neighboursStart, neighbours;
+
+    /**
+     * extrémités de chaque arête (une seule fois par arête)
+     */
+    private int[] edgeU, edgeV;
+
+    /**
+     * nombre de threads de calcul
+     */
+    private int nbThreads;
+
+    /**
+     * Photographie le graphe et ses positions courantes
+     * @param graph graphe à mesurer
+     */
+    public LayoutMetrics(Graph graph) {
+        nbThreads = Runtime.getRuntime().availableProcessors();
+
+        List<Node> nodes = graph.getNodes();
+        nbNodes = nodes.size();
+        x = new double[nbNodes];
+        y = new double[nbNodes];
+        neighboursStart = new int[nbNodes + 1];
+        int nbEntries = 0;
+        for (int i = 0; i < nbNodes; i++) {
+            x[i] = nodes.get(i).getPosition().getX();
+            y[i] = nodes.get(i).getPosition().getY();
+            nbEntries += nodes.get(i).getNeighbours().size();
+        }
+        neighbours = new int[nbEntries];
+        int entry = 0;
+        for (int i = 0; i < nbNodes; i++) {
+            neighboursStart[i] = entry;
+            for (Node neighbour : nodes.get(i).getNeighbours()) {
+                neighbours[entry++] = neighbour.getIndex();
+                if (neighbour.getIndex() > i) nbEdges++;
+            }
+        }
+        neighboursStart[nbNodes] = entry;
+
+        edgeU = new int[nbEdges];
+        edgeV = new int[nbEdges];
+        int edge = 0;
+        for (int i = 0; i < nbNodes; i++) {
+            for (int e = neighboursStart[i]; e < neighboursStart[i + 1]; e++) {
+                if (neighbours[e] > i) {
+                    edgeU[edge] = i;
+                    edgeV[edge] = neighbours[e];
+                    edge++;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return vrai si {@link #countCrossings()} compte exactement les croisements, faux s'il les estime
+     */
+    public boolean isCrossingCountExact() {
+        return nbEdges <= EXACT_CROSSINGS_MAX_EDGES;
+    }
+
+    /**
+     * Nombre de croisements d'arêtes (les arêtes qui partagent une extrémité ne se croisent pas)
+     * <p>
+     * Les arêtes sont triées par abscisse minimale ; chaque arête n'est testée qu'avec les suivantes
+     * dont l'intervalle d'abscisses chevauche le sien. Ce n'est pas un balayage à la Bentley-Ottmann :
+     * les longues arêtes d'un dessin par forces chevauchent presque toutes les autres en abscisse, et le
+     * compte reste en O(E²) dans le pire cas ; il n'est donc exact que jusqu'à
+     * {@link #EXACT_CROSSINGS_MAX_EDGES} arêtes. Au-delà, le nombre est estimé à partir de
+     * {@link #CROSSINGS_SAMPLE} arêtes tirées au hasard, testées avec toutes les autres.
+     * </p>
+     * @return le nombre (exact ou estimé) de croisements
+     */
+    public double countCrossings() {
+        if (!isCrossingCountExact()) return estimateCrossings();
+
+        // tri des arêtes par abscisse minimale
+        Integer[] order = new Integer[nbEdges];
+        final double[] edgeMinX = new double[nbEdges];
+        for (int e = 0; e < nbEdges; e++) {
+            order[e] = e;
+            edgeMinX[e] = Math.min(x[edgeU[e]], x[edgeV[e]]);
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return Double.compare(edgeMinX[a], edgeMinX[b]);
+            }
+        });
+        final int[] sortedEdges = new int[nbEdges];
+        final double[] minX = new double[nbEdges];
+        final double[] maxX = new double[nbEdges];
+        for (int r = 0; r < nbEdges; r++) {
+            int e = order[r];
+            sortedEdges[r] = e;
+            minX[r] = edgeMinX[e];
+            maxX[r] = Math.max(x[edgeU[e]], x[edgeV[e]]);
+        }
+
+        return sumInParallel(nbEdges, new ChunkSum() {
+            public double[] sum(int from, int to) {
+                long crossings = 0;
+                for (int r = from; r < to; r++) {
+                    for (int s = r + 1; s < nbEdges && minX[s] <= maxX[r]; s++) {
+                        if (cross(sortedEdges[r], sortedEdges[s])) crossings++;
+                    }
+                }
+                return new double[] {crossings};
+            }
+        })[0];
+    }
+
+    /**
+     * @return l'estimation du nombre de croisements d'après un échantillon d'arêtes
+     */
+    private double estimateCrossings() {
+        final int[] sample = new int[CROSSINGS_SAMPLE];
+        Random random = new Random(SEED);
+        for (int i = 0; i < sample.length; i++) sample[i] = random.nextInt(nbEdges);
+
+        double sampled = sumInParallel(sample.length, new ChunkSum() {
+            public double[] sum(int from, int to) {
+                long crossings = 0;
+                for (int i = from; i < to; i++) {
+                    for (int f = 0; f < nbEdges; f++) {
+                        if (cross(sample[i], f)) crossings++;
+                    }
+                }
+                return new double[] {crossings};
+            }
+        })[0];
+        // chaque croisement concerne deux arêtes
+        return sampled * nbEdges / sample.length / 2;
+    }
+
+    /**
+     * @param e une arête
+     * @param f une autre arête
+     * @return vrai si les deux segments se coupent en un point intérieur aux deux
+     */
+    private boolean cross(int e, int f) {
+        int a = edgeU[e], b = edgeV[e], c = edgeU[f], d = edgeV[f];
+        if (a == c || a == d || b == c || b == d) return false;
+        // intervalles d'ordonnées disjoints : pas de croisement possible
+        if (Math.max(y[a], y[b]) < Math.min(y[c], y[d]) || Math.max(y[c], y[d]) < Math.min(y[a], y[b])) return false;
+        double o1 = orientation(a, b, c), o2 = orientation(a, b, d);
+        if (o1 * o2 >= 0) return false;
+        double o3 = orientation(c, d, a), o4 = orientation(c, d, b);
+        return o3 * o4 < 0;
+    }
+
+    /**
+     * @param a rang d'un noeud
+     * @param b rang d'un noeud
+     * @param c rang d'un noeud
+     * @return le produit vectoriel (b - a) ^ (c - a), positif si a, b, c tournent dans le sens direct
+     */
+    private double orientation(int a, int b, int c) {
+        return (x[b] - x[a]) * (y[c] - y[a]) - (y[b] - y[a]) * (x[c] - x[a]);
+    }
+
+    /**
+     * @return le coefficient de variation des longueurs d'arêtes (0 si elles sont toutes égales)
+     */
+    public double getEdgeLengthVariation() {
+        if (nbEdges == 0) return 0;
+        double[] sums = sumInParallel(nbEdges, new ChunkSum() {
+            public double[] sum(int from, int to) {
+                double sum = 0, sqSum = 0;
+                for (int e = from; e < to; e++) {
+                    double dx = x[edgeV[e]] - x[edgeU[e]];
+                    double dy = y[edgeV[e]] - y[edgeU[e]];
+                    double sqLength = dx*dx + dy*dy;
+                    sum += Math.sqrt(sqLength);
+                    sqSum += sqLength;
+                }
+                return new double[] {sum, sqSum};
+            }
+        });
+        double mean = sums[0] / nbEdges;
+        double variance = Math.max(sums[1] / nbEdges - mean * mean, 0);
+        return Math.sqrt(variance) / mean;
+    }
+
+    /**
+     * Préservation des voisinages : moyenne, sur les noeuds (ou un échantillon), de l'indice de Jaccard
+     * entre les d voisins du noeud dans le graphe et ses d plus proches voisins dans le plan
+     * @return une valeur entre 0 (aucun voisin proche) et 1 (voisinages identiques)
+     */
+    public double getNeighbourhoodPreservation() {
+        final int[] sample = sampleNodes(NEIGHBOURHOOD_SAMPLE);
+        // index des positions photographiées (celui du graphe suit ses positions courantes)
+        final SpatialIndex index = new SpatialIndex(x, y);
+
+        double[] sums = sumInParallel(sample.length, new ChunkSum() {
+            public double[] sum(int from, int to) {
+                double sum = 0;
+                int count = 0;
+                for (int i = from; i < to; i++) {
+                    int u = sample[i];
+                    // voisins distincts dans le graphe, triés
+                    int[] graphNeighbours = Arrays.copyOfRange(neighbours, neighboursStart[u], neighboursStart[u + 1]);
+                    Arrays.sort(graphNeighbours);
+                    int degree = 0;
+                    for (int j = 0; j < graphNeighbours.length; j++) {
+                        if (graphNeighbours[j] != u && (degree == 0 || graphNeighbours[j] != graphNeighbours[degree - 1])) {
+                            graphNeighbours[degree++] = graphNeighbours[j];
+                        }
+                    }
+                    if (degree == 0) continue;
+                    // plus proches voisins dans le plan (le noeud lui-même compris, on l'écarte)
+                    int[] closest = index.nearestIndexes(x[u], y[u], degree + 1, Double.POSITIVE_INFINITY);
+                    int[] layoutNeighbours = new int[degree];
+                    int nbClosest = 0;
+                    for (int j = 0; j < closest.length && nbClosest < degree; j++) {
+                        if (closest[j] != u) layoutNeighbours[nbClosest++] = closest[j];
+                    }
+                    Arrays.sort(layoutNeighbours, 0, nbClosest);
+                    // intersection des deux listes triées
+                    int common = 0;
+                    for (int a = 0, b = 0; a < degree && b < nbClosest; ) {
+                        if (graphNeighbours[a] < layoutNeighbours[b]) a++;
+                        else if (graphNeighbours[a] > layoutNeighbours[b]) b++;
+                        else { common++; a++; b++; }
+                    }
+                    sum += (double) common / (degree + nbClosest - common);
+                    count++;
+                }
+                return new double[] {sum, count};
+            }
+        });
+        return sums[1] == 0 ? 1 : sums[0] / sums[1];
+    }
+
+    /**
+     * Stress normalisé, à l'échelle optimale près
+     * <p>
+     * Pour chaque paire (pivot, noeud atteignable) de distance d_ij en sauts et ||x_i - x_j|| dans le plan,
+     * on mesure (s ||x_i - x_j|| / d_ij - 1)², avec s l'échelle qui minimise la somme ; le résultat est
+     * la moyenne sur les paires. Les pivots sont tous les noeuds, ou {@link #STRESS_PIVOTS} noeuds tirés
+     * sur les gros graphes. Les paires de composantes connexes différentes sont ignorées.
+     * </p>
+     * @return le stress normalisé (0 pour des distances parfaitement proportionnelles)
+     */
+    public double getStress() {
+        final int[] pivots = sampleNodes(STRESS_PIVOTS);
+
+        double[] sums = sumInParallel(pivots.length, new ChunkSum() {
+            public double[] sum(int from, int to) {
+                // parcours en largeur depuis chaque pivot, avec des tableaux propres au morceau
+                int[] hops = new int[nbNodes];
+                Arrays.fill(hops, -1);
+                int[] queue = new int[nbNodes];
+                double ratioSum = 0, sqRatioSum = 0;
+                long nbPairs = 0;
+                for (int p = from; p < to; p++) {
+                    int pivot = pivots[p];
+                    int head = 0, tail = 0;
+                    queue[tail++] = pivot;
+                    hops[pivot] = 0;
+                    while (head < tail) {
+                        int u = queue[head++];
+                        if (u != pivot) {
+                            double dx = x[u] - x[pivot];
+                            double dy = y[u] - y[pivot];
+                            double ratio = Math.sqrt(dx*dx + dy*dy) / hops[u];
+                            ratioSum += ratio;
+                            sqRatioSum += ratio * ratio;
+                            nbPairs++;
+                        }
+                        for (int e = neighboursStart[u]; e < neighboursStart[u + 1]; e++) {
+                            int v = neighbours[e];
+                            if (hops[v] < 0) {
+                                hops[v] = hops[u] + 1;
+                                queue[tail++] = v;
+                            }
+                        }
+                    }
+                    for (int i = 0; i < tail; i++) hops[queue[i]] = -1;
+                }
+                return new double[] {ratioSum, sqRatioSum, nbPairs};
+            }
+        });
+        if (sums[2] == 0 || sums[1] == 0) return 0;
+        // somme de (s r - 1)² minimale pour s = somme(r) / somme(r²) : elle vaut alors nbPaires - somme(r)² / somme(r²)
+        return Math.max(sums[2] - sums[0] * sums[0] / sums[1], 0) / sums[2];
+    }
+
+    /**
+     * @param sampleSize taille de l'échantillon
+     * @return tous les noeuds s'il y en a au plus <i>sampleSize</i>, sinon <i>sampleSize</i> noeuds distincts tirés au hasard
+     */
+    private int[] sampleNodes(int sampleSize) {
+        int[] all = new int[nbNodes];
+        for (int i = 0; i < nbNodes; i++) all[i] = i;
+        if (nbNodes <= sampleSize) return all;
+        // mélange de Fisher-Yates partiel
+        Random random = new Random(SEED);
+        for (int i = 0; i < sampleSize; i++) {
+            int j = i + random.nextInt(nbNodes - i);
+            int swap = all[i];
+            all[i] = all[j];
+            all[j] = swap;
+        }
+        return Arrays.copyOf(all, sampleSize);
+    }
+
+    /**
+     * Calcul partiel sur un morceau [from, to) d'un intervalle d'indices
+     */
+    private interface ChunkSum {
+
+        /**
+         * @param from début du morceau
+         * @param to fin du morceau (exclue)
+         * @return les sommes partielles du morceau
+         */
+        double[] sum(int from, int to);
+
+    }
+
+    /**
+     * Découpe [0, count) en morceaux, les calcule sur {@link #nbThreads} threads et additionne les résultats
+     * @param count nombre d'indices
+     * @param task calcul sur un morceau
+     * @return les sommes de tous les morceaux
+     */
+    private double[] sumInParallel(int count, final ChunkSum task) {
+        int nbChunks = Math.max(1, Math.min(count, nbThreads * CHUNKS_PER_THREAD));
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+        try {
+            List<Future<double[]>> results = new ArrayList<Future<double[]>>();
+            for (int c = 0; c < nbChunks; c++) {
+                final int from = (int) ((long) count * c / nbChunks);
+                final int to = (int) ((long) count * (c + 1) / nbChunks);
+                results.add(executor.submit(new Callable<double[]>() {
+                    public double[] call() {
+                        return task.sum(from, to);
+                    }
+                }));
+            }
+            double[] total = null;
+            for (Future<double[]> result : results) {
+                double[] partial = result.get();
+                if (total == null) total = partial.clone();
+                else for (int i = 0; i < total.length; i++) total[i] += partial[i];
+            }
+            return total;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * @return toutes les mesures sur une ligne
+     */
+    @Override
+    public String toString() {
+        return String.format("croisements %s%.0f, variation longueurs %.3f, voisinages %.3f, stress %.4f",
+                isCrossingCountExact() ? "" : "~", countCrossings(), getEdgeLengthVariation(),
+                getNeighbourhoodPreservation(), getStress());
+    }
+
+}
@@ -0,0 +1,55 @@
+package metrics;
+
+import graphdrawerapp.GraphDrawerApp;
+import java.util.regex.Pattern;
+import models.Graph;
+
+/**
+ * Banc de comparaison des modèles de forces, sans interface graphique
+ * <p>
+ * Pour chaque modèle demandé, construit le graphe, l'équilibre comme {@link GraphDrawerApp}
+ * (jusqu'au seuil d'énergie ou au nombre maximal d'itérations, puis suppression des chevauchements
+ * si {@link Graph#REMOVE_OVERLAPS}) et affiche le temps d'équilibrage et les mesures de
+ * {@link LayoutMetrics}.
+ * </p>
+ */
+public class MetricsApp {
+
+    /**
+     * @param args "nom_du_fichier" ["initiales des modèles", "feh" par défaut]
+     */
+    public static void main(String[] args) {
+
+        if (args.length < 1 || !Pattern.matches("\\w{1,256}", args[0])) {
+            System.out.println("Usage : MetricsApp nom_du_fichier [initiales_modèles]");
+            return;
+        }
+        String modelLetters = args.length >= 2 ? args[1] : "feh";
+
+        StringBuilder report = new StringBuilder();
+        for (int m = 0; m < modelLetters.length(); m++) {
+            char modelLetter = modelLetters.charAt(m);
+            Graph graph = new Graph("data/" + args[0] + ".txt", modelLetter);
+
+            long start = System.nanoTime();
+            int i;
+            for (i = 0; i < GraphDrawerApp.getMaxIterations() && graph.getEk() >= Graph.ENERGY_THRESHOLD; i++) {
+                graph.iterateBalance(GraphDrawerApp.timestep, GraphDrawerApp.damping);
+            }
+            if (Graph.REMOVE_OVERLAPS && i > 0) graph.removeOverlaps();
+            long balanceTime = (System.nanoTime() - start) / 1000000;
+
+            start = System.nanoTime();
+            String metrics = new LayoutMetrics(graph).toString();
+            long metricsTime = (System.nanoTime() - start) / 1000000;
+
+            report.append(String.format("%c : %d itérations en %d ms (%s) ; %s (mesuré en %d ms)%n",
+                    modelLetter, i, balanceTime, graph.getEk() < Graph.ENERGY_THRESHOLD ? "équilibré" : "max itérations",
+                    metrics, metricsTime));
+        }
+
+        // les itérations peuvent afficher leur énergie (Graph.LOG_KINETIC_ENERGY) : on regroupe le bilan à la fin
+        System.out.print(report);
+    }
+
+}
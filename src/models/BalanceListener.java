@@ -0,0 +1,19 @@
+package models;
+
+/**
+ * Observateur d'un équilibrage lancé par {@link Graph#balance(double, double, int, LayoutBudget, BalanceListener)}
+ * <p>
+ * Il est appelé dans le thread de l'équilibrage, après chaque itération complète : les positions des noeuds
+ * ne changent pas pendant l'appel (on peut donc dessiner le graphe si l'on attend la fin du dessin).
+ * </p>
+ */
+public interface BalanceListener {
+
+    /**
+     * @param iteration numéro de l'itération (à partir de 0)
+     * @param nanos durée de l'itération, en nanosecondes
+     * @param kineticEnergy énergie cinétique du système après l'itération
+     */
+    void iterationDone(int iteration, long nanos, double kineticEnergy);
+
+}
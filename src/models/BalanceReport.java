@@ -0,0 +1,105 @@
+package models;
+
+/**
+ * Bilan d'un équilibrage borné par un {@link LayoutBudget} : les positions atteintes sont
+ * dans les noeuds du graphe, ce bilan dit jusqu'où on est allé et pourquoi on s'est arrêté.
+ */
+public class BalanceReport {
+
+    /**
+     * causes d'arrêt
+     */
+    public static final int CONVERGED = 0;      // seuil d'énergie atteint
+    public static final int MAX_ITERATIONS = 1; // nombre maximal d'itérations atteint
+    public static final int EXPIRED = 2;        // échéance dépassée
+    public static final int CANCELLED = 3;      // annulé
+
+    /**
+     * nombre d'itérations complètes
+     */
+    private final int nbIterations;
+
+    /**
+     * vrai si une dernière itération a été interrompue en cours de passe
+     * (une partie des noeuds seulement a bougé)
+     */
+    private final boolean interrupted;
+
+    /**
+     * cause d'arrêt
+     */
+    private final int stopCause;
+
+    /**
+     * énergie cinétique à la dernière itération complète
+     */
+    private final double kineticEnergy;
+
+    /**
+     * durée de l'équilibrage, en nanosecondes
+     */
+    private final long elapsedNanos;
+
+    /**
+     * @param nbIterations nombre d'itérations complètes
+     * @param interrupted vrai si une dernière itération a été interrompue
+     * @param stopCause cause d'arrêt
+     * @param kineticEnergy énergie cinétique à la dernière itération complète
+     * @param elapsedNanos durée de l'équilibrage en nanosecondes
+     */
+    public BalanceReport(int nbIterations, boolean interrupted, int stopCause, double kineticEnergy, long elapsedNanos) {
+        this.nbIterations = nbIterations;
+        this.interrupted = interrupted;
+        this.stopCause = stopCause;
+        this.kineticEnergy = kineticEnergy;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getNbIterations() {
+        return nbIterations;
+    }
+
+    public boolean isInterrupted() {
+        return interrupted;
+    }
+
+    public int getStopCause() {
+        return stopCause;
+    }
+
+    /**
+     * @return vrai si le seuil d'énergie a été atteint
+     */
+    public boolean isConverged() {
+        return stopCause == CONVERGED;
+    }
+
+    /**
+     * @return vrai si des noeuds ont bougé (au moins une itération, complète ou interrompue)
+     */
+    public boolean hasMoved() {
+        return nbIterations > 0 || interrupted;
+    }
+
+    public double getKineticEnergy() {
+        return kineticEnergy;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        String cause;
+        switch (stopCause) {
+            case CONVERGED: cause = "seuil energie atteint"; break;
+            case MAX_ITERATIONS: cause = "max iterations atteint"; break;
+            case EXPIRED: cause = "temps écoulé"; break;
+            default: cause = "annulé";
+        }
+        return cause + " (" + nbIterations + " iterations" + (interrupted ? " + 1 interrompue" : "")
+                + ", Ec " + kineticEnergy + ", " + (elapsedNanos / 1000000) + " ms)";
+    }
+
+}
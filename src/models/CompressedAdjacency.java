@@ -0,0 +1,309 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Listes de voisins compressées
+ * <p>
+ * Une {@code ArrayList<Node>} coûte de 16 à 24 octets par extrémité d'arête, ce qui domine la mémoire
+ * des très gros graphes. Ici, les voisins de chaque noeud (par rang) sont triés et on n'écrit que
+ * les écarts entre rangs successifs, chacun sur un nombre variable d'octets (7 bits utiles par octet,
+ * le bit de poids fort indiquant qu'un octet suit). Les voisins proches en rang (voir {@link NodeOrdering})
+ * ne coûtent alors qu'un ou deux octets.
+ * </p>
+ * <p>
+ * Les octets sont rangés dans des pages d'au plus {@link #PAGE_SIZE} octets, la liste d'un noeud
+ * ne chevauchant jamais deux pages. Le décodage se fait dans l'ordre avec un {@link Cursor}, sans allocation.
+ * </p>
+ */
+public class CompressedAdjacency {
+
+    /**
+     * nombre de bits de la position dans une page
+     */
+    private static final int PAGE_BITS = 30;
+
+    /**
+     * taille maximale d'une page, en octets
+     */
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    /**
+     * noeuds du graphe, par rang
+     */
+    private List<Node> nodes;
+
+    /**
+     * pages d'octets
+     */
+    private byte[][] pages;
+
+    /**
+     * début de la liste de chaque noeud : n° de page * {@link #PAGE_SIZE} + position dans la page
+     */
+    private long[] start;
+
+    /**
+     * nombre de voisins de chaque noeud
+     */
+    private int[] degree;
+
+    /**
+     * nombre total d'octets utilisés
+     */
+    private long nbBytes;
+
+    /**
+     * Compresse les listes de voisins courantes des noeuds
+     * @param nodes noeuds du graphe, rangés selon leur index
+     */
+    public CompressedAdjacency(List<Node> nodes) {
+        this.nodes = nodes;
+        int nbNodes = nodes.size();
+        start = new long[nbNodes];
+        degree = new int[nbNodes];
+        Writer writer = new Writer();
+        int[] buffer = new int[16];
+        for (int u = 0; u < nbNodes; u++) {
+            List<Node> neighbours = nodes.get(u).getNeighbours();
+            if (buffer.length < neighbours.size()) buffer = new int[neighbours.size()];
+            for (int j = 0; j < neighbours.size(); j++) buffer[j] = neighbours.get(j).getIndex();
+            writer.write(u, buffer, neighbours.size());
+        }
+        writer.finish();
+    }
+
+    /**
+     * Compresse des listes de voisins données ligne par ligne (chaque arête n'étant écrite
+     * que sur la ligne d'une de ses extrémités, comme dans le fichier ressource)
+     * @param nodes noeuds du graphe, rangés selon leur index
+     * @param lineStart début de la liste de chaque ligne dans <i>targets</i>, puis nombre total de voisins cités
+     * @param targets voisins cités, ligne après ligne
+     */
+    public CompressedAdjacency(List<Node> nodes, int[] lineStart, int[] targets) {
+        this.nodes = nodes;
+        int nbNodes = nodes.size();
+        int nbLines = lineStart.length - 1;
+
+        // listes complètes (dans les deux sens) en tableaux temporaires
+        int[] fullStart = new int[nbNodes + 1];
+        for (int u = 0; u < nbLines; u++) {
+            for (int e = lineStart[u]; e < lineStart[u + 1]; e++) {
+                fullStart[u + 1]++;
+                fullStart[targets[e] + 1]++;
+            }
+        }
+        for (int u = 0; u < nbNodes; u++) fullStart[u + 1] += fullStart[u];
+        int[] full = new int[fullStart[nbNodes]];
+        int[] fill = Arrays.copyOf(fullStart, nbNodes);
+        for (int u = 0; u < nbLines; u++) {
+            for (int e = lineStart[u]; e < lineStart[u + 1]; e++) {
+                full[fill[u]++] = targets[e];
+                full[fill[targets[e]]++] = u;
+            }
+        }
+        fill = null;
+
+        start = new long[nbNodes];
+        degree = new int[nbNodes];
+        Writer writer = new Writer();
+        int[] buffer = new int[16];
+        for (int u = 0; u < nbNodes; u++) {
+            int count = fullStart[u + 1] - fullStart[u];
+            if (buffer.length < count) buffer = new int[count];
+            System.arraycopy(full, fullStart[u], buffer, 0, count);
+            writer.write(u, buffer, count);
+        }
+        writer.finish();
+    }
+
+    /**
+     * Compresse les listes d'une autre adjacence après renumérotation des noeuds
+     * @param other adjacence avant renumérotation
+     * @param nodes noeuds du graphe, rangés selon leur nouvel index
+     * @param order permutation {@code order[nouveau rang] = ancien rang}
+     */
+    CompressedAdjacency(CompressedAdjacency other, List<Node> nodes, int[] order) {
+        this.nodes = nodes;
+        int nbNodes = order.length;
+        int[] newRank = new int[nbNodes];
+        for (int i = 0; i < nbNodes; i++) newRank[order[i]] = i;
+
+        start = new long[nbNodes];
+        degree = new int[nbNodes];
+        Writer writer = new Writer();
+        Cursor cursor = other.new Cursor();
+        int[] buffer = new int[16];
+        for (int u = 0; u < nbNodes; u++) {
+            cursor.moveTo(order[u]);
+            int count = other.degree[order[u]];
+            if (buffer.length < count) buffer = new int[count];
+            for (int j = 0; j < count; j++) buffer[j] = newRank[cursor.next()];
+            writer.write(u, buffer, count);
+        }
+        writer.finish();
+    }
+
+    /**
+     * @param node rang d'un noeud
+     * @return son nombre de voisins
+     */
+    public int getDegree(int node) {
+        return degree[node];
+    }
+
+    /**
+     * @param node rang d'un noeud
+     * @return une nouvelle liste de ses voisins (décodée à chaque appel)
+     */
+    public ArrayList<Node> getNeighbours(int node) {
+        ArrayList<Node> neighbours = new ArrayList<Node>(degree[node]);
+        Cursor cursor = new Cursor();
+        cursor.moveTo(node);
+        while (cursor.hasNext()) neighbours.add(nodes.get(cursor.next()));
+        return neighbours;
+    }
+
+    /**
+     * @return le nombre d'octets des listes (sans les {@link #start débuts} ni les {@link #degree degrés})
+     */
+    public long getNbBytes() {
+        return nbBytes;
+    }
+
+    /**
+     * Lecture des voisins d'un noeud, dans l'ordre croissant des rangs
+     */
+    public class Cursor {
+
+        /**
+         * page de la liste en cours de lecture et position dans la page
+         */
+        private byte[] page;
+        private int position;
+
+        /**
+         * nombre de voisins restant à lire
+         */
+        private int remaining;
+
+        /**
+         * dernier rang lu (les écarts s'y ajoutent)
+         */
+        private int previous;
+
+        /**
+         * Se place au début de la liste d'un noeud
+         * @param node rang du noeud
+         */
+        public void moveTo(int node) {
+            page = pages[(int) (start[node] >>> PAGE_BITS)];
+            position = (int) (start[node] & (PAGE_SIZE - 1));
+            remaining = degree[node];
+            previous = 0;
+        }
+
+        /**
+         * Se place au même endroit qu'un autre curseur (par exemple au milieu d'une longue liste,
+         * pour ne pas la décoder à nouveau depuis son début)
+         * @param other curseur de la même adjacence
+         */
+        public void moveTo(Cursor other) {
+            page = other.page;
+            position = other.position;
+            remaining = other.remaining;
+            previous = other.previous;
+        }
+
+        /**
+         * @return vrai s'il reste des voisins à lire
+         */
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        /**
+         * @return le rang du voisin suivant
+         */
+        public int next() {
+            int gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = page[position++];
+                gap |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            remaining--;
+            previous += gap;
+            return previous;
+        }
+
+    }
+
+    /**
+     * Ecriture des listes dans les pages, noeud après noeud
+     */
+    private class Writer {
+
+        /**
+         * pages remplies
+         */
+        private List<byte[]> filled = new ArrayList<byte[]>();
+
+        /**
+         * page en cours (agrandie par doublement jusqu'à {@link #PAGE_SIZE}) et position dans la page
+         */
+        private byte[] page = new byte[1 << 12];
+        private int position;
+
+        /**
+         * Trie et écrit la liste d'un noeud
+         * @param node rang du noeud
+         * @param neighbours rangs de ses voisins (triés au passage)
+         * @param count nombre de voisins
+         */
+        void write(int node, int[] neighbours, int count) {
+            Arrays.sort(neighbours, 0, count);
+            // au plus 5 octets par voisin : on s'assure que la liste tient dans la page
+            long needed = (long) position + 5L * count;
+            if (needed > page.length) {
+                // une page garde moins de PAGE_SIZE octets pour que toute position y tienne sur PAGE_BITS bits
+                if (needed < PAGE_SIZE) {
+                    page = Arrays.copyOf(page, (int) Math.min(Math.max(needed, 2L * page.length), PAGE_SIZE - 1));
+                } else {
+                    if (5L * count >= PAGE_SIZE) throw new IllegalArgumentException("Trop de voisins pour le noeud " + node);
+                    filled.add(Arrays.copyOf(page, position));
+                    nbBytes += position;
+                    page = new byte[(int) Math.max(5L * count, 1 << 12)];
+                    position = 0;
+                }
+            }
+            start[node] = ((long) filled.size() << PAGE_BITS) | position;
+            degree[node] = count;
+            int previous = 0;
+            for (int j = 0; j < count; j++) {
+                int gap = neighbours[j] - previous;
+                previous = neighbours[j];
+                while ((gap & ~0x7f) != 0) {
+                    page[position++] = (byte) ((gap & 0x7f) | 0x80);
+                    gap >>>= 7;
+                }
+                page[position++] = (byte) gap;
+            }
+        }
+
+        /**
+         * Range la dernière page, réduite à sa taille utile
+         */
+        void finish() {
+            filled.add(Arrays.copyOf(page, position));
+            nbBytes += position;
+            pages = filled.toArray(new byte[filled.size()][]);
+        }
+
+    }
+
+}
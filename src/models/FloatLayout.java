@@ -0,0 +1,190 @@
+package models;
+
+import helper.FloatForceModelizer;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Disposition d'un graphe en simple précision
+ * <p>
+ * Les positions et vitesses sont rangées dans des tableaux de {@code float} (une case par noeud
+ * et par composante) et les voisins dans un tableau d'indices contigu. La boucle de répulsion
+ * lit ainsi deux fois moins de mémoire qu'avec les {@link helper.Vector} en {@code double},
+ * ce qui est sa limite sur les gros graphes. La précision reste largement suffisante pour un
+ * dessin dont les coordonnées finales sont des pixels entiers.
+ * </p>
+ * <p>
+ * L'itération reproduit exactement celle de {@link Graph#iterateBalance} (y compris la mise à jour
+ * immédiate de la position de chaque noeud), seule l'énergie cinétique est sommée en {@code double}
+ * pour ne pas perdre les petites contributions devant les grandes.
+ * </p>
+ */
+public class FloatLayout {
+
+    /**
+     * nombre de noeuds
+     */
+    private int nbNodes;
+
+    /**
+     * positions des noeuds
+     */
+    private float[] posX, posY;
+
+    /**
+     * vitesses des noeuds
+     */
+    private float[] speedX, speedY;
+
+    /**
+     * noeuds épinglés, exclus de l'intégration
+     */
+    private boolean[] pinned;
+
+    /**
+     * les voisins du noeud i sont {@code neighbours[neighboursStart[i]]} à {@code neighbours[neighboursStart[i+1]-1]}
+     */
+    private int[] neighboursStart, neighbours;
+
+    /**
+     * le calculateur de force en simple précision
+     */
+    private FloatForceModelizer calculator;
+
+    /**
+     * Construit la disposition à partir des noeuds <i>nodes</i> et de leurs positions courantes
+     * @param nodes noeuds du graphe, dans l'ordre de leur rang dans la liste
+     * @param calculator calculateur de force en simple précision
+     */
+    public FloatLayout(List<Node> nodes, FloatForceModelizer calculator) {
+
+        this.calculator = calculator;
+        nbNodes = nodes.size();
+        posX = new float[nbNodes];
+        posY = new float[nbNodes];
+        speedX = new float[nbNodes];
+        speedY = new float[nbNodes];
+        pinned = new boolean[nbNodes];
+
+        // rang de chaque noeud dans la liste (les index des noeuds ne commencent pas forcément à 0)
+        IdentityHashMap<Node, Integer> ranks = new IdentityHashMap<Node, Integer>();
+        int nbEntries = 0;
+        for (int i = 0; i < nbNodes; i++) {
+            ranks.put(nodes.get(i), i);
+            nbEntries += nodes.get(i).getNeighbours().size();
+        }
+
+        neighboursStart = new int[nbNodes + 1];
+        neighbours = new int[nbEntries];
+        int entry = 0;
+        for (int i = 0; i < nbNodes; i++) {
+            neighboursStart[i] = entry;
+            for (Iterator<Node> neighbourIter = nodes.get(i).getNeighbours().listIterator(); neighbourIter.hasNext(); ) {
+                neighbours[entry++] = ranks.get(neighbourIter.next());
+            }
+        }
+        neighboursStart[nbNodes] = entry;
+
+        load(nodes);
+    }
+
+    /**
+     * Recopie les positions, vitesses et épinglages des noeuds dans les tableaux
+     * @param nodes noeuds du graphe, dans le même ordre qu'à la construction
+     */
+    public void load(List<Node> nodes) {
+        for (int i = 0; i < nbNodes; i++) {
+            Node node = nodes.get(i);
+            posX[i] = (float) node.getPosition().getX();
+            posY[i] = (float) node.getPosition().getY();
+            speedX[i] = (float) node.getSpeed().getX();
+            speedY[i] = (float) node.getSpeed().getY();
+            pinned[i] = node.isPinned();
+        }
+    }
+
+    /**
+     * Recopie les positions et vitesses des tableaux dans les noeuds (pour le dessin)
+     * @param nodes noeuds du graphe, dans le même ordre qu'à la construction
+     */
+    public void store(List<Node> nodes) {
+        for (int i = 0; i < nbNodes; i++) {
+            Node node = nodes.get(i);
+            node.getPosition().setComponents(posX[i], posY[i]);
+            node.getSpeed().setComponents(speedX[i], speedY[i]);
+        }
+    }
+
+    /**
+     * Applique une itération de l'algorithme d'équilibrage en simple précision
+     * @param timestep pas temporel de l'itération
+     * @param damping facteur d'amortissement
+     * @return l'énergie cinétique du système après l'itération
+     */
+    public double iterate(float timestep, float damping) {
+        return iterate(timestep, damping, null);
+    }
+
+    /**
+     * Itération interruptible : le budget est consulté avant chaque noeud
+     * @param timestep pas temporel de l'itération
+     * @param damping facteur d'amortissement
+     * @param budget budget de l'équilibrage, ou null
+     * @return l'énergie cinétique du système après l'itération, ou -1 si elle a été interrompue
+     * (les noeuds déjà traités ont bougé)
+     */
+    public double iterate(float timestep, float damping, LayoutBudget budget) {
+
+        double kineticEnergy = 0;
+
+        for (int u = 0; u < nbNodes; u++) {
+
+            if (budget != null && budget.isOver()) return -1;
+
+            if (pinned[u]) continue; // vitesse déjà nulle (voir Node.applyForce)
+
+            float ux = posX[u];
+            float uy = posY[u];
+            float forceX = 0;
+            float forceY = 0;
+
+            // forces attractives avec les voisins
+            for (int e = neighboursStart[u]; e < neighboursStart[u + 1]; e++) {
+                int v = neighbours[e];
+                float dx = posX[v] - ux;
+                float dy = posY[v] - uy;
+                float dist = (float) Math.sqrt(dx*dx + dy*dy);
+                float factor = calculator.calculateAttrForce(dist) / dist;
+                forceX += dx * factor;
+                forceY += dy * factor;
+            }
+
+            // forces répulsives avec tous les autres noeuds
+            for (int v = 0; v < nbNodes; v++) {
+                if (v == u) continue;
+                float dx = posX[v] - ux;
+                float dy = posY[v] - uy;
+                float dist = (float) Math.sqrt(dx*dx + dy*dy);
+                float factor = calculator.calculateRepulsForce(dist) / dist;
+                forceX += dx * factor;
+                forceY += dy * factor;
+            }
+
+            /* TAM élémentaire, même formule que Node.applyForce
+             * (où le déplacement est la vitesse elle-même multipliée par le pas temporel)
+             */
+            float vx = (speedX[u] + forceX * timestep) * damping * timestep;
+            float vy = (speedY[u] + forceY * timestep) * damping * timestep;
+            speedX[u] = vx;
+            speedY[u] = vy;
+            posX[u] = ux + vx;
+            posY[u] = uy + vy;
+
+            kineticEnergy += (double) vx * vx + (double) vy * vy;
+        }
+
+        return kineticEnergy;
+    }
+
+}
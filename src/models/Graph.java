@@ -5,13 +5,28 @@
 package models;
 
 import calculators.*;
+import graphdrawerapp.Framing;
 import graphdrawerapp.GraphDrawerApp;
+import helper.CsrAdjacency;
+import helper.FloatForceModelizer;
 import helper.ForceModelizer;
+import helper.TabulatedForceModelizer;
 import helper.Vector;
+import helper.ParallelParser;
 import helper.Parser;
+import helper.StreamingParser;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import jdk.jfr.EventType;
+import profiling.IterationEvent;
+import trajectory.TrajectoryRecorder;
 
 /**
  * Modèle de graphe
@@ -35,11 +50,165 @@ public class Graph {
     // = 1 : le graph3 atteint presque la symétrie
     // = 0.1 : le graph3 atteint la symétrie
     
+    /**
+     * booléen mis à true pour lire les forces dans des tables précalculées
+     * (voir {@link TabulatedForceModelizer}) plutôt que de les calculer à chaque paire
+     */
+    public static boolean TABULATED_KERNELS = false;
+    
+    /**
+     * booléen mis à true pour équilibrer le graphe en simple précision (voir {@link FloatLayout})
+     */
+    public static boolean SINGLE_PRECISION = false;
+    
+    /**
+     * renumérotation des noeuds après lecture du fichier, pour la localité mémoire (voir {@link NodeOrdering}) :
+     * 'n' aucune (ordre du fichier), 'b' parcours en largeur, 'r' Cuthill-McKee inverse
+     */
+    public static char NODE_ORDERING = 'n';
+    
+    /**
+     * nombre d'itérations entre deux renumérotations selon la courbe de Hilbert des positions
+     * courantes (0 pour ne jamais le faire)
+     */
+    public static int HILBERT_REORDERING_PERIOD = 0;
+    
+    /**
+     * booléen mis à true pour écarter les noeuds qui se chevauchent une fois l'équilibrage terminé
+     * (voir {@link #removeOverlaps()})
+     */
+    public static boolean REMOVE_OVERLAPS = false;
+    
+    /**
+     * taille de fichier à partir de laquelle il est lu en parallèle (voir {@link ParallelParser})
+     */
+    public static long PARALLEL_PARSING_MIN_BYTES = 1 << 20;
+    
+    /**
+     * booléen mis à true pour ranger les listes de voisins sous forme compressée
+     * (quelques octets par arête au lieu d'une {@code ArrayList<Node>} par noeud, voir {@link CompressedAdjacency})
+     */
+    public static boolean COMPRESSED_ADJACENCY = false;
+    
+    /**
+     * booléen mis à true pour afficher l'énergie cinétique après chaque itération (pour le débogage :
+     * l'affichage alloue une chaîne à chaque itération, voir {@link graphdrawerapp.AllocationCheck} ;
+     * le bouton Balance affiche lui-même l'énergie)
+     */
+    public static boolean LOG_KINETIC_ENERGY = false;
+    
+    /**
+     * nombre de noeuds repoussants tirés au hasard pour chaque noeud à chaque itération
+     * (0 : répulsion exacte avec tous les noeuds, voir {@link NegativeSampling}) ;
+     * ce mode passe avant {@link #SINGLE_PRECISION}
+     */
+    public static int REPULSION_SAMPLES = 0;
+    
+    /**
+     * graine des tirages de la répulsion échantillonnée
+     */
+    public static long REPULSION_SEED = 42;
+    
+    /**
+     * booléen mis à true pour ne calculer qu'une fois la force de chaque paire de noeuds, appliquée aux deux
+     * (mise à jour de Jacobi, voir {@link SymmetricForces}) ; ce mode passe après {@link #REPULSION_SAMPLES}
+     * et avant {@link #SINGLE_PRECISION}
+     */
+    public static boolean SYMMETRIC_FORCES = false;
+    
+    /**
+     * nombre de threads de la répulsion échantillonnée et des forces symétriques
+     */
+    public static int REPULSION_THREADS = Runtime.getRuntime().availableProcessors();
+    
+    /**
+     * coefficients d'attraction et de répulsion du modèle d'Eades
+     */
+    public static double EADES_ATTRACTION = 20;
+    public static double EADES_REPULSION = 30000;
+    
+    /**
+     * booléen mis à true pour reprendre à la construction le profil de paramètres de la classe du graphe
+     * (voir {@link ParameterProfile}), s'il y en a un dans {@link #PARAMETER_PROFILES_DIRECTORY}
+     */
+    public static boolean USE_PARAMETER_PROFILES = false;
+    
+    /**
+     * dossier des profils de paramètres
+     */
+    public static String PARAMETER_PROFILES_DIRECTORY = "profiles";
+    
+    /**
+     * type de l'évènement JFR des itérations (voir {@link IterationEvent})
+     */
+    private static final EventType ITERATION_EVENT_TYPE = EventType.getEventType(IterationEvent.class);
+    
     /**
      * le calculateur de force associé au graphe. Dépend du modèle choisi.
      */
     private ForceModelizer calculator;
     
+    /**
+     * le même calculateur sous forme tabulée, ou null si {@link #TABULATED_KERNELS} est faux
+     */
+    private TabulatedForceModelizer tabulatedCalculator;
+    
+    /**
+     * le calculateur de force en simple précision (tous les modèles le proposent)
+     */
+    private FloatForceModelizer floatCalculator;
+    
+    /**
+     * copie des positions en simple précision, créée au premier équilibrage en mode {@link #SINGLE_PRECISION}
+     */
+    private FloatLayout floatLayout;
+    
+    /**
+     * listes de voisins compressées, ou null si chaque noeud a sa propre liste (voir {@link #COMPRESSED_ADJACENCY})
+     */
+    private CompressedAdjacency compressedAdjacency;
+    
+    /**
+     * lecteur des listes compressées pour la boucle d'attraction
+     */
+    private CompressedAdjacency.Cursor neighbourCursor;
+    
+    /**
+     * index spatial des positions courantes, construit à la demande et oublié dès que les noeuds bougent
+     */
+    private SpatialIndex spatialIndex;
+    
+    /**
+     * calcul de la répulsion échantillonnée, créé à la première itération en mode {@link #REPULSION_SAMPLES}
+     */
+    private NegativeSampling negativeSampling;
+    
+    /**
+     * calcul des forces par paires, créé à la première itération en mode {@link #SYMMETRIC_FORCES}
+     */
+    private SymmetricForces symmetricForces;
+    
+    /**
+     * enregistrement de la trajectoire des noeuds, ou null
+     */
+    private TrajectoryRecorder trajectory;
+    
+    /**
+     * profil de paramètres du graphe, ou null pour les paramètres par défaut
+     */
+    private ParameterProfile profile;
+    
+    /**
+     * coefficients du modèle d'Eades employés par le calculateur (ceux du profil, sinon
+     * {@link #EADES_ATTRACTION} et {@link #EADES_REPULSION} à la construction)
+     */
+    private double eadesAttraction, eadesRepulsion;
+    
+    /**
+     * nombre d'itérations effectuées depuis la construction (pour {@link #HILBERT_REORDERING_PERIOD})
+     */
+    private int iterationCount;
+    
     /**
      * ensemble des noeuds du graphe 
      */
@@ -94,19 +263,87 @@ public class Graph {
     /**
      * Construit le modèle de graphe à partir d'un fichier
      * contenant ses caractéristiques
+     * <p>
+     * Les fichiers {@code .mtx} (Matrix Market) et {@code .edges} (liste d'arêtes) sont lus en flux
+     * par {@link StreamingParser} ; les autres sont au format du fichier ressource.
+     * </p>
      * 
      * @param filePath nom du fichier ressource
      * @param modelLetter initiale du nom du modèle choisi
      */
     public Graph(String filePath, char modelLetter) {
+        if (filePath.endsWith(".mtx") || filePath.endsWith(".edges")) {
+            try {
+                initialize(filePath.endsWith(".mtx") ? StreamingParser.parseMatrixMarket(filePath)
+                        : StreamingParser.parseEdgeList(filePath), null);
+            } catch (IOException ex) {
+                throw new IllegalArgumentException("Lecture de " + filePath + " impossible : " + ex.getMessage(), ex);
+            }
+        } else if (new File(filePath).length() < PARALLEL_PARSING_MIN_BYTES) {
+            // lit le fichier et le parse en une liste profonde
+            initialize(Parser.parseFile(filePath), null);
+        } else {
+            // gros fichier : lecture en parallèle, directement en tableaux
+            try {
+                initialize(ParallelParser.parseFile(filePath), null);
+            } catch (IOException ex) {
+                throw new IllegalArgumentException("Lecture de " + filePath + " impossible : " + ex.getMessage(), ex);
+            }
+        }
+        initialize(modelLetter);
+    }
+    
+    /**
+     * Construit le modèle de graphe à partir d'une liste profonde de la forme
+     * renvoyée par {@link Parser#parseFile} (la liste est vidée au passage)
+     * 
+     * @param lists nombre de noeuds, puis liste des voisins de chaque noeud
+     * @param originalIndexes n° d'origine de chaque noeud, ou null s'il s'agit de leur rang
+     * @param modelLetter initiale du nom du modèle choisi
+     */
+    public Graph(List<List<Integer>> lists, int[] originalIndexes, char modelLetter) {
+        initialize(lists, originalIndexes);
+        initialize(modelLetter);
+    }
+    
+    /**
+     * Construit le modèle de graphe à partir des listes de voisins en tableaux (voir {@link ParallelParser})
+     * 
+     * @param adjacency nombre de noeuds et liste des voisins de chaque ligne
+     * @param originalIndexes n° d'origine de chaque noeud, ou null s'il s'agit de leur rang
+     * @param modelLetter initiale du nom du modèle choisi
+     */
+    public Graph(CsrAdjacency adjacency, int[] originalIndexes, char modelLetter) {
+        this(adjacency, originalIndexes, modelLetter, null);
+    }
+    
+    /**
+     * Construit le modèle de graphe à partir des listes de voisins en tableaux, avec un profil de paramètres
+     * imposé (plutôt que celui de sa classe)
+     * 
+     * @param adjacency nombre de noeuds et liste des voisins de chaque ligne
+     * @param originalIndexes n° d'origine de chaque noeud, ou null s'il s'agit de leur rang
+     * @param modelLetter initiale du nom du modèle choisi
+     * @param profile profil de paramètres, ou null
+     */
+    public Graph(CsrAdjacency adjacency, int[] originalIndexes, char modelLetter, ParameterProfile profile) {
+        this.profile = profile;
+        initialize(adjacency, originalIndexes);
+        initialize(modelLetter);
+    }
+    
+    /**
+     * Crée les noeuds et les associe d'après une liste profonde (la liste est vidée au passage)
+     * @param lists nombre de noeuds, puis liste des voisins de chaque noeud
+     * @param originalIndexes n° d'origine de chaque noeud, ou null s'il s'agit de leur rang
+     */
+    private void initialize(List<List<Integer>> lists, int[] originalIndexes) {
         
         // *** création et association des noeuds
         
         // initialiser liste vide
         nodes = new ArrayList<Node>();
         
-        // lit le fichier et le parse en une liste profonde lists
-        List<List<Integer>> lists = Parser.parseFile(filePath);
         if (GraphDrawerApp.DEBUG_MODE) System.out.println(lists);
         int nbNodes = (lists.remove(0).remove(0));
         System.out.println("Le nombre de noeuds dans ce graphe est : " + nbNodes);
@@ -118,7 +355,8 @@ public class Graph {
         
         // on crée d'abord les noeuds et on les associe au graphe
         for (int i = 0; i<nbNodes; i++){
-                Node node = new Node(); // on donnera des positions aléatoires plus tard (reset())
+                // on donnera des positions aléatoires plus tard (reset())
+                Node node = originalIndexes == null ? new Node(i) : new Node(i, originalIndexes[i]);
                 addNode(node);          // on ajoute le noeud au graphe
         }
         if (GraphDrawerApp.DEBUG_MODE) System.out.println(lists);
@@ -139,26 +377,159 @@ public class Graph {
         }
         
         // *** fin création et associaion des noeuds
+    }
+    
+    /**
+     * Crée les noeuds et les associe d'après des listes de voisins en tableaux
+     * @param adjacency nombre de noeuds et liste des voisins de chaque ligne
+     * @param originalIndexes n° d'origine de chaque noeud, ou null s'il s'agit de leur rang
+     */
+    private void initialize(CsrAdjacency adjacency, int[] originalIndexes) {
+        int nbNodes = adjacency.getNbNodes();
+        System.out.println("Le nombre de noeuds dans ce graphe est : " + nbNodes);
+        nodes = new ArrayList<Node>(nbNodes);
+        for (int i = 0; i < nbNodes; i++) {
+            addNode(originalIndexes == null ? new Node(i) : new Node(i, originalIndexes[i]));
+        }
+        int[] lineStart = adjacency.getLineStart();
+        int[] targets = adjacency.getTargets();
+        if (COMPRESSED_ADJACENCY) {
+            // compression directe, sans passer par les listes de chaque noeud
+            setCompressedAdjacency(new CompressedAdjacency(nodes, lineStart, targets));
+            return;
+        }
+        for (int i = 0; i < adjacency.getNbLines(); i++) {
+            Node node = nodes.get(i);
+            for (int e = lineStart[i]; e < lineStart[i + 1]; e++) {
+                node.bindWith(nodes.get(targets[e]));
+            }
+        }
+    }
+    
+    /**
+     * Termine la construction une fois les noeuds associés : renumérotation, distance idéale,
+     * placement initial et calculateur de force
+     * @param modelLetter initiale du nom du modèle choisi
+     */
+    private void initialize(char modelLetter) {
+        
+        int nbNodes = nodes.size();
+        
+        if (COMPRESSED_ADJACENCY && compressedAdjacency == null) setCompressedAdjacency(new CompressedAdjacency(nodes));
+        
+        // renumérotation éventuelle pour que les voisins soient proches en mémoire
+        switch (NODE_ORDERING) {
+            case 'b':
+                reorder(NodeOrdering.breadthFirst(nodes));
+                break;
+            case 'r':
+                reorder(NodeOrdering.reverseCuthillMcKee(nodes));
+                break;
+            default:
+                break;
+        }
+        
+        // profil de paramètres de la classe du graphe, s'il y en a un
+        if (profile == null && USE_PARAMETER_PROFILES) {
+            profile = ParameterProfile.load(new File(PARAMETER_PROFILES_DIRECTORY),
+                    ParameterProfile.classify(modelLetter, nbNodes, countEdges()));
+            if (profile != null) System.out.println("Profil de paramètres : " + profile);
+        }
         
         // calcule distance idéale
-        k = Math.sqrt(AREA/nbNodes); // k = racine(aire de travail / |V|)
+        k = Math.sqrt((double) getArea()/nbNodes); // k = racine(aire de travail / |V|)
         if (GraphDrawerApp.DEBUG_MODE) System.out.println("k is: " + k);
         
         reset(); // fait office d'initialisation ici (placement des noeuds et Ec)
         
-        switch (modelLetter){ // seul le premier caractère importe
+        eadesAttraction = profile != null ? profile.getEadesAttraction() : EADES_ATTRACTION;
+        eadesRepulsion = profile != null ? profile.getEadesRepulsion() : EADES_REPULSION;
+        calculator = createCalculator(modelLetter, k, eadesAttraction, eadesRepulsion);
+        
+        floatCalculator = (FloatForceModelizer) calculator;
+        
+        if (TABULATED_KERNELS) {
+            tabulatedCalculator = new TabulatedForceModelizer(calculator, k);
+            calculator = tabulatedCalculator;
+            if (GraphDrawerApp.DEBUG_MODE) System.out.println("Tables de forces : " + tabulatedCalculator.getNbSegments() + " segments, erreurs max "
+                    + tabulatedCalculator.getMaxAttrError() + " / " + tabulatedCalculator.getMaxRepulsError());
+        }
+    }
+    
+    /**
+     * Crée le calculateur de force du modèle choisi
+     * @param modelLetter initiale du nom du modèle choisi (seul le premier caractère importe)
+     * @param k distance idéale entre deux noeuds voisins
+     * @return le calculateur, qui implémente aussi {@link FloatForceModelizer}
+     */
+    public static ForceModelizer createCalculator(char modelLetter, double k) {
+        return createCalculator(modelLetter, k, EADES_ATTRACTION, EADES_REPULSION);
+    }
+    
+    /**
+     * Crée le calculateur de force du modèle choisi
+     * @param modelLetter initiale du nom du modèle choisi (seul le premier caractère importe)
+     * @param k distance idéale entre deux noeuds voisins
+     * @param eadesAttraction coefficient d'attraction du modèle d'Eades (ignoré pour les autres modèles)
+     * @param eadesRepulsion coefficient de répulsion du modèle d'Eades (ignoré pour les autres modèles)
+     * @return le calculateur, qui implémente aussi {@link FloatForceModelizer}
+     */
+    public static ForceModelizer createCalculator(char modelLetter, double k, double eadesAttraction, double eadesRepulsion) {
+        switch (modelLetter){
             case 'e':
-                calculator = new Eades(k,20,30000);
-                // remarque : on aurait pu mettre les 2 derniers arguments en paramètres de commande également
-                break;
+                return new Eades(k,eadesAttraction,eadesRepulsion);
             case 'h':
-                calculator = new HookeLike(k);
-                break;
+                return new HookeLike(k);
             case 'f':
             default:
-                calculator = new FruchtermanReingold(k);
-                break;
+                return new FruchtermanReingold(k);
+        }
+    }
+    
+    /**
+     * @return la distance idéale entre deux noeuds voisins
+     */
+    public double getIdealDistance() {
+        return k;
+    }
+    
+    /**
+     * @return l'aire ciblée pour ce graphe : celle de son profil, sinon {@link #AREA}
+     */
+    public int getArea() {
+        return profile != null ? profile.getArea() : AREA;
+    }
+    
+    /**
+     * @return le coefficient d'attraction du modèle d'Eades employé par le calculateur
+     */
+    public double getEadesAttraction() {
+        return eadesAttraction;
+    }
+    
+    /**
+     * @return le coefficient de répulsion du modèle d'Eades employé par le calculateur
+     */
+    public double getEadesRepulsion() {
+        return eadesRepulsion;
+    }
+    
+    /**
+     * @return le profil de paramètres du graphe, ou null s'il suit les paramètres par défaut
+     */
+    public ParameterProfile getProfile() {
+        return profile;
+    }
+    
+    /**
+     * @return le nombre d'arêtes du graphe
+     */
+    private long countEdges() {
+        long nbEnds = 0;
+        for (int i = 0; i < nodes.size(); i++) {
+            nbEnds += compressedAdjacency != null ? compressedAdjacency.getDegree(i) : nodes.get(i).getNeighbours().size();
         }
+        return nbEnds / 2;
     }
     
     /**
@@ -179,11 +550,106 @@ public class Graph {
         Node currentNode = null;
         for (Iterator<Node> nodeIter = nodes.listIterator(); nodeIter.hasNext(); ) {
             currentNode = nodeIter.next();
-            currentNode.reset();
+            currentNode.reset(getArea());
         }
         refreshBoundaries(); // initialiser les frontières pour la première représentation du graphe
         kineticEnergy = ENERGY_THRESHOLD; // initialiser énergie cinétique pour que l'équilibrage puisse démarrer
         // attention, comme les vitesses des noeuds sont, elles, nulles, ce n'est pas la véritable énergie cinétique
+        if (floatLayout != null) floatLayout.load(nodes);
+    }
+    
+    /**
+     * Place les noeuds aux positions données, avec une vitesse nulle, comme après un {@link #reset()}
+     * @param x abscisses des noeuds, dans l'ordre de la liste des noeuds
+     * @param y ordonnées des noeuds, dans l'ordre de la liste des noeuds
+     */
+    public void setPositions(double[] x, double[] y) {
+        setPositions(x, y, ENERGY_THRESHOLD);
+    }
+    
+    /**
+     * Place les noeuds aux positions données, avec une vitesse nulle, en fixant l'énergie cinétique
+     * (une valeur sous {@link #ENERGY_THRESHOLD} indique une disposition déjà équilibrée)
+     * @param x abscisses des noeuds, dans l'ordre de la liste des noeuds
+     * @param y ordonnées des noeuds, dans l'ordre de la liste des noeuds
+     * @param kineticEnergy énergie cinétique à considérer pour le critère d'arrêt
+     */
+    public void setPositions(double[] x, double[] y, double kineticEnergy) {
+        for (int i = 0; i < nodes.size(); i++) {
+            nodes.get(i).getPosition().setComponents(x[i], y[i]);
+            nodes.get(i).getSpeed().setComponents(0, 0);
+        }
+        refreshBoundaries();
+        this.kineticEnergy = kineticEnergy;
+        if (floatLayout != null) floatLayout.load(nodes);
+    }
+    
+    /**
+     * Reprend les positions d'une disposition d'un graphe proche (version précédente du même graphe) :
+     * les noeuds de même n° d'origine reprennent leur position, les nouveaux sont placés au barycentre
+     * de leurs voisins déjà placés (légèrement décalé pour ne pas les superposer), les autres gardent
+     * leur position aléatoire. Les vitesses sont nulles et l'équilibrage peut reprendre pour affiner.
+     * @param originalIndexes n° d'origine des noeuds de l'autre disposition
+     * @param x abscisses de l'autre disposition
+     * @param y ordonnées de l'autre disposition
+     * @return le nombre de noeuds qui n'y figuraient pas
+     */
+    public int seedPositions(int[] originalIndexes, double[] x, double[] y) {
+        Map<Integer, Integer> known = new HashMap<Integer, Integer>();
+        for (int i = 0; i < originalIndexes.length; i++) known.put(originalIndexes[i], i);
+        
+        int nbNodes = nodes.size();
+        double[] seededX = new double[nbNodes];
+        double[] seededY = new double[nbNodes];
+        boolean[] placed = new boolean[nbNodes];
+        int nbNew = 0;
+        for (int i = 0; i < nbNodes; i++) {
+            Integer j = known.get(nodes.get(i).getOriginalIndex());
+            if (j != null) {
+                seededX[i] = x[j];
+                seededY[i] = y[j];
+                placed[i] = true;
+            } else {
+                seededX[i] = nodes.get(i).getPosition().getX();
+                seededY[i] = nodes.get(i).getPosition().getY();
+                nbNew++;
+            }
+        }
+        
+        // nouveaux noeuds : barycentre des voisins déjà placés (y compris les nouveaux placés avant eux)
+        double jitter = k / 10;
+        for (int i = 0; i < nbNodes; i++) {
+            if (placed[i]) continue;
+            List<Node> neighbours = compressedAdjacency != null ? compressedAdjacency.getNeighbours(i) : nodes.get(i).getNeighbours();
+            double sumX = 0, sumY = 0;
+            int count = 0;
+            for (Node neighbour : neighbours) {
+                if (placed[neighbour.getIndex()]) {
+                    sumX += seededX[neighbour.getIndex()];
+                    sumY += seededY[neighbour.getIndex()];
+                    count++;
+                }
+            }
+            if (count > 0) {
+                seededX[i] = sumX / count + (Math.random() - 0.5) * jitter;
+                seededY[i] = sumY / count + (Math.random() - 0.5) * jitter;
+                placed[i] = true;
+            }
+        }
+        setPositions(seededX, seededY);
+        return nbNew;
+    }
+    
+    /**
+     * Enregistre (ou non) les positions des noeuds après chaque itération complète
+     * @param trajectory enregistrement à compléter, ou null pour arrêter d'enregistrer
+     */
+    public void setTrajectoryRecorder(TrajectoryRecorder trajectory) {
+        this.trajectory = trajectory;
+    }
+    
+    public TrajectoryRecorder getTrajectoryRecorder() {
+        return trajectory;
     }
     
     /**
@@ -224,6 +690,212 @@ public class Graph {
     
 
     
+    /**
+     * Renumérote les noeuds du graphe : le noeud de rang {@code order[i]} prend le rang i.
+     * <p>
+     * Seul l'ordre en mémoire change : chaque noeud garde son n° d'origine
+     * ({@link Node#getOriginalIndex()}), qui reste celui affiché et écrit en sortie.
+     * Les listes de voisins sont aussi triées par rang pour être parcourues dans l'ordre de la mémoire.
+     * </p>
+     * @param order permutation {@code order[nouveau rang] = ancien rang}
+     */
+    public void reorder(int[] order) {
+        ArrayList<Node> reordered = new ArrayList<Node>(nodes.size());
+        for (int i = 0; i < order.length; i++) {
+            Node node = nodes.get(order[i]);
+            node.setIndex(i);
+            reordered.add(node);
+        }
+        nodes = reordered;
+        if (compressedAdjacency != null) {
+            // les listes compressées sont triées par rang : on les réécrit avec les nouveaux rangs
+            setCompressedAdjacency(new CompressedAdjacency(compressedAdjacency, nodes, order));
+        } else {
+            for (Iterator<Node> nodeIter = nodes.listIterator(); nodeIter.hasNext(); ) {
+                Collections.sort(nodeIter.next().getNeighbours(), INDEX_ORDER);
+            }
+        }
+        // la copie en simple précision suit l'ordre des noeuds : on la reconstruira à partir des noeuds
+        floatLayout = null;
+    }
+    
+    /**
+     * Ecarte les noeuds qui se chevauchent sur le dessin (voir {@link OverlapRemoval}),
+     * à appeler une fois l'équilibrage terminé
+     * <p>
+     * Les noeuds sont dessinés avec le rayon {@link Framing#RADIUS} à l'échelle du modèle :
+     * deux noeuds se chevauchent à moins de deux rayons. L'énergie cinétique est conservée.
+     * </p>
+     * @return le nombre de passes effectuées (0 si aucun noeud n'a bougé)
+     */
+    public int removeOverlaps() {
+        int nbNodes = nodes.size();
+        double[] x = new double[nbNodes];
+        double[] y = new double[nbNodes];
+        boolean[] pinned = new boolean[nbNodes];
+        for (int i = 0; i < nbNodes; i++) {
+            x[i] = nodes.get(i).getPosition().getX();
+            y[i] = nodes.get(i).getPosition().getY();
+            pinned[i] = nodes.get(i).isPinned();
+        }
+        int nbPasses = OverlapRemoval.removeOverlaps(x, y, pinned, 2 * Framing.RADIUS);
+        if (nbPasses > 0) setPositions(x, y, kineticEnergy);
+        return nbPasses;
+    }
+    
+    /**
+     * @return l'index spatial des positions courantes des noeuds (pour retrouver un noeud sous la souris)
+     */
+    public SpatialIndex getSpatialIndex() {
+        if (spatialIndex == null) spatialIndex = new SpatialIndex(nodes);
+        return spatialIndex;
+    }
+    
+    /**
+     * Epingle ou libère un noeud : un noeud épinglé n'est plus déplacé par l'équilibrage
+     * @param node noeud du graphe
+     * @param pinned vrai pour épingler le noeud
+     */
+    public void setPinned(Node node, boolean pinned) {
+        node.setPinned(pinned);
+        node.getSpeed().setComponents(0, 0);
+        if (floatLayout != null) floatLayout.load(nodes);
+    }
+    
+    /**
+     * Déplace un noeud à la main (glisser-déposer)
+     * <p>
+     * Le graphe n'est alors plus équilibré : l'énergie cinétique est remontée au seuil
+     * pour que l'équilibrage puisse reprendre.
+     * </p>
+     * @param node noeud du graphe
+     * @param x nouvelle abscisse
+     * @param y nouvelle ordonnée
+     */
+    public void moveNode(Node node, double x, double y) {
+        node.getPosition().setComponents(x, y);
+        node.getSpeed().setComponents(0, 0);
+        if (kineticEnergy < ENERGY_THRESHOLD) kineticEnergy = ENERGY_THRESHOLD;
+        refreshBoundaries();
+        if (floatLayout != null) floatLayout.load(nodes);
+    }
+    
+    /**
+     * Applique une itération de l'algorithme d'équilibrage aux seuls noeuds proches de <i>centre</i>
+     * <p>
+     * Sert pendant un glisser-déposer : seul le voisinage du noeud déplacé se réarrange, en temps réel.
+     * Les forces sur ces noeuds restent exactes (répulsion avec tous les noeuds du graphe),
+     * les autres noeuds ne bougent pas. Les noeuds épinglés restent en place.
+     * </p>
+     * @param centre noeud autour duquel relaxer
+     * @param hops nombre de sauts autour de <i>centre</i>
+     * @param timestep pas temporel de l'itération
+     * @param damping facteur d'amortissement
+     * @return l'énergie cinétique des noeuds relaxés
+     */
+    public double relaxAround(Node centre, int hops, double timestep, double damping) {
+        
+        // listes compressées : décodage avec un curseur propre à l'appel (getNeighbours() en ferait une copie)
+        CompressedAdjacency.Cursor cursor = compressedAdjacency != null ? compressedAdjacency.new Cursor() : null;
+        
+        // voisinage à <i>hops</i> sauts, par parcours en largeur
+        ArrayList<Node> local = new ArrayList<Node>();
+        boolean[] visited = new boolean[nodes.size()];
+        local.add(centre);
+        visited[centre.getIndex()] = true;
+        int levelStart = 0;
+        for (int hop = 0; hop < hops; hop++) {
+            int levelEnd = local.size();
+            for (int i = levelStart; i < levelEnd; i++) {
+                if (cursor != null) {
+                    for (cursor.moveTo(local.get(i).getIndex()); cursor.hasNext(); ) {
+                        int v = cursor.next();
+                        if (!visited[v]) {
+                            visited[v] = true;
+                            local.add(nodes.get(v));
+                        }
+                    }
+                    continue;
+                }
+                for (Iterator<Node> neighbourIter = local.get(i).getNeighbours().listIterator(); neighbourIter.hasNext(); ) {
+                    Node v = neighbourIter.next();
+                    if (!visited[v.getIndex()]) {
+                        visited[v.getIndex()] = true;
+                        local.add(v);
+                    }
+                }
+            }
+            levelStart = levelEnd;
+        }
+        
+        Vector totalForce = new Vector(0,0);
+        Vector currentForce = new Vector(0,0);
+        Vector uv = new Vector(0,0);
+        double localEnergy = 0;
+        
+        for (Iterator<Node> nodeIter = local.listIterator(); nodeIter.hasNext(); ) {
+            Node u = nodeIter.next();
+            if (u.isPinned()) continue;
+            totalForce.setComponents(0, 0);
+            if (cursor != null) {
+                for (cursor.moveTo(u.getIndex()); cursor.hasNext(); ) {
+                    uv.setComponents(u.getPosition(), nodes.get(cursor.next()).getPosition());
+                    currentForce.setComponents(uv,getAttrFactor(uv.sqNorm()));
+                    totalForce.add(currentForce);
+                }
+            } else {
+                for (Iterator<Node> neighbourIter = u.getNeighbours().listIterator(); neighbourIter.hasNext(); ) {
+                    uv.setComponents(u.getPosition(), neighbourIter.next().getPosition());
+                    currentForce.setComponents(uv,getAttrFactor(uv.sqNorm()));
+                    totalForce.add(currentForce);
+                }
+            }
+            for (Iterator<Node> otherNodeIter = nodes.listIterator(); otherNodeIter.hasNext(); ) {
+                Node v = otherNodeIter.next();
+                if (v == u) continue;
+                uv.setComponents(u.getPosition(), v.getPosition());
+                currentForce.setComponents(uv,getRepulsFactor(uv.sqNorm()));
+                totalForce.add(currentForce);
+            }
+            u.applyForce(totalForce,timestep,damping);
+            localEnergy += u.getSpeed().sqNorm();
+        }
+        
+        refreshBoundaries();
+        if (floatLayout != null) floatLayout.load(nodes);
+        return localEnergy;
+    }
+    
+    /**
+     * @return les listes de voisins compressées, ou null si chaque noeud a sa propre liste
+     * (les boucles sur les voisins les décodent alors avec un {@link CompressedAdjacency.Cursor})
+     */
+    public CompressedAdjacency getCompressedAdjacency() {
+        return compressedAdjacency;
+    }
+    
+    /**
+     * Remplace les listes de voisins des noeuds par des listes compressées
+     * @param adjacency listes compressées, où chaque noeud figure à son rang
+     */
+    private void setCompressedAdjacency(CompressedAdjacency adjacency) {
+        compressedAdjacency = adjacency;
+        neighbourCursor = adjacency.new Cursor();
+        for (Iterator<Node> nodeIter = nodes.listIterator(); nodeIter.hasNext(); ) {
+            nodeIter.next().compressNeighbours(adjacency);
+        }
+        if (GraphDrawerApp.DEBUG_MODE) System.out.println("Listes de voisins compressées : " + adjacency.getNbBytes() + " octets");
+    }
+    
+    /**
+     * comparaison de deux noeuds selon leur rang
+     */
+    private static final Comparator<Node> INDEX_ORDER = new Comparator<Node>() {
+        public int compare(Node a, Node b) {
+            return a.getIndex() < b.getIndex() ? -1 : (a.getIndex() == b.getIndex() ? 0 : 1);
+        }
+    };
+    
     /**
      * Ajoute le noeud <i>node</i> au graphe.
      * @param node 
@@ -239,54 +911,167 @@ public class Graph {
      * @param damping facteur d'amortissement
      */
     public void iterateBalance(double timestep, double damping) {
+        iterateBalance(timestep, damping, null);
+    }
+    
+    /**
+     * Equilibre le graphe jusqu'au seuil d'énergie, au nombre maximal d'itérations ou à la fin du budget,
+     * le premier atteint. Le budget est consulté entre deux itérations et entre deux noeuds d'une itération :
+     * une itération interrompue laisse les noeuds déjà traités à leur nouvelle place, les autres à l'ancienne,
+     * ce qui reste une disposition valide (c'est ce que ferait l'itération suivante).
+     * 
+     * @param timestep pas temporel des itérations
+     * @param damping facteur d'amortissement
+     * @param maxIterations nombre maximal d'itérations
+     * @param budget échéance et annulation
+     * @return le bilan de l'équilibrage (les positions atteintes sont dans les noeuds)
+     */
+    public BalanceReport balance(double timestep, double damping, int maxIterations, LayoutBudget budget) {
+        return balance(timestep, damping, maxIterations, budget, null);
+    }
+    
+    /**
+     * Equilibre le graphe comme {@link #balance(double, double, int, LayoutBudget)} en prévenant
+     * <i>listener</i> après chaque itération complète.
+     * 
+     * @param timestep pas temporel des itérations
+     * @param damping facteur d'amortissement
+     * @param maxIterations nombre maximal d'itérations
+     * @param budget échéance et annulation
+     * @param listener observateur des itérations, ou null
+     * @return le bilan de l'équilibrage (les positions atteintes sont dans les noeuds)
+     */
+    public BalanceReport balance(double timestep, double damping, int maxIterations, LayoutBudget budget,
+            BalanceListener listener) {
+        long start = System.nanoTime();
+        int nbIterations = 0;
+        boolean interrupted = false;
+        int stopCause;
+        while (true) {
+            if (kineticEnergy < ENERGY_THRESHOLD) {
+                stopCause = BalanceReport.CONVERGED;
+                break;
+            }
+            if (nbIterations >= maxIterations) {
+                stopCause = BalanceReport.MAX_ITERATIONS;
+                break;
+            }
+            if (!budget.isOver()) {
+                long iterationStart = listener != null ? System.nanoTime() : 0;
+                if (iterateBalance(timestep, damping, budget)) {
+                    if (listener != null) listener.iterationDone(nbIterations, System.nanoTime() - iterationStart, kineticEnergy);
+                    nbIterations++;
+                    continue;
+                }
+                interrupted = true;
+            }
+            stopCause = budget.isCancelled() ? BalanceReport.CANCELLED : BalanceReport.EXPIRED;
+            break;
+        }
+        return new BalanceReport(nbIterations, interrupted, stopCause, kineticEnergy, System.nanoTime() - start);
+    }
+    
+    /**
+     * Itération d'équilibrage interruptible
+     * 
+     * @param timestep pas temporel de l'itération
+     * @param damping facteur d'amortissement
+     * @param budget budget consulté avant chaque noeud, ou null
+     * @return faux si l'itération a été interrompue par le budget
+     */
+    private boolean iterateBalance(double timestep, double damping, LayoutBudget budget) {
+        
+        // évènement JFR couvrant l'itération, créé seulement si un enregistrement le demande
+        // (sinon ce serait la seule allocation de l'itération)
+        IterationEvent event = ITERATION_EVENT_TYPE.isEnabled() ? new IterationEvent() : null;
+        if (event != null) event.begin();
         
-        // allocations
-        Node u = null;
-        Node v = null;
-        // initialisation des forces (on settera les composantes afin de ne pas créer de nouveaux objets)
-        Vector totalForce = new Vector(0,0);        // force totale appliquée à un noeud
-        // les deux forces suivantes ont surtout servi à débugguer (on pourrait s'en passer)
-        Vector attractiveForce = new Vector(0,0);   // total des forces attractives appliquées à un noeud
-        Vector repulsiveForce = new Vector(0,0);    // total des forces répulsives appliquées à un noeud
-        Vector currentForce = new Vector(0,0);      // force muette pour calculer
-        Vector uv = new Vector(0,0);                // idem mais utilisée pour le vecteur (u,v)
+        // renumérotation périodique selon les positions courantes
+        if (HILBERT_REORDERING_PERIOD > 0 && iterationCount > 0 && iterationCount % HILBERT_REORDERING_PERIOD == 0) {
+            reorder(NodeOrdering.hilbert(nodes));
+        }
+        iterationCount++;
+        
+        if (REPULSION_SAMPLES > 0) {
+            return commitIteration(event, "sampled", iterateBalanceSampled(timestep, damping, budget, event));
+        }
+        if (SYMMETRIC_FORCES) {
+            return commitIteration(event, "symmetric", iterateBalanceSymmetric(timestep, damping, budget, event));
+        }
+        if (SINGLE_PRECISION) {
+            return commitIteration(event, "single", iterateBalanceSinglePrecision(timestep, damping, budget));
+        }
+        
+        // durées des phases, mesurées seulement si l'évènement est activé
+        boolean timed = event != null && event.isEnabled();
+        long phaseStart = 0;
+        
+        // les forces sont sommées composante par composante dans des variables locales, sans objet Vector
+        // ni itérateur : l'itération n'alloue rien (voir AllocationCheck)
+        int nbNodes = nodes.size();
         
         // initialisation du calcul de l'énergie cinétique du système
+        // (on garde la précédente : une itération interrompue ne la mesure pas sur tous les noeuds)
+        double previousEnergy = kineticEnergy;
         kineticEnergy = 0;
+        boolean interrupted = false;
         
         /*
          * on va appliquer le TAM élémentaire à chaque noeud
          */
         
         // pour chaque noeud...
-        for (Iterator<Node> nodeIter = nodes.listIterator(); nodeIter.hasNext(); ) {
+        for (int i = 0; i < nbNodes; i++) {
             
-            // réinitialisation forces
-            attractiveForce.setComponents(0, 0);
-            repulsiveForce.setComponents(0, 0);
-            totalForce.setComponents(0, 0);
+            // fin du budget : on s'arrête avant le noeud suivant (sa passe de répulsion est en O(n))
+            if (budget != null && budget.isOver()) {
+                interrupted = true;
+                break;
+            }
             
             // prendre le noeud suivant
-            u = nodeIter.next();
+            Node u = nodes.get(i);
             if (GraphDrawerApp.DEBUG_MODE) System.out.println("Noeud considéré : " + u.getIndex());
+            double ux = u.getPosition().getX();
+            double uy = u.getPosition().getY();
             
             /*
              * sommer les forces attractives avec tous les VOISINS
              */
             
-            // pour chaque voisin...
-            for (Iterator<Node> neighbourIter = u.getNeighbours().listIterator(); neighbourIter.hasNext(); ) {
-                // prendre le voisin suivant
-                v = neighbourIter.next();
-                if (GraphDrawerApp.DEBUG_MODE) System.out.println("Voisin : " + v.getIndex());
-                // calculer le vecteur (u,v)
-                uv.setComponents(u.getPosition(), v.getPosition());
-                // calculer la force d'attraction associée
-                // remarque : comme on a la valeur à multiplier ave le vecteur unitaire, on divise par norm(uv)
-                currentForce.setComponents(uv,calculator.calculateAttrForce(uv.norm())/uv.norm());
-                if (GraphDrawerApp.DEBUG_MODE) System.out.println("applique la force attractive : " + currentForce);
-                // ajouter la force d'attraction à la somme correspondante
-                attractiveForce.add(currentForce);
+            double attrX = 0, attrY = 0; // total des forces attractives appliquées au noeud
+            if (timed) phaseStart = System.nanoTime();
+            if (compressedAdjacency != null) {
+                // listes compressées : décodage dans l'ordre, sans liste intermédiaire
+                for (neighbourCursor.moveTo(u.getIndex()); neighbourCursor.hasNext(); ) {
+                    Vector position = nodes.get(neighbourCursor.next()).getPosition();
+                    double dx = position.getX() - ux, dy = position.getY() - uy;
+                    double factor = getAttrFactor(dx*dx + dy*dy);
+                    attrX += dx * factor;
+                    attrY += dy * factor;
+                }
+            } else {
+                // pour chaque voisin...
+                ArrayList<Node> neighbours = u.getNeighbours();
+                for (int j = 0; j < neighbours.size(); j++) {
+                    Node v = neighbours.get(j);
+                    if (GraphDrawerApp.DEBUG_MODE) System.out.println("Voisin : " + v.getIndex());
+                    // calculer le vecteur (u,v)
+                    double dx = v.getPosition().getX() - ux, dy = v.getPosition().getY() - uy;
+                    // calculer la force d'attraction associée
+                    // remarque : comme on a la valeur à multiplier avec le vecteur unitaire, on divise par norm(uv)
+                    double factor = getAttrFactor(dx*dx + dy*dy);
+                    if (GraphDrawerApp.DEBUG_MODE) System.out.println("applique la force attractive : (" + dx * factor + "," + dy * factor + ")");
+                    // ajouter la force d'attraction à la somme correspondante
+                    attrX += dx * factor;
+                    attrY += dy * factor;
+                }
+            }
+            
+            if (timed) {
+                long now = System.nanoTime();
+                event.attractionTime += now - phaseStart;
+                phaseStart = now;
             }
             
             /*
@@ -294,24 +1079,22 @@ public class Graph {
              * 
              */
             
-            // pour tout noeud...
-            for (Iterator<Node> otherNodeIter = nodes.listIterator(); otherNodeIter.hasNext(); ) {
-                // prendre le voisin suivant
-                v = otherNodeIter.next();
+            double repX = 0, repY = 0; // total des forces répulsives appliquées au noeud
+            for (int j = 0; j < nbNodes; j++) {
+                Node v = nodes.get(j);
                 if (v == u) continue; // exclure soi-même
-                if (GraphDrawerApp.DEBUG_MODE) System.out.println("Voisin : " + v.getIndex());
-                uv.setComponents(u.getPosition(), v.getPosition()); // calcul u->v
+                double dx = v.getPosition().getX() - ux, dy = v.getPosition().getY() - uy; // calcul u->v
                 // calculer la force de répulsion associée
-                currentForce.setComponents(uv,calculator.calculateRepulsForce(uv.norm())/uv.norm());
-                if (GraphDrawerApp.DEBUG_MODE) System.out.println("applique la force répulsive : " + currentForce);
+                double factor = getRepulsFactor(dx*dx + dy*dy);
+                if (GraphDrawerApp.DEBUG_MODE) System.out.println("applique la force répulsive de " + v.getIndex() + " : (" + dx * factor + "," + dy * factor + ")");
                 // ajouter la force de répulsion à la somme
-                repulsiveForce.add(currentForce);
+                repX += dx * factor;
+                repY += dy * factor;
             }
             
-            totalForce.add(attractiveForce);
-            totalForce.add(repulsiveForce);
+            if (timed) event.repulsionTime += System.nanoTime() - phaseStart;
             
-            u.applyForce(totalForce,timestep,damping); // TAM élémentaire sur le noeud courant
+            u.applyForce(attrX + repX, attrY + repY, timestep, damping); // TAM élémentaire sur le noeud courant
 
             kineticEnergy += u.getSpeed().sqNorm(); // on incrémente la somme flottante calculant l'Ec
             if (GraphDrawerApp.DEBUG_MODE) System.out.println("vitesse de noeud " + u.getIndex() + " : " + u.getSpeed());
@@ -321,12 +1104,132 @@ public class Graph {
         
         // mise à jour des coordonnées extrêmes du graphe
         refreshBoundaries();
+        if (floatLayout != null) floatLayout.load(nodes);
+        
+        if (interrupted) {
+            kineticEnergy = previousEnergy;
+            return commitIteration(event, "exact", false);
+        }
         
-        System.out.println("Ec totale : " + kineticEnergy);
         if (GraphDrawerApp.DEBUG_MODE) System.out.println("Graphe :\n" + this);
+        return commitIteration(event, "exact", true);
         
     }
     
+    /**
+     * Termine l'évènement JFR d'une itération ; si l'itération est complète, affiche l'énergie atteinte
+     * (voir {@link #LOG_KINETIC_ENERGY}) et enregistre les positions
+     * 
+     * @param event évènement commencé en début d'itération, ou null si aucun enregistrement ne le demande
+     * @param mode mode de calcul de l'itération
+     * @param complete faux si l'itération a été interrompue
+     * @return <i>complete</i>
+     */
+    private boolean commitIteration(IterationEvent event, String mode, boolean complete) {
+        if (event != null) event.end();
+        if (event != null && event.shouldCommit()) {
+            event.iteration = iterationCount;
+            event.nbNodes = nodes.size();
+            event.mode = mode;
+            event.kineticEnergy = kineticEnergy;
+            event.complete = complete;
+            event.commit();
+        }
+        if (complete && LOG_KINETIC_ENERGY) System.out.println("Ec totale : " + kineticEnergy);
+        if (complete && trajectory != null) trajectory.record();
+        return complete;
+    }
+    
+    /**
+     * Itération à répulsion échantillonnée (voir {@link NegativeSampling}), calculée en parallèle
+     * 
+     * @param timestep pas temporel de l'itération
+     * @param damping facteur d'amortissement
+     * @param budget budget consulté entre deux morceaux de noeuds, ou null
+     * @param event évènement JFR de l'itération, qui reçoit les durées des phases, ou null
+     * @return faux si l'itération a été interrompue par le budget
+     */
+    private boolean iterateBalanceSampled(double timestep, double damping, LayoutBudget budget, IterationEvent event) {
+        if (negativeSampling == null) negativeSampling = new NegativeSampling(this, REPULSION_THREADS);
+        double energy = negativeSampling.iterate(nodes, compressedAdjacency, REPULSION_SAMPLES, REPULSION_SEED,
+                iterationCount, timestep, damping, budget);
+        if (event != null) {
+            event.attractionTime = negativeSampling.attractionTime;
+            event.repulsionTime = negativeSampling.repulsionTime;
+        }
+        refreshBoundaries();
+        if (floatLayout != null) floatLayout.load(nodes);
+        if (energy < 0) return false; // interrompue : on garde l'énergie précédente
+        kineticEnergy = energy;
+        return true;
+    }
+    
+    /**
+     * Itération où la force de chaque paire n'est calculée qu'une fois (voir {@link SymmetricForces}),
+     * calculée en parallèle
+     * 
+     * @param timestep pas temporel de l'itération
+     * @param damping facteur d'amortissement
+     * @param budget budget consulté avant chaque noeud, ou null
+     * @param event évènement JFR de l'itération, qui reçoit les durées des phases, ou null
+     * @return faux si l'itération a été interrompue par le budget
+     */
+    private boolean iterateBalanceSymmetric(double timestep, double damping, LayoutBudget budget, IterationEvent event) {
+        if (symmetricForces == null) symmetricForces = new SymmetricForces(this, REPULSION_THREADS);
+        boolean timed = event != null && event.isEnabled();
+        double energy = symmetricForces.iterate(nodes, compressedAdjacency, timestep, damping, budget, timed);
+        if (timed) {
+            event.attractionTime = symmetricForces.attractionTime;
+            event.repulsionTime = symmetricForces.repulsionTime;
+        }
+        if (energy < 0) return false; // interrompue : aucun noeud n'a bougé
+        refreshBoundaries();
+        if (floatLayout != null) floatLayout.load(nodes);
+        kineticEnergy = energy;
+        return true;
+    }
+    
+    /**
+     * Même itération que {@link #iterateBalance} mais calculée en simple précision
+     * par {@link FloatLayout} ; les positions sont ensuite recopiées dans les noeuds pour le dessin.
+     * 
+     * @param timestep pas temporel de l'itération
+     * @param damping facteur d'amortissement
+     * @param budget budget consulté avant chaque noeud, ou null
+     * @return faux si l'itération a été interrompue par le budget
+     */
+    private boolean iterateBalanceSinglePrecision(double timestep, double damping, LayoutBudget budget) {
+        if (floatLayout == null) floatLayout = new FloatLayout(nodes, floatCalculator);
+        double energy = floatLayout.iterate((float) timestep, (float) damping, budget);
+        floatLayout.store(nodes);
+        refreshBoundaries();
+        if (energy < 0) return false; // interrompue : on garde l'énergie précédente
+        kineticEnergy = energy;
+        return true;
+    }
+    
+    /**
+     * Force d'attraction divisée par la distance, pour multiplier directement le vecteur (u,v)
+     * @param sqDist carré de la distance entre les deux noeuds
+     * @return le facteur à appliquer au vecteur (u,v)
+     */
+    double getAttrFactor(double sqDist) {
+        if (tabulatedCalculator != null) return tabulatedCalculator.getAttrFactor(sqDist);
+        double dist = Math.sqrt(sqDist); // une seule racine carrée par paire
+        return calculator.calculateAttrForce(dist)/dist;
+    }
+    
+    /**
+     * Force de répulsion divisée par la distance, pour multiplier directement le vecteur (u,v)
+     * @param sqDist carré de la distance entre les deux noeuds
+     * @return le facteur à appliquer au vecteur (u,v)
+     */
+    double getRepulsFactor(double sqDist) {
+        if (tabulatedCalculator != null) return tabulatedCalculator.getRepulsFactor(sqDist);
+        double dist = Math.sqrt(sqDist);
+        return calculator.calculateRepulsForce(dist)/dist;
+    }
+    
     public double getEk() {
         return kineticEnergy;
     }
@@ -336,6 +1239,9 @@ public class Graph {
      */
     private void refreshBoundaries() {
         
+        // les noeuds ont bougé : l'index spatial n'est plus valable
+        spatialIndex = null;
+        
         // Pour évaluer un max ou un min on initialise la valeur de travail à un min ou un max respectivement
         horizontalLowerBound = Double.MAX_VALUE;
         horizontalUpperBound = -Double.MAX_VALUE;
@@ -343,11 +1249,11 @@ public class Graph {
         verticalUpperBound = -Double.MAX_VALUE;
         
         // Pour chaque noeud, on regarde si ses coordonnées repoussent les frontières
-        Node currentNode = null;
-        for (Iterator<Node> nodeIter = nodes.listIterator(); nodeIter.hasNext(); ) {
-            currentNode = nodeIter.next();
-            double x = currentNode.getPosition().getX();
-            double y = currentNode.getPosition().getY();
+        // (boucle indexée : pas d'itérateur alloué à chaque itération d'équilibrage)
+        for (int i = 0; i < nodes.size(); i++) {
+            Vector position = nodes.get(i).getPosition();
+            double x = position.getX();
+            double y = position.getY();
             /* on compare la coordonnée à la frontière actuelle et on la repousse si besoin
              * attention, ne pas essayer de mettre des else if car on a initalisé
              * les frontières flottantes à des valeurs non logiques (lower > upper)
@@ -379,18 +1285,16 @@ public class Graph {
     public String toString() {
         
         // initialisation représentation textuelle du graphe
-        String graphRep = "";
-        // allocations
-        Node currentNode = null;
+        // (un seul tampon : des concaténations successives recopieraient tout le texte à chaque noeud)
+        StringBuilder graphRep = new StringBuilder();
         
         // pour chaque noeud
-        for (Iterator<Node> nodeIter = nodes.listIterator(); nodeIter.hasNext(); ) {
-            currentNode = nodeIter.next();
-            graphRep += currentNode; // ajouter la représentation du noeud même
-            if (nodeIter.hasNext()) graphRep += "\n"; // à la ligne
+        for (int i = 0; i < nodes.size(); i++) {
+            if (i > 0) graphRep.append('\n'); // à la ligne
+            nodes.get(i).appendTo(graphRep); // ajouter la représentation du noeud même
         }
 
-        return graphRep;
+        return graphRep.toString();
     }
     
 }
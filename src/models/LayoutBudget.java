@@ -0,0 +1,73 @@
+package models;
+
+/**
+ * Budget de temps d'un équilibrage, avec annulation coopérative
+ * <p>
+ * Le nombre d'itérations nécessaire au seuil d'énergie n'a aucun rapport avec le temps écoulé :
+ * on fixe plutôt une échéance, et {@link Graph#balance} rend la meilleure disposition obtenue
+ * quand elle est atteinte. L'équilibrage consulte le budget entre deux itérations et entre deux
+ * noeuds de la passe de répulsion ; un autre thread peut aussi l'{@link #cancel() annuler}.
+ * </p>
+ */
+public class LayoutBudget {
+
+    /**
+     * échéance, en temps de {@link System#nanoTime()} (Long.MAX_VALUE : pas d'échéance)
+     */
+    private final long deadline;
+
+    /**
+     * vrai une fois l'équilibrage annulé (lu par le thread de calcul)
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * Budget sans échéance, qui ne s'arrête que sur annulation
+     */
+    public LayoutBudget() {
+        deadline = Long.MAX_VALUE;
+    }
+
+    /**
+     * @param budgetMillis temps alloué à partir de maintenant, en millisecondes
+     */
+    public LayoutBudget(long budgetMillis) {
+        deadline = System.nanoTime() + budgetMillis * 1000000L;
+    }
+
+    /**
+     * Demande l'arrêt de l'équilibrage au plus tôt (peut être appelé depuis n'importe quel thread)
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return vrai si l'équilibrage a été annulé
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return vrai si l'échéance est dépassée
+     */
+    public boolean isExpired() {
+        return deadline != Long.MAX_VALUE && System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * @return vrai si l'équilibrage doit s'arrêter (annulation ou échéance)
+     */
+    public boolean isOver() {
+        return cancelled || isExpired();
+    }
+
+    /**
+     * @return le temps restant avant l'échéance en nanosecondes (négatif si dépassée, Long.MAX_VALUE sans échéance)
+     */
+    public long getRemainingNanos() {
+        return deadline == Long.MAX_VALUE ? Long.MAX_VALUE : deadline - System.nanoTime();
+    }
+
+}
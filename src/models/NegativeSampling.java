@@ -0,0 +1,417 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Itération d'équilibrage à répulsion échantillonnée
+ * <p>
+ * Sur les très gros graphes, la somme des répulsions sur tous les autres noeuds coûte O(n²) par itération.
+ * A la manière de LargeVis ou UMAP (« negative sampling »), chaque noeud ne subit ici la répulsion que
+ * de {@link Graph#REPULSION_SAMPLES} noeuds tirés au hasard, multipliée par (n-1)/s pour estimer la somme
+ * complète ; l'attraction reste exacte sur les voisins. Une itération coûte O(n s + m).
+ * </p>
+ * <p>
+ * Les forces sont calculées sur une copie des positions du début de l'itération (mise à jour de Jacobi,
+ * et non noeud après noeud comme {@link Graph#iterateBalance}) : les noeuds sont alors répartis en morceaux
+ * de taille fixe traités en parallèle sans se gêner. Chaque morceau tire ses échantillons dans son propre
+ * flux pseudo-aléatoire, déduit de la graine, du n° d'itération et du n° de morceau : le résultat ne dépend
+ * donc ni du nombre de threads ni de l'ordre dans lequel ils passent.
+ * </p>
+ * <p>
+ * L'attraction est calculée à part, avant la répulsion, et découpée par arêtes plutôt que par noeuds :
+ * sur les graphes à loi de puissance, la liste d'un concentrateur de centaines de milliers de voisins
+ * occuperait sinon un seul thread pendant que les autres attendent. Les listes de voisins, mises bout à
+ * bout, sont coupées en morceaux de {@link #EDGE_CHUNK_SIZE} entrées ; un noeud dont la liste est coupée
+ * reçoit des sommes partielles de plusieurs morceaux, additionnées à la fin dans l'ordre des morceaux
+ * (toujours indépendamment du nombre de threads). Les morceaux sont répartis par vol de tâches
+ * ({@link ForkJoinPool}) : un thread qui a fini prend le travail en attente des autres.
+ * </p>
+ * <p>
+ * L'énergie cinétique garde un fond dû au bruit des tirages : le seuil {@link Graph#ENERGY_THRESHOLD} est
+ * atteint plus tard qu'en répulsion exacte, d'autant plus que l'échantillon est petit devant n ; on borne
+ * plutôt l'équilibrage par le nombre d'itérations ou par un {@link LayoutBudget}.
+ * </p>
+ */
+class NegativeSampling {
+
+    /**
+     * nombre de noeuds par morceau
+     */
+    private static final int CHUNK_SIZE = 4096;
+
+    /**
+     * nombre d'entrées des listes de voisins par morceau d'attraction
+     */
+    private static final int EDGE_CHUNK_SIZE = 16384;
+
+    /**
+     * graphe équilibré
+     */
+    private Graph graph;
+
+    /**
+     * threads de calcul, avec vol de tâches (démons : ils n'empêchent pas l'application de se terminer)
+     */
+    private ForkJoinPool executor;
+
+    /**
+     * positions au début de l'itération, par rang
+     */
+    private double[] x, y;
+
+    /**
+     * attraction subie par chaque noeud, par rang
+     */
+    private double[] attrX, attrY;
+
+    /**
+     * les voisins du noeud de rang u occupent les entrées {@code entryStart[u]} à {@code entryStart[u+1]-1}
+     * des listes mises bout à bout
+     */
+    private long[] entryStart;
+
+    /**
+     * curseur placé au début de chaque morceau d'attraction dont la frontière coupe une liste compressée
+     * (null sinon), pour que chaque morceau ne décode que ses propres entrées
+     */
+    private CompressedAdjacency.Cursor[] chunkCursors;
+
+    /**
+     * adjacence pour laquelle {@link #chunkCursors} a été construit
+     */
+    private CompressedAdjacency chunkCursorsAdjacency;
+
+    /**
+     * durées (ns) des phases d'attraction et de répulsion de la dernière itération, en temps écoulé
+     * (les morceaux d'une phase sont calculés en parallèle)
+     */
+    long attractionTime, repulsionTime;
+
+    /**
+     * @param graph graphe à équilibrer
+     * @param nbThreads nombre de threads de calcul
+     */
+    NegativeSampling(Graph graph, int nbThreads) {
+        this.graph = graph;
+        executor = new ForkJoinPool(nbThreads);
+    }
+
+    /**
+     * Applique une itération à tous les noeuds
+     * @param nodes noeuds du graphe, par rang
+     * @param adjacency listes compressées, ou null pour celles des noeuds
+     * @param nbSamples nombre de noeuds repoussants tirés par noeud
+     * @param seed graine des tirages
+     * @param iteration n° de l'itération (change les tirages d'une itération à l'autre)
+     * @param timestep pas temporel de l'itération
+     * @param damping facteur d'amortissement
+     * @param budget budget consulté avant chaque morceau, ou null
+     * @return l'énergie cinétique du système, ou -1 si l'itération a été interrompue
+     * (les morceaux déjà traités ont bougé)
+     */
+    double iterate(final List<Node> nodes, final CompressedAdjacency adjacency, final int nbSamples, final long seed,
+            final int iteration, final double timestep, final double damping, final LayoutBudget budget) {
+
+        final int nbNodes = nodes.size();
+        if (x == null || x.length != nbNodes) {
+            x = new double[nbNodes];
+            y = new double[nbNodes];
+            attrX = new double[nbNodes];
+            attrY = new double[nbNodes];
+            entryStart = new long[nbNodes + 1];
+        }
+        for (int i = 0; i < nbNodes; i++) {
+            x[i] = nodes.get(i).getPosition().getX();
+            y[i] = nodes.get(i).getPosition().getY();
+        }
+
+        long phaseStart = System.nanoTime();
+        repulsionTime = 0;
+        boolean attracted = computeAttraction(nodes, adjacency, budget);
+        attractionTime = System.nanoTime() - phaseStart;
+        if (!attracted) return -1;
+        phaseStart = System.nanoTime();
+
+        int nbChunks = (nbNodes + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        List<Future<Double>> results = new ArrayList<Future<Double>>();
+        for (int c = 0; c < nbChunks; c++) {
+            final int chunk = c;
+            results.add(executor.submit(new Callable<Double>() {
+                public Double call() {
+                    if (budget != null && budget.isOver()) return -1.0;
+                    return iterateChunk(nodes, chunk * CHUNK_SIZE, Math.min((chunk + 1) * CHUNK_SIZE, nbNodes),
+                            nbSamples, new Stream(seed, iteration, chunk), timestep, damping);
+                }
+            }));
+        }
+
+        // sommes dans l'ordre des morceaux, pour un résultat reproductible
+        double kineticEnergy = 0;
+        boolean interrupted = false;
+        for (Future<Double> result : results) {
+            double energy = get(result);
+            if (energy < 0) interrupted = true;
+            else kineticEnergy += energy;
+        }
+        repulsionTime = System.nanoTime() - phaseStart;
+        return interrupted ? -1 : kineticEnergy;
+    }
+
+    /**
+     * Calcule l'attraction subie par chaque noeud dans attrX / attrY, par morceaux d'arêtes
+     * @param nodes noeuds du graphe, par rang
+     * @param adjacency listes compressées, ou null pour celles des noeuds
+     * @param budget budget consulté avant chaque morceau, ou null
+     * @return faux si le calcul a été interrompu (aucun noeud n'a encore bougé)
+     */
+    private boolean computeAttraction(final List<Node> nodes, final CompressedAdjacency adjacency, final LayoutBudget budget) {
+        int nbNodes = nodes.size();
+        for (int u = 0; u < nbNodes; u++) {
+            int degree = adjacency != null ? adjacency.getDegree(u) : nodes.get(u).getNeighbours().size();
+            entryStart[u + 1] = entryStart[u] + degree;
+        }
+        Arrays.fill(attrX, 0);
+        Arrays.fill(attrY, 0);
+
+        long nbEntries = entryStart[nbNodes];
+        int nbChunks = (int) ((nbEntries + EDGE_CHUNK_SIZE - 1) / EDGE_CHUNK_SIZE);
+        if (adjacency != null && adjacency != chunkCursorsAdjacency) {
+            placeChunkCursors(adjacency, nbChunks);
+        }
+        List<Future<double[]>> results = new ArrayList<Future<double[]>>();
+        for (int c = 0; c < nbChunks; c++) {
+            final long from = (long) c * EDGE_CHUNK_SIZE;
+            final long to = Math.min(from + EDGE_CHUNK_SIZE, nbEntries);
+            final CompressedAdjacency.Cursor chunkCursor = adjacency != null ? chunkCursors[c] : null;
+            results.add(executor.submit(new Callable<double[]>() {
+                public double[] call() {
+                    if (budget != null && budget.isOver()) return null;
+                    return attractChunk(nodes, adjacency, chunkCursor, from, to);
+                }
+            }));
+        }
+
+        // sommes partielles des noeuds coupés, dans l'ordre des morceaux
+        boolean interrupted = false;
+        for (Future<double[]> result : results) {
+            double[] partial = get(result);
+            if (partial == null) {
+                interrupted = true;
+                continue;
+            }
+            for (int p = 0; p < partial.length; p += 3) {
+                int u = (int) partial[p];
+                if (u < 0) continue;
+                attrX[u] += partial[p + 1];
+                attrY[u] += partial[p + 2];
+            }
+        }
+        return !interrupted;
+    }
+
+    /**
+     * Place un curseur au début de chaque morceau d'attraction qui commence au milieu d'une liste
+     * <p>
+     * Les listes coupées sont décodées une seule fois, morceau après morceau ; les degrés ne changeant
+     * qu'avec l'adjacence (renumérotation), les curseurs servent à toutes les itérations suivantes.
+     * </p>
+     * @param adjacency listes compressées
+     * @param nbChunks nombre de morceaux
+     */
+    private void placeChunkCursors(CompressedAdjacency adjacency, int nbChunks) {
+        chunkCursors = new CompressedAdjacency.Cursor[nbChunks];
+        CompressedAdjacency.Cursor cursor = adjacency.new Cursor();
+        int u = 0, node = -1;
+        long entry = 0;
+        for (int c = 1; c < nbChunks; c++) {
+            long from = (long) c * EDGE_CHUNK_SIZE;
+            while (entryStart[u + 1] <= from) u++;
+            if (entryStart[u] == from) continue; // le morceau commence avec une liste
+            if (u != node) {
+                cursor.moveTo(u);
+                node = u;
+                entry = entryStart[u];
+            }
+            for (; entry < from; entry++) cursor.next();
+            chunkCursors[c] = adjacency.new Cursor();
+            chunkCursors[c].moveTo(cursor);
+        }
+        chunkCursorsAdjacency = adjacency;
+    }
+
+    /**
+     * Calcule l'attraction portée par un morceau des listes de voisins mises bout à bout
+     * @param nodes noeuds du graphe, par rang
+     * @param adjacency listes compressées, ou null
+     * @param chunkCursor curseur placé sur la première entrée du morceau si elle est au milieu d'une liste
+     * compressée, ou null
+     * @param from première entrée du morceau
+     * @param to entrée suivant la dernière
+     * @return les sommes partielles des noeuds dont la liste déborde du morceau (au plus le premier et le
+     * dernier) : rang (-1 si aucun), abscisse, ordonnée ; les autres noeuds sont écrits directement
+     */
+    private double[] attractChunk(List<Node> nodes, CompressedAdjacency adjacency, CompressedAdjacency.Cursor chunkCursor,
+            long from, long to) {
+        double[] partial = {-1, 0, 0, -1, 0, 0};
+        CompressedAdjacency.Cursor cursor = adjacency != null ? adjacency.new Cursor() : null;
+
+        // premier noeud dont la liste a des entrées dans le morceau (recherche dichotomique)
+        int low = 0, high = nodes.size() - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (entryStart[middle] <= from) low = middle;
+            else high = middle - 1;
+        }
+
+        for (int u = low; u < nodes.size() && entryStart[u] < to; u++) {
+            long start = entryStart[u], end = entryStart[u + 1];
+            if (start == end) continue;
+            int first = (int) (Math.max(from, start) - start);
+            int last = (int) (Math.min(to, end) - start);
+            double ux = x[u], uy = y[u];
+            double sumX = 0, sumY = 0;
+            if (cursor != null) {
+                if (first > 0) cursor.moveTo(chunkCursor); // suite d'une liste commencée au morceau précédent
+                else cursor.moveTo(u);
+                for (int j = first; j < last; j++) {
+                    int v = cursor.next();
+                    double dx = x[v] - ux, dy = y[v] - uy;
+                    double factor = graph.getAttrFactor(dx*dx + dy*dy);
+                    sumX += dx * factor;
+                    sumY += dy * factor;
+                }
+            } else {
+                List<Node> neighbours = nodes.get(u).getNeighbours();
+                for (int j = first; j < last; j++) {
+                    int v = neighbours.get(j).getIndex();
+                    double dx = x[v] - ux, dy = y[v] - uy;
+                    double factor = graph.getAttrFactor(dx*dx + dy*dy);
+                    sumX += dx * factor;
+                    sumY += dy * factor;
+                }
+            }
+            if (start >= from && end <= to) {
+                // liste entière dans le morceau : aucun autre morceau n'écrit ce noeud
+                attrX[u] = sumX;
+                attrY[u] = sumY;
+            } else {
+                int p = start < from ? 0 : 3;
+                partial[p] = u;
+                partial[p + 1] = sumX;
+                partial[p + 2] = sumY;
+            }
+        }
+        return partial;
+    }
+
+    /**
+     * @param result résultat d'une tâche
+     * @return sa valeur
+     */
+    private static <T> T get(Future<T> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    /**
+     * Applique l'itération aux noeuds d'un morceau (l'attraction est déjà calculée)
+     * @param nodes noeuds du graphe, par rang
+     * @param from premier rang du morceau
+     * @param to rang suivant le dernier
+     * @param nbSamples nombre de noeuds repoussants tirés par noeud
+     * @param random flux de tirages du morceau
+     * @param timestep pas temporel
+     * @param damping facteur d'amortissement
+     * @return l'énergie cinétique des noeuds du morceau
+     */
+    private double iterateChunk(List<Node> nodes, int from, int to, int nbSamples,
+            Stream random, double timestep, double damping) {
+
+        int nbNodes = x.length;
+        // assez de tirages pour couvrir tous les autres noeuds : autant faire la somme exacte
+        boolean exact = nbSamples >= nbNodes - 1;
+        double scale = exact ? 1 : (double) (nbNodes - 1) / nbSamples;
+        double kineticEnergy = 0;
+
+        for (int u = from; u < to; u++) {
+            Node node = nodes.get(u);
+            double ux = x[u], uy = y[u];
+
+            // répulsion des noeuds tirés (avec remise, soi-même exclu), mise à l'échelle de la somme complète
+            double repX = 0, repY = 0;
+            int count = exact ? nbNodes - 1 : nbSamples;
+            for (int s = 0; s < count; s++) {
+                int v = exact ? s : random.nextInt(nbNodes - 1);
+                if (v >= u) v++;
+                double dx = x[v] - ux, dy = y[v] - uy;
+                double factor = graph.getRepulsFactor(dx*dx + dy*dy);
+                repX += dx * factor;
+                repY += dy * factor;
+            }
+
+            node.applyForce(attrX[u] + repX * scale, attrY[u] + repY * scale, timestep, damping);
+            kineticEnergy += node.getSpeed().sqNorm();
+        }
+        return kineticEnergy;
+    }
+
+    /**
+     * Flux pseudo-aléatoire SplitMix64, sans allocation par tirage
+     */
+    private static class Stream {
+
+        /**
+         * état courant
+         */
+        private long state;
+
+        /**
+         * @param seed graine globale
+         * @param iteration n° de l'itération
+         * @param chunk n° du morceau
+         */
+        Stream(long seed, int iteration, int chunk) {
+            state = mix(mix(seed ^ 0x9E3779B97F4A7C15L * (iteration + 1)) ^ 0xC2B2AE3D27D4EB4FL * (chunk + 1));
+        }
+
+        /**
+         * @return 64 bits pseudo-aléatoires
+         */
+        long nextLong() {
+            state += 0x9E3779B97F4A7C15L;
+            return mix(state);
+        }
+
+        /**
+         * @param bound borne exclue (positive)
+         * @return un entier dans [0, bound)
+         */
+        int nextInt(int bound) {
+            return (int) (((nextLong() >>> 32) * bound) >>> 32);
+        }
+
+        /**
+         * @param z valeur à mélanger
+         * @return la valeur mélangée (finaliseur de SplitMix64)
+         */
+        private static long mix(long z) {
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+
+    }
+
+}
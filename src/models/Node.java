@@ -6,7 +6,6 @@ package models;
 
 import helper.Vector;
 import java.util.ArrayList;
-import java.util.Iterator;
 
 /**
  * Modèle de noeud
@@ -19,17 +18,18 @@ import java.util.Iterator;
 public class Node {
     
     /**
-     * Indice courant
-     * 
-     * Compte le nombre de noeuds déjà créés jusqu'à présent.
-     * Permet d'indexer les noeuds.
+     * Indice / index / n° du noeud : son rang dans la liste des noeuds du graphe
+     * <p>
+     * Il peut changer si le graphe renumérote ses noeuds pour améliorer la localité mémoire
+     * (voir {@link NodeOrdering}).
+     * </p>
      */
-    private static int currentIndex = 0;
-
+    private int index;
+    
     /**
-     * Indice / index / n° du noeud
+     * n° du noeud dans le fichier ressource, qui ne change jamais (affiché sur le dessin)
      */
-    private int index;
+    private int originalIndex;
     
     /**
      * position absolue dans le plan
@@ -46,15 +46,38 @@ public class Node {
      */
     private ArrayList<Node> neighboursList;
     
+    /**
+     * listes de voisins compressées du graphe, quand le noeud n'a plus sa propre liste (voir {@link CompressedAdjacency})
+     */
+    private CompressedAdjacency adjacency;
+    
+    /**
+     * vrai si le noeud est épinglé : il ne bouge plus sous l'effet des forces (noeud déplacé à la souris, par exemple)
+     */
+    private boolean pinned;
+    
     /**
      * construit un noeud dépourvu de propriétés 2D, et sans voisin
+     * <p>
+     * l'indice est donné par le graphe (auparavant un compteur statique le donnait,
+     * ce qui décalait les numéros dès qu'on chargeait un deuxième graphe)
+     * </p>
+     * @param index n° du noeud dans le fichier ressource, qui est aussi son rang initial
      */
-    public Node(){
+    public Node(int index){
+        this(index, index);
+    }
+    
+    /**
+     * construit un noeud dont le rang diffère de son n° d'origine
+     * (par exemple un noeud d'un sous-graphe extrait d'un plus gros fichier)
+     * @param index rang initial du noeud dans la liste des noeuds du graphe
+     * @param originalIndex n° du noeud dans le fichier ressource
+     */
+    public Node(int index, int originalIndex){
         
-        // on attribue au noeud l'indice courant, puis on incrémente ce dernier
-        // pour le prochain noeud
-        index = currentIndex;
-        currentIndex++;
+        this.index = index;
+        this.originalIndex = originalIndex;
         
         // en attendant le reset()
         position = null;
@@ -69,6 +92,14 @@ public class Node {
      * réinitialise le noeud (bouton Reset)
      */
     public void reset() {
+        reset(Graph.AREA);
+    }
+    
+    /**
+     * réinitialise le noeud dans une zone de travail d'aire donnée
+     * @param area aire de la zone de travail (carré dont le coin est l'origine)
+     */
+    public void reset(double area) {
         
         /*
          * on attribue des positions aléatoirement aux noeuds dans la zone de travail (du modèle et non de la vue)
@@ -77,7 +108,7 @@ public class Node {
          * par exemple en les plaçant sur un quadrillage, en ajoutant une légère variation
          * dx et dy pour éviter que les noeuds soient alignés
          */
-        position = new Vector(Math.random()*Math.sqrt(Graph.AREA),Math.random()*Math.sqrt(Graph.AREA));
+        position = new Vector(Math.random()*Math.sqrt(area),Math.random()*Math.sqrt(area));
         
         // vitesse initiale du noeud nulle
         speed = new Vector(0, 0);
@@ -85,12 +116,27 @@ public class Node {
     }
     
     /**
-     * @return l'index du noeud
+     * @return l'index du noeud (son rang courant dans la liste des noeuds du graphe)
      */
     public int getIndex() {
         return index;
     }
     
+    /**
+     * Change le rang du noeud. Ne sert qu'à la renumérotation des noeuds par {@link Graph}.
+     * @param index le nouveau rang
+     */
+    void setIndex(int index) {
+        this.index = index;
+    }
+    
+    /**
+     * @return le n° du noeud dans le fichier ressource
+     */
+    public int getOriginalIndex() {
+        return originalIndex;
+    }
+    
     /**
      * @return le vecteur position du noeud
      */
@@ -99,12 +145,27 @@ public class Node {
     }
     
     /**
+     * La liste rendue est en lecture seule : avec des listes non compressées, c'est celle du noeud (seul
+     * {@link Graph} la réordonne) ; avec des listes compressées, c'est une copie décodée à chaque appel, que
+     * les boucles fréquentes (itérations, dessin) évitent en parcourant {@link Graph#getCompressedAdjacency()}
+     * avec un {@link CompressedAdjacency.Cursor}.
      * 
      * @return la liste des voisins du noeud
      */
     public ArrayList<Node> getNeighbours() {
+        if (neighboursList == null) return adjacency.getNeighbours(index);
         return neighboursList;
     }
+    
+    /**
+     * Remplace la liste des voisins du noeud par les listes compressées du graphe.
+     * Le noeud ne peut alors plus être lié à d'autres noeuds.
+     * @param adjacency listes compressées, où le noeud figure à son rang
+     */
+    void compressNeighbours(CompressedAdjacency adjacency) {
+        this.adjacency = adjacency;
+        neighboursList = null;
+    }
 
     /**
      * Ajoute {@code node} à la liste des voisins du noeud. Ne sert qu'à {@link #bindWith binidWith}.
@@ -133,53 +194,86 @@ public class Node {
         return speed;
     }
     
+    /**
+     * @return vrai si le noeud est épinglé
+     */
+    public boolean isPinned() {
+        return pinned;
+    }
+    
+    /**
+     * Epingle ou libère le noeud. Passer par {@link Graph#setPinned} pour que le graphe en tienne compte.
+     * @param pinned vrai pour épingler le noeud
+     */
+    void setPinned(boolean pinned) {
+        this.pinned = pinned;
+    }
+    
     /**
      * applique le TAM élémentaire au noeud avec la force <i>force</i>,
      * le pas temporel <i>timestep</i> et le facteur de ralentissement <i>damping</i>
-     * @param force force totale appliquée au noeud sur l'intervalle de temps élémentaire
+     * <p>un noeud épinglé est exclu de l'intégration : il reste en place avec une vitesse nulle</p>
+     * @param force force totale appliquée au noeud sur l'intervalle de temps élémentaire (non modifiée)
      * @param timestep pas temporel ou longueur de l'intervalle de temps élémentaire
      * @param damping facteur de ralentissement, entre 0 et 1
      * @return nouvelle position du noeud
      */
     public Vector applyForce(Vector force, double timestep, double damping) {
-        force.multiply(timestep);
-        speed.add(force);
-        speed.multiply(damping);
-        Vector displ = speed; // TODO améliorer le code
-        displ.multiply(timestep);
-        move(displ);
-        //            System.out.println("speed of " + u.getIndex() + ": " + u.getSpeed());
-        return position;
+        return applyForce(force.getX(), force.getY(), timestep, damping);
     }
     
     /**
-     * déplace le noeud selon displ. Ne sert qu'à {@link #applyForce applyForce}.
-     * @param displ le vecteur déplacement
+     * même intégration, la force étant donnée par ses composantes (sans objet Vector intermédiaire)
+     * <p>
+     * La vitesse retenue est le déplacement de l'intervalle : v' = (v + F.dt).amortissement.dt, puis
+     * p' = p + v'. C'est la formule historique (où le déplacement était calculé sur place dans la vitesse),
+     * reprise par {@link FloatLayout} et sur laquelle est réglé {@link Graph#ENERGY_THRESHOLD}.
+     * </p>
+     * @param forceX abscisse de la force totale
+     * @param forceY ordonnée de la force totale
+     * @param timestep pas temporel ou longueur de l'intervalle de temps élémentaire
+     * @param damping facteur de ralentissement, entre 0 et 1
+     * @return nouvelle position du noeud
      */
-    private void move(Vector displ) {
-        position.add(displ);
+    public Vector applyForce(double forceX, double forceY, double timestep, double damping) {
+        if (pinned) {
+            speed.setComponents(0, 0);
+            return position;
+        }
+        double displX = (speed.getX() + forceX * timestep) * damping * timestep;
+        double displY = (speed.getY() + forceY * timestep) * damping * timestep;
+        speed.setComponents(displX, displY);
+        position.setComponents(position.getX() + displX, position.getY() + displY);
+        return position;
     }
     
     /**
      * 
-     * @return une chaîne contenant l'indice, la position, les voisins du noeuds
+     * @return une chaîne contenant l'indice, la position, les voisins du noeuds (avec les n° du fichier)
      */
     @Override
     public String toString() {
-        
-        // initialisation / allocation
-        String nodeStr = "";
-        Node currentNeighbour = null;
+        return appendTo(new StringBuilder()).toString();
+    }
+    
+    /**
+     * ajoute la représentation du noeud (voir {@link #toString()}) à un tampon,
+     * pour écrire tout le graphe sans recopier le texte à chaque noeud
+     * @param nodeStr tampon à compléter
+     * @return le tampon
+     */
+    StringBuilder appendTo(StringBuilder nodeStr) {
         
         // indice du noeud
-        nodeStr += Integer.toString(getIndex());
+        nodeStr.append(getOriginalIndex());
         // + position
-        nodeStr += getPosition();
-        nodeStr += "[";
+        nodeStr.append(getPosition());
+        nodeStr.append('[');
         
         // pour chaque voisin...
-        for (Iterator<Node> neighbourIter = getNeighbours().listIterator(); neighbourIter.hasNext(); ) {
-            currentNeighbour = neighbourIter.next();
+        ArrayList<Node> neighbours = getNeighbours();
+        for (int j = 0; j < neighbours.size(); j++) {
+            Node currentNeighbour = neighbours.get(j);
             
             /* 
              * seulement si l'indice est plus grand que le nôtre
@@ -187,14 +281,14 @@ public class Node {
              */
             if (currentNeighbour.getIndex() > getIndex()) {
                 // + n° voisin
-                nodeStr += Integer.toString(currentNeighbour.getIndex());
+                nodeStr.append(currentNeighbour.getOriginalIndex());
                 // ajoute un espace seulement s'il reste d'autres voisins
-                if (neighbourIter.hasNext()) nodeStr += " ";
+                if (j + 1 < neighbours.size()) nodeStr.append(' ');
             }
 
         }
         
-        nodeStr += "]";
+        nodeStr.append(']');
         
         return nodeStr;
         
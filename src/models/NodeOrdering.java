@@ -0,0 +1,186 @@
+package models;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Ordres de numérotation des noeuds pour la localité mémoire
+ * <p>
+ * Par défaut les noeuds sont rangés dans l'ordre du fichier ressource, si bien que les voisins
+ * d'un noeud sont éparpillés en mémoire et que la boucle d'attraction rate le cache à chaque voisin.
+ * Les méthodes de cette classe calculent une permutation {@code order} telle que
+ * {@code order[nouveau rang] = ancien rang}, à appliquer avec {@link Graph#reorder(int[])} :
+ * </p>
+ * <ul>
+ * <li>parcours en largeur (BFS) ou Cuthill-McKee inverse (RCM) : les voisins reçoivent des rangs
+ * proches, ce qui profite à la boucle d'attraction ;</li>
+ * <li>courbe de Hilbert sur les positions courantes : les noeuds proches dans le plan reçoivent
+ * des rangs proches, ce qui profite aux calculs de répulsion par voisinage.</li>
+ * </ul>
+ * <p>
+ * Les rangs courants des noeuds sont leurs {@link Node#getIndex() index}.
+ * </p>
+ */
+public class NodeOrdering {
+
+    /**
+     * nombre de bits par coordonnée de la grille sur laquelle on trace la courbe de Hilbert
+     * (la distance le long de la courbe tient alors sur 30 bits, voir {@link #hilbert})
+     */
+    private static final int HILBERT_BITS = 15;
+
+    /**
+     * classe utilitaire, pas d'instance
+     */
+    private NodeOrdering() {
+    }
+
+    /**
+     * Ordre de parcours en largeur, composante connexe par composante connexe
+     * @param nodes noeuds du graphe, rangés selon leur index
+     * @return la permutation {@code order[nouveau rang] = ancien rang}
+     */
+    public static int[] breadthFirst(List<Node> nodes) {
+        return cuthillMcKee(nodes, false, false);
+    }
+
+    /**
+     * Ordre de Cuthill-McKee inverse : parcours en largeur qui démarre de noeuds de degré minimal
+     * et visite les voisins par degré croissant, puis est renversé. Il réduit la largeur de bande
+     * de la matrice d'adjacence, c'est-à-dire l'écart entre les rangs de deux voisins.
+     * @param nodes noeuds du graphe, rangés selon leur index
+     * @return la permutation {@code order[nouveau rang] = ancien rang}
+     */
+    public static int[] reverseCuthillMcKee(List<Node> nodes) {
+        return cuthillMcKee(nodes, true, true);
+    }
+
+    /**
+     * Parcours en largeur commun à {@link #breadthFirst} et {@link #reverseCuthillMcKee}
+     * @param nodes noeuds du graphe, rangés selon leur index
+     * @param byDegree vrai pour démarrer et visiter les voisins par degré croissant
+     * @param reverse vrai pour renverser l'ordre obtenu
+     * @return la permutation {@code order[nouveau rang] = ancien rang}
+     */
+    private static int[] cuthillMcKee(List<Node> nodes, boolean byDegree, boolean reverse) {
+
+        int nbNodes = nodes.size();
+        int[] order = new int[nbNodes];
+        boolean[] visited = new boolean[nbNodes];
+
+        // noeuds de départ candidats, par degré croissant si besoin
+        int[] starts = new int[nbNodes];
+        for (int i = 0; i < nbNodes; i++) starts[i] = i;
+        if (byDegree) sortByDegree(nodes, starts, 0, nbNodes);
+
+        // la file du parcours est le tableau order lui-même
+        int head = 0, tail = 0;
+        for (int s = 0; s < nbNodes; s++) {
+            if (visited[starts[s]]) continue;  // déjà atteint depuis une autre composante
+            visited[starts[s]] = true;
+            order[tail++] = starts[s];
+            while (head < tail) {
+                List<Node> neighbours = nodes.get(order[head++]).getNeighbours();
+                int first = tail;
+                for (int j = 0; j < neighbours.size(); j++) {
+                    int v = neighbours.get(j).getIndex();
+                    if (!visited[v]) {
+                        visited[v] = true;
+                        order[tail++] = v;
+                    }
+                }
+                if (byDegree) sortByDegree(nodes, order, first, tail);
+            }
+        }
+
+        if (reverse) {
+            for (int i = 0, j = nbNodes - 1; i < j; i++, j--) {
+                int tmp = order[i];
+                order[i] = order[j];
+                order[j] = tmp;
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Trie les rangs {@code ranks[from..to[} par degré croissant (à degré égal, par rang croissant)
+     * @param nodes noeuds du graphe
+     * @param ranks rangs à trier sur place
+     * @param from début de la zone à trier
+     * @param to fin (exclue) de la zone à trier
+     */
+    private static void sortByDegree(List<Node> nodes, int[] ranks, int from, int to) {
+        if (to - from < 2) return;
+        // clé = degré dans les 32 bits de poids fort, rang dans ceux de poids faible
+        long[] keys = new long[to - from];
+        for (int i = from; i < to; i++) {
+            keys[i - from] = ((long) nodes.get(ranks[i]).getNeighbours().size() << 32) | ranks[i];
+        }
+        Arrays.sort(keys);
+        for (int i = from; i < to; i++) ranks[i] = (int) keys[i - from];
+    }
+
+    /**
+     * Ordre des noeuds le long d'une courbe de Hilbert tracée sur leurs positions courantes
+     * @param nodes noeuds du graphe, rangés selon leur index
+     * @return la permutation {@code order[nouveau rang] = ancien rang}
+     */
+    public static int[] hilbert(List<Node> nodes) {
+
+        int nbNodes = nodes.size();
+        double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (int i = 0; i < nbNodes; i++) {
+            double x = nodes.get(i).getPosition().getX();
+            double y = nodes.get(i).getPosition().getY();
+            if (x < minX) minX = x;
+            if (x > maxX) maxX = x;
+            if (y < minY) minY = y;
+            if (y > maxY) maxY = y;
+        }
+        int side = 1 << HILBERT_BITS;
+        double scale = (side - 1) / Math.max(Math.max(maxX - minX, maxY - minY), Double.MIN_VALUE);
+
+        // clé = distance le long de la courbe (32 bits de poids fort), rang (32 bits de poids faible)
+        long[] keys = new long[nbNodes];
+        for (int i = 0; i < nbNodes; i++) {
+            int x = (int) ((nodes.get(i).getPosition().getX() - minX) * scale);
+            int y = (int) ((nodes.get(i).getPosition().getY() - minY) * scale);
+            keys[i] = (hilbertDistance(side, x, y) << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        int[] order = new int[nbNodes];
+        for (int i = 0; i < nbNodes; i++) order[i] = (int) keys[i];
+        return order;
+    }
+
+    /**
+     * Distance le long de la courbe de Hilbert d'une grille carrée
+     * @param side côté de la grille (puissance de 2)
+     * @param x abscisse de la case, dans [0,side[
+     * @param y ordonnée de la case, dans [0,side[
+     * @return le numéro de la case le long de la courbe
+     */
+    private static long hilbertDistance(int side, int x, int y) {
+        long d = 0;
+        for (int s = side / 2; s > 0; s /= 2) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            // rotation du quadrant pour que la courbe reste continue
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = side - 1 - x;
+                    y = side - 1 - y;
+                }
+                int tmp = x;
+                x = y;
+                y = tmp;
+            }
+        }
+        return d;
+    }
+
+}
@@ -0,0 +1,202 @@
+package models;
+
+import java.util.Arrays;
+
+/**
+ * Suppression des chevauchements de noeuds après l'équilibrage
+ * <p>
+ * Les modèles de forces rapprochent parfois les noeuds à moins de deux rayons l'un de l'autre
+ * sur les dessins denses, et augmenter la répulsion coûterait beaucoup d'itérations en O(n²).
+ * On écarte plutôt les paires qui se chevauchent, à la manière de PRISM : chaque paire trop proche
+ * est allongée dans sa propre direction d'un facteur borné (au plus {@link #MAX_EXPANSION}),
+ * ce qui préserve la forme générale du dessin. On recommence jusqu'à ce qu'il n'y ait plus de
+ * chevauchement.
+ * </p>
+ * <p>
+ * Les paires proches sont trouvées sur une grille dont les cellules font deux rayons de côté :
+ * les noeuds sont triés par cellule, puis chaque noeud ne regarde que les 9 cellules autour de la
+ * sienne par recherche dichotomique. Une passe coûte ainsi O(n log n) plus le nombre de paires proches.
+ * Les noeuds épinglés (voir {@link Node#isPinned()}) ne bougent pas.
+ * </p>
+ */
+public class OverlapRemoval {
+
+    /**
+     * allongement maximal d'une paire en une passe (PRISM borne de même le facteur de chevauchement)
+     */
+    private static final double MAX_EXPANSION = 1.5;
+
+    /**
+     * on écarte les paires un peu au-delà de la distance minimale (2 %) : elles ne retombent pas
+     * dans le chevauchement au moindre écart d'un voisin, ce qui économise beaucoup de passes
+     */
+    private static final double SEPARATION_MARGIN = 0.02;
+
+    /**
+     * proportion maximale de l'aire du dessin occupée par les noeuds (chacun comptant pour minDist²) :
+     * au-delà, on agrandit d'abord le dessin
+     */
+    private static final double MAX_OCCUPANCY = 0.5;
+
+    /**
+     * nombre maximal de passes
+     */
+    public static final int MAX_PASSES = 1000;
+
+    /**
+     * classe utilitaire, pas d'instance
+     */
+    private OverlapRemoval() {
+    }
+
+    /**
+     * Ecarte les noeuds jusqu'à ce qu'aucune paire ne soit à moins de <i>minDist</i>
+     * @param x abscisses des noeuds (modifiées)
+     * @param y ordonnées des noeuds (modifiées)
+     * @param pinned noeuds qui ne doivent pas bouger, ou null
+     * @param minDist distance minimale entre deux noeuds (deux rayons)
+     * @return le nombre de passes effectuées, l'agrandissement du dessin comptant pour une
+     * (0 si aucune position n'a changé)
+     */
+    public static int removeOverlaps(double[] x, double[] y, boolean[] pinned, double minDist) {
+
+        int nbNodes = x.length;
+        long[] sorted = new long[nbNodes];
+        double sqMinDist = minDist * minDist;
+
+        int nbExpansions = expand(x, y, pinned, minDist) ? 1 : 0;
+
+        for (int pass = 0; pass < MAX_PASSES; pass++) {
+
+            // grille : les cellules font au moins minDist de côté, plus si les clés ne tiendraient pas sur un long
+            double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+            for (int i = 0; i < nbNodes; i++) {
+                if (x[i] < minX) minX = x[i];
+                if (x[i] > maxX) maxX = x[i];
+                if (y[i] < minY) minY = y[i];
+                if (y[i] > maxY) maxY = y[i];
+            }
+            double maxCellsPerSide = Math.floor(Math.sqrt((double) (Long.MAX_VALUE >> 1) / Math.max(nbNodes, 1))) - 1;
+            double cellSize = Math.max(minDist, Math.max(maxX - minX, maxY - minY) / maxCellsPerSide);
+            long width = (long) ((maxX - minX) / cellSize) + 1;
+            long height = (long) ((maxY - minY) / cellSize) + 1;
+
+            // tri des noeuds par cellule : clé de cellule * nbNodes + n° du noeud
+            for (int i = 0; i < nbNodes; i++) {
+                sorted[i] = cell(x[i], minX, y[i], minY, cellSize, height) * nbNodes + i;
+            }
+            Arrays.sort(sorted);
+
+            int nbOverlaps = 0;
+
+            for (int p = 0; p < nbNodes; p++) {
+                // cellule de i au moment du tri (les noeuds bougent pendant la passe)
+                int i = (int) (sorted[p] % nbNodes);
+                long cx = sorted[p] / nbNodes / height;
+                long cy = sorted[p] / nbNodes % height;
+                for (long ncx = Math.max(cx - 1, 0); ncx <= Math.min(cx + 1, width - 1); ncx++) {
+                    // les cellules (ncx, cy-1..cy+1) sont contiguës dans l'ordre du tri
+                    long first = ncx * height + Math.max(cy - 1, 0);
+                    long last = ncx * height + Math.min(cy + 1, height - 1);
+                    for (int q = lowerBound(sorted, first * nbNodes); q < nbNodes && sorted[q] < (last + 1) * nbNodes; q++) {
+                        int j = (int) (sorted[q] % nbNodes);
+                        if (j <= i) continue; // chaque paire une fois
+                        double dx = x[j] - x[i];
+                        double dy = y[j] - y[i];
+                        double sqDist = dx*dx + dy*dy;
+                        if (sqDist >= sqMinDist) continue;
+                        nbOverlaps++;
+                        double dist = Math.sqrt(sqDist);
+                        double push;
+                        if (dist == 0) {
+                            // noeuds confondus : direction arbitraire mais déterministe
+                            double angle = 2.399963229728653 * (i + j); // angle d'or
+                            dx = Math.cos(angle);
+                            dy = Math.sin(angle);
+                            push = minDist / 2;
+                        } else {
+                            dx /= dist;
+                            dy /= dist;
+                            push = Math.min(minDist * (1 + SEPARATION_MARGIN), MAX_EXPANSION * dist) - dist;
+                        }
+                        boolean iPinned = pinned != null && pinned[i];
+                        boolean jPinned = pinned != null && pinned[j];
+                        if (iPinned && jPinned) continue;
+                        // chacun s'écarte de la moitié, ou un seul de tout si l'autre est épinglé
+                        double shareI = iPinned ? 0 : (jPinned ? 1 : 0.5);
+                        double shareJ = jPinned ? 0 : (iPinned ? 1 : 0.5);
+                        x[i] -= dx * push * shareI;
+                        y[i] -= dy * push * shareI;
+                        x[j] += dx * push * shareJ;
+                        y[j] += dy * push * shareJ;
+                    }
+                }
+            }
+
+            if (nbOverlaps == 0) return nbExpansions + pass;
+        }
+
+        return nbExpansions + MAX_PASSES;
+    }
+
+    /**
+     * Agrandit le dessin autour de son centre s'il est trop petit pour contenir tous les noeuds sans
+     * chevauchement (voir {@link #MAX_OCCUPANCY}) : les écartements locaux mettraient très longtemps
+     * à faire la place manquante. On ne le fait pas s'il y a des noeuds épinglés.
+     * @param x abscisses des noeuds (modifiées)
+     * @param y ordonnées des noeuds (modifiées)
+     * @param pinned noeuds qui ne doivent pas bouger, ou null
+     * @param minDist distance minimale entre deux noeuds
+     * @return vrai si le dessin a été agrandi
+     */
+    private static boolean expand(double[] x, double[] y, boolean[] pinned, double minDist) {
+        if (pinned != null) {
+            for (int i = 0; i < pinned.length; i++) if (pinned[i]) return false;
+        }
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (int i = 0; i < x.length; i++) {
+            if (x[i] < minX) minX = x[i];
+            if (x[i] > maxX) maxX = x[i];
+            if (y[i] < minY) minY = y[i];
+            if (y[i] > maxY) maxY = y[i];
+        }
+        double area = (maxX - minX + minDist) * (maxY - minY + minDist);
+        double scale = Math.sqrt(x.length * minDist * minDist / (MAX_OCCUPANCY * area));
+        if (scale <= 1) return false;
+        double centreX = (minX + maxX) / 2, centreY = (minY + maxY) / 2;
+        for (int i = 0; i < x.length; i++) {
+            x[i] = centreX + (x[i] - centreX) * scale;
+            y[i] = centreY + (y[i] - centreY) * scale;
+        }
+        return true;
+    }
+
+    /**
+     * @param x abscisse du point
+     * @param minX abscisse du bord gauche de la grille
+     * @param y ordonnée du point
+     * @param minY ordonnée du bord haut de la grille
+     * @param cellSize côté d'une cellule
+     * @param height nombre de lignes de la grille
+     * @return la clé de la cellule contenant le point (x, y) : colonne * hauteur + ligne
+     */
+    private static long cell(double x, double minX, double y, double minY, double cellSize, long height) {
+        return (long) ((x - minX) / cellSize) * height + (long) ((y - minY) / cellSize);
+    }
+
+    /**
+     * @param sorted tableau trié
+     * @param value valeur cherchée
+     * @return le premier rang dont la valeur est supérieure ou égale à <i>value</i>
+     */
+    private static int lowerBound(long[] sorted, long value) {
+        int lo = 0, hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted[mid] < value) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+}
@@ -0,0 +1,192 @@
+package models;
+
+import graphdrawerapp.GraphDrawerApp;
+import helper.ForceModelizer;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * Jeu de paramètres d'équilibrage adapté à une classe de graphes
+ * <p>
+ * Les bonnes valeurs du pas temporel, de l'amortissement, de l'aire {@link Graph#AREA} et des coefficients
+ * du modèle d'Eades dépendent beaucoup de la structure du graphe. Un profil les fixe pour une
+ * {@link #classify classe} de graphes (modèle, ordre de grandeur du nombre de noeuds et du degré moyen) ;
+ * il est écrit par l'outil de réglage ({@code tuning.TuningApp}) dans le fichier {@code <classe>.profile}
+ * du dossier {@link Graph#PARAMETER_PROFILES_DIRECTORY}, et repris par {@link Graph} à la construction
+ * quand {@link Graph#USE_PARAMETER_PROFILES} est vrai.
+ * </p>
+ * <p>
+ * L'aire et les coefficients servent au graphe lui-même ; le pas temporel et l'amortissement sont
+ * passés à chaque itération par l'appelant, qui les lit dans {@link Graph#getProfile()}.
+ * Le seuil {@link Graph#ENERGY_THRESHOLD} ne change pas : c'est à critère d'arrêt égal que les profils
+ * ont été comparés.
+ * </p>
+ */
+public class ParameterProfile {
+
+    /**
+     * extension des fichiers de profils
+     */
+    public static final String EXTENSION = ".profile";
+
+    /**
+     * classe de graphes du profil
+     */
+    private final String graphClass;
+
+    /**
+     * pas temporel et facteur d'amortissement
+     */
+    private final double timestep, damping;
+
+    /**
+     * aire ciblée (voir {@link Graph#AREA})
+     */
+    private final int area;
+
+    /**
+     * coefficients d'attraction et de répulsion du modèle d'Eades
+     */
+    private final double eadesAttraction, eadesRepulsion;
+
+    /**
+     * @param graphClass classe de graphes (voir {@link #classify})
+     * @param timestep pas temporel
+     * @param damping facteur d'amortissement
+     * @param area aire ciblée
+     * @param eadesAttraction coefficient d'attraction du modèle d'Eades
+     * @param eadesRepulsion coefficient de répulsion du modèle d'Eades
+     */
+    public ParameterProfile(String graphClass, double timestep, double damping, int area,
+            double eadesAttraction, double eadesRepulsion) {
+        this.graphClass = graphClass;
+        this.timestep = timestep;
+        this.damping = damping;
+        this.area = area;
+        this.eadesAttraction = eadesAttraction;
+        this.eadesRepulsion = eadesRepulsion;
+    }
+
+    /**
+     * @param graphClass classe de graphes
+     * @return le profil des paramètres par défaut ({@link GraphDrawerApp#timestep}, {@link Graph#AREA}...)
+     */
+    public static ParameterProfile defaults(String graphClass) {
+        return new ParameterProfile(graphClass, GraphDrawerApp.timestep, GraphDrawerApp.damping, Graph.AREA,
+                Graph.EADES_ATTRACTION, Graph.EADES_REPULSION);
+    }
+
+    /**
+     * Classe d'un graphe, de la forme {@code f-n2-d3} : initiale du modèle, puis ordre de grandeur du nombre
+     * de noeuds (partie entière de son logarithme décimal) et du degré moyen (logarithme en base 2, arrondi)
+     * @param modelLetter initiale du nom du modèle
+     * @param nbNodes nombre de noeuds
+     * @param nbEdges nombre d'arêtes
+     * @return le nom de la classe
+     */
+    public static String classify(char modelLetter, int nbNodes, long nbEdges) {
+        int sizeClass = nbNodes > 0 ? (int) Math.floor(Math.log10(nbNodes)) : 0;
+        double meanDegree = nbNodes > 0 ? 2.0 * nbEdges / nbNodes : 0;
+        int degreeClass = (int) Math.round(Math.log(Math.max(1, meanDegree)) / Math.log(2));
+        return modelLetter + "-n" + sizeClass + "-d" + degreeClass;
+    }
+
+    /**
+     * Lit le profil d'une classe de graphes
+     * @param directory dossier des profils
+     * @param graphClass classe de graphes
+     * @return le profil, ou null s'il n'y en a pas (ou s'il est illisible)
+     */
+    public static ParameterProfile load(File directory, String graphClass) {
+        File file = new File(directory, graphClass + EXTENSION);
+        if (!file.exists()) return null;
+        Properties properties = new Properties();
+        try {
+            InputStream in = new FileInputStream(file);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+            return new ParameterProfile(graphClass,
+                    Double.parseDouble(properties.getProperty("timestep")),
+                    Double.parseDouble(properties.getProperty("damping")),
+                    Integer.parseInt(properties.getProperty("area")),
+                    Double.parseDouble(properties.getProperty("eades.attraction")),
+                    Double.parseDouble(properties.getProperty("eades.repulsion")));
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            return null;
+        } catch (RuntimeException ex) { // propriété absente ou mal formée
+            System.out.println("Profil " + file + " ignoré : " + ex);
+            return null;
+        }
+    }
+
+    /**
+     * Ecrit le profil dans le fichier {@code <classe>.profile} du dossier
+     * @param directory dossier des profils (créé si besoin)
+     * @param comment commentaire en tête de fichier (origine du profil), ou null
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public void store(File directory, String comment) throws IOException {
+        directory.mkdirs();
+        Properties properties = new Properties();
+        properties.setProperty("timestep", Double.toString(timestep));
+        properties.setProperty("damping", Double.toString(damping));
+        properties.setProperty("area", Integer.toString(area));
+        properties.setProperty("eades.attraction", Double.toString(eadesAttraction));
+        properties.setProperty("eades.repulsion", Double.toString(eadesRepulsion));
+        OutputStream out = new FileOutputStream(new File(directory, graphClass + EXTENSION));
+        try {
+            properties.store(out, comment);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @param modelLetter initiale du nom du modèle
+     * @param k distance idéale entre deux noeuds voisins
+     * @return le calculateur de force du modèle avec les coefficients du profil
+     */
+    public ForceModelizer createCalculator(char modelLetter, double k) {
+        return Graph.createCalculator(modelLetter, k, eadesAttraction, eadesRepulsion);
+    }
+
+    public String getGraphClass() {
+        return graphClass;
+    }
+
+    public double getTimestep() {
+        return timestep;
+    }
+
+    public double getDamping() {
+        return damping;
+    }
+
+    public int getArea() {
+        return area;
+    }
+
+    public double getEadesAttraction() {
+        return eadesAttraction;
+    }
+
+    public double getEadesRepulsion() {
+        return eadesRepulsion;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s : timestep %.4g, damping %.3f, aire %d, Eades %.4g / %.4g",
+                graphClass, timestep, damping, area, eadesAttraction, eadesRepulsion);
+    }
+
+}
@@ -0,0 +1,270 @@
+package models;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Index spatial des noeuds (arbre 2-d) pour retrouver le noeud le plus proche d'un point
+ * <p>
+ * L'arbre est implicite : les noeuds sont rangés dans un tableau de sorte que le noeud médian
+ * d'un intervalle (selon x ou y, en alternant avec la profondeur) sépare les noeuds de gauche
+ * et de droite. La construction coûte O(n log² n) et une recherche O(log n) en moyenne.
+ * </p>
+ * <p>
+ * L'index photographie les positions courantes : il faut le reconstruire quand les noeuds bougent
+ * (voir {@link Graph#getSpatialIndex()}). Les recherches ne modifient pas l'index et peuvent être
+ * faites depuis plusieurs threads à la fois.
+ * </p>
+ */
+public class SpatialIndex {
+
+    /**
+     * noeuds indexés, dans l'ordre de construction (null pour un index de points)
+     */
+    private Node[] nodes;
+
+    /**
+     * indices de construction des points, dans l'ordre de l'arbre
+     */
+    private int[] tree;
+
+    /**
+     * positions des points dans l'ordre de l'arbre
+     */
+    private double[] treeX, treeY;
+
+    /**
+     * Construit l'index sur les positions courantes des noeuds
+     * @param nodes noeuds à indexer
+     */
+    public SpatialIndex(List<Node> nodes) {
+        this.nodes = nodes.toArray(new Node[nodes.size()]);
+        double[] x = new double[this.nodes.length], y = new double[this.nodes.length];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = this.nodes[i].getPosition().getX();
+            y[i] = this.nodes[i].getPosition().getY();
+        }
+        index(x, y);
+    }
+
+    /**
+     * Construit l'index sur des points donnés par leurs coordonnées (par exemple des positions photographiées)
+     * @param x abscisses des points
+     * @param y ordonnées des points
+     */
+    public SpatialIndex(double[] x, double[] y) {
+        index(x, y);
+    }
+
+    /**
+     * Range les points dans l'arbre
+     * @param x abscisses des points, par indice de construction
+     * @param y ordonnées des points
+     */
+    private void index(double[] x, double[] y) {
+        Integer[] order = new Integer[x.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        build(order, 0, order.length, 0, byCoordinate(x), byCoordinate(y));
+        tree = new int[order.length];
+        treeX = new double[order.length];
+        treeY = new double[order.length];
+        for (int i = 0; i < order.length; i++) {
+            tree[i] = order[i];
+            treeX[i] = x[order[i]];
+            treeY[i] = y[order[i]];
+        }
+    }
+
+    /**
+     * Range les points de l'intervalle [lo, hi) autour de leur médian
+     * @param order indices des points
+     * @param lo début de l'intervalle
+     * @param hi fin de l'intervalle (exclue)
+     * @param depth profondeur (paire : tri selon x, impaire : selon y)
+     * @param xOrder comparaison selon l'abscisse
+     * @param yOrder comparaison selon l'ordonnée
+     */
+    private static void build(Integer[] order, int lo, int hi, int depth, Comparator<Integer> xOrder, Comparator<Integer> yOrder) {
+        if (hi - lo <= 1) return;
+        Arrays.sort(order, lo, hi, depth % 2 == 0 ? xOrder : yOrder);
+        int mid = (lo + hi) >>> 1;
+        build(order, lo, mid, depth + 1, xOrder, yOrder);
+        build(order, mid + 1, hi, depth + 1, xOrder, yOrder);
+    }
+
+    /**
+     * @param x abscisse du point
+     * @param y ordonnée du point
+     * @param maxDist distance maximale
+     * @return le noeud le plus proche du point à moins de <i>maxDist</i>, ou null s'il n'y en a pas
+     */
+    public Node nearest(double x, double y, double maxDist) {
+        Node[] found = nearest(x, y, 1, maxDist);
+        return found.length == 0 ? null : found[0];
+    }
+
+    /**
+     * @param x abscisse du point
+     * @param y ordonnée du point
+     * @param k nombre de noeuds voulus
+     * @param maxDist distance maximale
+     * @return les (au plus) <i>k</i> noeuds les plus proches du point à moins de <i>maxDist</i>, du plus proche au plus lointain
+     */
+    public Node[] nearest(double x, double y, int k, double maxDist) {
+        int[] indexes = nearestIndexes(x, y, k, maxDist);
+        Node[] found = new Node[indexes.length];
+        for (int i = 0; i < indexes.length; i++) found[i] = nodes[indexes[i]];
+        return found;
+    }
+
+    /**
+     * @param x abscisse du point
+     * @param y ordonnée du point
+     * @param k nombre de points voulus
+     * @param maxDist distance maximale
+     * @return les indices de construction des (au plus) <i>k</i> points les plus proches du point à moins
+     * de <i>maxDist</i>, du plus proche au plus lointain
+     */
+    public int[] nearestIndexes(double x, double y, int k, double maxDist) {
+        Search search = new Search(k, maxDist * maxDist);
+        search(0, tree.length, 0, x, y, search);
+        // on vide le tas (le plus lointain d'abord)
+        int[] found = new int[search.size];
+        while (search.size > 0) {
+            found[search.size - 1] = tree[search.ranks[0]];
+            search.pop();
+        }
+        return found;
+    }
+
+    /**
+     * Recherche dans l'intervalle [lo, hi) en écartant les moitiés trop lointaines
+     * @param lo début de l'intervalle
+     * @param hi fin de l'intervalle (exclue)
+     * @param depth profondeur
+     * @param x abscisse du point
+     * @param y ordonnée du point
+     * @param search candidats trouvés jusqu'ici
+     */
+    private void search(int lo, int hi, int depth, double x, double y, Search search) {
+        if (lo >= hi) return;
+        int mid = (lo + hi) >>> 1;
+        double dx = treeX[mid] - x;
+        double dy = treeY[mid] - y;
+        search.offer(mid, dx*dx + dy*dy);
+        // écart au plan de séparation : on explore d'abord le côté du point
+        double delta = depth % 2 == 0 ? x - treeX[mid] : y - treeY[mid];
+        if (delta < 0) {
+            search(lo, mid, depth + 1, x, y, search);
+            if (delta * delta <= search.getBound()) search(mid + 1, hi, depth + 1, x, y, search);
+        } else {
+            search(mid + 1, hi, depth + 1, x, y, search);
+            if (delta * delta <= search.getBound()) search(lo, mid, depth + 1, x, y, search);
+        }
+    }
+
+    /**
+     * Candidats d'une recherche : tas des k plus proches, le plus lointain en tête
+     */
+    private static class Search {
+
+        /**
+         * nombre de noeuds voulus et nombre de candidats retenus
+         */
+        int k, size;
+
+        /**
+         * rangs dans l'arbre et carrés des distances des candidats, en tas
+         */
+        int[] ranks;
+        double[] sqDists;
+
+        /**
+         * carré de la distance maximale
+         */
+        double maxSqDist;
+
+        /**
+         * @param k nombre de noeuds voulus
+         * @param maxSqDist carré de la distance maximale
+         */
+        Search(int k, double maxSqDist) {
+            this.k = k;
+            this.maxSqDist = maxSqDist;
+            ranks = new int[k];
+            sqDists = new double[k];
+        }
+
+        /**
+         * @return le carré de la distance au-delà de laquelle un noeud ne peut plus être retenu
+         */
+        double getBound() {
+            return size < k ? maxSqDist : sqDists[0];
+        }
+
+        /**
+         * Propose un candidat
+         * @param rank rang du noeud dans l'arbre
+         * @param sqDist carré de sa distance au point
+         */
+        void offer(int rank, double sqDist) {
+            if (sqDist > getBound()) return;
+            if (size < k) {
+                // ajout en bas du tas puis remontée
+                int i = size++;
+                while (i > 0 && sqDists[(i - 1) / 2] < sqDist) {
+                    ranks[i] = ranks[(i - 1) / 2];
+                    sqDists[i] = sqDists[(i - 1) / 2];
+                    i = (i - 1) / 2;
+                }
+                ranks[i] = rank;
+                sqDists[i] = sqDist;
+            } else {
+                // remplacement de la tête puis descente
+                siftDown(rank, sqDist);
+            }
+        }
+
+        /**
+         * Retire la tête du tas
+         */
+        void pop() {
+            size--;
+            if (size > 0) siftDown(ranks[size], sqDists[size]);
+        }
+
+        /**
+         * Place un candidat en tête du tas et le fait descendre
+         * @param rank rang du noeud dans l'arbre
+         * @param sqDist carré de sa distance au point
+         */
+        private void siftDown(int rank, double sqDist) {
+            int i = 0;
+            while (2*i + 1 < size) {
+                int child = 2*i + 1;
+                if (child + 1 < size && sqDists[child + 1] > sqDists[child]) child++;
+                if (sqDists[child] <= sqDist) break;
+                ranks[i] = ranks[child];
+                sqDists[i] = sqDists[child];
+                i = child;
+            }
+            ranks[i] = rank;
+            sqDists[i] = sqDist;
+        }
+
+    }
+
+    /**
+     * @param coordinates une coordonnée des points, par indice de construction
+     * @return la comparaison de deux indices selon cette coordonnée
+     */
+    private static Comparator<Integer> byCoordinate(final double[] coordinates) {
+        return new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return Double.compare(coordinates[a], coordinates[b]);
+            }
+        };
+    }
+
+}
@@ -0,0 +1,248 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Itération d'équilibrage exacte où chaque paire de noeuds n'est calculée qu'une fois
+ * <p>
+ * {@link Graph#iterateBalance} parcourt chaque arête depuis ses deux extrémités (les listes de voisins
+ * sont symétriques) et calcule la répulsion u→v puis v→u. Les forces des modèles ne dépendant que de la
+ * distance, la force subie par v est l'opposée de celle subie par u (troisième loi de Newton) : on ne
+ * calcule ici que les paires u &lt; v et on ajoute la force à u et son opposée à v, ce qui divise par deux
+ * le nombre d'appels à {@link ForceModelizer}.
+ * </p>
+ * <p>
+ * Une paire écrit dans deux noeuds à la fois : les forces sont donc calculées sur les positions du début de
+ * l'itération (mise à jour de Jacobi, comme {@link NegativeSampling}) puis appliquées à tous les noeuds.
+ * Les rangs u sont répartis en tranches de même nombre de paires, une par thread ; chaque tranche somme ses
+ * forces dans son propre tampon de n forces, et les tampons sont additionnés dans l'ordre des tranches. Le
+ * résultat ne dépend que du nombre de tranches.
+ * </p>
+ */
+class SymmetricForces {
+
+    /**
+     * nombre minimal de paires par tranche (en dessous, on utilise moins de threads)
+     */
+    private static final long MIN_PAIRS_PER_SLICE = 1 << 16;
+
+    /**
+     * graphe équilibré
+     */
+    private Graph graph;
+
+    /**
+     * threads de calcul
+     */
+    private ForkJoinPool executor;
+
+    /**
+     * nombre de threads de calcul
+     */
+    private int nbThreads;
+
+    /**
+     * positions au début de l'itération, par rang
+     */
+    private double[] x, y;
+
+    /**
+     * forces accumulées par chaque tranche, par rang
+     */
+    private double[][] forceX, forceY;
+
+    /**
+     * durées (ns) de l'attraction et de la répulsion de chaque tranche, si elles sont mesurées
+     */
+    private long[] sliceAttractionTime, sliceRepulsionTime;
+
+    /**
+     * durées (ns) des phases d'attraction et de répulsion de la dernière itération mesurée,
+     * sommées sur les noeuds de toutes les tranches
+     */
+    long attractionTime, repulsionTime;
+
+    /**
+     * @param graph graphe à équilibrer
+     * @param nbThreads nombre de threads de calcul
+     */
+    SymmetricForces(Graph graph, int nbThreads) {
+        this.graph = graph;
+        this.nbThreads = Math.max(1, nbThreads);
+        executor = new ForkJoinPool(this.nbThreads);
+    }
+
+    /**
+     * Applique une itération à tous les noeuds
+     * @param nodes noeuds du graphe, par rang
+     * @param adjacency listes compressées, ou null pour celles des noeuds
+     * @param timestep pas temporel de l'itération
+     * @param damping facteur d'amortissement
+     * @param budget budget consulté avant chaque rang, ou null
+     * @param timed vrai pour mesurer les durées des phases ({@link #attractionTime}, {@link #repulsionTime})
+     * @return l'énergie cinétique du système, ou -1 si l'itération a été interrompue (aucun noeud n'a bougé)
+     */
+    double iterate(final List<Node> nodes, final CompressedAdjacency adjacency, double timestep, double damping,
+            final LayoutBudget budget, final boolean timed) {
+
+        int nbNodes = nodes.size();
+        long nbPairs = (long) nbNodes * (nbNodes - 1) / 2;
+        int nbSlices = (int) Math.max(1, Math.min(nbThreads, nbPairs / MIN_PAIRS_PER_SLICE));
+        if (x == null || x.length != nbNodes || forceX.length != nbSlices) {
+            x = new double[nbNodes];
+            y = new double[nbNodes];
+            forceX = new double[nbSlices][nbNodes];
+            forceY = new double[nbSlices][nbNodes];
+            sliceAttractionTime = new long[nbSlices];
+            sliceRepulsionTime = new long[nbSlices];
+        }
+        for (int i = 0; i < nbNodes; i++) {
+            x[i] = nodes.get(i).getPosition().getX();
+            y[i] = nodes.get(i).getPosition().getY();
+        }
+
+        // tranches de rangs de même nombre de paires : le rang u a n-1-u paires v > u
+        List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+        int from = 0;
+        long pairs = 0;
+        for (int s = 0; s < nbSlices; s++) {
+            long target = nbPairs * (s + 1) / nbSlices;
+            int to = from;
+            while (to < nbNodes && (pairs < target || s == nbSlices - 1)) pairs += nbNodes - 1 - to++;
+            final int sliceFrom = from, sliceTo = to, slice = s;
+            results.add(executor.submit(new Callable<Boolean>() {
+                public Boolean call() {
+                    return computeSlice(nodes, adjacency, sliceFrom, sliceTo, slice, budget, timed);
+                }
+            }));
+            from = to;
+        }
+        boolean interrupted = false;
+        for (Future<Boolean> result : results) {
+            if (!get(result)) interrupted = true;
+        }
+        if (timed) {
+            attractionTime = 0;
+            repulsionTime = 0;
+            for (int s = 0; s < nbSlices; s++) {
+                attractionTime += sliceAttractionTime[s];
+                repulsionTime += sliceRepulsionTime[s];
+            }
+        }
+        if (interrupted) return -1;
+
+        // somme des tampons dans l'ordre des tranches, puis application des forces
+        double kineticEnergy = 0;
+        for (int u = 0; u < nbNodes; u++) {
+            double fx = 0, fy = 0;
+            for (int s = 0; s < nbSlices; s++) {
+                fx += forceX[s][u];
+                fy += forceY[s][u];
+            }
+            Node node = nodes.get(u);
+            node.applyForce(fx, fy, timestep, damping);
+            kineticEnergy += node.getSpeed().sqNorm();
+        }
+        return kineticEnergy;
+    }
+
+    /**
+     * Calcule les forces des paires (u,v), u &lt; v, dont u est dans une tranche
+     * @param nodes noeuds du graphe, par rang
+     * @param adjacency listes compressées, ou null
+     * @param from premier rang de la tranche
+     * @param to rang suivant le dernier
+     * @param slice n° de la tranche (tampons de forces et durées)
+     * @param budget budget consulté avant chaque rang, ou null
+     * @param timed vrai pour mesurer les durées des phases
+     * @return faux si le calcul a été interrompu
+     */
+    private boolean computeSlice(List<Node> nodes, CompressedAdjacency adjacency, int from, int to,
+            int slice, LayoutBudget budget, boolean timed) {
+
+        double[] fx = forceX[slice], fy = forceY[slice];
+        long attractionTime = 0, repulsionTime = 0, phaseStart = 0;
+        Arrays.fill(fx, 0);
+        Arrays.fill(fy, 0);
+        CompressedAdjacency.Cursor cursor = adjacency != null ? adjacency.new Cursor() : null;
+        int nbNodes = x.length;
+
+        for (int u = from; u < to; u++) {
+            if (budget != null && budget.isOver()) return false;
+            double ux = x[u], uy = y[u];
+            double sumX = 0, sumY = 0;
+            if (timed) phaseStart = System.nanoTime();
+
+            // attraction : chaque arête est vue depuis ses deux extrémités, on ne la prend que depuis la plus petite
+            if (cursor != null) {
+                for (cursor.moveTo(u); cursor.hasNext(); ) {
+                    int v = cursor.next();
+                    if (v <= u) continue;
+                    double dx = x[v] - ux, dy = y[v] - uy;
+                    double factor = graph.getAttrFactor(dx*dx + dy*dy);
+                    sumX += dx * factor;
+                    sumY += dy * factor;
+                    fx[v] -= dx * factor;
+                    fy[v] -= dy * factor;
+                }
+            } else {
+                List<Node> neighbours = nodes.get(u).getNeighbours();
+                for (int j = 0; j < neighbours.size(); j++) {
+                    int v = neighbours.get(j).getIndex();
+                    if (v <= u) continue;
+                    double dx = x[v] - ux, dy = y[v] - uy;
+                    double factor = graph.getAttrFactor(dx*dx + dy*dy);
+                    sumX += dx * factor;
+                    sumY += dy * factor;
+                    fx[v] -= dx * factor;
+                    fy[v] -= dy * factor;
+                }
+            }
+
+            if (timed) {
+                long now = System.nanoTime();
+                attractionTime += now - phaseStart;
+                phaseStart = now;
+            }
+
+            // répulsion avec les noeuds de rang supérieur
+            for (int v = u + 1; v < nbNodes; v++) {
+                double dx = x[v] - ux, dy = y[v] - uy;
+                double factor = graph.getRepulsFactor(dx*dx + dy*dy);
+                sumX += dx * factor;
+                sumY += dy * factor;
+                fx[v] -= dx * factor;
+                fy[v] -= dy * factor;
+            }
+
+            fx[u] += sumX;
+            fy[u] += sumY;
+            if (timed) repulsionTime += System.nanoTime() - phaseStart;
+        }
+        sliceAttractionTime[slice] = attractionTime;
+        sliceRepulsionTime[slice] = repulsionTime;
+        return true;
+    }
+
+    /**
+     * @param result résultat d'une tâche
+     * @return sa valeur
+     */
+    private static <T> T get(Future<T> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+}
@@ -0,0 +1,55 @@
+package profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Evènement Java Flight Recorder d'une itération d'équilibrage
+ * <p>
+ * Sa durée couvre l'itération entière. Dans la boucle exacte, l'attraction et la répulsion alternent
+ * noeud par noeud : on somme la durée de chaque phase sur l'itération (deux lectures d'horloge par noeud,
+ * faites seulement si l'évènement est activé) plutôt que d'émettre un évènement par noeud. Le mode
+ * symmetric fait de même dans chaque tranche et somme les tranches ; le mode sampled calcule l'attraction
+ * puis la répulsion en deux phases parallèles successives, dont on mesure le temps écoulé. Le mode single
+ * ne les distingue pas.
+ * </p>
+ */
+@Name("graphdrawerapp.Iteration")
+@Label("Itération d'équilibrage")
+@Category({"GraphDrawerApp", "Equilibrage"})
+@Description("Une itération de Graph.iterateBalance")
+@StackTrace(false)
+public class IterationEvent extends jdk.jfr.Event {
+
+    @Label("N° d'itération")
+    public int iteration;
+
+    @Label("Noeuds")
+    public int nbNodes;
+
+    @Label("Mode")
+    @Description("exact, symmetric (forces par paires), single (simple précision) ou sampled (répulsion échantillonnée)")
+    public String mode;
+
+    @Label("Energie cinétique")
+    public double kineticEnergy;
+
+    @Label("Complète")
+    @Description("faux si l'itération a été interrompue par son budget de temps")
+    public boolean complete;
+
+    @Label("Durée de l'attraction")
+    @Description("exact et symmetric : somme sur les noeuds (et les threads) ; sampled : temps écoulé de la phase ; single : 0")
+    @Timespan(Timespan.NANOSECONDS)
+    public long attractionTime;
+
+    @Label("Durée de la répulsion")
+    @Description("exact et symmetric : somme sur les noeuds (et les threads) ; sampled : temps écoulé de la phase ; single : 0")
+    @Timespan(Timespan.NANOSECONDS)
+    public long repulsionTime;
+
+}
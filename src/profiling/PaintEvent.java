@@ -0,0 +1,25 @@
+package profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evènement Java Flight Recorder du dessin d'une image du graphe
+ */
+@Name("graphdrawerapp.Paint")
+@Label("Dessin du graphe")
+@Category({"GraphDrawerApp", "Dessin"})
+@Description("Un appel à GraphPanel.paintComponent")
+@StackTrace(false)
+public class PaintEvent extends jdk.jfr.Event {
+
+    @Label("Noeuds")
+    public int nbNodes;
+
+    @Label("Arêtes")
+    public int nbEdges;
+
+}
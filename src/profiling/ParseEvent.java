@@ -0,0 +1,34 @@
+package profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evènement Java Flight Recorder de la lecture d'un fichier de graphe
+ */
+@Name("graphdrawerapp.Parse")
+@Label("Lecture de graphe")
+@Category({"GraphDrawerApp", "Lecture"})
+@Description("Lecture d'un fichier de graphe par Parser ou ParallelParser")
+@StackTrace(false)
+public class ParseEvent extends jdk.jfr.Event {
+
+    @Label("Fichier")
+    public String file;
+
+    @Label("Taille")
+    @DataAmount
+    public long bytes;
+
+    @Label("Lignes")
+    public int nbLines;
+
+    @Label("Threads")
+    @Description("1 pour Parser")
+    public int nbThreads;
+
+}
@@ -0,0 +1,82 @@
+package sequence;
+
+import export.PngExporter;
+import export.SvgExporter;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Application de dessin d'une suite d'instantanés d'un graphe qui évolue, sans interface graphique
+ * <p>
+ * Chaque instantané {@code data/<nom>.txt} est disposé à partir du précédent (voir {@link SnapshotSequence})
+ * et son image est écrite dans {@code <dossier>/<nom>.<png|svg>}, par exemple
+ * {@code SequenceApp f images png jour1 jour2 jour3}.
+ * </p>
+ */
+public class SequenceApp {
+
+    /**
+     * taille des images, en pixels
+     */
+    private static final int SIZE = 2000;
+
+    /**
+     * au-delà de ce nombre de noeuds, on n'écrit plus leurs numéros
+     */
+    private static final int MAX_LABELLED_NODES = 1000;
+
+    /**
+     * @param args "initiale modèle" "dossier_de_sortie" "png|svg" "nom_du_fichier" ["nom_du_fichier" ...]
+     */
+    public static void main(String[] args) {
+
+        // aucune fenêtre ne sera ouverte (serveurs sans affichage)
+        System.setProperty("java.awt.headless", "true");
+
+        if (args.length < 4 || args[0].length() < 1 || !Pattern.matches("png|svg", args[2])) {
+            System.out.println("Usage : SequenceApp initiale_modèle dossier_de_sortie (png|svg) nom_du_fichier [nom_du_fichier ...]");
+            return;
+        }
+        final File directory = new File(args[1]);
+        final String extension = args[2];
+        List<String> filePaths = new ArrayList<String>();
+        for (int a = 3; a < args.length; a++) {
+            if (!Pattern.matches("\\w{1,256}", args[a])) {
+                System.out.println("Nom de fichier incorrect : " + args[a]);
+                return;
+            }
+            filePaths.add("data/" + args[a] + ".txt");
+        }
+        directory.mkdirs();
+
+        final long start = System.nanoTime();
+        final StringBuilder summary = new StringBuilder();
+        final int[] nbWritten = new int[1];
+        try {
+            new SnapshotSequence(filePaths, args[0].charAt(0)).run(new SnapshotSequence.Sink() {
+                public void write(SnapshotSequence.Snapshot snapshot) throws IOException {
+                    String name = new File(snapshot.getFilePath()).getName().replaceFirst("\\.txt$", "");
+                    String outputPath = new File(directory, name + "." + extension).getPath();
+                    boolean drawLabels = snapshot.getGraph().getNodes().size() <= MAX_LABELLED_NODES;
+                    if (extension.equals("png")) new PngExporter(snapshot.getGraph(), SIZE, drawLabels).export(outputPath);
+                    else new SvgExporter(snapshot.getGraph(), SIZE, drawLabels).export(outputPath);
+                    summary.append(String.format("%s : %d noeuds dont %d nouveaux, %s -> %s%n", name,
+                            snapshot.getGraph().getNodes().size(), snapshot.getNbNewNodes(), snapshot.getReport(), outputPath));
+                    nbWritten[0]++;
+                }
+            });
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        // les itérations peuvent afficher leur énergie (Graph.LOG_KINETIC_ENERGY) : on regroupe le bilan à la fin
+        System.out.print(summary);
+        System.out.println(nbWritten[0] + "/" + filePaths.size() + " instantanés en " + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+}
@@ -0,0 +1,275 @@
+package sequence;
+
+import graphdrawerapp.GraphDrawerApp;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import models.BalanceReport;
+import models.Graph;
+import models.Node;
+
+/**
+ * Disposition d'une suite d'instantanés d'un même graphe qui évolue (par exemple un fichier par jour)
+ * <p>
+ * Les noeuds sont identifiés d'un instantané à l'autre par leur n° (rang dans le fichier). Au lieu de
+ * repartir de positions aléatoires, chaque instantané reprend les positions atteintes pour ses noeuds déjà
+ * vus ; les nouveaux sont placés au barycentre de leurs voisins connus (voir {@link Graph#seedPositions}).
+ * Les images successives se ressemblent, et quelques itérations suffisent en général à affiner.
+ * </p>
+ * <p>
+ * Les instantanés passent dans une chaîne à trois étages reliés par des files bornées : un thread lit et
+ * construit l'instantané suivant pendant que le thread appelant équilibre le courant, et un autre thread
+ * écrit le précédent (voir {@link Sink}). Au plus {@link #QUEUE_CAPACITY} instantanés attendent entre deux
+ * étages : la mémoire ne dépend pas de la longueur de la suite.
+ * </p>
+ */
+public class SnapshotSequence {
+
+    /**
+     * nombre d'instantanés en attente entre deux étages de la chaîne
+     */
+    public static int QUEUE_CAPACITY = 2;
+
+    /**
+     * Etage d'écriture des instantanés équilibrés, appelé dans l'ordre de la suite depuis un seul thread
+     */
+    public interface Sink {
+
+        /**
+         * @param snapshot instantané équilibré
+         * @throws IOException en cas d'erreur d'écriture (la suite est alors arrêtée)
+         */
+        void write(Snapshot snapshot) throws IOException;
+
+    }
+
+    /**
+     * fichiers des instantanés, dans l'ordre
+     */
+    private List<String> filePaths;
+
+    /**
+     * initiale du modèle de forces
+     */
+    private char modelLetter;
+
+    /**
+     * dernière position connue de chaque noeud déjà vu, par n° d'origine
+     */
+    private double[] lastX = new double[0], lastY = new double[0];
+    private boolean[] known = new boolean[0];
+
+    /**
+     * première erreur d'un étage, transmise au thread appelant
+     */
+    private volatile Exception failure;
+
+    /**
+     * @param filePaths fichiers des instantanés, dans l'ordre
+     * @param modelLetter initiale du modèle de forces
+     */
+    public SnapshotSequence(List<String> filePaths, char modelLetter) {
+        this.filePaths = filePaths;
+        this.modelLetter = modelLetter;
+    }
+
+    /**
+     * Dispose toute la suite
+     * @param sink étage d'écriture
+     * @throws IOException si un instantané n'a pas pu être lu ou écrit
+     * @throws InterruptedException si le thread appelant est interrompu
+     */
+    public void run(final Sink sink) throws IOException, InterruptedException {
+        final BlockingQueue<Snapshot> parsed = new ArrayBlockingQueue<Snapshot>(QUEUE_CAPACITY);
+        final BlockingQueue<Snapshot> balanced = new ArrayBlockingQueue<Snapshot>(QUEUE_CAPACITY);
+
+        Thread reader = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    for (int i = 0; i < filePaths.size() && failure == null; i++) {
+                        Graph graph = new Graph(filePaths.get(i), modelLetter);
+                        parsed.put(new Snapshot(i, filePaths.get(i), graph));
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception ex) { // fichier illisible
+                    fail(ex);
+                } finally {
+                    putEnd(parsed);
+                }
+            }
+        }, "snapshot-reader");
+
+        Thread writer = new Thread(new Runnable() {
+            public void run() {
+                // on vide la file jusqu'au bout, même après une erreur, pour ne pas bloquer l'équilibrage
+                boolean writing = true;
+                try {
+                    for (Snapshot snapshot = balanced.take(); snapshot.graph != null; snapshot = balanced.take()) {
+                        if (!writing) continue;
+                        try {
+                            sink.write(snapshot);
+                        } catch (Exception ex) {
+                            fail(ex);
+                            writing = false;
+                        }
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "snapshot-writer");
+
+        reader.setDaemon(true);
+        writer.setDaemon(true);
+        reader.start();
+        writer.start();
+        try {
+            for (Snapshot snapshot = parsed.take(); snapshot.graph != null; snapshot = parsed.take()) {
+                if (failure != null) continue; // on vide la file pour que la lecture se termine
+                balance(snapshot);
+                balanced.put(snapshot);
+            }
+        } finally {
+            putEnd(balanced);
+        }
+        writer.join();
+        reader.join();
+
+        if (failure instanceof IOException) throw (IOException) failure;
+        if (failure != null) throw new IOException(failure.getMessage(), failure);
+    }
+
+    /**
+     * Place un instantané d'après les précédents, l'équilibre et retient ses positions
+     * @param snapshot instantané construit
+     */
+    private void balance(Snapshot snapshot) {
+        Graph graph = snapshot.graph;
+        List<Node> nodes = graph.getNodes();
+
+        // positions connues des noeuds de l'instantané
+        int nbKnown = 0;
+        for (Node node : nodes) if (isKnown(node.getOriginalIndex())) nbKnown++;
+        int[] originalIndexes = new int[nbKnown];
+        double[] x = new double[nbKnown], y = new double[nbKnown];
+        int j = 0;
+        for (Node node : nodes) {
+            int id = node.getOriginalIndex();
+            if (!isKnown(id)) continue;
+            originalIndexes[j] = id;
+            x[j] = lastX[id];
+            y[j] = lastY[id];
+            j++;
+        }
+        snapshot.nbNewNodes = nbKnown > 0 ? graph.seedPositions(originalIndexes, x, y) : nodes.size();
+
+        GraphDrawerApp.applyProfile(graph);
+        snapshot.report = graph.balance(GraphDrawerApp.timestep, GraphDrawerApp.damping,
+                GraphDrawerApp.getMaxIterations(), GraphDrawerApp.getBalanceBudget());
+        if (Graph.REMOVE_OVERLAPS && snapshot.report.getNbIterations() > 0) graph.removeOverlaps();
+
+        // retenir les positions atteintes (les noeuds absents de cet instantané gardent leur dernière position)
+        for (Node node : nodes) {
+            int id = node.getOriginalIndex();
+            if (id >= known.length) grow(id + 1);
+            lastX[id] = node.getPosition().getX();
+            lastY[id] = node.getPosition().getY();
+            known[id] = true;
+        }
+    }
+
+    /**
+     * @param id n° d'origine d'un noeud
+     * @return vrai si le noeud figurait dans un instantané précédent
+     */
+    private boolean isKnown(int id) {
+        return id < known.length && known[id];
+    }
+
+    /**
+     * @param length nombre minimal de n° retenus
+     */
+    private void grow(int length) {
+        int newLength = Math.max(length, known.length * 2);
+        lastX = Arrays.copyOf(lastX, newLength);
+        lastY = Arrays.copyOf(lastY, newLength);
+        known = Arrays.copyOf(known, newLength);
+    }
+
+    /**
+     * @param ex erreur d'un étage (seule la première est retenue)
+     */
+    private synchronized void fail(Exception ex) {
+        if (failure == null) failure = ex;
+    }
+
+    /**
+     * Signale la fin de la suite à l'étage suivant
+     * @param queue file vers l'étage suivant
+     */
+    private static void putEnd(BlockingQueue<Snapshot> queue) {
+        try {
+            queue.put(new Snapshot(-1, null, null));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Instantané de la suite
+     */
+    public static class Snapshot {
+
+        /**
+         * rang dans la suite et fichier
+         */
+        private final int rank;
+        private final String filePath;
+
+        /**
+         * graphe de l'instantané (null pour signaler la fin de la suite)
+         */
+        private final Graph graph;
+
+        /**
+         * nombre de noeuds absents des instantanés précédents
+         */
+        private int nbNewNodes;
+
+        /**
+         * bilan de l'équilibrage
+         */
+        private BalanceReport report;
+
+        Snapshot(int rank, String filePath, Graph graph) {
+            this.rank = rank;
+            this.filePath = filePath;
+            this.graph = graph;
+        }
+
+        public int getRank() {
+            return rank;
+        }
+
+        public String getFilePath() {
+            return filePath;
+        }
+
+        public Graph getGraph() {
+            return graph;
+        }
+
+        public int getNbNewNodes() {
+            return nbNewNodes;
+        }
+
+        public BalanceReport getReport() {
+            return report;
+        }
+
+    }
+
+}
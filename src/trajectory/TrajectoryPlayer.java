@@ -0,0 +1,298 @@
+package trajectory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import models.Graph;
+import models.Node;
+import trajectory.TrajectoryRecorder.Segment;
+
+/**
+ * Lecture d'une trajectoire enregistrée par un {@link TrajectoryRecorder}
+ * <p>
+ * On peut aller à n'importe quelle image, dans n'importe quel ordre et à n'importe quelle vitesse :
+ * seul le segment qui la contient est décompressé (puis gardé pour les images suivantes), et l'image
+ * est reconstituée à partir de l'image clé du segment, sans recalculer aucune force.
+ * </p>
+ */
+public class TrajectoryPlayer {
+
+    /**
+     * n° d'origine de chaque noeud enregistré
+     */
+    private int[] originalIndexes;
+
+    /**
+     * nombre d'images par segment et pas d'arrondi
+     */
+    private int keyframeInterval;
+    private double quantum;
+
+    /**
+     * segments disponibles, du plus ancien au plus récent
+     */
+    private List<Segment> segments;
+
+    /**
+     * fichier des segments, ou null s'ils sont en mémoire
+     */
+    private RandomAccessFile file;
+
+    /**
+     * dernier segment décompressé (cache) et ses octets
+     */
+    private Segment decodedSegment;
+    private byte[] decoded;
+
+    /**
+     * dernière image reconstituée dans le segment en cache, en pas, et position de sa fin dans les octets
+     */
+    private int decodedFrame = -1;
+    private int decodedOffset;
+    private long[] currentX, currentY;
+
+    /**
+     * @param originalIndexes n° d'origine des noeuds
+     * @param keyframeInterval nombre d'images par segment
+     * @param quantum pas d'arrondi des positions
+     * @param segments segments disponibles
+     * @param file fichier des segments, ou null
+     */
+    TrajectoryPlayer(int[] originalIndexes, int keyframeInterval, double quantum, List<Segment> segments, RandomAccessFile file) {
+        this.originalIndexes = originalIndexes;
+        this.keyframeInterval = keyframeInterval;
+        this.quantum = quantum;
+        this.segments = segments;
+        this.file = file;
+        currentX = new long[originalIndexes.length];
+        currentY = new long[originalIndexes.length];
+    }
+
+    /**
+     * Ouvre un fichier de trajectoire (un fichier tronqué, par exemple en cours d'écriture, est lu
+     * jusqu'à son dernier segment complet)
+     * @param path fichier écrit par un {@link TrajectoryRecorder}
+     * @return le lecteur de la trajectoire
+     * @throws IOException si le fichier est illisible ou n'est pas une trajectoire
+     */
+    public static TrajectoryPlayer open(File path) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+            if (file.readInt() != TrajectoryRecorder.MAGIC) throw new IOException("pas un fichier de trajectoire : " + path);
+            int version = file.readInt();
+            if (version != TrajectoryRecorder.VERSION) throw new IOException("version de trajectoire inconnue : " + version);
+            int nbNodes = file.readInt();
+            int keyframeInterval = file.readInt();
+            double quantum = file.readDouble();
+            int[] originalIndexes = new int[nbNodes];
+            for (int i = 0; i < nbNodes; i++) originalIndexes[i] = file.readInt();
+
+            List<Segment> segments = new ArrayList<Segment>();
+            long length = file.length();
+            long position = file.getFilePointer();
+            int frame = 0;
+            while (position + 12 <= length) {
+                file.seek(position);
+                int nbFrames = file.readInt();
+                int rawLength = file.readInt();
+                int dataLength = file.readInt();
+                if (position + 12 + dataLength > length) break;
+                Segment segment = new Segment(frame, nbFrames, rawLength, null);
+                segment.filePosition = position + 12;
+                segments.add(segment);
+                frame += nbFrames;
+                position += 12 + dataLength;
+            }
+            return new TrajectoryPlayer(originalIndexes, keyframeInterval, quantum, segments, file);
+        } catch (IOException ex) {
+            file.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Ferme le fichier éventuel
+     * @throws IOException en cas d'erreur de fermeture
+     */
+    public void close() throws IOException {
+        if (file != null) file.close();
+    }
+
+    /**
+     * @return le n° de la première image disponible
+     */
+    public int getFirstFrame() {
+        return segments.isEmpty() ? 0 : segments.get(0).firstFrame;
+    }
+
+    /**
+     * @return le n° suivant la dernière image disponible
+     */
+    public int getEndFrame() {
+        if (segments.isEmpty()) return 0;
+        Segment last = segments.get(segments.size() - 1);
+        return last.firstFrame + last.nbFrames;
+    }
+
+    /**
+     * @return le nombre de noeuds enregistrés
+     */
+    public int getNbNodes() {
+        return originalIndexes.length;
+    }
+
+    /**
+     * @return le n° d'origine de chaque noeud enregistré, dans l'ordre des positions rendues
+     */
+    public int[] getOriginalIndexes() {
+        return originalIndexes;
+    }
+
+    public int getKeyframeInterval() {
+        return keyframeInterval;
+    }
+
+    public double getQuantum() {
+        return quantum;
+    }
+
+    /**
+     * Reconstitue une image
+     * @param frame n° de l'image, entre {@link #getFirstFrame()} et {@link #getEndFrame()} exclu
+     * @param x abscisses reconstituées (au moins {@link #getNbNodes()} cases)
+     * @param y ordonnées reconstituées
+     * @throws IOException en cas d'erreur de lecture du fichier
+     */
+    public void getFrame(int frame, double[] x, double[] y) throws IOException {
+        seek(frame);
+        for (int i = 0; i < currentX.length; i++) {
+            x[i] = currentX[i] * quantum;
+            y[i] = currentY[i] * quantum;
+        }
+    }
+
+    /**
+     * Place les noeuds du graphe sur une image (les vitesses sont remises à zéro)
+     * @param graph graphe enregistré (les noeuds sont retrouvés par leur n° d'origine)
+     * @param frame n° de l'image
+     * @throws IOException en cas d'erreur de lecture du fichier
+     */
+    public void apply(Graph graph, int frame) throws IOException {
+        List<Node> nodes = graph.getNodes();
+        double[] x = new double[nodes.size()];
+        double[] y = new double[nodes.size()];
+        Map<Integer, Integer> ranks = new HashMap<Integer, Integer>();
+        for (int i = 0; i < nodes.size(); i++) {
+            x[i] = nodes.get(i).getPosition().getX();
+            y[i] = nodes.get(i).getPosition().getY();
+            ranks.put(nodes.get(i).getOriginalIndex(), i);
+        }
+        seek(frame);
+        for (int i = 0; i < originalIndexes.length; i++) {
+            Integer rank = ranks.get(originalIndexes[i]);
+            if (rank == null) continue;
+            x[rank] = currentX[i] * quantum;
+            y[rank] = currentY[i] * quantum;
+        }
+        graph.setPositions(x, y, graph.getEk());
+    }
+
+    /**
+     * Reconstitue une image dans currentX / currentY, en repartant de l'image en cache si elle la précède
+     * dans le même segment, sinon de l'image clé
+     * @param frame n° de l'image
+     * @throws IOException en cas d'erreur de lecture du fichier
+     */
+    private void seek(int frame) throws IOException {
+        Segment segment = findSegment(frame);
+        if (segment != decodedSegment) {
+            decoded = inflate(segment);
+            decodedSegment = segment;
+            decodedFrame = -1;
+        }
+        if (decodedFrame < 0 || decodedFrame > frame) {
+            decodedOffset = 0;
+            decodedFrame = segment.firstFrame - 1;
+        }
+        while (decodedFrame < frame) {
+            boolean keyframe = decodedFrame < segment.firstFrame;
+            for (int i = 0; i < currentX.length; i++) {
+                long dx = readVarLong();
+                long dy = readVarLong();
+                currentX[i] = keyframe ? dx : currentX[i] + dx;
+                currentY[i] = keyframe ? dy : currentY[i] + dy;
+            }
+            decodedFrame++;
+        }
+    }
+
+    /**
+     * @param frame n° de l'image
+     * @return le segment qui la contient (recherche dichotomique)
+     */
+    private Segment findSegment(int frame) {
+        if (frame < getFirstFrame() || frame >= getEndFrame()) {
+            throw new IndexOutOfBoundsException("image " + frame + " hors de [" + getFirstFrame() + ", " + getEndFrame() + ")");
+        }
+        int low = 0, high = segments.size() - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (segments.get(middle).firstFrame <= frame) low = middle;
+            else high = middle - 1;
+        }
+        return segments.get(low);
+    }
+
+    /**
+     * @param segment segment à décompresser
+     * @return ses octets décompressés
+     * @throws IOException en cas d'erreur de lecture ou de données corrompues
+     */
+    private byte[] inflate(Segment segment) throws IOException {
+        byte[] data = segment.data;
+        if (data == null) {
+            file.seek(segment.filePosition - 4);
+            data = new byte[file.readInt()];
+            file.readFully(data);
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            byte[] raw = new byte[segment.rawLength];
+            int length = 0;
+            while (length < raw.length && !inflater.finished()) {
+                int n = inflater.inflate(raw, length, raw.length - length);
+                if (n == 0 && inflater.needsInput()) break;
+                length += n;
+            }
+            if (length != raw.length) throw new IOException("segment de trajectoire tronqué");
+            return raw;
+        } catch (DataFormatException ex) {
+            throw new IOException("segment de trajectoire corrompu", ex);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * @return l'entier signé suivant du segment décompressé
+     */
+    private long readVarLong() {
+        long zigzag = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = decoded[decodedOffset++];
+            zigzag |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+}
@@ -0,0 +1,387 @@
+package trajectory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.zip.Deflater;
+import models.Graph;
+import models.Node;
+
+/**
+ * Enregistrement de la trajectoire des noeuds pendant l'équilibrage
+ * <p>
+ * Pour revoir l'évolution d'une disposition sans recalculer les forces, on range les positions après
+ * chaque itération (voir {@link Graph#setTrajectoryRecorder}) :
+ * </p>
+ * <ul>
+ * <li>les positions sont arrondies à un pas {@link #getQuantum() quantum} près et écrites en entiers de
+ * longueur variable (zigzag puis 7 bits par octet) ;</li>
+ * <li>toutes les {@link #getKeyframeInterval() K} images, une image clé donne les positions entières ;
+ * les images suivantes ne donnent que l'écart avec l'image précédente <b>reconstituée</b>, si bien que
+ * l'erreur reste inférieure à un demi-pas sans dériver d'une image à l'autre ;</li>
+ * <li>une image clé et ses écarts forment un segment, compressé d'un bloc (deflate) : on rejoue une
+ * image quelconque en ne décompressant que son segment.</li>
+ * </ul>
+ * <p>
+ * La mémoire reste bornée : sans fichier, les segments sont gardés dans un tampon circulaire d'au plus
+ * <i>maxBytes</i> octets (les plus anciens sont oubliés) ; avec un fichier, chaque segment y est ajouté
+ * dès qu'il est complet et seul un index reste en mémoire. Le fichier est lisible à tout moment par
+ * {@link TrajectoryPlayer#open}. Une erreur d'écriture arrête l'enregistrement sans interrompre
+ * l'équilibrage : les images suivantes sont ignorées et {@link #getPlayer()} signale l'erreur.
+ * </p>
+ */
+public class TrajectoryRecorder {
+
+    /**
+     * signature et version du format de fichier
+     */
+    static final int MAGIC = 0x4744544a; // "GDTJ"
+    static final int VERSION = 1;
+
+    /**
+     * borne des positions arrondies (au-delà, elles sont saturées : graphes qui divergent)
+     */
+    static final double QUANTIZED_LIMIT = (double) (1L << 60);
+
+    /**
+     * noeuds enregistrés, dans l'ordre du graphe au début de l'enregistrement
+     * (l'ordre reste le même si le graphe renumérote ses noeuds)
+     */
+    private Node[] slots;
+
+    /**
+     * n° d'origine de chaque noeud enregistré
+     */
+    private int[] originalIndexes;
+
+    /**
+     * nombre d'images par segment
+     */
+    private int keyframeInterval;
+
+    /**
+     * pas d'arrondi des positions
+     */
+    private double quantum;
+
+    /**
+     * taille maximale des segments gardés en mémoire, en octets
+     */
+    private long maxBytes;
+
+    /**
+     * segments complets gardés en mémoire (sans fichier), du plus ancien au plus récent
+     */
+    private LinkedList<Segment> segments = new LinkedList<Segment>();
+
+    /**
+     * taille des segments gardés en mémoire
+     */
+    private long nbBytes;
+
+    /**
+     * fichier de débordement, ou null
+     */
+    private File file;
+    private DataOutputStream fileOut;
+
+    /**
+     * n° de la première image encore disponible, et nombre total d'images enregistrées
+     */
+    private int firstFrame;
+    private int nbFrames;
+
+    /**
+     * segment en cours : images non compressées et leur nombre
+     */
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private int nbPendingFrames;
+
+    /**
+     * dernière image reconstituée (positions arrondies), pour les écarts
+     */
+    private long[] previousX, previousY;
+
+    /**
+     * erreur d'écriture du fichier qui a arrêté l'enregistrement, ou null
+     */
+    private IOException failure;
+
+    /**
+     * Enregistre en mémoire, dans un tampon circulaire
+     * @param graph graphe dont on enregistre les positions (l'image 0 est la disposition actuelle)
+     * @param keyframeInterval nombre d'images par segment (une image clé puis des écarts)
+     * @param quantum pas d'arrondi des positions
+     * @param maxBytes taille maximale des segments gardés en mémoire, en octets
+     */
+    public TrajectoryRecorder(Graph graph, int keyframeInterval, double quantum, long maxBytes) {
+        initialize(graph, keyframeInterval, quantum, maxBytes);
+        record();
+    }
+
+    /**
+     * Enregistre dans un fichier, segment après segment
+     * @param graph graphe dont on enregistre les positions (l'image 0 est la disposition actuelle)
+     * @param keyframeInterval nombre d'images par segment
+     * @param quantum pas d'arrondi des positions
+     * @param file fichier de la trajectoire (écrasé)
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public TrajectoryRecorder(Graph graph, int keyframeInterval, double quantum, File file) throws IOException {
+        initialize(graph, keyframeInterval, quantum, Long.MAX_VALUE);
+        this.file = file;
+        fileOut = new DataOutputStream(new FileOutputStream(file));
+        fileOut.writeInt(MAGIC);
+        fileOut.writeInt(VERSION);
+        fileOut.writeInt(slots.length);
+        fileOut.writeInt(this.keyframeInterval);
+        fileOut.writeDouble(quantum);
+        for (int i = 0; i < slots.length; i++) fileOut.writeInt(originalIndexes[i]);
+        fileOut.flush();
+        record(); // image 0, une fois le fichier ouvert (avec K = 1, son segment y est écrit aussitôt)
+    }
+
+    /**
+     * Prépare l'enregistrement, sans enregistrer d'image
+     * @param graph graphe dont on enregistre les positions
+     * @param keyframeInterval nombre d'images par segment
+     * @param quantum pas d'arrondi des positions
+     * @param maxBytes taille maximale des segments gardés en mémoire, en octets
+     */
+    private void initialize(Graph graph, int keyframeInterval, double quantum, long maxBytes) {
+        List<Node> nodes = graph.getNodes();
+        slots = nodes.toArray(new Node[nodes.size()]);
+        originalIndexes = new int[slots.length];
+        for (int i = 0; i < slots.length; i++) originalIndexes[i] = slots[i].getOriginalIndex();
+        this.keyframeInterval = Math.max(1, keyframeInterval);
+        this.quantum = quantum;
+        this.maxBytes = maxBytes;
+        previousX = new long[slots.length];
+        previousY = new long[slots.length];
+    }
+
+    /**
+     * Ajoute une image avec les positions actuelles des noeuds (appelé par le graphe après chaque itération)
+     */
+    public void record() {
+        if (failure != null) return; // enregistrement arrêté
+        boolean keyframe = nbPendingFrames == 0;
+        for (int i = 0; i < slots.length; i++) {
+            long x = quantize(slots[i].getPosition().getX());
+            long y = quantize(slots[i].getPosition().getY());
+            writeVarLong(pending, keyframe ? x : x - previousX[i]);
+            writeVarLong(pending, keyframe ? y : y - previousY[i]);
+            previousX[i] = x;
+            previousY[i] = y;
+        }
+        nbPendingFrames++;
+        nbFrames++;
+        if (nbPendingFrames == keyframeInterval) {
+            try {
+                closeSegment();
+            } catch (IOException ex) {
+                // l'enregistrement ne doit pas interrompre l'équilibrage : on l'arrête (le fichier aurait un trou)
+                ex.printStackTrace();
+                stop(ex);
+            }
+        }
+    }
+
+    /**
+     * Termine le segment en cours (même incomplet) pour que ses images soient lisibles
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public void flush() throws IOException {
+        if (failure != null) throw new IOException("Enregistrement de la trajectoire arrêté", failure);
+        try {
+            if (nbPendingFrames > 0) closeSegment();
+            if (fileOut != null) fileOut.flush();
+        } catch (IOException ex) {
+            stop(ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Arrête l'enregistrement après une erreur d'écriture : les images suivantes sont ignorées
+     * @param ex erreur d'écriture
+     */
+    private void stop(IOException ex) {
+        failure = ex;
+        pending.reset();
+        nbPendingFrames = 0;
+        try {
+            if (fileOut != null) fileOut.close();
+        } catch (IOException closeEx) {
+            // le fichier est déjà inutilisable
+        }
+        fileOut = null;
+    }
+
+    /**
+     * @return vrai si l'enregistrement a été arrêté par une erreur d'écriture du fichier
+     */
+    public boolean isFailed() {
+        return failure != null;
+    }
+
+    /**
+     * Termine l'enregistrement et ferme le fichier éventuel
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public void close() throws IOException {
+        if (failure != null) return; // fichier déjà fermé
+        flush();
+        if (fileOut != null) fileOut.close();
+        fileOut = null;
+    }
+
+    /**
+     * @return un lecteur des images déjà enregistrées (le segment en cours est terminé au passage)
+     * @throws IOException en cas d'erreur de lecture du fichier, ou si l'enregistrement a été arrêté
+     * par une erreur d'écriture
+     */
+    public TrajectoryPlayer getPlayer() throws IOException {
+        flush();
+        if (file != null) return TrajectoryPlayer.open(file);
+        return new TrajectoryPlayer(originalIndexes, keyframeInterval, quantum, new ArrayList<Segment>(segments), null);
+    }
+
+    /**
+     * Compresse le segment en cours et le range
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    private void closeSegment() throws IOException {
+        byte[] raw = pending.toByteArray();
+        Deflater deflater = new Deflater();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 4 + 64);
+        byte[] buffer = new byte[1 << 14];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            compressed.write(buffer, 0, n);
+        }
+        deflater.end();
+        Segment segment = new Segment(nbFrames - nbPendingFrames, nbPendingFrames, raw.length, compressed.toByteArray());
+        pending.reset();
+        nbPendingFrames = 0;
+
+        if (fileOut != null) {
+            fileOut.writeInt(segment.nbFrames);
+            fileOut.writeInt(segment.rawLength);
+            fileOut.writeInt(segment.data.length);
+            fileOut.write(segment.data);
+        } else {
+            segments.add(segment);
+            nbBytes += segment.data.length;
+            // tampon circulaire : on oublie les plus anciens segments (on garde toujours le dernier)
+            while (nbBytes > maxBytes && segments.size() > 1) {
+                Segment oldest = segments.removeFirst();
+                nbBytes -= oldest.data.length;
+                firstFrame = segments.getFirst().firstFrame;
+            }
+        }
+    }
+
+    /**
+     * @param coordinate abscisse ou ordonnée
+     * @return la coordonnée arrondie au pas, en nombre de pas (saturée, 0 pour NaN)
+     */
+    private long quantize(double coordinate) {
+        double steps = Math.rint(coordinate / quantum);
+        if (steps != steps) return 0;
+        return (long) Math.max(-QUANTIZED_LIMIT, Math.min(QUANTIZED_LIMIT, steps));
+    }
+
+    /**
+     * Ecrit un entier signé sur un nombre variable d'octets (zigzag, 7 bits par octet)
+     * @param out flux de destination
+     * @param value valeur à écrire
+     */
+    static void writeVarLong(ByteArrayOutputStream out, long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7fL) != 0) {
+            out.write((int) ((zigzag & 0x7f) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.write((int) zigzag);
+    }
+
+    /**
+     * @return le nombre de noeuds enregistrés
+     */
+    public int getNbNodes() {
+        return slots.length;
+    }
+
+    /**
+     * @return le n° de la première image encore disponible (plus de 0 quand le tampon circulaire a oublié des segments)
+     */
+    public int getFirstFrame() {
+        return firstFrame;
+    }
+
+    /**
+     * @return le nombre total d'images enregistrées
+     */
+    public int getNbFrames() {
+        return nbFrames;
+    }
+
+    public int getKeyframeInterval() {
+        return keyframeInterval;
+    }
+
+    public double getQuantum() {
+        return quantum;
+    }
+
+    /**
+     * @return la taille des segments compressés gardés en mémoire, en octets
+     */
+    public long getNbBytes() {
+        return nbBytes;
+    }
+
+    /**
+     * Segment compressé : une image clé et les écarts qui la suivent
+     */
+    static class Segment {
+
+        /**
+         * n° de la première image du segment et nombre d'images
+         */
+        final int firstFrame;
+        final int nbFrames;
+
+        /**
+         * taille décompressée, en octets
+         */
+        final int rawLength;
+
+        /**
+         * octets compressés (null si le segment est dans un fichier)
+         */
+        final byte[] data;
+
+        /**
+         * position des octets compressés dans le fichier (-1 en mémoire)
+         */
+        long filePosition = -1;
+
+        Segment(int firstFrame, int nbFrames, int rawLength, byte[] data) {
+            this.firstFrame = firstFrame;
+            this.nbFrames = nbFrames;
+            this.rawLength = rawLength;
+            this.data = data;
+        }
+
+    }
+
+}
@@ -0,0 +1,435 @@
+package tuning;
+
+import helper.CsrAdjacency;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import metrics.LayoutMetrics;
+import models.Graph;
+import models.ParameterProfile;
+
+/**
+ * Recherche des paramètres d'équilibrage les plus rapides pour une classe de graphes
+ * <p>
+ * Chaque essai équilibre tous les graphes du corpus avec un jeu de paramètres (pas temporel, amortissement,
+ * aire ciblée et, pour le modèle d'Eades, ses deux coefficients) jusqu'au seuil {@link Graph#ENERGY_THRESHOLD}.
+ * On cherche le jeu qui demande le moins d'itérations au total (le temps d'une itération ne dépend pas des
+ * paramètres, et le nombre d'itérations ne dépend pas de la charge de la machine), sous contrainte de qualité :
+ * chaque graphe doit converger, avec un stress ({@link LayoutMetrics#getStress()}) au plus
+ * {@link #QUALITY_TOLERANCE} au-dessus de celui obtenu avec les paramètres par défaut.
+ * </p>
+ * <p>
+ * La recherche est aléatoire : une part {@link #EXPLORATION_FRACTION} des essais est tirée uniformément dans
+ * l'espace des paramètres (échelle logarithmique pour les grandeurs positives), les suivants autour du
+ * meilleur essai, dans un voisinage qui se resserre au fil des lots. Les essais d'un lot sont équilibrés
+ * en parallèle. Tous les graphes partent des mêmes positions initiales
+ * (tirées avec la graine, à l'échelle de l'aire) : deux recherches de même graine donnent le même résultat.
+ * </p>
+ */
+public class ParameterTuner {
+
+    /**
+     * bornes de la recherche
+     */
+    public static double MIN_TIMESTEP = 0.05, MAX_TIMESTEP = 1;
+    public static double MIN_DAMPING = 0.3, MAX_DAMPING = 0.95;
+    public static double AREA_RANGE = 4; // de AREA / 4 à AREA * 4
+    public static double MIN_EADES_ATTRACTION = 5, MAX_EADES_ATTRACTION = 80;
+    public static double MIN_EADES_REPULSION = 5000, MAX_EADES_REPULSION = 120000;
+
+    /**
+     * nombre maximal d'itérations d'un équilibrage (au-delà, l'essai n'a pas convergé)
+     */
+    public static int MAX_ITERATIONS = 1000;
+
+    /**
+     * dégradation relative du stress tolérée par rapport aux paramètres par défaut
+     */
+    public static double QUALITY_TOLERANCE = 0.05;
+
+    /**
+     * part des essais tirés uniformément, avant de chercher autour du meilleur
+     */
+    public static double EXPLORATION_FRACTION = 0.5;
+
+    /**
+     * rayon du voisinage du meilleur essai (en fraction de chaque intervalle), au début et à la fin de la recherche
+     */
+    public static double INITIAL_RADIUS = 0.25, FINAL_RADIUS = 0.02;
+
+    /**
+     * nombre d'essais par lot
+     */
+    public static int BATCH_SIZE = 8;
+
+    /**
+     * classe des graphes du corpus (nom des profils produits)
+     */
+    private String graphClass;
+
+    /**
+     * initiale du modèle de forces
+     */
+    private char modelLetter;
+
+    /**
+     * graphes du corpus
+     */
+    private List<CsrAdjacency> corpus;
+
+    /**
+     * positions initiales de chaque graphe, dans le carré unité
+     */
+    private double[][] initialX, initialY;
+
+    /**
+     * tirages des essais
+     */
+    private Random random;
+
+    /**
+     * threads des équilibrages
+     */
+    private ExecutorService executor;
+
+    /**
+     * essai avec les paramètres par défaut, et meilleur essai
+     */
+    private Trial baseline, best;
+
+    /**
+     * nombre d'essais effectués
+     */
+    private int nbTrials;
+
+    /**
+     * @param graphClass classe des graphes du corpus
+     * @param modelLetter initiale du modèle de forces
+     * @param corpus graphes représentatifs de la classe
+     * @param nbThreads nombre d'équilibrages simultanés
+     * @param seed graine des positions initiales et des tirages
+     */
+    public ParameterTuner(String graphClass, char modelLetter, List<CsrAdjacency> corpus, int nbThreads, long seed) {
+        this.graphClass = graphClass;
+        this.modelLetter = modelLetter;
+        this.corpus = corpus;
+        random = new Random(seed);
+        initialX = new double[corpus.size()][];
+        initialY = new double[corpus.size()][];
+        for (int g = 0; g < corpus.size(); g++) {
+            int nbNodes = corpus.get(g).getNbNodes();
+            initialX[g] = new double[nbNodes];
+            initialY[g] = new double[nbNodes];
+            for (int i = 0; i < nbNodes; i++) {
+                initialX[g][i] = random.nextDouble();
+                initialY[g][i] = random.nextDouble();
+            }
+        }
+        executor = Executors.newFixedThreadPool(nbThreads);
+    }
+
+    /**
+     * Effectue la recherche
+     * @param nbTrials nombre d'essais (en plus de celui des paramètres par défaut)
+     * @return le profil du meilleur essai respectant la contrainte de qualité
+     * (les paramètres par défaut si aucun ne fait mieux)
+     */
+    public ParameterProfile tune(int nbTrials) {
+        baseline = evaluate(ParameterProfile.defaults(graphClass), null, true);
+        best = baseline.isFeasible() ? baseline : null;
+
+        int nbExplorations = (int) Math.ceil(nbTrials * EXPLORATION_FRACTION);
+        while (this.nbTrials < nbTrials) {
+            int batchSize = Math.min(BATCH_SIZE, nbTrials - this.nbTrials);
+            List<Future<Trial>> batch = new ArrayList<Future<Trial>>();
+            for (int t = 0; t < batchSize; t++) {
+                double[] point;
+                if (this.nbTrials + t < nbExplorations || best == null) {
+                    point = new double[5];
+                    for (int d = 0; d < point.length; d++) point[d] = random.nextDouble();
+                } else {
+                    // voisinage du meilleur, resserré linéairement jusqu'à la fin de la recherche
+                    double progress = (double) (this.nbTrials + t - nbExplorations) / Math.max(1, nbTrials - nbExplorations);
+                    double radius = INITIAL_RADIUS + (FINAL_RADIUS - INITIAL_RADIUS) * progress;
+                    double[] center = toPoint(best.profile);
+                    point = new double[center.length];
+                    for (int d = 0; d < point.length; d++) {
+                        point[d] = Math.max(0, Math.min(1, center[d] + radius * random.nextGaussian()));
+                    }
+                }
+                final ParameterProfile profile = toProfile(point);
+                batch.add(executor.submit(new Callable<Trial>() {
+                    public Trial call() {
+                        return evaluate(profile, baseline, false);
+                    }
+                }));
+            }
+            for (Future<Trial> result : batch) {
+                Trial trial = get(result);
+                if (trial.isFeasible() && (best == null || trial.isBetterThan(best))) best = trial;
+            }
+            this.nbTrials += batchSize;
+        }
+        return best != null ? best.profile : baseline.profile;
+    }
+
+    /**
+     * Arrête les threads des équilibrages
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Equilibre tous les graphes du corpus avec un jeu de paramètres
+     * @param profile paramètres de l'essai
+     * @param reference essai de référence pour la qualité, ou null
+     * @param parallel vrai pour équilibrer les graphes en parallèle, faux pour les équilibrer à la suite
+     * dans le thread courant (déjà un thread de la recherche)
+     * @return le résultat de l'essai
+     */
+    private Trial evaluate(final ParameterProfile profile, Trial reference, boolean parallel) {
+        Trial trial = new Trial(profile, corpus.size());
+        List<Future<double[]>> results = new ArrayList<Future<double[]>>();
+        for (int g = 0; g < corpus.size(); g++) {
+            final int graphIndex = g;
+            Callable<double[]> task = new Callable<double[]>() {
+                public double[] call() {
+                    return balance(graphIndex, profile);
+                }
+            };
+            if (parallel) {
+                results.add(executor.submit(task));
+            } else {
+                trial.add(graphIndex, call(task), reference);
+            }
+        }
+        for (int g = 0; g < results.size(); g++) trial.add(g, get(results.get(g)), reference);
+        return trial;
+    }
+
+    /**
+     * Equilibre un graphe du corpus
+     * @param graphIndex n° du graphe dans le corpus
+     * @param profile paramètres de l'essai
+     * @return nombre d'itérations, durée en nanosecondes, 1 si le seuil d'énergie est atteint, stress
+     */
+    private double[] balance(int graphIndex, ParameterProfile profile) {
+        Graph graph = new Graph(corpus.get(graphIndex), null, modelLetter, profile);
+        double side = Math.sqrt(profile.getArea());
+        int nbNodes = initialX[graphIndex].length;
+        double[] x = new double[nbNodes], y = new double[nbNodes];
+        for (int i = 0; i < nbNodes; i++) {
+            x[i] = initialX[graphIndex][i] * side;
+            y[i] = initialY[graphIndex][i] * side;
+        }
+        graph.setPositions(x, y);
+
+        long start = System.nanoTime();
+        int i;
+        for (i = 0; i < MAX_ITERATIONS && graph.getEk() >= Graph.ENERGY_THRESHOLD; i++) {
+            graph.iterateBalance(profile.getTimestep(), profile.getDamping());
+        }
+        long elapsed = System.nanoTime() - start;
+        boolean converged = graph.getEk() < Graph.ENERGY_THRESHOLD; // faux aussi si l'énergie a divergé (NaN)
+        // le stress sert de référence même sans convergence (défauts), sauf si les positions ont divergé
+        double stress = Double.isNaN(graph.getEk()) || Double.isInfinite(graph.getEk()) ? Double.NaN
+                : new LayoutMetrics(graph).getStress();
+        return new double[] {i, elapsed, converged ? 1 : 0, stress};
+    }
+
+    /**
+     * @param point coordonnées dans [0, 1] de chaque paramètre
+     * @return le jeu de paramètres correspondant
+     */
+    private ParameterProfile toProfile(double[] point) {
+        boolean eades = modelLetter == 'e';
+        return new ParameterProfile(graphClass,
+                logScale(MIN_TIMESTEP, MAX_TIMESTEP, point[0]),
+                MIN_DAMPING + (MAX_DAMPING - MIN_DAMPING) * point[1],
+                (int) Math.round(logScale(Graph.AREA / AREA_RANGE, Graph.AREA * AREA_RANGE, point[2])),
+                eades ? logScale(MIN_EADES_ATTRACTION, MAX_EADES_ATTRACTION, point[3]) : Graph.EADES_ATTRACTION,
+                eades ? logScale(MIN_EADES_REPULSION, MAX_EADES_REPULSION, point[4]) : Graph.EADES_REPULSION);
+    }
+
+    /**
+     * @param profile jeu de paramètres
+     * @return ses coordonnées dans [0, 1] (réciproque de {@link #toProfile})
+     */
+    private double[] toPoint(ParameterProfile profile) {
+        return new double[] {
+            logPosition(MIN_TIMESTEP, MAX_TIMESTEP, profile.getTimestep()),
+            (profile.getDamping() - MIN_DAMPING) / (MAX_DAMPING - MIN_DAMPING),
+            logPosition(Graph.AREA / AREA_RANGE, Graph.AREA * AREA_RANGE, profile.getArea()),
+            logPosition(MIN_EADES_ATTRACTION, MAX_EADES_ATTRACTION, profile.getEadesAttraction()),
+            logPosition(MIN_EADES_REPULSION, MAX_EADES_REPULSION, profile.getEadesRepulsion())
+        };
+    }
+
+    /**
+     * @param min borne inférieure
+     * @param max borne supérieure
+     * @param position position dans [0, 1]
+     * @return la valeur à cette position sur une échelle logarithmique
+     */
+    private static double logScale(double min, double max, double position) {
+        return min * Math.pow(max / min, position);
+    }
+
+    /**
+     * @param min borne inférieure
+     * @param max borne supérieure
+     * @param value valeur
+     * @return sa position sur une échelle logarithmique, ramenée dans [0, 1]
+     */
+    private static double logPosition(double min, double max, double value) {
+        return Math.max(0, Math.min(1, Math.log(value / min) / Math.log(max / min)));
+    }
+
+    /**
+     * @param result résultat d'une tâche
+     * @return sa valeur
+     */
+    private static <T> T get(Future<T> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    /**
+     * @param task tâche à exécuter dans le thread courant
+     * @return son résultat
+     */
+    private static <T> T call(Callable<T> task) {
+        try {
+            return task.call();
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    public Trial getBaseline() {
+        return baseline;
+    }
+
+    /**
+     * @return le meilleur essai respectant la contrainte de qualité, ou null
+     */
+    public Trial getBest() {
+        return best;
+    }
+
+    public int getNbTrials() {
+        return nbTrials;
+    }
+
+    /**
+     * Résultat d'un essai sur tout le corpus
+     */
+    public static class Trial {
+
+        /**
+         * paramètres de l'essai
+         */
+        private final ParameterProfile profile;
+
+        /**
+         * nombre total d'itérations et durée totale des équilibrages, en nanosecondes
+         */
+        private int nbIterations;
+        private long elapsedNanos;
+
+        /**
+         * stress de chaque graphe (NaN si l'équilibrage a divergé)
+         */
+        private final double[] stress;
+
+        /**
+         * nombre de graphes qui ont convergé, et qui respectent en plus la contrainte de qualité
+         */
+        private int nbConverged, nbFeasible;
+
+        Trial(ParameterProfile profile, int nbGraphs) {
+            this.profile = profile;
+            stress = new double[nbGraphs];
+        }
+
+        /**
+         * Ajoute le résultat d'un graphe
+         * @param graphIndex n° du graphe
+         * @param result résultat de {@link ParameterTuner#balance}
+         * @param reference essai de référence pour la qualité, ou null
+         */
+        void add(int graphIndex, double[] result, Trial reference) {
+            nbIterations += (int) result[0];
+            elapsedNanos += (long) result[1];
+            stress[graphIndex] = result[3];
+            if (result[2] == 0) return;
+            nbConverged++;
+            // sans référence utilisable (défauts qui divergent), la convergence suffit
+            double limit = reference == null || Double.isNaN(reference.stress[graphIndex]) ? Double.POSITIVE_INFINITY
+                    : reference.stress[graphIndex] * (1 + QUALITY_TOLERANCE);
+            if (stress[graphIndex] <= limit) nbFeasible++;
+        }
+
+        /**
+         * @return vrai si tous les graphes ont convergé en respectant la contrainte de qualité
+         */
+        public boolean isFeasible() {
+            return nbFeasible == stress.length;
+        }
+
+        /**
+         * @param other autre essai
+         * @return vrai si cet essai demande moins d'itérations (à égalité, moins de temps)
+         */
+        boolean isBetterThan(Trial other) {
+            return nbIterations < other.nbIterations || (nbIterations == other.nbIterations && elapsedNanos < other.elapsedNanos);
+        }
+
+        public ParameterProfile getProfile() {
+            return profile;
+        }
+
+        public int getNbIterations() {
+            return nbIterations;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * @return le stress moyen des graphes qui n'ont pas divergé (NaN si aucun)
+         */
+        public double getMeanStress() {
+            double sum = 0;
+            int count = 0;
+            for (double s : stress) {
+                if (!Double.isNaN(s)) {
+                    sum += s;
+                    count++;
+                }
+            }
+            return count > 0 ? sum / count : Double.NaN;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d itérations en %d ms, %d/%d convergés, stress moyen %.4f",
+                    nbIterations, elapsedNanos / 1000000, nbConverged, stress.length, getMeanStress());
+        }
+
+    }
+
+}
@@ -0,0 +1,112 @@
+package tuning;
+
+import helper.CsrAdjacency;
+import helper.ParallelParser;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import models.Graph;
+import models.ParameterProfile;
+
+/**
+ * Application de réglage des paramètres d'équilibrage sur un corpus de graphes
+ * <p>
+ * Les graphes du corpus sont regroupés par {@link ParameterProfile#classify classe} ; pour chaque classe,
+ * un {@link ParameterTuner} cherche les paramètres les plus rapides et le profil obtenu est écrit dans
+ * {@link Graph#PARAMETER_PROFILES_DIRECTORY}, où {@link Graph} le reprend quand
+ * {@link Graph#USE_PARAMETER_PROFILES} est vrai. Par exemple
+ * {@code TuningApp f 64 rgg1k rgg2k er1k} écrit {@code profiles/f-n3-d2.profile}.
+ * </p>
+ */
+public class TuningApp {
+
+    /**
+     * graine des positions initiales et des tirages
+     */
+    private static final long SEED = 42;
+
+    /**
+     * @param args "initiale modèle" "nombre d'essais par classe" "nom_du_fichier" ["nom_du_fichier" ...]
+     */
+    public static void main(String[] args) {
+
+        if (args.length < 3 || args[0].length() < 1 || !Pattern.matches("\\d{1,6}", args[1])) {
+            System.out.println("Usage : TuningApp initiale_modèle nombre_d_essais nom_du_fichier [nom_du_fichier ...]");
+            return;
+        }
+        char modelLetter = args[0].charAt(0);
+        int nbTrials = Integer.parseInt(args[1]);
+
+        // lecture du corpus, regroupé par classe de graphes
+        Map<String, List<CsrAdjacency>> classes = new TreeMap<String, List<CsrAdjacency>>();
+        Map<String, List<String>> names = new TreeMap<String, List<String>>();
+        for (int a = 2; a < args.length; a++) {
+            if (!Pattern.matches("\\w{1,256}", args[a])) {
+                System.out.println("Nom de fichier incorrect : " + args[a]);
+                return;
+            }
+            CsrAdjacency adjacency;
+            try {
+                adjacency = ParallelParser.parseFile("data/" + args[a] + ".txt");
+            } catch (IOException ex) {
+                System.out.println("Lecture de data/" + args[a] + ".txt impossible : " + ex.getMessage());
+                return;
+            }
+            // chaque entrée des listes lie deux noeuds dans les deux sens : c'est une arête
+            String graphClass = ParameterProfile.classify(modelLetter, adjacency.getNbNodes(), adjacency.getTargets().length);
+            if (!classes.containsKey(graphClass)) {
+                classes.put(graphClass, new ArrayList<CsrAdjacency>());
+                names.put(graphClass, new ArrayList<String>());
+            }
+            classes.get(graphClass).add(adjacency);
+            names.get(graphClass).add(args[a]);
+        }
+
+        // les graphes peuvent afficher leur énergie à chaque itération (Graph.LOG_KINETIC_ENERGY) : on n'affiche que le bilan
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            public void write(int b) {
+            }
+            public void write(byte[] b, int offset, int length) {
+            }
+        }));
+        try {
+            for (Map.Entry<String, List<CsrAdjacency>> entry : classes.entrySet()) {
+                String graphClass = entry.getKey();
+                console.println("Classe " + graphClass + " : " + names.get(graphClass));
+                long start = System.nanoTime();
+                ParameterTuner tuner = new ParameterTuner(graphClass, modelLetter, entry.getValue(),
+                        Runtime.getRuntime().availableProcessors(), SEED);
+                ParameterProfile profile;
+                try {
+                    profile = tuner.tune(nbTrials);
+                } finally {
+                    tuner.shutdown();
+                }
+                console.println("  défauts : " + tuner.getBaseline());
+                if (tuner.getBest() == null) {
+                    console.println("  aucun essai ne converge sur tout le corpus : pas de profil");
+                    continue;
+                }
+                console.println("  meilleur : " + tuner.getBest());
+                console.println("  " + profile + " (" + tuner.getNbTrials() + " essais en "
+                        + (System.nanoTime() - start) / 1000000 + " ms)");
+                try {
+                    profile.store(new File(Graph.PARAMETER_PROFILES_DIRECTORY),
+                            "réglé sur " + names.get(graphClass) + " : " + tuner.getBest());
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+}